@@ -0,0 +1,40 @@
+plugins {
+    java
+}
+
+repositories {
+    mavenCentral()
+}
+
+val jmhVersion = "1.37"
+
+dependencies {
+    implementation(project(":core"))
+    implementation(testFixtures(project(":core")))
+    implementation("org.openjdk.jmh:jmh-core:$jmhVersion")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+}
+
+tasks {
+    // runs the benchmarks, JMH arguments can be passed using
+    // -PjmhArgs, i.e. ./gradlew :benchmarks:jmh -PjmhArgs="Resp.* -f 1"
+    register<JavaExec>("jmh") {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        val jmhArgs = (project.findProperty("jmhArgs") as String?) ?: "-prof gc"
+        args(jmhArgs.split(" ").filter { it.isNotBlank() })
+    }
+
+    // runs the load generator, arguments can be passed using -PloadArgs,
+    // i.e. ./gradlew :benchmarks:loadgen -PloadArgs="--stand-in --pipeline 16"
+    register<JavaExec>("loadgen") {
+        group = "benchmark"
+        description = "Runs the load generator"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("team.unnamed.redis.benchmark.LoadGenerator")
+        val loadArgs = (project.findProperty("loadArgs") as String?) ?: ""
+        args(loadArgs.split(" ").filter { it.isNotBlank() })
+    }
+}
\ No newline at end of file
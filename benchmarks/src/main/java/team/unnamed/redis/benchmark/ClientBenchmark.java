@@ -0,0 +1,168 @@
+package team.unnamed.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.async.AsyncRedisClient;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.metrics.CommandMetrics;
+import team.unnamed.redis.pipelining.AutoPipeliningConfig;
+import team.unnamed.redis.pipelining.AutoPipeliningRedisClient;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end GET/SET latency and throughput of the clients,
+ * against an in-process {@link StandInRedisServer}, so it
+ * measures the client and the loopback network only.
+ *
+ * <p>Use {@code -p address=host:port} to run it against a
+ * real redis server instead, and {@code -t} to compare the
+ * auto-pipelined client, shared by all the threads, with a
+ * connection per thread. {@code meteredGet} measures the overhead
+ * of {@link CommandMetrics}, compared to {@code get}, which has
+ * no listener</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientBenchmark {
+
+    private static final int PIPELINE_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({ "stand-in" })
+        public String address;
+
+        @Param({ "64" })
+        public int valueSize;
+
+        private StandInRedisServer server;
+        private InetSocketAddress socketAddress;
+        private final CommandMetrics metrics = new CommandMetrics();
+        // shared by all the benchmark threads
+        private AutoPipeliningRedisClient autoPipeliningClient;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            if (address.equals("stand-in")) {
+                server = new StandInRedisServer();
+                socketAddress = server.getAddress();
+            } else {
+                int separator = address.lastIndexOf(':');
+                socketAddress = new InetSocketAddress(
+                        address.substring(0, separator),
+                        Integer.parseInt(address.substring(separator + 1))
+                );
+            }
+            autoPipeliningClient = RedisClient.create(socketAddress, AutoPipeliningConfig.builder().build());
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            autoPipeliningClient.close();
+            if (server != null) {
+                server.close();
+            }
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private RedisClient client;
+        private RedisClient meteredClient;
+        private AsyncRedisClient asyncClient;
+        private byte[] key;
+        private byte[] value;
+        private ReplyVisitor visitor;
+
+        @Setup(Level.Trial)
+        public void connect(Server server, Blackhole blackhole) {
+            client = RedisClient.create(server.socketAddress);
+            meteredClient = RedisClient.create(server.socketAddress, server.metrics);
+            asyncClient = AsyncRedisClient.create(server.socketAddress);
+            key = Strings.encode("benchmark:" + Thread.currentThread().getId());
+            value = new byte[server.valueSize];
+            client.set(key, value);
+            visitor = new ReplyVisitor() {
+                @Override
+                public void onBulkString(byte[] buffer, int offset, int length) {
+                    blackhole.consume(length);
+                }
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            client.close();
+            meteredClient.close();
+            asyncClient.close();
+        }
+
+    }
+
+    @Benchmark
+    public String set(Client client) {
+        return client.client.set(client.key, client.value);
+    }
+
+    @Benchmark
+    public String get(Client client) {
+        return client.client.get(client.key);
+    }
+
+    @Benchmark
+    public String meteredGet(Client client) {
+        return client.meteredClient.get(client.key);
+    }
+
+    @Benchmark
+    public void getVisitor(Client client) {
+        client.client.get(client.key, client.visitor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_SIZE)
+    public Object pipelinedSet(Client client) {
+        Pipeline pipeline = client.client.pipelined();
+        for (int i = 0; i < PIPELINE_SIZE; i++) {
+            pipeline.set(client.key, client.value);
+        }
+        return pipeline.sync();
+    }
+
+    @Benchmark
+    public String autoPipelinedGet(Server server, Client client) {
+        return server.autoPipeliningClient.get(client.key);
+    }
+
+    @Benchmark
+    public String asyncGet(Client client) {
+        return client.asyncClient.get(client.key).join();
+    }
+
+}
@@ -0,0 +1,19 @@
+package team.unnamed.redis.benchmark;
+
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} that discards everything,
+ * used to measure the encoding cost only
+ */
+final class DiscardingOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+    }
+
+}
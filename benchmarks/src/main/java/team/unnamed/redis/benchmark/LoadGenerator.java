@@ -0,0 +1,342 @@
+package team.unnamed.redis.benchmark;
+
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pipelining.AutoPipeliningConfig;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * redis-benchmark-like load generator built on {@link RedisClient},
+ * it drives a RESP endpoint with a configurable amount of connections,
+ * threads (or virtual threads), pipeline depth, key space and value
+ * size, and reports the throughput and latency percentiles.
+ *
+ * <p>Latencies are corrected for coordinated omission: when a target
+ * rate is given ({@code --rate}), operations are scheduled at fixed
+ * intervals and their response time is measured from the time they
+ * were supposed to start, so stalls aren't hidden by the generator
+ * waiting for them. In closed loop, the operations that would have
+ * been issued during a stall are backfilled, taking the median
+ * latency seen in the warmup as the expected interval</p>
+ *
+ * <p>With {@code --auto-pipelining}, the workers share the given count
+ * of connections through an auto-pipelining client instead of taking
+ * them from a pool, so thousands of (virtual) threads can be driven
+ * by a few connections. With {@code --virtual-threads}, the times a
+ * carrier thread was pinned are recorded using JFR and reported</p>
+ *
+ * <p>Usage: {@code LoadGenerator [--host 127.0.0.1] [--port 6379]
+ * [--stand-in] [--connections 8] [--threads 8] [--virtual-threads]
+ * [--auto-pipelining] [--pipeline 1] [--keyspace 10000] [--value-size 64]
+ * [--set-ratio 0.2] [--duration 10] [--warmup 2] [--rate 0]}</p>
+ */
+public class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final int threads;
+    private final boolean virtualThreads;
+    private final boolean autoPipelining;
+    private final int pipeline;
+    private final int keyspace;
+    private final int valueSize;
+    private final double setRatio;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final long rate;
+
+    private final byte[][] keys;
+    private final byte[] value;
+
+    private LoadGenerator(InetSocketAddress address, Map<String, String> options) {
+        this.address = address;
+        this.connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        this.threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(connections)));
+        this.virtualThreads = options.containsKey("virtual-threads");
+        this.autoPipelining = options.containsKey("auto-pipelining");
+        this.pipeline = Integer.parseInt(options.getOrDefault("pipeline", "1"));
+        this.keyspace = Integer.parseInt(options.getOrDefault("keyspace", "10000"));
+        this.valueSize = Integer.parseInt(options.getOrDefault("value-size", "64"));
+        this.setRatio = Double.parseDouble(options.getOrDefault("set-ratio", "0.2"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "10")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "2")));
+        this.rate = Long.parseLong(options.getOrDefault("rate", "0"));
+
+        this.keys = new byte[keyspace][];
+        for (int i = 0; i < keyspace; i++) {
+            keys[i] = Strings.encode("loadgen:" + i);
+        }
+        this.value = new byte[valueSize];
+    }
+
+    private RedisClient createClient() {
+        if (autoPipelining) {
+            return RedisClient.create(address, AutoPipeliningConfig.builder()
+                    .connections(connections)
+                    .build());
+        }
+        return RedisClient.create(address, RedisPoolConfig.builder()
+                .minSize(connections)
+                .maxSize(connections)
+                .maxWait(1, TimeUnit.MINUTES)
+                .build());
+    }
+
+    private void run() throws InterruptedException, IOException {
+        try (RedisClient client = createClient()) {
+            prefill(client);
+
+            // interval between batches of a single worker
+            long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * threads * pipeline / rate : 0;
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long measureStart = start + warmupNanos;
+            long end = measureStart + durationNanos;
+
+            ThreadFactory factory = virtualThreads ? virtualThreadFactory() : Thread::new;
+            List<Worker> workers = new ArrayList<>(threads);
+            List<Thread> workerThreads = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(client, start, measureStart, end, interval);
+                workers.add(worker);
+                workerThreads.add(factory.newThread(worker));
+            }
+
+            System.out.printf(Locale.ROOT, "Running %s for %ds (+%ds warmup): %d %sconnections, %d %sthreads,"
+                            + " pipeline %d, keyspace %d, value size %d, set ratio %.2f, rate %s%n",
+                    address, TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos),
+                    connections, autoPipelining ? "auto-pipelined " : "", threads, virtualThreads ? "virtual " : "",
+                    pipeline, keyspace, valueSize, setRatio, rate > 0 ? rate + " ops/s" : "unbounded");
+
+            PinningMonitor pinningMonitor = virtualThreads ? new PinningMonitor() : null;
+            if (pinningMonitor != null) {
+                pinningMonitor.start();
+            }
+            for (Thread thread : workerThreads) {
+                thread.start();
+            }
+            for (Thread thread : workerThreads) {
+                thread.join();
+            }
+
+            report(workers);
+            if (pinningMonitor != null) {
+                pinningMonitor.stopAndReport();
+            }
+        }
+    }
+
+    private void prefill(RedisClient client) {
+        int batch = 1000;
+        for (int i = 0; i < keyspace; i += batch) {
+            try (Pipeline pipeline = client.pipelined()) {
+                for (int j = i; j < Math.min(i + batch, keyspace); j++) {
+                    pipeline.set(keys[j], value);
+                }
+            }
+        }
+    }
+
+    private void report(List<Worker> workers) {
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        LatencyHistogram responseTime = new LatencyHistogram();
+        long operations = 0;
+        long errors = 0;
+        for (Worker worker : workers) {
+            serviceTime.add(worker.serviceTime);
+            responseTime.add(worker.responseTime);
+            operations += worker.operations;
+            errors += worker.errors;
+        }
+
+        double seconds = durationNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%n%d operations in %.1fs: %.0f ops/s, %d errors%n",
+                operations, seconds, operations / seconds, errors);
+
+        printLatencies("Service time (per batch of " + pipeline + ")", serviceTime);
+        printLatencies("Response time (corrected for coordinated omission)", responseTime);
+    }
+
+    private static void printLatencies(String title, LatencyHistogram histogram) {
+        System.out.printf(Locale.ROOT, "%n%s, in microseconds:%n", title);
+        System.out.printf(Locale.ROOT, "  %-8s %12.1f%n", "min", histogram.getMin() / 1e3);
+        System.out.printf(Locale.ROOT, "  %-8s %12.1f%n", "mean", histogram.getMean() / 1e3);
+        for (double percentile : new double[] { 50, 90, 99, 99.9, 99.99 }) {
+            System.out.printf(Locale.ROOT, "  %-8s %12.1f%n", "p" + stripZeros(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1e3);
+        }
+        System.out.printf(Locale.ROOT, "  %-8s %12.1f%n", "max", histogram.getMax() / 1e3);
+    }
+
+    private static String stripZeros(double value) {
+        return value == (long) value ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory")
+                    .invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", e);
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final RedisClient client;
+        private final long start;
+        private final long measureStart;
+        private final long end;
+        private final long interval;
+
+        private final LatencyHistogram warmupTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private long expectedInterval = -1;
+        private long operations;
+        private long errors;
+
+        private Worker(RedisClient client, long start, long measureStart, long end, long interval) {
+            this.client = client;
+            this.start = start;
+            this.measureStart = measureStart;
+            this.end = end;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // spread the workers start in the first interval
+            long next = start + (interval > 0 ? random.nextLong(interval) : 0);
+
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= end) {
+                    break;
+                }
+
+                long intended;
+                if (interval > 0) {
+                    intended = next;
+                    next += interval;
+                    while ((now = System.nanoTime()) < intended) {
+                        LockSupport.parkNanos(intended - now);
+                    }
+                } else {
+                    intended = now;
+                }
+
+                long begin = System.nanoTime();
+                try {
+                    execute(random);
+                } catch (RedisException e) {
+                    errors++;
+                }
+                long finish = System.nanoTime();
+
+                if (intended < measureStart) {
+                    warmupTime.record(finish - begin);
+                    continue;
+                }
+
+                serviceTime.record(finish - begin);
+                if (interval > 0) {
+                    responseTime.record(finish - intended);
+                } else {
+                    if (expectedInterval == -1) {
+                        expectedInterval = warmupTime.getValueAtPercentile(50);
+                    }
+                    responseTime.recordCorrected(finish - begin, expectedInterval);
+                }
+                operations += pipeline;
+            }
+        }
+
+        private void execute(ThreadLocalRandom random) {
+            if (pipeline == 1) {
+                byte[] key = keys[random.nextInt(keyspace)];
+                if (random.nextDouble() < setRatio) {
+                    client.set(key, value);
+                } else {
+                    client.get(key);
+                }
+                return;
+            }
+
+            try (Pipeline batch = client.pipelined()) {
+                for (int i = 0; i < pipeline; i++) {
+                    byte[] key = keys[random.nextInt(keyspace)];
+                    if (random.nextDouble() < setRatio) {
+                        batch.set(key, value);
+                    } else {
+                        batch.get(key);
+                    }
+                }
+            }
+        }
+
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String name = arg.substring(2);
+            int separator = name.indexOf('=');
+            if (separator != -1) {
+                options.put(name.substring(0, separator), name.substring(separator + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                // flag
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+
+        StandInRedisServer server = null;
+        InetSocketAddress address;
+        if (options.containsKey("stand-in")) {
+            server = new StandInRedisServer();
+            address = server.getAddress();
+        } else {
+            address = new InetSocketAddress(
+                    options.getOrDefault("host", "127.0.0.1"),
+                    Integer.parseInt(options.getOrDefault("port", "6379"))
+            );
+        }
+
+        try {
+            new LoadGenerator(address, options).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+}
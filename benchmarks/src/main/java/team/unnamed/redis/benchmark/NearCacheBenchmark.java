@@ -0,0 +1,75 @@
+package team.unnamed.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.cache.NearCacheConfig;
+import team.unnamed.redis.cache.NearCachingRedisClient;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near cache hit latency: every key is cached during the
+ * setup, so reads never reach the (stand-in) server. Run it
+ * with {@code -t} to measure the contention of concurrent reads
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class NearCacheBenchmark {
+
+    @Param({ "1000" })
+    public int keys;
+
+    private StandInRedisServer server;
+    private NearCachingRedisClient client;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new StandInRedisServer();
+        client = RedisClient.create(
+                server.getAddress(),
+                RedisPoolConfig.builder().build(),
+                NearCacheConfig.builder().maxEntries(keys * 2).build()
+        );
+        names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = "near-cache:" + i;
+            client.set(names[i], "value " + i);
+            client.get(names[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String hit() {
+        return client.get(names[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+}
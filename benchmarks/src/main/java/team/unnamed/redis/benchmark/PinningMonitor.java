@@ -0,0 +1,96 @@
+package team.unnamed.redis.benchmark;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records the {@code jdk.VirtualThreadPinned} JFR events (Java 21+),
+ * emitted when a virtual thread blocks while it can't unmount from
+ * its carrier (i.e. inside a {@code synchronized} block), so it
+ * proves that the carriers are never pinned by the client.
+ *
+ * <p>The threshold is zero, so every pinned park is recorded, not
+ * only the ones longer than the default 20ms</p>
+ */
+final class PinningMonitor {
+
+    private static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 8;
+
+    private final Recording recording = new Recording();
+
+    PinningMonitor() {
+        recording.enable(EVENT_NAME)
+                .withThreshold(Duration.ZERO)
+                .withStackTrace();
+        recording.setName("redis-pinning-monitor");
+    }
+
+    void start() {
+        recording.start();
+    }
+
+    /**
+     * Stops the recording and prints the count of pinned events,
+     * grouped by their stack trace, to the standard output
+     * @return The count of pinned events
+     */
+    long stopAndReport() throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("redis-pinning", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            Map<String, Long> stacks = new HashMap<>();
+            long pinned = 0;
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals(EVENT_NAME)) {
+                    pinned++;
+                    stacks.merge(describe(event.getStackTrace()), 1L, Long::sum);
+                }
+            }
+
+            System.out.printf(Locale.ROOT, "%nCarrier threads pinned %d times%n", pinned);
+            for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+                System.out.printf(Locale.ROOT, "  %d times at:%n%s", entry.getValue(), entry.getKey());
+            }
+            return pinned;
+        } finally {
+            recording.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "    (no stack trace)\n";
+        }
+        StringBuilder builder = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(frames.size(), MAX_FRAMES); i++) {
+            RecordedFrame frame = frames.get(i);
+            builder.append("    ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber())
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,39 @@
+package team.unnamed.redis.benchmark;
+
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} that repeats the same data forever,
+ * used to decode replies without allocating new streams
+ * between benchmark invocations
+ */
+final class RepeatingInputStream extends InputStream {
+
+    private final byte[] data;
+    private int cursor;
+
+    RepeatingInputStream(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() {
+        int value = data[cursor++] & 0xFF;
+        if (cursor == data.length) {
+            cursor = 0;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        int len = Math.min(length, data.length - cursor);
+        System.arraycopy(data, cursor, bytes, offset, len);
+        cursor += len;
+        if (cursor == data.length) {
+            cursor = 0;
+        }
+        return len;
+    }
+
+}
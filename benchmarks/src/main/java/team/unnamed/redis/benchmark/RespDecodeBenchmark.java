@@ -0,0 +1,112 @@
+package team.unnamed.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.RespParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput (and allocation rate, using the
+ * gc profiler) of the different reply decoding paths:
+ * {@link RespInputStream#readNext()}, the allocation-free
+ * {@link RespInputStream#readNext(ReplyVisitor)} and the
+ * incremental {@link RespParser}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespDecodeBenchmark {
+
+    @Param({ "integer", "bulk16", "bulk1024", "array10" })
+    public String reply;
+
+    private byte[] data;
+    private RespInputStream stream;
+    private ReplyVisitor visitor;
+    private RespParser parser;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 8192);
+        switch (reply) {
+            case "integer":
+                output.writeInt(123456789);
+                break;
+            case "bulk16":
+                output.writeBulkString(new byte[16]);
+                break;
+            case "bulk1024":
+                output.writeBulkString(new byte[1024]);
+                break;
+            case "array10":
+                output.writeArrayHeader(10);
+                for (int i = 0; i < 10; i++) {
+                    output.writeBulkString(new byte[32]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(reply);
+        }
+        output.flush();
+        data = bytes.toByteArray();
+
+        stream = new RespInputStream(new RepeatingInputStream(data), 8192);
+        parser = new RespParser();
+        buffer = ByteBuffer.wrap(data);
+        visitor = new ReplyVisitor() {
+            @Override
+            public void onInteger(long value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void onBulkString(byte[] buffer, int offset, int length) {
+                blackhole.consume(buffer[offset]);
+            }
+
+            @Override
+            public void onArrayStart(int length) {
+                blackhole.consume(length);
+            }
+        };
+    }
+
+    @Benchmark
+    public Object streamReadNext() throws IOException {
+        return stream.readNext();
+    }
+
+    @Benchmark
+    public void streamReadNextVisitor() throws IOException {
+        stream.readNext(visitor);
+    }
+
+    @Benchmark
+    public Object parser() {
+        buffer.clear();
+        return parser.parse(buffer);
+    }
+
+}
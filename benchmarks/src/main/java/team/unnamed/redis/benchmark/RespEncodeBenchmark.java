@@ -0,0 +1,107 @@
+package team.unnamed.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.RespEncoder;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.Strings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding throughput of SET commands for the stream
+ * and the {@link ByteBuffer} encoders, of string values
+ * encoded to arrays or by a codec straight into the stream
+ * buffer, and of the integer formatting they rely on
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespEncodeBenchmark {
+
+    @Param({ "16", "1024", "65536" })
+    public int valueSize;
+
+    private byte[] key;
+    private byte[] value;
+    private String stringValue;
+
+    private RespOutputStream stream;
+    private ByteBuffer heapBuffer;
+    private ByteBuffer directBuffer;
+
+    private final byte[] digits = new byte[10];
+    private int number;
+
+    @Setup
+    public void setup() {
+        key = Strings.encode("benchmark:key");
+        value = new byte[valueSize];
+        char[] chars = new char[valueSize];
+        Arrays.fill(chars, 'v');
+        stringValue = new String(chars);
+        stream = new RespOutputStream(new DiscardingOutputStream(), 8192);
+
+        int length = RespEncoder.getCommandLength(RedisCommands.SET, key, value);
+        heapBuffer = ByteBuffer.allocate(length);
+        directBuffer = ByteBuffer.allocateDirect(length);
+    }
+
+    @Benchmark
+    public RespOutputStream writeCommandStream() throws IOException {
+        stream.writeCommand(RedisCommands.SET, key, value);
+        return stream;
+    }
+
+    @Benchmark
+    public RespOutputStream writeStringEncoded() throws IOException {
+        stream.writeBulkString(Strings.encode(stringValue));
+        return stream;
+    }
+
+    @Benchmark
+    public RespOutputStream writeStringCodec() throws IOException {
+        stream.writeBulkString(TypeCodec.string(), stringValue);
+        return stream;
+    }
+
+    @Benchmark
+    public ByteBuffer writeCommandHeapBuffer() {
+        heapBuffer.clear();
+        RespEncoder.writeCommand(heapBuffer, RedisCommands.SET, key, value);
+        return heapBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeCommandDirectBuffer() {
+        directBuffer.clear();
+        RespEncoder.writeCommand(directBuffer, RedisCommands.SET, key, value);
+        return directBuffer;
+    }
+
+    @Benchmark
+    public byte[] integersGetChars() {
+        int value = number++ & Integer.MAX_VALUE;
+        Integers.getChars(value, digits, 0, Integers.getStringSize(value));
+        return digits;
+    }
+
+}
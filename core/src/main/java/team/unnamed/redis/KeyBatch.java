@@ -0,0 +1,499 @@
+package team.unnamed.redis;
+
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.pool.RedisSocketPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * A multi-key command (MGET, MSET or UNLINK) for any count of keys,
+ * split in chunks of a bounded count of keys, so a single command
+ * never blocks the server for too long.
+ *
+ * <p>Chunks are contiguous ranges of the keys (optionally grouped,
+ * i.e. by hash slot) and they're all written, to one or more
+ * connections, before any reply is read, so their round trips
+ * overlap. Replies are written straight to the position of their
+ * key in the result, so it keeps the input order</p>
+ *
+ * <p>A batch is executed once, by a single thread</p>
+ */
+public final class KeyBatch {
+
+    /**
+     * The default max count of keys per chunk
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private static final ReplyVisitor IGNORE = new ReplyVisitor() {
+    };
+
+    private final byte[] command;
+    // the arguments of every key (argsPerKey per key), in input order
+    private final byte[][] args;
+    private final int argsPerKey;
+    private final int size;
+
+    // the input position of every key, in send order, null if
+    // keys are sent in input order
+    private int[] order;
+    // the start of every chunk, followed by the end of the last one
+    private int[] bounds;
+
+    // the MGET replies, in input order, null for other commands
+    private final String[] values;
+    private final ValueReader valueReader;
+    // the sum of the UNLINK replies
+    private long count;
+
+    private KeyBatch(byte[] command, byte[][] args, int argsPerKey, boolean values) {
+        this.command = command;
+        this.args = args;
+        this.argsPerKey = argsPerKey;
+        this.size = args.length / argsPerKey;
+        this.bounds = size == 0 ? new int[] { 0 } : new int[] { 0, size };
+        this.values = values ? new String[size] : null;
+        this.valueReader = values ? new ValueReader() : null;
+    }
+
+    /**
+     * Creates a batch of MGET commands for the given {@code keys}
+     */
+    public static KeyBatch mget(Collection<String> keys) {
+        return new KeyBatch(RedisCommands.MGET, encodeKeys(keys), 1, true);
+    }
+
+    /**
+     * Creates a batch of MSET commands for the given {@code entries},
+     * chunks are written in the iteration order of the map
+     */
+    public static KeyBatch mset(Map<String, String> entries) {
+        byte[][] args = new byte[entries.size() * 2][];
+        int i = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            args[i++] = entry.getKey().getBytes(Resp.CHARSET);
+            args[i++] = entry.getValue().getBytes(Resp.CHARSET);
+        }
+        return new KeyBatch(RedisCommands.MSET, args, 2, false);
+    }
+
+    /**
+     * Creates a batch of UNLINK commands for the given {@code keys}
+     */
+    public static KeyBatch unlink(Collection<String> keys) {
+        return new KeyBatch(RedisCommands.UNLINK, encodeKeys(keys), 1, false);
+    }
+
+    private static byte[][] encodeKeys(Collection<String> keys) {
+        byte[][] encoded = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            encoded[i++] = key.getBytes(Resp.CHARSET);
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns the count of keys in this batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the key at the given {@code index} of the input
+     */
+    public byte[] getKey(int index) {
+        return args[index * argsPerKey];
+    }
+
+    /**
+     * Splits this batch in chunks of at most {@code chunkSize} keys
+     * @param groups The group (i.e. the hash slot) of every key, in
+     *               input order, keys are sorted by group and a chunk
+     *               never contains keys of different groups. May be
+     *               null, then chunks keep the input order
+     */
+    public void split(int chunkSize, int[] groups) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (groups != null) {
+            sortByGroup(groups);
+        }
+
+        int chunks = 0;
+        for (int start = 0; start < size; start = chunkEnd(start, chunkSize, groups)) {
+            chunks++;
+        }
+        bounds = new int[chunks + 1];
+        int chunk = 0;
+        for (int start = 0; start < size; start = chunkEnd(start, chunkSize, groups)) {
+            bounds[chunk++] = start;
+        }
+        bounds[chunks] = size;
+    }
+
+    private int chunkEnd(int start, int chunkSize, int[] groups) {
+        int end = Math.min(start + chunkSize, size);
+        if (groups != null) {
+            int group = groups[order[start]];
+            for (int i = start + 1; i < end; i++) {
+                if (groups[order[i]] != group) {
+                    return i;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Sorts the keys by group, keeping the input order for keys
+     * in the same group
+     */
+    private void sortByGroup(int[] groups) {
+        // group in the high bits, input position in the low bits,
+        // so the sort is stable without boxing
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = ((long) groups[i] << 32) | i;
+        }
+        Arrays.sort(sorted);
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) sorted[i];
+        }
+    }
+
+    /**
+     * Returns the count of chunks, the whole batch is a single
+     * chunk (none if it's empty) until {@link KeyBatch#split}
+     * is called
+     */
+    public int getChunkCount() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * Returns the input position of the first key of the given
+     * {@code chunk}, all the keys of a chunk are in the same group
+     */
+    public int getFirstIndex(int chunk) {
+        return keyAt(bounds[chunk]);
+    }
+
+    private int keyAt(int position) {
+        return order == null ? position : order[position];
+    }
+
+    /**
+     * Writes the command of the given {@code chunk} to the output
+     * buffer of the given {@code socket}, it doesn't flush it
+     */
+    public void write(RedisSocket socket, int chunk) {
+        int start = bounds[chunk];
+        int end = bounds[chunk + 1];
+        socket.writeCommandHeader(command, (end - start) * argsPerKey);
+        RespOutputStream output = socket.getOutputStream();
+        try {
+            for (int position = start; position < end; position++) {
+                int offset = keyAt(position) * argsPerKey;
+                for (int i = 0; i < argsPerKey; i++) {
+                    output.writeBulkString(args[offset + i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Reads the reply of the given {@code chunk} from the given
+     * {@code socket}, MGET values are placed in their input position
+     * @throws RedisException If the reply is an error
+     */
+    public void read(RedisSocket socket, int chunk) {
+        if (values != null) {
+            valueReader.start(bounds[chunk], bounds[chunk + 1]);
+            socket.readReply(valueReader);
+        } else if (argsPerKey == 1) {
+            count += socket.readLongReply();
+        } else {
+            socket.readReply(IGNORE);
+        }
+    }
+
+    /**
+     * Writes, flushes and reads the given {@code chunk}
+     */
+    public void execute(RedisSocket socket, int chunk) {
+        write(socket, chunk);
+        socket.flush();
+        read(socket, chunk);
+    }
+
+    /**
+     * Executes every chunk in the given {@code socket}, they're
+     * written together and read in order
+     * @see KeyBatch#readAll
+     */
+    public void execute(RedisSocket socket) {
+        writeAll(socket);
+        socket.flush();
+        readAll(socket);
+    }
+
+    /**
+     * Writes every chunk to the output buffer of the given
+     * {@code socket}, it doesn't flush it
+     */
+    public void writeAll(RedisSocket socket) {
+        int chunks = getChunkCount();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            write(socket, chunk);
+        }
+    }
+
+    /**
+     * Reads the replies of every chunk from the given {@code socket},
+     * every reply is read before an error reply is thrown. Any other
+     * failure is thrown immediately, the socket must not be reused
+     */
+    public void readAll(RedisSocket socket) {
+        int chunks = getChunkCount();
+        RedisException error = null;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            try {
+                read(socket, chunk);
+            } catch (RedisReplyException e) {
+                // error reply, the next replies can still be read
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Executes every chunk using the pool returned by the given
+     * {@code router} for it. Up to {@code parallelism} connections
+     * are checked out from every pool (only the first one waits,
+     * the others are taken only if they're idle), chunks are
+     * written to them in turns and then the replies are read.
+     *
+     * <p>Error replies don't stop the batch, they're returned (by
+     * chunk) so the caller can retry them, i.e. redirections</p>
+     *
+     * @throws RuntimeException If a connection breaks, once the
+     * replies of the other connections are read
+     */
+    public SortedMap<Integer, RedisException> execute(IntFunction<RedisSocketPool> router, int parallelism) {
+        int chunks = getChunkCount();
+        List<Lane> lanes = new ArrayList<>(1);
+        Connection[] assigned = new Connection[chunks];
+        SortedMap<Integer, RedisException> errors = Collections.emptySortedMap();
+        RuntimeException failure = null;
+        boolean drained = false;
+
+        try {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                RedisSocketPool pool = router.apply(chunk);
+                Lane lane = null;
+                for (Lane candidate : lanes) {
+                    if (candidate.pool == pool) {
+                        lane = candidate;
+                        break;
+                    }
+                }
+                if (lane == null) {
+                    lane = new Lane(pool, parallelism);
+                    lanes.add(lane);
+                }
+                Connection connection = lane.next();
+                assigned[chunk] = connection;
+                if (connection.failure == null) {
+                    try {
+                        write(connection.socket, chunk);
+                    } catch (RuntimeException e) {
+                        connection.failure = e;
+                    }
+                }
+            }
+
+            for (Lane lane : lanes) {
+                for (int i = 0; i < lane.count; i++) {
+                    Connection connection = lane.connections[i];
+                    if (connection.failure == null) {
+                        try {
+                            connection.socket.flush();
+                        } catch (RuntimeException e) {
+                            connection.failure = e;
+                        }
+                    }
+                }
+            }
+
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                Connection connection = assigned[chunk];
+                if (connection.failure != null) {
+                    continue;
+                }
+                try {
+                    read(connection.socket, chunk);
+                } catch (RedisReplyException e) {
+                    // error reply, the connection is still usable
+                    if (errors.isEmpty()) {
+                        errors = new TreeMap<>();
+                    }
+                    errors.put(chunk, e);
+                } catch (RuntimeException e) {
+                    // i.e. an unexpected reply, it may be half-read
+                    connection.failure = e;
+                }
+            }
+            drained = true;
+        } finally {
+            for (Lane lane : lanes) {
+                for (int i = 0; i < lane.count; i++) {
+                    Connection connection = lane.connections[i];
+                    if (!drained || connection.failure != null) {
+                        // unread replies or unknown state
+                        lane.pool.invalidate(connection.socket);
+                        if (failure == null) {
+                            failure = connection.failure;
+                        }
+                    } else {
+                        lane.pool.release(connection.socket);
+                    }
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return errors;
+    }
+
+    /**
+     * Returns the MGET replies, in input order, null
+     * for keys that don't exist
+     */
+    public List<String> getValues() {
+        if (values == null) {
+            throw new IllegalStateException("Not an MGET batch");
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Returns the sum of the integer replies, i.e.
+     * the count of keys removed by UNLINK
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Places the elements of an MGET reply in the
+     * input position of their keys
+     */
+    private final class ValueReader implements ReplyVisitor {
+
+        private int position;
+        private int end;
+
+        private void start(int position, int end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public void onArrayStart(int length) {
+            if (length != end - position) {
+                throw new RedisException("Expected " + (end - position)
+                        + " values, got " + length);
+            }
+        }
+
+        @Override
+        public void onBulkString(byte[] buffer, int offset, int length) {
+            values[keyAt(position++)] = new String(buffer, offset, length, Resp.CHARSET);
+        }
+
+        @Override
+        public void onNil() {
+            position++;
+        }
+
+    }
+
+    /**
+     * The connections checked out from a pool for a batch
+     */
+    private static final class Lane {
+
+        private final RedisSocketPool pool;
+        private final Connection[] connections;
+        private int count;
+        private int next;
+        // no more connections are idle
+        private boolean exhausted;
+
+        private Lane(RedisSocketPool pool, int parallelism) {
+            this.pool = pool;
+            this.connections = new Connection[parallelism];
+        }
+
+        /**
+         * Returns the connection for the next chunk, checking
+         * out a new one while there are idle connections
+         */
+        private Connection next() {
+            if (count == 0) {
+                connections[count++] = new Connection(pool.borrow());
+            } else if (!exhausted && count < connections.length) {
+                RedisSocket socket;
+                try {
+                    socket = pool.tryBorrow();
+                } catch (RedisException e) {
+                    // the chunks fit in the connections we have
+                    socket = null;
+                }
+                if (socket == null) {
+                    exhausted = true;
+                } else {
+                    connections[count++] = new Connection(socket);
+                }
+            }
+            return connections[next++ % count];
+        }
+
+    }
+
+    private static final class Connection {
+
+        private final RedisSocket socket;
+        private RuntimeException failure;
+
+        private Connection(RedisSocket socket) {
+            this.socket = socket;
+        }
+
+    }
+
+}
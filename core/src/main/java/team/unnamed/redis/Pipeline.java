@@ -0,0 +1,66 @@
+package team.unnamed.redis;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Represents a batch of commands that are written
+ * to the connection buffer but not flushed until
+ * {@link Pipeline#sync()} is called, so all the
+ * queued commands are sent in a single network
+ * round-trip.
+ *
+ * <p>The returned futures are completed in order
+ * when {@link Pipeline#sync()} reads the replies,
+ * never before.</p>
+ *
+ * <p>Note that the connection used by a pipeline
+ * must not be used by anything else until the
+ * pipeline is synced or closed, and that large
+ * values aren't copied to the buffer, so the given
+ * arrays must not be modified until then</p>
+ */
+public interface Pipeline extends Closeable {
+
+    /**
+     * Queues a SET command, the given arrays aren't copied (at
+     * least the large ones), so they must not be modified or
+     * reused until this pipeline is synced
+     */
+    CompletableFuture<String> set(byte[] key, byte[] value);
+
+    CompletableFuture<String> set(String key, String value);
+
+    CompletableFuture<String> get(byte[] key);
+
+    CompletableFuture<String> get(String key);
+
+    /**
+     * Returns the count of commands that were queued
+     * and still waiting for a {@link Pipeline#sync()}
+     */
+    int size();
+
+    /**
+     * Flushes all the queued commands in a single write
+     * and reads all their replies, in order.
+     *
+     * <p>Error replies complete their future exceptionally
+     * and are added to the result list as the thrown
+     * {@link RedisException}, they don't interrupt the
+     * read of the following replies</p>
+     *
+     * @return The replies for every queued command, in
+     * the same order they were queued
+     */
+    List<Object> sync();
+
+    /**
+     * Syncs any pending command, so their futures are
+     * completed before the pipeline is discarded
+     */
+    @Override
+    void close();
+
+}
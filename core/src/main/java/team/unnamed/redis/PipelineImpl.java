@@ -0,0 +1,122 @@
+package team.unnamed.redis;
+
+import team.unnamed.redis.io.Strings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link Pipeline} implementation writing commands to
+ * the {@link RedisSocket} output buffer and deferring
+ * the flush and the reply reads until it's synced
+ */
+class PipelineImpl implements Pipeline {
+
+    private static final Function<Object, String> STRING_REPLY
+            = reply -> Strings.decode((byte[]) reply);
+
+    private final RedisSocket socket;
+    private final Queue<PendingReply<?>> pending = new ArrayDeque<>();
+
+    PipelineImpl(RedisSocket socket) {
+        this.socket = socket;
+    }
+
+    private <T> CompletableFuture<T> queue(
+            Function<Object, T> converter,
+            byte[] command,
+            byte[]... args
+    ) {
+        socket.writeCommand(command, args);
+        PendingReply<T> reply = new PendingReply<>(converter);
+        pending.add(reply);
+        return reply.future;
+    }
+
+    @Override
+    public CompletableFuture<String> set(byte[] key, byte[] value) {
+        return queue(STRING_REPLY, RedisCommands.SET, key, value);
+    }
+
+    @Override
+    public CompletableFuture<String> set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    @Override
+    public CompletableFuture<String> get(byte[] key) {
+        return queue(STRING_REPLY, RedisCommands.GET, key);
+    }
+
+    @Override
+    public CompletableFuture<String> get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public List<Object> sync() {
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // single flush for all the queued commands
+        socket.flush();
+
+        List<Object> replies = new ArrayList<>(pending.size());
+        PendingReply<?> reply;
+
+        while ((reply = pending.poll()) != null) {
+            try {
+                replies.add(reply.complete(socket.readReply()));
+            } catch (RedisReplyException e) {
+                // error reply, the stream is still consistent,
+                // so we can continue reading the next replies
+                reply.future.completeExceptionally(e);
+                replies.add(e);
+            } catch (RuntimeException e) {
+                // connection is broken, a protocol error or a failed
+                // conversion, we can't trust the remaining replies
+                reply.future.completeExceptionally(e);
+                while ((reply = pending.poll()) != null) {
+                    reply.future.completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+
+        return replies;
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    private static class PendingReply<T> {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Function<Object, T> converter;
+
+        private PendingReply(Function<Object, T> converter) {
+            this.converter = converter;
+        }
+
+        private T complete(Object raw) {
+            T value = converter.apply(raw);
+            future.complete(value);
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,343 @@
+package team.unnamed.redis;
+
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Doubles;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.pool.RedisSocketPool;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.BlockingRedisSubscription;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe {@link RedisClient} implementation that checks
+ * out a connection from a {@link RedisSocketPool} for every
+ * command and returns it once the reply is read
+ */
+public class PooledRedisClient implements RedisClient {
+
+    private final RedisSocketPool pool;
+
+    public PooledRedisClient(RedisSocketPool pool) {
+        this.pool = pool;
+    }
+
+    public RedisSocketPool getPool() {
+        return pool;
+    }
+
+    private <T> T execute(Function<RedisSocket, T> action) {
+        RedisSocket socket = pool.borrow();
+        T result;
+        try {
+            result = action.apply(socket);
+        } catch (RuntimeException e) {
+            handleFailure(socket, e);
+            throw e;
+        }
+        pool.release(socket);
+        return result;
+    }
+
+    /**
+     * Same as {@link PooledRedisClient#execute} but for actions
+     * returning a primitive long, so the result is never boxed
+     */
+    private long executeLong(ToLongFunction<RedisSocket> action) {
+        RedisSocket socket = pool.borrow();
+        long result;
+        try {
+            result = action.applyAsLong(socket);
+        } catch (RuntimeException e) {
+            handleFailure(socket, e);
+            throw e;
+        }
+        pool.release(socket);
+        return result;
+    }
+
+    private void handleFailure(RedisSocket socket, RuntimeException exception) {
+        if (isBroken(exception)) {
+            pool.invalidate(socket);
+        } else {
+            // error reply, the connection is still usable
+            pool.release(socket);
+        }
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        return execute(socket -> {
+            socket.writeCommand(RedisCommands.SET, key, value);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        return execute(socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value, length);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        return execute(socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        return execute(socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, file, position, length);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String get(byte[] key) {
+        return execute(socket -> {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        execute(socket -> {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            socket.readReply(visitor);
+            return null;
+        });
+    }
+
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        RedisSocket socket = pool.borrow();
+        try {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            // the connection is held by the stream until it's closed
+            return socket.readBulkStringStream(() -> pool.release(socket));
+        } catch (RuntimeException e) {
+            handleFailure(socket, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        return executeLong(socket -> {
+            socket.writeCommand(RedisCommands.INCR, key);
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        return executeLong(socket -> {
+            socket.writeCommand(RedisCommands.INCRBY, key, Integers.toByteArray(increment));
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        return executeLong(socket -> {
+            socket.writeCommand(RedisCommands.DECRBY, key, Integers.toByteArray(decrement));
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        RedisSocket socket = pool.borrow();
+        double result;
+        try {
+            socket.writeCommand(RedisCommands.INCRBYFLOAT, key, Doubles.toByteArray(increment));
+            socket.flush();
+            result = socket.readDoubleReply();
+        } catch (RuntimeException e) {
+            handleFailure(socket, e);
+            throw e;
+        }
+        pool.release(socket);
+        return result;
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        KeyBatch batch = KeyBatch.mget(keys);
+        execute(batch);
+        return batch.getValues();
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        execute(KeyBatch.mset(entries));
+        return "OK";
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        KeyBatch batch = KeyBatch.unlink(keys);
+        execute(batch);
+        return batch.getCount();
+    }
+
+    /**
+     * Executes the given {@code batch}, its chunks are spread
+     * across up to {@link RedisPoolConfig#getBatchParallelism()}
+     * connections
+     */
+    private void execute(KeyBatch batch) {
+        RedisPoolConfig config = pool.getConfig();
+        batch.split(config.getBatchSize(), null);
+        SortedMap<Integer, RedisException> errors = batch.execute(chunk -> pool, config.getBatchParallelism());
+        if (!errors.isEmpty()) {
+            throw errors.get(errors.firstKey());
+        }
+    }
+
+    @Override
+    public Pipeline pipelined() {
+        RedisSocket socket = pool.borrow();
+        // the connection is held by the pipeline until it's closed
+        return new PipelineImpl(socket) {
+            @Override
+            public void close() {
+                try {
+                    super.close();
+                } catch (RuntimeException e) {
+                    handleFailure(socket, e);
+                    throw e;
+                }
+                pool.release(socket);
+            }
+        };
+    }
+
+    @Override
+    public void subscribe(RedisSubscriber subscriber, String... channels) {
+        execute(socket -> {
+            socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encodeArray(channels));
+            socket.flush();
+
+            // blocking operation! the connection is returned once
+            // all the channels are unsubscribed
+            new BlockingRedisSubscription(socket, subscriber).run();
+            return null;
+        });
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        return subscribe(Strings.encodeArray(channels), (socket, finishAction) ->
+                new DispatchingRedisSubscription(socket, subscriber, config, finishAction));
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        execute(socket -> {
+            socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
+            socket.flush();
+
+            // blocking operation! the connection is returned once
+            // all the channels are unsubscribed
+            new BlockingRedisSubscription(socket, subscriber).run();
+            return null;
+        });
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        return subscribe(channels, (socket, finishAction) ->
+                new DispatchingRedisSubscription(socket, subscriber, config, finishAction));
+    }
+
+    private DispatchingRedisSubscription subscribe(
+            byte[][] channels,
+            BiFunction<RedisSocket, Consumer<RuntimeException>, DispatchingRedisSubscription> factory
+    ) {
+        RedisSocket socket = pool.borrow();
+        try {
+            socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
+            socket.flush();
+        } catch (RuntimeException e) {
+            handleFailure(socket, e);
+            throw e;
+        }
+
+        // the connection is held by the subscription until all
+        // the channels are unsubscribed
+        return factory.apply(socket, failure -> {
+            if (failure == null) {
+                pool.release(socket);
+            } else {
+                // we don't know if the subscription is still active
+                pool.invalidate(socket);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Determines if the given {@code exception} means that the
+     * connection is in an unknown state and must not be reused,
+     * only error replies leave the connection at a reply boundary
+     */
+    private static boolean isBroken(RuntimeException exception) {
+        return !(exception instanceof RedisReplyException);
+    }
+
+}
@@ -1,22 +1,160 @@
 package team.unnamed.redis;
 
+import team.unnamed.redis.cache.NearCache;
+import team.unnamed.redis.cache.NearCacheConfig;
+import team.unnamed.redis.cache.NearCachingRedisClient;
+import team.unnamed.redis.cluster.RedisClusterClient;
+import team.unnamed.redis.codec.RedisCodec;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.metrics.CommandListener;
+import team.unnamed.redis.pipelining.AutoPipeliningConfig;
+import team.unnamed.redis.pipelining.AutoPipeliningRedisClient;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.pool.RedisSocketPool;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
 import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+import team.unnamed.redis.replica.ReadRoutingConfig;
+import team.unnamed.redis.replica.ReplicatedRedisClient;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  */
-public interface RedisClient {
+public interface RedisClient extends Closeable {
 
+    /**
+     * Sends a SET command, the given arrays are only referenced until
+     * this method returns. Values queued in a {@link Pipeline} are
+     * referenced until it's synced instead, see {@link #pipelined()}
+     */
     String set(byte[] key, byte[] value);
 
     String set(String key, String value);
 
+    /**
+     * Sends a SET command using {@code length} bytes read from the
+     * given {@code value} stream, the value is copied in chunks to
+     * the connection, it's never fully loaded in memory.
+     *
+     * <p>Part of the command may have been sent if the stream fails
+     * (i.e. it ends early), so the connection is closed, clients
+     * using a single connection are unusable after it</p>
+     */
+    String set(byte[] key, InputStream value, int length);
+
+    /**
+     * Sends a SET command using the remaining bytes of the given
+     * {@code value}, direct buffers are never copied to the heap
+     */
+    String set(byte[] key, ByteBuffer value);
+
+    /**
+     * Sends a SET command using {@code length} bytes of the given
+     * {@code file}, starting at {@code position}. The file data is
+     * sent using {@link FileChannel#transferTo}, so it's never
+     * copied to user space if the operating system supports it.
+     * The connection is closed if the file ends early, same as
+     * {@link #set(byte[], InputStream, int)}
+     */
+    String set(byte[] key, FileChannel file, long position, int length);
+
     String get(byte[] key);
 
     String get(String key);
 
+    /**
+     * Sends a GET command for the given {@code key} and pushes
+     * the reply to the given {@code visitor}, without allocating
+     * a {@link String} or a byte array for it. The data passed
+     * to the visitor is only valid during the call
+     */
+    void get(byte[] key, ReplyVisitor visitor);
+
+    /**
+     * Sends a GET command for the given {@code key} and returns its
+     * value as a stream read straight from the connection, so big
+     * values are never fully loaded in memory. The returned stream
+     * is also a {@link java.nio.channels.ReadableByteChannel}.
+     * <b>The stream must be closed</b> before using this client
+     * again, returns null if the key doesn't exist
+     */
+    BulkStringInputStream getStream(byte[] key);
+
+    /**
+     * Sends an INCR command for the given {@code key} and
+     * returns the value after the increment, the reply is
+     * read as a primitive, it's never boxed
+     */
+    long incr(byte[] key);
+
+    /**
+     * Sends an INCRBY command for the given {@code key} and
+     * returns the value after the increment
+     */
+    long incrBy(byte[] key, long increment);
+
+    /**
+     * Sends a DECRBY command for the given {@code key} and
+     * returns the value after the decrement
+     */
+    long decrBy(byte[] key, long decrement);
+
+    /**
+     * Sends an INCRBYFLOAT command for the given {@code key} and
+     * returns the value after the increment, the reply is parsed
+     * straight from the connection buffer, without decoding it
+     * to a {@link String}
+     */
+    double incrByFloat(byte[] key, double increment);
+
+    /**
+     * Sends MGET commands for the given {@code keys} and returns
+     * their values in the same order, null for keys that don't
+     * exist. Big key collections are split in chunks (see
+     * {@link RedisPoolConfig#getBatchSize()}) that are sent
+     * together, without waiting for the previous replies
+     */
+    List<String> mget(List<String> keys);
+
+    /**
+     * Sends MSET commands for the given {@code entries}, split in
+     * chunks like {@link RedisClient#mget}. Note that the entries
+     * are only set atomically if they fit in a single chunk
+     */
+    String mset(Map<String, String> entries);
+
+    /**
+     * Sends UNLINK commands for the given {@code keys}, split in
+     * chunks like {@link RedisClient#mget}, and returns the count
+     * of removed keys. Values are freed by the server in the
+     * background
+     */
+    long unlink(Collection<String> keys);
+
+    /**
+     * Creates a new {@link Pipeline} for this client, commands
+     * queued in the pipeline are sent together in a single flush
+     * when {@link Pipeline#sync()} is called.
+     * The client must not be used until the pipeline is synced.
+     *
+     * <p>Large arguments aren't copied when queued, the pipeline
+     * references the given arrays until it's synced, so they must
+     * not be modified or reused until then</p>
+     */
+    Pipeline pipelined();
+
     //#region Redis Publisher/Subscriber stuff
     /**
      * Sends a SUBSCRIBE command for the given {@code channels}
@@ -24,8 +162,53 @@ public interface RedisClient {
      * Calls {@code subscriber} methods when a message is received.
      */
     void subscribe(RedisSubscriber subscriber, String... channels);
+
+    /**
+     * Sends a SUBSCRIBE command for the given {@code channels}
+     * and returns immediately, replies are read by a dedicated
+     * thread and {@code subscriber} methods are called using the
+     * executor from the given {@code config}, so a slow subscriber
+     * never stalls the connection.
+     * The connection is taken by the subscription until it's closed
+     */
+    DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    );
+
+    /**
+     * Sends a SUBSCRIBE command for the given {@code channels}
+     * and waits for responses, it's a blocking operation.
+     * Message payloads are passed to the {@code subscriber} as
+     * slices of the connection buffer, they're never decoded
+     * @see RedisClient#subscribe(RedisSubscriber, String...)
+     */
+    void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels);
+
+    /**
+     * Same as {@link RedisClient#subscribe(RedisSubscriber, SubscriptionConfig, String...)}
+     * but message payloads are passed to the {@code subscriber}
+     * without decoding them
+     */
+    DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    );
     //#endregion
 
+    /**
+     * Closes the underlying connection(s) of this client
+     */
+    @Override
+    void close();
+
+    /**
+     * Creates a new client using a single connection to the
+     * given {@code address}, the returned client is <b>not</b>
+     * thread-safe
+     */
     static RedisClient create(SocketAddress address) {
         try {
             return new RedisClientImpl(new RedisSocket(address));
@@ -34,4 +217,113 @@ public interface RedisClient {
         }
     }
 
+    /**
+     * Same as {@link RedisClient#create(SocketAddress)}, but the
+     * given {@code listener} is set to the connection
+     * @see RedisSocket#setCommandListener
+     */
+    static RedisClient create(SocketAddress address, CommandListener listener) {
+        try {
+            RedisSocket socket = new RedisSocket(address);
+            socket.setCommandListener(listener);
+            return new RedisClientImpl(socket);
+        } catch (IOException e) {
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+    }
+
+    /**
+     * Creates a new thread-safe client backed by a pool of
+     * connections to the given {@code address}, every command
+     * checks out a connection and returns it once its reply
+     * is read
+     */
+    static RedisClient create(SocketAddress address, RedisPoolConfig config) {
+        return new PooledRedisClient(new RedisSocketPool(address, config));
+    }
+
+    /**
+     * Creates a new client for keys and values converted using
+     * the given {@code codec}, using a single connection to the
+     * given {@code address}, the returned client is <b>not</b>
+     * thread-safe
+     */
+    static <K, V> TypedRedisClient<K, V> create(SocketAddress address, RedisCodec<K, V> codec) {
+        try {
+            return new TypedRedisClientImpl<>(new RedisSocket(address), codec);
+        } catch (IOException e) {
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+    }
+
+    /**
+     * Creates a new thread-safe client for keys and values converted
+     * using the given {@code codec}, backed by a pool of connections
+     * to the given {@code address}
+     */
+    static <K, V> TypedRedisClient<K, V> create(
+            SocketAddress address,
+            RedisPoolConfig config,
+            RedisCodec<K, V> codec
+    ) {
+        return new TypedRedisClientImpl<>(new RedisSocketPool(address, config), codec);
+    }
+
+    /**
+     * Creates a new thread-safe client sharing a few connections (one
+     * by default) to the given {@code address}, commands issued
+     * concurrently by many threads are written and flushed together
+     * @see AutoPipeliningRedisClient
+     */
+    static AutoPipeliningRedisClient create(SocketAddress address, AutoPipeliningConfig config) {
+        return AutoPipeliningRedisClient.create(address, config);
+    }
+
+    /**
+     * Creates a new thread-safe client backed by a pool of connections
+     * to the given {@code address}, whose GET commands are served from
+     * a near cache, kept coherent using client tracking (Redis 6+)
+     * @see NearCache
+     */
+    static NearCachingRedisClient create(
+            SocketAddress address,
+            RedisPoolConfig config,
+            NearCacheConfig nearCacheConfig
+    ) {
+        NearCache cache = NearCache.connect(address, nearCacheConfig);
+        try {
+            RedisSocketPool pool = new RedisSocketPool(address, config, cache::enableTracking);
+            return new NearCachingRedisClient(new PooledRedisClient(pool), cache);
+        } catch (RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new thread-safe client for the Redis Cluster
+     * containing the given {@code seeds} nodes, commands are sent
+     * to the master serving their key, using a pool of connections
+     * (with the given {@code config}) per node
+     * @see RedisClusterClient
+     */
+    static RedisClusterClient createCluster(Collection<InetSocketAddress> seeds, RedisPoolConfig config) {
+        return RedisClusterClient.create(seeds, config);
+    }
+
+    /**
+     * Creates a new thread-safe client for the given {@code primary}
+     * and its replicas, writes are sent to the primary and reads are
+     * spread across the replicas, weighted by their latency, using a
+     * pool of connections (with the given {@code config}) per node
+     * @see ReplicatedRedisClient
+     */
+    static ReplicatedRedisClient createReplicated(
+            InetSocketAddress primary,
+            RedisPoolConfig config,
+            ReadRoutingConfig routingConfig
+    ) {
+        return ReplicatedRedisClient.create(primary, config, routingConfig);
+    }
+
 }
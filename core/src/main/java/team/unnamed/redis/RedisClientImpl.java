@@ -1,10 +1,23 @@
 package team.unnamed.redis;
 
 import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
 import team.unnamed.redis.pubsub.BlockingRedisSubscription;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Doubles;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.ReplyVisitor;
 import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.jfr.CommandEvent;
 
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public class RedisClientImpl implements RedisClient {
 
@@ -14,36 +27,106 @@ public class RedisClientImpl implements RedisClient {
         this.socket = socket;
     }
 
-    private void sendCommand(byte[] command, byte[]... args) {
+    /**
+     * Writes the given {@code command} and starts its event
+     * @return The event, or null if it's not recorded
+     */
+    private CommandEvent sendCommand(byte[] command, byte[]... args) {
+        CommandEvent event = beginEvent(command, args.length == 0 ? null : args[0]);
+        socket.writeCommand(command, args);
+        return event;
+    }
+
+    /**
+     * Starts the event of the given {@code command} if it's enabled,
+     * it's kept by the command method (never in a field, so it doesn't
+     * escape) and ended by the read method of its reply
+     * @return The event, or null if it's not recorded
+     */
+    private CommandEvent beginEvent(byte[] command, byte[] key) {
+        CommandEvent event = new CommandEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.command = RedisCommands.getName(command);
+        event.address = socket.getAddress().toString();
+        event.keySize = key == null ? 0 : key.length;
+        // the reply start position, until the event ends
+        event.replySize = socket.getInputStream().getPosition();
+        event.begin();
+        return event;
+    }
+
+    private void endEvent(CommandEvent event, boolean failed) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.replySize = failed ? -1 : socket.getInputStream().getPosition() - event.replySize;
+                event.commit();
+            }
+        }
+    }
+
+    private Object readResponse(CommandEvent event) {
+        boolean failed = true;
         try {
-            socket.getOutputStream().writeCommand(command, args);
-        } catch (IOException e) {
-            throw new RedisException("Error occurred while" +
-                    " sending command", e);
+            Object reply = socket.readReply();
+            failed = false;
+            return reply;
+        } finally {
+            endEvent(event, failed);
         }
     }
 
     public String readStringResponse() {
+        return readStringResponse(null);
+    }
+
+    private String readStringResponse(CommandEvent event) {
+        return Strings.decode((byte[]) readResponse(event));
+    }
+
+    public Object[] readArrayResponse() {
+        return (Object[]) readResponse(null);
+    }
+
+    private void readResponse(CommandEvent event, ReplyVisitor visitor) {
+        boolean failed = true;
         try {
-            return Strings.decode((byte[]) socket.getInputStream().readNext());
-        } catch (IOException e) {
-            throw new RedisException(e);
+            socket.readReply(visitor);
+            failed = false;
+        } finally {
+            endEvent(event, failed);
         }
     }
 
-    public Object[] readArrayResponse() {
+    private long readLongResponse(CommandEvent event) {
+        boolean failed = true;
         try {
-            return (Object[]) socket.getInputStream().readNext();
-        } catch (IOException e) {
-            throw new RedisException(e);
+            long reply = socket.readLongReply();
+            failed = false;
+            return reply;
+        } finally {
+            endEvent(event, failed);
+        }
+    }
+
+    private double readDoubleResponse(CommandEvent event) {
+        boolean failed = true;
+        try {
+            double reply = socket.readDoubleReply();
+            failed = false;
+            return reply;
+        } finally {
+            endEvent(event, failed);
         }
     }
 
     @Override
     public String set(byte[] key, byte[] value) {
-        sendCommand(RedisCommands.SET, key, value);
+        CommandEvent event = sendCommand(RedisCommands.SET, key, value);
         socket.flush();
-        return readStringResponse();
+        return readStringResponse(event);
     }
 
     @Override
@@ -51,11 +134,35 @@ public class RedisClientImpl implements RedisClient {
         return set(Strings.encode(key), Strings.encode(value));
     }
 
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        CommandEvent event = beginEvent(RedisCommands.SET, key);
+        socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value, length);
+        socket.flush();
+        return readStringResponse(event);
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        CommandEvent event = beginEvent(RedisCommands.SET, key);
+        socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value);
+        socket.flush();
+        return readStringResponse(event);
+    }
+
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        CommandEvent event = beginEvent(RedisCommands.SET, key);
+        socket.writeCommand(RedisCommands.SET, new byte[][] { key }, file, position, length);
+        socket.flush();
+        return readStringResponse(event);
+    }
+
     @Override
     public String get(byte[] key) {
-        sendCommand(RedisCommands.GET, key);
+        CommandEvent event = sendCommand(RedisCommands.GET, key);
         socket.flush();
-        return readStringResponse();
+        return readStringResponse(event);
     }
 
     @Override
@@ -63,13 +170,133 @@ public class RedisClientImpl implements RedisClient {
         return get(key.getBytes(Resp.CHARSET));
     }
 
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        CommandEvent event = sendCommand(RedisCommands.GET, key);
+        socket.flush();
+        readResponse(event, visitor);
+    }
+
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        CommandEvent event = sendCommand(RedisCommands.GET, key);
+        socket.flush();
+        boolean failed = true;
+        try {
+            BulkStringInputStream stream = socket.readBulkStringStream(null);
+            failed = false;
+            return stream;
+        } finally {
+            // the data is read by the caller, so it's not included
+            endEvent(event, failed);
+        }
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        CommandEvent event = sendCommand(RedisCommands.INCR, key);
+        socket.flush();
+        return readLongResponse(event);
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        CommandEvent event = sendCommand(RedisCommands.INCRBY, key, Integers.toByteArray(increment));
+        socket.flush();
+        return readLongResponse(event);
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        CommandEvent event = sendCommand(RedisCommands.DECRBY, key, Integers.toByteArray(decrement));
+        socket.flush();
+        return readLongResponse(event);
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        CommandEvent event = sendCommand(RedisCommands.INCRBYFLOAT, key, Doubles.toByteArray(increment));
+        socket.flush();
+        return readDoubleResponse(event);
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        KeyBatch batch = KeyBatch.mget(keys);
+        execute(batch);
+        return batch.getValues();
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        execute(KeyBatch.mset(entries));
+        return "OK";
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        KeyBatch batch = KeyBatch.unlink(keys);
+        execute(batch);
+        return batch.getCount();
+    }
+
+    private void execute(KeyBatch batch) {
+        batch.split(KeyBatch.DEFAULT_CHUNK_SIZE, null);
+        batch.execute(socket);
+    }
+
+    @Override
+    public Pipeline pipelined() {
+        return new PipelineImpl(socket);
+    }
+
     @Override
     public void subscribe(RedisSubscriber subscriber, String... channels) {
-        sendCommand(RedisCommands.SUBSCRIBE, Strings.encodeArray(channels));
+        socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encodeArray(channels));
+        socket.flush();
+
+        // blocking operation!
+        new BlockingRedisSubscription(socket, subscriber).run();
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encodeArray(channels));
+        socket.flush();
+
+        // this client can't be used until the subscription is closed
+        return new DispatchingRedisSubscription(socket, subscriber, config, null);
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
         socket.flush();
 
         // blocking operation!
-        new BlockingRedisSubscription(this, subscriber).run();
+        new BlockingRedisSubscription(socket, subscriber).run();
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
+        socket.flush();
+
+        // this client can't be used until the subscription is closed
+        return new DispatchingRedisSubscription(socket, subscriber, config, null);
+    }
+
+    @Override
+    public void close() {
+        socket.close();
     }
 
 }
@@ -9,22 +9,50 @@ import team.unnamed.redis.io.Integers;
 public final class RedisCommands {
 
     public static final byte[]
+            ASKING = command("ASKING"),
+            CLIENT = command("CLIENT"),
+            CLUSTER = command("CLUSTER"),
             COPY = command("COPY"),
+            DECRBY = command("DECRBY"),
             DEL = command("DEL"),
             ECHO = command("ECHO"),
             EXISTS = command("EXISTS"),
             EXPIRE = command("EXPIRE"),
             GET = command("GET"),
+            HELLO = command("HELLO"),
+            INCR = command("INCR"),
+            INFO = command("INFO"),
+            INCRBY = command("INCRBY"),
+            INCRBYFLOAT = command("INCRBYFLOAT"),
             KEYS = command("KEYS"),
+            MGET = command("MGET"),
+            MSET = command("MSET"),
             PING = command("PING"),
             QUIT = command("QUIT"),
+            PSUBSCRIBE = command("PSUBSCRIBE"),
             PUBLISH = command("PUBLISH"),
+            PUNSUBSCRIBE = command("PUNSUBSCRIBE"),
             SET = command("SET"),
-            SUBSCRIBE = command("SUBSCRIBE");
+            SUBSCRIBE = command("SUBSCRIBE"),
+            UNLINK = command("UNLINK"),
+            UNSUBSCRIBE = command("UNSUBSCRIBE");
 
     private RedisCommands() {
     }
 
+    /**
+     * Returns the name of the given {@code command}, encoded
+     * as a bulk string, like the constants of this class
+     * i.e. "$3\r\nGET\r\n" is "GET"
+     */
+    public static String getName(byte[] command) {
+        int start = 1;
+        while (start < command.length && command[start - 1] != Resp.LINE_FEED) {
+            start++;
+        }
+        return new String(command, start, Math.max(0, command.length - 2 - start), Resp.CHARSET);
+    }
+
     private static byte[] command(String name) {
         byte[] string = name.getBytes(Resp.CHARSET);
 
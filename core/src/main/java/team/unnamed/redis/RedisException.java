@@ -22,4 +22,14 @@ public class RedisException
         super(message, cause, enableSuppression, writableStackTrace);
     }
 
+    /**
+     * Creates the exception for an error reply with the given
+     * {@code message}, cluster redirections are returned as
+     * {@link RedisRedirectException}
+     */
+    public static RedisReplyException fromReply(String message) {
+        RedisReplyException redirect = RedisRedirectException.parse(message);
+        return redirect == null ? new RedisReplyException(message) : redirect;
+    }
+
 }
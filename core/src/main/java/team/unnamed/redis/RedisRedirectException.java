@@ -0,0 +1,88 @@
+package team.unnamed.redis;
+
+/**
+ * Error reply sent by a cluster node when the slot of the
+ * command key is served by another node, i.e.
+ * {@code MOVED 3999 127.0.0.1:6381} when the slot was moved
+ * and {@code ASK 3999 127.0.0.1:6381} while it's migrating.
+ *
+ * <p>The connection is still usable after it</p>
+ */
+public class RedisRedirectException extends RedisReplyException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String MOVED = "MOVED ";
+    private static final String ASK = "ASK ";
+
+    private final boolean ask;
+    private final int slot;
+    private final String host;
+    private final int port;
+
+    private RedisRedirectException(String message, boolean ask, int slot, String host, int port) {
+        super(message);
+        this.ask = ask;
+        this.slot = slot;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Determines if this is an ASK redirection, in that case the
+     * command must be sent to the target node preceded by ASKING
+     * and the slot is still served by the current node
+     */
+    public boolean isAsk() {
+        return ask;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Returns the host of the target node, may be empty if the
+     * node endpoint is unknown, the host of the current node
+     * should be used in that case
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Parses the given error reply {@code message}, returns null
+     * if it isn't a redirection
+     */
+    static RedisRedirectException parse(String message) {
+        boolean ask;
+        if (message.startsWith(MOVED)) {
+            ask = false;
+        } else if (message.startsWith(ASK)) {
+            ask = true;
+        } else {
+            return null;
+        }
+
+        int slotStart = ask ? ASK.length() : MOVED.length();
+        int slotEnd = message.indexOf(' ', slotStart);
+        // the host may be an IPv6 address, the port is after the last colon
+        int portStart = message.lastIndexOf(':') + 1;
+        if (slotEnd == -1 || portStart <= slotEnd) {
+            return null;
+        }
+        try {
+            int slot = Integer.parseInt(message.substring(slotStart, slotEnd));
+            int port = Integer.parseInt(message.substring(portStart));
+            String host = message.substring(slotEnd + 1, portStart - 1);
+            return new RedisRedirectException(message, ask, slot, host, port);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
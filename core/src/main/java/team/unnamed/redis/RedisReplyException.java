@@ -0,0 +1,22 @@
+package team.unnamed.redis;
+
+/**
+ * Error reply sent by the server, i.e. -ERR message\r\n.
+ * It's only thrown once the whole reply was read (nested
+ * errors after the rest of their aggregate), so, unlike
+ * other {@link RedisException}s, the connection is still
+ * usable after it
+ */
+public class RedisReplyException extends RedisException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedisReplyException(String message) {
+        super(message);
+    }
+
+    public RedisReplyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -1,30 +1,99 @@
 package team.unnamed.redis;
 
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.io.BufferConfig;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.ReplyVisitor;
 import team.unnamed.redis.io.RespInputStream;
 import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.jfr.CloseEvent;
+import team.unnamed.redis.jfr.ConnectEvent;
+import team.unnamed.redis.jfr.FlushEvent;
+import team.unnamed.redis.metrics.CommandListener;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 public class RedisSocket implements Flushable, Closeable {
 
-    private static final int DEFAULT_BUFFER_SIZE = 8192;
-
     private final SocketAddress address;
+    private final SocketChannel channel;
     private final Socket socket;
 
     private final RespInputStream inputStream;
     private final RespOutputStream outputStream;
 
+    private int protocolVersion = Resp.RESP2;
+
+    // null unless a listener is set, so nothing is measured
+    private CommandListener commandListener;
+    // written commands waiting for their reply, concurrent since
+    // commands may be written and read by different threads
+    private Queue<PendingCommand> pendingCommands;
+    private int unflushedCommands;
+
     public RedisSocket(SocketAddress address) throws IOException {
+        this(address, BufferConfig.defaults());
+    }
+
+    /**
+     * Connects to the given {@code address}, its buffers are
+     * borrowed and sized following the given {@code bufferConfig}
+     * @see RedisSocket#releaseBuffers
+     */
+    public RedisSocket(SocketAddress address, BufferConfig bufferConfig) throws IOException {
         this.address = address;
-        this.socket = connect(address);
+        this.channel = connect(address);
+        this.socket = channel.socket();
 
-        this.inputStream = new RespInputStream(socket.getInputStream(), DEFAULT_BUFFER_SIZE);
-        this.outputStream = new RespOutputStream(socket.getOutputStream(), DEFAULT_BUFFER_SIZE);
+        this.inputStream = new RespInputStream(socket.getInputStream(), bufferConfig);
+        // large arguments are never copied into the buffer, they're
+        // written along with it in a single gathering write per flush
+        this.outputStream = new RespOutputStream(channel, bufferConfig);
+    }
+
+    /**
+     * Connects to the given {@code address} and negotiates the
+     * given protocol version (2 or 3) using HELLO
+     * @throws RedisException If the server doesn't support the
+     * protocol version, i.e. servers older than Redis 6
+     */
+    public RedisSocket(SocketAddress address, int protocolVersion) throws IOException {
+        this(address, protocolVersion, BufferConfig.defaults());
+    }
+
+    /**
+     * Connects to the given {@code address} using the given
+     * {@code bufferConfig} and negotiates the given protocol
+     * version (2 or 3) using HELLO
+     * @see RedisSocket#RedisSocket(SocketAddress, int)
+     */
+    public RedisSocket(SocketAddress address, int protocolVersion, BufferConfig bufferConfig) throws IOException {
+        this(address, bufferConfig);
+        if (protocolVersion != Resp.RESP2) {
+            try {
+                hello(protocolVersion);
+            } catch (RedisException e) {
+                channel.close();
+                throw e;
+            }
+        }
     }
 
     public SocketAddress getAddress() {
@@ -35,6 +104,15 @@ public class RedisSocket implements Flushable, Closeable {
         return socket;
     }
 
+    /**
+     * Returns the (blocking) channel of this socket, data written
+     * to it directly skips the output stream buffer, so the buffer
+     * must be flushed before
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
     public RespInputStream getInputStream() {
         return inputStream;
     }
@@ -43,35 +121,499 @@ public class RedisSocket implements Flushable, Closeable {
         return outputStream;
     }
 
+    /**
+     * Returns the protocol version used by this connection, 2
+     * unless another version was negotiated using HELLO
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Switches the protocol version of this connection using HELLO,
+     * replies are read natively after it, i.e. RESP3 maps are read
+     * as maps instead of flat arrays
+     * @return The server properties, i.e. "server", "version" and "proto"
+     * @throws RedisException If the server doesn't support the version
+     */
+    public Map<Object, Object> hello(int protocolVersion) {
+        writeCommand(RedisCommands.HELLO, Integers.toByteArray(protocolVersion));
+        flush();
+        Object reply = readReply();
+        this.protocolVersion = protocolVersion;
+
+        if (reply instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> properties = (Map<Object, Object>) reply;
+            return properties;
+        }
+
+        // RESP2 replies are flat arrays
+        Object[] array = (Object[]) reply;
+        Map<Object, Object> properties = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < array.length; i += 2) {
+            Object key = array[i];
+            properties.put(key instanceof byte[] ? Strings.decode((byte[]) key) : key, array[i + 1]);
+        }
+        return properties;
+    }
+
+    /**
+     * Sets the handler for RESP3 out-of-band push frames (i.e. pub/sub
+     * messages or client-side caching invalidations), it's called by
+     * the thread reading replies, so they can share the connection
+     * with normal commands
+     * @see RespInputStream#setPushHandler
+     */
+    public void setPushHandler(Consumer<Object[]> pushHandler) {
+        inputStream.setPushHandler(pushHandler);
+    }
+
+    /**
+     * Sets the listener for the commands, flushes and I/O of this
+     * socket, or null to remove it. Commands are paired with their
+     * replies in order, so it must be set while no reply is pending
+     */
+    public void setCommandListener(CommandListener listener) {
+        this.commandListener = listener;
+        this.unflushedCommands = 0;
+        if (listener == null) {
+            pendingCommands = null;
+            inputStream.setReadListener(null);
+            outputStream.setWriteListener(null);
+        } else {
+            pendingCommands = new ConcurrentLinkedQueue<>();
+            inputStream.setReadListener(bytes -> listener.onBytesRead(this, bytes));
+            outputStream.setWriteListener(bytes -> listener.onBytesWritten(this, bytes));
+        }
+    }
+
+    public CommandListener getCommandListener() {
+        return commandListener;
+    }
+
+    private void commandWritten(byte[] command) {
+        pendingCommands.add(new PendingCommand(command, System.nanoTime()));
+        unflushedCommands++;
+    }
+
+    private void replyRead(RedisException failure) {
+        PendingCommand command = pendingCommands.poll();
+        // pub/sub messages aren't replies to any command
+        if (command != null) {
+            commandListener.onCommand(this, command.command, System.nanoTime() - command.startNanos, failure);
+        }
+    }
+
+    private RedisException replyFailed(RedisException failure) {
+        if (commandListener != null) {
+            replyRead(failure);
+        }
+        return failure;
+    }
+
+    /**
+     * Writes the given {@code command} and {@code args} to the
+     * output buffer, it doesn't flush the buffer. Large arguments
+     * aren't copied, so they must not be modified until flushed
+     * @see RespOutputStream#writeCommand
+     */
+    public void writeCommand(byte[] command, byte[]... args) {
+        try {
+            outputStream.writeCommand(command, args);
+            if (commandListener != null) {
+                commandWritten(command);
+            }
+        } catch (IOException e) {
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Writes the given {@code command} and {@code args} followed by
+     * {@code length} bytes read from the given {@code value} stream
+     * as the last argument, the value is copied in chunks through the
+     * output buffer, never fully loaded in memory.
+     *
+     * <p>Part of the command may have been sent when the stream fails
+     * (i.e. it ends early), so this socket is closed and it's unusable
+     * after a failure</p>
+     */
+    public void writeCommand(byte[] command, byte[][] args, InputStream value, int length) {
+        try {
+            writeArgs(command, args);
+            outputStream.writeBulkString(value, length);
+            if (commandListener != null) {
+                commandWritten(command);
+            }
+        } catch (IOException e) {
+            abort();
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Writes the given {@code command} and {@code args} followed by
+     * the remaining bytes of the given {@code value} buffer as the
+     * last argument, large values (including direct buffers) aren't
+     * copied, so they must not be modified until flushed
+     */
+    public void writeCommand(byte[] command, byte[][] args, ByteBuffer value) {
+        try {
+            writeArgs(command, args);
+            outputStream.writeBulkString(value);
+            if (commandListener != null) {
+                commandWritten(command);
+            }
+        } catch (IOException e) {
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Writes the given {@code command} and {@code args} followed by
+     * {@code length} bytes of the given {@code file} (starting at
+     * {@code position}) as the last argument. The file data is
+     * transferred using {@link FileChannel#transferTo}, so the
+     * operating system can send it without copying it to user space.
+     * Note that the output buffer is flushed by this method.
+     *
+     * <p>Part of the command has been sent when the transfer fails
+     * (i.e. the file ends early), so this socket is closed and it's
+     * unusable after a failure</p>
+     */
+    public void writeCommand(byte[] command, byte[][] args, FileChannel file, long position, int length) {
+        try {
+            writeArgs(command, args);
+            outputStream.writeBulkStringHeader(length);
+            outputStream.flush();
+
+            long transferred = 0;
+            while (transferred < length) {
+                long count = file.transferTo(position + transferred, length - transferred, channel);
+                if (count <= 0 && position + transferred >= file.size()) {
+                    throw new EOFException("File ended " + (length - transferred)
+                            + " bytes before the declared length (" + length + ")");
+                }
+                transferred += count;
+                if (commandListener != null) {
+                    commandListener.onBytesWritten(this, (int) count);
+                }
+            }
+
+            outputStream.writeTermination();
+            if (commandListener != null) {
+                commandWritten(command);
+            }
+        } catch (IOException e) {
+            abort();
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Closes the connection without flushing, used when a
+     * partial command was written, the server must never
+     * receive the rest of the buffer as another command
+     */
+    private void abort() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // the command already failed
+        }
+    }
+
+    private void writeArgs(byte[] command, byte[][] args) throws IOException {
+        // +1 for the command, +1 for the value
+        outputStream.writeArrayHeader(args.length + 2);
+        outputStream.write(command);
+        for (byte[] arg : args) {
+            outputStream.writeBulkString(arg);
+        }
+    }
+
+    /**
+     * Writes the header of the given {@code command}, its
+     * {@code argCount} arguments must be written to the output
+     * stream after it, as bulk strings. Used to write arguments
+     * that aren't arrays without copying them to arrays
+     */
+    public void writeCommandHeader(byte[] command, int argCount) {
+        try {
+            outputStream.writeArrayHeader(argCount + 1);
+            outputStream.write(command);
+            if (commandListener != null) {
+                commandWritten(command);
+            }
+        } catch (IOException e) {
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Writes the given {@code value} as a bulk string argument,
+     * encoded using the given {@code codec} straight into the
+     * output buffer, see {@link RedisSocket#writeCommandHeader}
+     */
+    public <T> void writeArgument(TypeCodec<T> codec, T value) {
+        try {
+            outputStream.writeBulkString(codec, value);
+        } catch (IOException e) {
+            throw new RedisException("Error occurred while" +
+                    " sending command", e);
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be a bulk string, as a stream,
+     * the data is read straight from the socket buffer. This socket
+     * must not be used until the returned stream is closed
+     * @param closeAction Action executed after the returned
+     *                    stream is closed, may be null
+     * @return The bulk string stream, or null for nil replies
+     * @see RespInputStream#readBulkStringStream
+     */
+    public BulkStringInputStream readBulkStringStream(Runnable closeAction) {
+        try {
+            BulkStringInputStream stream = inputStream.readBulkStringStream(closeAction);
+            if (commandListener != null) {
+                // the latency until the data starts
+                replyRead(null);
+            }
+            return stream;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply from the input stream, it's a
+     * blocking operation
+     * @see RespInputStream#readNext
+     */
+    public Object readReply() {
+        try {
+            Object reply = inputStream.readNext();
+            if (commandListener != null) {
+                replyRead(null);
+            }
+            return reply;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be a string, from the input
+     * stream and decodes it using the given {@code codec} straight
+     * from the buffer, it's a blocking operation
+     * @return The decoded value, or null for nil replies
+     * @see RespInputStream#readBulkString(TypeCodec)
+     */
+    public <T> T readReply(TypeCodec<T> codec) {
+        try {
+            T reply = inputStream.readBulkString(codec);
+            if (commandListener != null) {
+                replyRead(null);
+            }
+            return reply;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be an array of strings, from
+     * the input stream, decoding its elements using the given
+     * {@code codec}, it's a blocking operation
+     * @return The array length, or -1 for nil arrays
+     * @see RespInputStream#readArrayReply
+     */
+    public <T> int readArrayReply(TypeCodec<T> codec, Collection<? super T> values) {
+        try {
+            int length = inputStream.readArrayReply(codec, values);
+            if (commandListener != null) {
+                replyRead(null);
+            }
+            return length;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply from the input stream and pushes it to
+     * the given {@code visitor}, without allocating intermediate
+     * objects, it's a blocking operation
+     * @see RespInputStream#readNext(ReplyVisitor)
+     */
+    public void readReply(ReplyVisitor visitor) {
+        try {
+            inputStream.readNext(visitor);
+            if (commandListener != null) {
+                replyRead(null);
+            }
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be an integer, from the
+     * input stream, without boxing it, it's a blocking operation
+     * @see RespInputStream#readLongReply
+     */
+    public long readLongReply() {
+        try {
+            long reply = inputStream.readLongReply();
+            if (commandListener != null) {
+                replyRead(null);
+            }
+            return reply;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be a bulk string containing
+     * a number, from the input stream and parses it without
+     * decoding it to a string, it's a blocking operation
+     * @see RespInputStream#readDoubleReply
+     */
+    public double readDoubleReply() {
+        try {
+            double reply = inputStream.readDoubleReply();
+            if (commandListener != null) {
+                replyRead(null);
+            }
+            return reply;
+        } catch (IOException e) {
+            throw replyFailed(new RedisException(e));
+        } catch (RedisException e) {
+            throw replyFailed(e);
+        }
+    }
+
+    /**
+     * Determines if this socket is still usable, i.e. it's
+     * connected and it wasn't closed
+     */
+    public boolean isOpen() {
+        return socket.isConnected() && !socket.isClosed();
+    }
+
     @Override
     public void flush() {
+        FlushEvent event = new FlushEvent();
+        event.begin();
+        long bytes = event.isEnabled() ? outputStream.buffered() : 0;
         try {
             outputStream.flush();
         } catch (IOException e) {
             throw new RedisException(e);
         }
+        if (event.shouldCommit()) {
+            event.address = address.toString();
+            event.bytesWritten = bytes;
+            event.commit();
+        }
+        if (commandListener != null && unflushedCommands > 0) {
+            commandListener.onFlush(this, unflushedCommands);
+            unflushedCommands = 0;
+        }
+    }
+
+    /**
+     * Gives back the input and output buffers to their arena, if
+     * nothing is buffered, should be called by the thread using the
+     * socket when it becomes idle, i.e. when it's returned to its
+     * pool. New buffers are borrowed when the socket is used again
+     * @see RespInputStream#releaseBuffer
+     */
+    public void releaseBuffers() {
+        inputStream.releaseBuffer();
+        outputStream.releaseBuffer();
     }
 
     @Override
     public void close() {
+        CloseEvent event = new CloseEvent();
+        event.begin();
         try {
-            outputStream.flush();
+            // buffers aren't released, another thread may
+            // still be reading (i.e. a subscription)
+            if (!socket.isClosed()) {
+                outputStream.flush();
+            }
             socket.close();
         } catch (IOException e) {
             throw new RedisException(e);
+        } finally {
+            if (commandListener != null) {
+                commandListener.onClose(this);
+            }
+            if (event.shouldCommit()) {
+                event.address = address.toString();
+                event.commit();
+            }
         }
     }
 
-    private static Socket connect(SocketAddress address) throws IOException {
-        Socket socket = new Socket();
+    private static SocketChannel connect(SocketAddress address) throws IOException {
+        // blocking channel, replies are read through its socket
+        // adaptor stream, commands are written to the channel
+        SocketChannel channel = SocketChannel.open();
+        Socket socket = channel.socket();
 
         socket.setReuseAddress(true);
         socket.setKeepAlive(true);
         socket.setTcpNoDelay(true);
         socket.setSoLinger(true, 0);
 
-        socket.connect(address);
-        return socket;
+        ConnectEvent event = new ConnectEvent();
+        event.begin();
+        try {
+            socket.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (event.shouldCommit()) {
+            event.address = address.toString();
+            event.commit();
+        }
+        return channel;
+    }
+
+    private static final class PendingCommand {
+
+        private final byte[] command;
+        private final long startNanos;
+
+        private PendingCommand(byte[] command, long startNanos) {
+            this.command = command;
+            this.startNanos = startNanos;
+        }
+
     }
 
 }
@@ -21,6 +21,24 @@ public final class Resp {
     public static final byte ARRAY_BYTE = '*';
     public static final byte SCRIPT_BYTE = '-';
 
+    // RESP3 types, see https://github.com/redis/redis-specifications
+    public static final byte NULL_BYTE = '_';
+    public static final byte DOUBLE_BYTE = ',';
+    public static final byte BOOLEAN_BYTE = '#';
+    public static final byte BLOB_ERROR_BYTE = '!';
+    public static final byte VERBATIM_STRING_BYTE = '=';
+    public static final byte BIG_NUMBER_BYTE = '(';
+    public static final byte MAP_BYTE = '%';
+    public static final byte SET_BYTE = '~';
+    public static final byte ATTRIBUTE_BYTE = '|';
+    public static final byte PUSH_BYTE = '>';
+
+    // length of the format prefix of verbatim strings, i.e. "txt:"
+    public static final int VERBATIM_FORMAT_LENGTH = 4;
+
+    public static final int RESP2 = 2;
+    public static final int RESP3 = 3;
+
     public static final byte CARRIAGE_RETURN = '\r';
     public static final byte LINE_FEED = '\n';
 
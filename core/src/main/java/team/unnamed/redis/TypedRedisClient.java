@@ -0,0 +1,69 @@
+package team.unnamed.redis;
+
+import team.unnamed.redis.codec.RedisCodec;
+import team.unnamed.redis.codec.TypeCodec;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client for keys of type {@code K} and values of type {@code V},
+ * converted using a {@link RedisCodec}. Keys and values are encoded
+ * straight into the connection buffer and values are decoded from
+ * slices of it, so no intermediate byte arrays are allocated
+ *
+ * @see RedisClient#create(java.net.SocketAddress, RedisCodec)
+ * @see RedisClient#create(java.net.SocketAddress, team.unnamed.redis.pool.RedisPoolConfig, RedisCodec)
+ */
+public interface TypedRedisClient<K, V> extends Closeable {
+
+    RedisCodec<K, V> getCodec();
+
+    String set(K key, V value);
+
+    /**
+     * Sends a GET command for the given {@code key} and
+     * returns its value, null if the key doesn't exist
+     */
+    V get(K key);
+
+    /**
+     * Sends MGET commands for the given {@code keys} and returns
+     * their values in the same order, null for keys that don't
+     * exist. Big key collections are split in chunks that are sent
+     * together, without waiting for the previous replies
+     * @see RedisClient#mget
+     */
+    List<V> mget(List<K> keys);
+
+    /**
+     * Sends MSET commands for the given {@code entries}, split in
+     * chunks like {@link TypedRedisClient#mget}. Note that the entries
+     * are only set atomically if they fit in a single chunk
+     */
+    String mset(Map<K, V> entries);
+
+    /**
+     * Sends UNLINK commands for the given {@code keys}, split in
+     * chunks like {@link TypedRedisClient#mget}, and returns the
+     * count of removed keys
+     */
+    long unlink(Collection<K> keys);
+
+    /**
+     * Sends an INCR command for the given {@code key} and
+     * returns the value after the increment, without boxing it.
+     * Values incremented this way can be read using
+     * {@link TypeCodec#int64()}
+     */
+    long incr(K key);
+
+    /**
+     * Closes the underlying connection(s) of this client
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,255 @@
+package team.unnamed.redis;
+
+import team.unnamed.redis.codec.RedisCodec;
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisSocketPool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link TypedRedisClient} implementation using a single connection
+ * (not thread-safe) or, if created with a pool, checking out a
+ * connection for every command (thread-safe)
+ */
+final class TypedRedisClientImpl<K, V> implements TypedRedisClient<K, V> {
+
+    private final RedisSocket socket;
+    private final RedisSocketPool pool;
+    private final RedisCodec<K, V> codec;
+    private final TypeCodec<K> keyCodec;
+    private final TypeCodec<V> valueCodec;
+    private final int batchSize;
+
+    TypedRedisClientImpl(RedisSocket socket, RedisCodec<K, V> codec) {
+        this(socket, null, codec, KeyBatch.DEFAULT_CHUNK_SIZE);
+    }
+
+    TypedRedisClientImpl(RedisSocketPool pool, RedisCodec<K, V> codec) {
+        this(null, pool, codec, pool.getConfig().getBatchSize());
+    }
+
+    private TypedRedisClientImpl(RedisSocket socket, RedisSocketPool pool, RedisCodec<K, V> codec, int batchSize) {
+        this.socket = socket;
+        this.pool = pool;
+        this.codec = codec;
+        this.keyCodec = codec.getKeyCodec();
+        this.valueCodec = codec.getValueCodec();
+        this.batchSize = batchSize;
+    }
+
+    private <T> T execute(Function<RedisSocket, T> action) {
+        if (pool == null) {
+            return action.apply(socket);
+        }
+
+        RedisSocket socket = pool.borrow();
+        T result;
+        try {
+            result = action.apply(socket);
+        } catch (RuntimeException e) {
+            if (isBroken(e)) {
+                pool.invalidate(socket);
+            } else {
+                // error reply, the connection is still usable
+                pool.release(socket);
+            }
+            throw e;
+        }
+        pool.release(socket);
+        return result;
+    }
+
+    @Override
+    public RedisCodec<K, V> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String set(K key, V value) {
+        return execute(socket -> {
+            socket.writeCommandHeader(RedisCommands.SET, 2);
+            socket.writeArgument(keyCodec, key);
+            socket.writeArgument(valueCodec, value);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public V get(K key) {
+        return execute(socket -> {
+            socket.writeCommandHeader(RedisCommands.GET, 1);
+            socket.writeArgument(keyCodec, key);
+            socket.flush();
+            return socket.readReply(valueCodec);
+        });
+    }
+
+    @Override
+    public List<V> mget(List<K> keys) {
+        List<V> values = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return values;
+        }
+        return execute(socket -> {
+            int chunks = writeKeyChunks(socket, RedisCommands.MGET, keys);
+            RedisException failure = null;
+            for (int i = 0; i < chunks; i++) {
+                try {
+                    socket.readArrayReply(valueCodec, values);
+                } catch (RedisException e) {
+                    failure = readFailure(failure, e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return values;
+        });
+    }
+
+    @Override
+    public String mset(Map<K, V> entries) {
+        if (entries.isEmpty()) {
+            return "OK";
+        }
+        return execute(socket -> {
+            Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+            int chunks = 0;
+            for (int start = 0; start < entries.size(); start += batchSize) {
+                int count = Math.min(batchSize, entries.size() - start);
+                socket.writeCommandHeader(RedisCommands.MSET, count * 2);
+                for (int i = 0; i < count; i++) {
+                    Map.Entry<K, V> entry = iterator.next();
+                    socket.writeArgument(keyCodec, entry.getKey());
+                    socket.writeArgument(valueCodec, entry.getValue());
+                }
+                chunks++;
+            }
+            socket.flush();
+
+            RedisException failure = null;
+            for (int i = 0; i < chunks; i++) {
+                try {
+                    socket.readReply();
+                } catch (RedisException e) {
+                    failure = readFailure(failure, e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return "OK";
+        });
+    }
+
+    @Override
+    public long unlink(Collection<K> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        return execute(socket -> {
+            int chunks = writeKeyChunks(socket, RedisCommands.UNLINK, keys);
+            long count = 0;
+            RedisException failure = null;
+            for (int i = 0; i < chunks; i++) {
+                try {
+                    count += socket.readLongReply();
+                } catch (RedisException e) {
+                    failure = readFailure(failure, e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public long incr(K key) {
+        if (pool == null) {
+            return incr(socket, key);
+        }
+        // not using execute, so the result is never boxed
+        RedisSocket socket = pool.borrow();
+        long result;
+        try {
+            result = incr(socket, key);
+        } catch (RuntimeException e) {
+            if (isBroken(e)) {
+                pool.invalidate(socket);
+            } else {
+                pool.release(socket);
+            }
+            throw e;
+        }
+        pool.release(socket);
+        return result;
+    }
+
+    private long incr(RedisSocket socket, K key) {
+        socket.writeCommandHeader(RedisCommands.INCR, 1);
+        socket.writeArgument(keyCodec, key);
+        socket.flush();
+        return socket.readLongReply();
+    }
+
+    /**
+     * Writes the given {@code command} for the given {@code keys},
+     * split in chunks of the batch size, and flushes them together
+     * @return The count of written chunks
+     */
+    private int writeKeyChunks(RedisSocket socket, byte[] command, Collection<K> keys) {
+        Iterator<K> iterator = keys.iterator();
+        int chunks = 0;
+        for (int start = 0; start < keys.size(); start += batchSize) {
+            int count = Math.min(batchSize, keys.size() - start);
+            socket.writeCommandHeader(command, count);
+            for (int i = 0; i < count; i++) {
+                socket.writeArgument(keyCodec, iterator.next());
+            }
+            chunks++;
+        }
+        socket.flush();
+        return chunks;
+    }
+
+    /**
+     * Returns the first error reply of a batch, the replies of
+     * the next chunks are still read, so the connection can be
+     * reused. Any other failure is thrown immediately, the reply
+     * may not have been read completely
+     */
+    private static RedisException readFailure(RedisException first, RedisException failure) {
+        if (!(failure instanceof RedisReplyException)) {
+            throw failure;
+        }
+        return first == null ? failure : first;
+    }
+
+    /**
+     * Determines if the given {@code exception} means that the
+     * connection is in an unknown state and must not be reused,
+     * i.e. a codec failed while its value was being read
+     */
+    private static boolean isBroken(RuntimeException exception) {
+        return !(exception instanceof RedisReplyException);
+    }
+
+    @Override
+    public void close() {
+        if (pool == null) {
+            socket.close();
+        } else {
+            pool.close();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package team.unnamed.redis.async;
+
+import team.unnamed.redis.RedisException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking redis client, every command returns a
+ * {@link CompletableFuture} completed when its reply is
+ * received, many commands can be in-flight at the same
+ * time in a single connection.
+ *
+ * <p>Futures are completed by the event loop thread, so
+ * dependent actions must not block, or use the async
+ * variants of the {@link CompletableFuture} methods</p>
+ */
+public interface AsyncRedisClient extends Closeable {
+
+    CompletableFuture<String> set(byte[] key, byte[] value);
+
+    CompletableFuture<String> set(String key, String value);
+
+    CompletableFuture<String> get(byte[] key);
+
+    CompletableFuture<String> get(String key);
+
+    /**
+     * Closes the connection of this client, pending commands
+     * are completed exceptionally
+     */
+    @Override
+    void close();
+
+    /**
+     * Creates a new client connected to the given {@code address},
+     * running on its own event loop thread
+     */
+    static AsyncRedisClient create(SocketAddress address) {
+        RedisEventLoopGroup group = new RedisEventLoopGroup(1);
+        try {
+            return new AsyncRedisClientImpl(AsyncRedisConnection.connect(address, group.next()), group);
+        } catch (IOException e) {
+            group.close();
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+    }
+
+    /**
+     * Creates a new client connected to the given {@code address},
+     * running on one of the given {@code group} event loops. The
+     * group is not closed when the client is closed
+     */
+    static AsyncRedisClient create(SocketAddress address, RedisEventLoopGroup group) {
+        try {
+            return new AsyncRedisClientImpl(AsyncRedisConnection.connect(address, group.next()), null);
+        } catch (IOException e) {
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package team.unnamed.redis.async;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.io.Strings;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public class AsyncRedisClientImpl implements AsyncRedisClient {
+
+    private static final Function<Object, String> STRING_REPLY
+            = reply -> Strings.decode((byte[]) reply);
+
+    private final AsyncRedisConnection connection;
+    private final RedisEventLoopGroup ownedGroup;
+
+    protected AsyncRedisClientImpl(AsyncRedisConnection connection, RedisEventLoopGroup ownedGroup) {
+        this.connection = connection;
+        this.ownedGroup = ownedGroup;
+    }
+
+    public AsyncRedisConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public CompletableFuture<String> set(byte[] key, byte[] value) {
+        return connection.send(STRING_REPLY, RedisCommands.SET, key, value);
+    }
+
+    @Override
+    public CompletableFuture<String> set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    @Override
+    public CompletableFuture<String> get(byte[] key) {
+        return connection.send(STRING_REPLY, RedisCommands.GET, key);
+    }
+
+    @Override
+    public CompletableFuture<String> get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+        if (ownedGroup != null) {
+            ownedGroup.close();
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+package team.unnamed.redis.async;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.io.RespEncoder;
+import team.unnamed.redis.io.RespParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Non-blocking connection to a redis server, any thread can
+ * send commands through it and many commands can be in-flight
+ * at the same time: replies are matched to their commands
+ * using a FIFO of pending commands, since redis replies in
+ * the same order the commands were received.
+ *
+ * <p>All the I/O happens in the {@link RedisEventLoop} thread,
+ * reply futures are also completed there, so callbacks on them
+ * must not block</p>
+ *
+ * <p>Commands are encoded by the event loop directly into a
+ * direct {@link ByteBuffer} using {@link RespEncoder}, so the
+ * channel writes don't copy through heap arrays</p>
+ */
+public class AsyncRedisConnection implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int WRITE_BUFFER_SIZE = 65536;
+
+    private final SocketAddress address;
+    private final RedisEventLoop loop;
+    private final SocketChannel channel;
+
+    // commands sent by any thread, waiting to be written
+    private final Queue<Command<?>> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // event loop state
+    private final ArrayDeque<Command<?>> unwritten = new ArrayDeque<>();
+    private final ArrayDeque<Command<?>> pending = new ArrayDeque<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    // commands bigger than the write buffer are encoded apart
+    private ByteBuffer oversized;
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final RespParser parser = new RespParser();
+    private SelectionKey key;
+
+    private volatile RedisException closeCause;
+
+    private AsyncRedisConnection(SocketAddress address, RedisEventLoop loop, SocketChannel channel) {
+        this.address = address;
+        this.loop = loop;
+        this.channel = channel;
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    public RedisEventLoop getEventLoop() {
+        return loop;
+    }
+
+    public boolean isOpen() {
+        return closeCause == null;
+    }
+
+    /**
+     * Connects to the given {@code address} and registers the
+     * connection in the given event {@code loop}. The connection
+     * is established in the calling thread
+     */
+    public static AsyncRedisConnection connect(SocketAddress address, RedisEventLoop loop) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.connect(address);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        AsyncRedisConnection connection = new AsyncRedisConnection(address, loop, channel);
+        try {
+            loop.execute(() -> {
+                try {
+                    connection.key = loop.register(channel, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    connection.onClose(new RedisException("Cannot register connection", e));
+                }
+            });
+        } catch (RedisException e) {
+            // event loop closed, the connection was never shared
+            channel.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Sends the given {@code command} and {@code args}, the
+     * returned future is completed with the reply converted
+     * using the given {@code converter}
+     */
+    public <T> CompletableFuture<T> send(Function<Object, T> converter, byte[] command, byte[]... args) {
+        Command<T> pendingCommand = new Command<>(command, args, converter);
+
+        if (closeCause != null) {
+            pendingCommand.future.completeExceptionally(closeCause);
+            return pendingCommand.future;
+        }
+
+        outbound.add(pendingCommand);
+
+        if (closeCause != null) {
+            // closed while we were adding it, it may never
+            // be drained by the event loop
+            failOutbound(closeCause);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            // commands sent until the flush runs are written together
+            try {
+                loop.execute(this::flushOutbound);
+            } catch (RedisException e) {
+                // event loop closed, it closes its connections (and
+                // fails their commands) in its own thread, so only
+                // this command is failed here
+                flushScheduled.set(false);
+                if (outbound.remove(pendingCommand)) {
+                    pendingCommand.future.completeExceptionally(e);
+                }
+            }
+        }
+        return pendingCommand.future;
+    }
+
+    private void flushOutbound() {
+        flushScheduled.set(false);
+        if (closeCause != null) {
+            failOutbound(closeCause);
+            return;
+        }
+
+        Command<?> command;
+        while ((command = outbound.poll()) != null) {
+            unwritten.add(command);
+        }
+        writeQueued();
+    }
+
+    private void writeQueued() {
+        try {
+            while (true) {
+                encodeUnwritten();
+
+                if (writeBuffer.position() == 0 && oversized == null) {
+                    // everything was written
+                    setInterest(SelectionKey.OP_READ);
+                    return;
+                }
+
+                writeBuffer.flip();
+                if (oversized == null) {
+                    channel.write(writeBuffer);
+                } else {
+                    // the oversized command goes first, the write
+                    // buffer only holds commands encoded after it
+                    gather[0] = oversized;
+                    gather[1] = writeBuffer;
+                    channel.write(gather);
+                    if (!oversized.hasRemaining()) {
+                        oversized = null;
+                    }
+                }
+                boolean drained = oversized == null && !writeBuffer.hasRemaining();
+                writeBuffer.compact();
+                if (!drained) {
+                    // socket send buffer is full, wait until it's writable
+                    setInterest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            onClose(new RedisException("Error occurred while sending commands", e));
+        }
+    }
+
+    /**
+     * Encodes as many unwritten commands as possible into the
+     * write buffer, commands are moved to the pending queue
+     * once they're encoded, so the order is kept
+     */
+    private void encodeUnwritten() {
+        Command<?> command;
+        while ((command = unwritten.peek()) != null) {
+            int length = command.length;
+            if (length > writeBuffer.remaining()) {
+                if (length > writeBuffer.capacity() && writeBuffer.position() == 0 && oversized == null) {
+                    oversized = ByteBuffer.allocate(length);
+                    command.encode(oversized);
+                    oversized.flip();
+                    pending.add(unwritten.poll());
+                }
+                return;
+            }
+            command.encode(writeBuffer);
+            pending.add(unwritten.poll());
+        }
+    }
+
+    private void setInterest(int ops) {
+        if (key != null && key.isValid() && key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    void onWritable() {
+        writeQueued();
+    }
+
+    void onReadable() {
+        try {
+            int read;
+            while ((read = channel.read(readBuffer)) > 0) {
+                decodeReplies();
+            }
+            if (read == -1) {
+                onClose(new RedisException("Connection closed by the server"));
+            }
+        } catch (IOException e) {
+            onClose(new RedisException("Error occurred while reading replies", e));
+        } catch (RedisException e) {
+            // protocol error, we can't continue reading
+            onClose(e);
+        }
+    }
+
+    private void decodeReplies() {
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            // the parser keeps the state of incomplete replies,
+            // so the whole buffer is always consumed
+            Object reply = parser.parse(readBuffer);
+            if (reply == RespParser.NEED_MORE) {
+                break;
+            }
+            Command<?> command = pending.poll();
+            if (command == null) {
+                throw new RedisException("Received a reply without a pending command");
+            }
+            command.complete(reply);
+        }
+        readBuffer.clear();
+    }
+
+    void onClose(RedisException cause) {
+        if (closeCause != null) {
+            return;
+        }
+        closeCause = cause;
+
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+
+        oversized = null;
+        writeBuffer.clear();
+        Command<?> command;
+        while ((command = pending.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+        while ((command = unwritten.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+        failOutbound(cause);
+    }
+
+    private void failOutbound(RedisException cause) {
+        Command<?> command;
+        while ((command = outbound.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Closes this connection, pending commands are
+     * completed exceptionally
+     */
+    @Override
+    public void close() {
+        RedisException cause = new RedisException("Connection closed");
+        try {
+            loop.execute(() -> onClose(cause));
+        } catch (RedisException ignored) {
+            // event loop already closed, its thread closes
+            // the connection, the state isn't touched here
+        }
+    }
+
+    private static class Command<T> {
+
+        private final byte[] command;
+        private final byte[][] args;
+        private final int length;
+        private final Function<Object, T> converter;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Command(byte[] command, byte[][] args, Function<Object, T> converter) {
+            this.command = command;
+            this.args = args;
+            this.length = RespEncoder.getCommandLength(command, args);
+            this.converter = converter;
+        }
+
+        private void encode(ByteBuffer buffer) {
+            RespEncoder.writeCommand(buffer, command, args);
+        }
+
+        private void complete(Object reply) {
+            if (reply instanceof RedisException) {
+                future.completeExceptionally((RedisException) reply);
+                return;
+            }
+            try {
+                future.complete(converter.apply(reply));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
+}
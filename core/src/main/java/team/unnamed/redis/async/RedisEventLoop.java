@@ -0,0 +1,135 @@
+package team.unnamed.redis.async;
+
+import team.unnamed.redis.RedisException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Single thread running a {@link Selector} loop for a set
+ * of {@link AsyncRedisConnection}s, every I/O operation and
+ * reply completion for a connection happens in the thread
+ * of its event loop
+ */
+public class RedisEventLoop implements Executor, Closeable {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+
+    public RedisEventLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new RedisException("Cannot open selector", e);
+        }
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Determines if the current thread is the thread
+     * of this event loop
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Executes the given {@code task} in the event loop
+     * thread, it's executed in the next loop iteration
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (closed) {
+            throw new RedisException("Event loop is closed");
+        }
+        tasks.add(task);
+        if (closed && tasks.remove(task)) {
+            // closed while we were adding it, the loop may have
+            // already drained its last tasks
+            throw new RedisException("Event loop is closed");
+        }
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Registers the given {@code channel} to this event loop
+     * selector, must be called from the event loop thread
+     */
+    SelectionKey register(SelectableChannel channel, int ops, AsyncRedisConnection connection) throws IOException {
+        return channel.register(selector, ops, connection);
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    // selector is broken, nothing we can do
+                    break;
+                }
+
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    AsyncRedisConnection connection = (AsyncRedisConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                }
+            }
+        } finally {
+            // set before draining, so tasks added from now on
+            // are rejected by execute instead of being lost
+            closed = true;
+            runTasks();
+            for (SelectionKey key : selector.keys()) {
+                ((AsyncRedisConnection) key.attachment())
+                        .onClose(new RedisException("Event loop closed"));
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Stops this event loop, all its registered connections
+     * are closed
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+}
@@ -0,0 +1,41 @@
+package team.unnamed.redis.async;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of {@link RedisEventLoop}s, connections are
+ * assigned to them in a round-robin fashion, so a handful
+ * of threads can serve many connections
+ */
+public class RedisEventLoopGroup implements Closeable {
+
+    private final RedisEventLoop[] loops;
+    private final AtomicInteger index = new AtomicInteger();
+
+    public RedisEventLoopGroup(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.loops = new RedisEventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new RedisEventLoop("redis-event-loop-" + i);
+        }
+    }
+
+    /**
+     * Returns the next event loop that should
+     * be used for a new connection
+     */
+    public RedisEventLoop next() {
+        return loops[Math.floorMod(index.getAndIncrement(), loops.length)];
+    }
+
+    @Override
+    public void close() {
+        for (RedisEventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+}
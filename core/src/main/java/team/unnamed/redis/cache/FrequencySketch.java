@@ -0,0 +1,92 @@
+package team.unnamed.redis.cache;
+
+/**
+ * Count-min sketch estimating the access frequency of keys
+ * (the TinyLFU part of W-TinyLFU), using 4-bit counters packed
+ * in longs, so it takes 8 bytes per cached entry.
+ *
+ * <p>Counters are halved once the count of increments reaches
+ * ten times the capacity, so old popularity fades away</p>
+ *
+ * <p>Not thread-safe, it's used while holding the cache lock</p>
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    // all the counters but the high bit of each one
+    private static final long HALF_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int length = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * Math.max(capacity, 8);
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /**
+     * Returns the estimated frequency of the given hash, up to 15
+     */
+    int frequency(int hash) {
+        hash = spread(hash);
+        // every depth uses a different counter of the long
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int depth = 0; depth < 4; depth++) {
+            int offset = (start + depth) << 2;
+            int count = (int) ((table[indexOf(hash, depth)] >>> offset) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the estimated frequency of the given hash
+     */
+    void increment(int hash) {
+        hash = spread(hash);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int depth = 0; depth < 4; depth++) {
+            int index = indexOf(hash, depth);
+            int offset = (start + depth) << 2;
+            long mask = 0xFL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions >>>= 1;
+    }
+
+}
@@ -0,0 +1,582 @@
+package team.unnamed.redis.cache;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.Strings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side cache of string values, kept coherent by the
+ * invalidation messages that the server sends using CLIENT
+ * TRACKING, they're received by a dedicated RESP3 connection.
+ *
+ * <p>The cache is bounded by entry count and by (estimated) size
+ * in bytes, entries are evicted using W-TinyLFU: new entries
+ * enter a small LRU window and then compete for the main
+ * (segmented LRU) space against its least recently used entry,
+ * the most frequently used one, according to a {@link FrequencySketch},
+ * is kept. So a scan of cold keys can't flush the hot ones</p>
+ *
+ * <p>Reads are lock-free: a hit is a {@link ConcurrentHashMap}
+ * lookup and the access is recorded in a lossy striped buffer,
+ * which is applied to the eviction policy later, while holding
+ * the lock, by writes or once the buffer is full</p>
+ *
+ * <p>If the invalidation connection fails, the cache is cleared
+ * and stops caching, since it can't be coherent anymore</p>
+ */
+public class NearCache implements Closeable {
+
+    // cached value for keys that don't exist
+    static final Object NIL = new Object();
+
+    // estimated size of an entry, not counting its key and value
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_STRIPES = Math.min(16,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final byte REMOVED = 3;
+
+    private static final byte[] ID = Strings.encode("ID");
+    private static final byte[] TRACKING = Strings.encode("TRACKING");
+    private static final byte[] ON = Strings.encode("ON");
+    private static final byte[] REDIRECT = Strings.encode("REDIRECT");
+    private static final byte[] BCAST = Strings.encode("BCAST");
+    private static final byte[] PREFIX = Strings.encode("PREFIX");
+    private static final String INVALIDATE = "invalidate";
+
+    private final NearCacheConfig config;
+    private final String[] prefixes;
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    // keys being read from the server, invalidations remove them,
+    // so a value that was invalidated while in flight isn't cached
+    private final ConcurrentHashMap<String, Object> loading = new ConcurrentHashMap<>();
+
+    // eviction policy, guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrder window = new AccessOrder();
+    private final AccessOrder probation = new AccessOrder();
+    private final AccessOrder protectedOrder = new AccessOrder();
+    private final long windowMaxEntries;
+    private final long windowMaxBytes;
+    private final long protectedMaxEntries;
+    private final long protectedMaxBytes;
+
+    private final AtomicReferenceArray<Node> readBuffer =
+            new AtomicReferenceArray<>(READ_BUFFER_STRIPES * READ_BUFFER_SIZE);
+    private final AtomicIntegerArray readCounts = new AtomicIntegerArray(READ_BUFFER_STRIPES);
+
+    // stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final RedisSocket socket;
+    private final long clientId;
+    private final Thread reader;
+    private volatile boolean tracking = true;
+
+    private NearCache(NearCacheConfig config, RedisSocket socket, long clientId) {
+        this.config = config;
+        this.prefixes = config.getPrefixes().toArray(new String[0]);
+        this.sketch = new FrequencySketch(config.getMaxEntries());
+
+        this.windowMaxEntries = Math.max(1, config.getMaxEntries() / 100);
+        this.windowMaxBytes = Math.max(1, config.getMaxBytes() / 100);
+        this.protectedMaxEntries = (config.getMaxEntries() - windowMaxEntries) * 4 / 5;
+        this.protectedMaxBytes = (config.getMaxBytes() - windowMaxBytes) * 4 / 5;
+
+        this.socket = socket;
+        this.clientId = clientId;
+        this.reader = new Thread(this::readInvalidations, "redis-near-cache-invalidations");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Opens the invalidation connection to the given {@code address}
+     * and creates the cache. In broadcast mode, tracking is enabled
+     * for the invalidation connection itself, in default mode, it
+     * must be enabled for the connections that read the cached keys,
+     * using {@link NearCache#enableTracking}
+     * @throws RedisException If the server doesn't support RESP3
+     * or client tracking (i.e. servers older than Redis 6)
+     */
+    public static NearCache connect(SocketAddress address, NearCacheConfig config) {
+        RedisSocket socket;
+        try {
+            // invalidations are pushed to RESP3 connections, even
+            // if they're redirected, without subscribing
+            socket = new RedisSocket(address, Resp.RESP3);
+        } catch (IOException e) {
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+
+        try {
+            socket.writeCommand(RedisCommands.CLIENT, ID);
+            socket.flush();
+            long clientId = socket.readLongReply();
+
+            if (config.getTrackingMode() == TrackingMode.BROADCAST) {
+                List<byte[]> args = new ArrayList<>();
+                args.add(TRACKING);
+                args.add(ON);
+                args.add(BCAST);
+                for (String prefix : config.getPrefixes()) {
+                    args.add(PREFIX);
+                    args.add(Strings.encode(prefix));
+                }
+                socket.writeCommand(RedisCommands.CLIENT, args.toArray(new byte[0][]));
+                socket.flush();
+                socket.readReply();
+            }
+            return new NearCache(config, socket, clientId);
+        } catch (RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Enables tracking (in default mode) for the given connection,
+     * the invalidations of the keys it reads are redirected to the
+     * invalidation connection of this cache. It must be called before
+     * the connection is used to read cached keys, i.e. as a pool
+     * connection initializer. It does nothing in broadcast mode
+     */
+    public void enableTracking(RedisSocket connection) {
+        if (config.getTrackingMode() != TrackingMode.DEFAULT) {
+            return;
+        }
+        connection.writeCommand(RedisCommands.CLIENT, TRACKING, ON, REDIRECT, Integers.toByteArray(clientId));
+        connection.flush();
+        connection.readReply();
+    }
+
+    public NearCacheConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Determines if this cache is receiving invalidations,
+     * nothing is cached when it's not
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Determines if the given {@code key} can be cached, in
+     * broadcast mode, only the keys matching the tracked
+     * prefixes are cached
+     */
+    boolean isCacheable(String key) {
+        if (prefixes.length == 0) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cached value for the given {@code key},
+     * {@link NearCache#NIL} if it's cached as non-existent
+     * or null if it isn't cached
+     */
+    Object getIfPresent(String key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    /**
+     * Marks the given {@code key} as being read from the server
+     * @return The token for {@link NearCache#completeLoad},
+     * or null if the value must not be cached
+     */
+    Object beginLoad(String key) {
+        if (!tracking) {
+            return null;
+        }
+        Object token = new Object();
+        loading.put(key, token);
+        return token;
+    }
+
+    /**
+     * Caches the value read from the server for the given {@code key},
+     * unless it was invalidated since {@link NearCache#beginLoad}
+     * @param value The value, null if the key doesn't exist
+     */
+    void completeLoad(String key, Object token, String value) {
+        long weight = ENTRY_OVERHEAD + key.length() + (value == null ? 0 : value.length());
+        lock.lock();
+        try {
+            // tracking is re-checked under the lock, the token may have
+            // been added after the invalidateAll run when tracking stopped
+            if (!loading.remove(key, token) || !tracking || weight > config.getMaxBytes()) {
+                return;
+            }
+            drainReadBuffer();
+
+            Node previous = data.remove(key);
+            if (previous != null) {
+                unlink(previous);
+            }
+            Node node = new Node(key, value == null ? NIL : value, (int) weight);
+            data.put(key, node);
+            sketch.increment(node.hash);
+            window.addLast(node);
+            node.region = WINDOW;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the cached value of the given {@code key}
+     */
+    public void invalidate(String key) {
+        lock.lock();
+        try {
+            loading.remove(key);
+            Node node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the cached values
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            loading.clear();
+            for (Node node : data.values()) {
+                node.region = REMOVED;
+            }
+            invalidations.add(data.size());
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedOrder.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordRead(Node node) {
+        int stripe = (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1);
+        int count = readCounts.getAndIncrement(stripe);
+        int slot = count & (READ_BUFFER_SIZE - 1);
+        // lossy, a pending read may be overwritten
+        readBuffer.lazySet(stripe * READ_BUFFER_SIZE + slot, node);
+        if (slot == READ_BUFFER_SIZE - 1 && lock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < readBuffer.length(); i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        switch (node.region) {
+            case WINDOW:
+                sketch.increment(node.hash);
+                window.moveToEnd(node);
+                break;
+            case PROBATION:
+                sketch.increment(node.hash);
+                probation.remove(node);
+                protectedOrder.addLast(node);
+                node.region = PROTECTED;
+                // the least recently used protected entries
+                // are demoted to make space
+                while (protectedOrder.count > protectedMaxEntries
+                        || protectedOrder.bytes > protectedMaxBytes) {
+                    Node demoted = protectedOrder.head;
+                    protectedOrder.remove(demoted);
+                    probation.addLast(demoted);
+                    demoted.region = PROBATION;
+                }
+                break;
+            case PROTECTED:
+                sketch.increment(node.hash);
+                protectedOrder.moveToEnd(node);
+                break;
+            default:
+                // removed since it was read
+                break;
+        }
+    }
+
+    private void evict() {
+        // entries overflowing the window become candidates
+        // for the main space, in probation
+        while (window.count > windowMaxEntries || window.bytes > windowMaxBytes) {
+            Node candidate = window.head;
+            window.remove(candidate);
+            probation.addLast(candidate);
+            candidate.region = PROBATION;
+        }
+
+        while (size() > config.getMaxEntries() || getWeightedSize() > config.getMaxBytes()) {
+            Node victim = probation.head;
+            Node candidate = probation.tail;
+            if (victim == null) {
+                victim = protectedOrder.head != null ? protectedOrder.head : window.head;
+                evict(victim);
+            } else if (victim == candidate) {
+                evict(victim);
+            } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                // the candidate is admitted, it's more popular
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+    }
+
+    private void unlink(Node node) {
+        switch (node.region) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedOrder.remove(node);
+                break;
+            default:
+                break;
+        }
+        node.region = REMOVED;
+    }
+
+    private void readInvalidations() {
+        try {
+            while (tracking) {
+                Object reply = socket.readReply();
+                if (!(reply instanceof Object[])) {
+                    continue;
+                }
+                Object[] frame = (Object[]) reply;
+                if (frame.length != 2 || !INVALIDATE.equals(Strings.decode((byte[]) frame[0]))) {
+                    continue;
+                }
+                if (frame[1] == null) {
+                    // the database was flushed
+                    invalidateAll();
+                } else {
+                    for (Object key : (Object[]) frame[1]) {
+                        invalidate(Strings.decode((byte[]) key));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // the connection failed or it was closed
+        } finally {
+            tracking = false;
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the count of cached entries
+     */
+    public int size() {
+        return (int) (window.count + probation.count + protectedOrder.count);
+    }
+
+    /**
+     * Returns the estimated size (in bytes) of the cached entries
+     */
+    public long getWeightedSize() {
+        return window.bytes + probation.bytes + protectedOrder.bytes;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of reads served by this cache
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long requests = hits + misses.sum();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the count of entries evicted because of the
+     * size bounds
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the count of entries removed because they
+     * were invalidated
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Closes the invalidation connection and clears the cache
+     */
+    @Override
+    public void close() {
+        tracking = false;
+        try {
+            socket.close();
+        } catch (RedisException ignored) {
+            // the connection already failed
+        }
+        try {
+            reader.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Node {
+
+        private final String key;
+        private final Object value;
+        private final int weight;
+        private final int hash;
+
+        // guarded by the lock
+        private byte region;
+        private Node prev;
+        private Node next;
+
+        private Node(String key, Object value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.hash = key.hashCode();
+        }
+
+    }
+
+    /**
+     * Doubly-linked list of nodes, from least to most
+     * recently used, guarded by the lock
+     */
+    private static final class AccessOrder {
+
+        private Node head;
+        private Node tail;
+        private long count;
+        private long bytes;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            count++;
+            bytes += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            count--;
+            bytes -= node.weight;
+        }
+
+        void moveToEnd(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            count = 0;
+            bytes = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package team.unnamed.redis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable configuration for a {@link NearCache},
+ * use {@link NearCacheConfig#builder()} to create it
+ */
+public class NearCacheConfig {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final TrackingMode trackingMode;
+    private final List<String> prefixes;
+
+    private NearCacheConfig(Builder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.maxBytes = builder.maxBytes;
+        this.trackingMode = builder.trackingMode;
+        this.prefixes = Collections.unmodifiableList(new ArrayList<>(builder.prefixes));
+    }
+
+    /**
+     * Returns the max count of cached entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the max size (in bytes) of the cached entries,
+     * an entry size is estimated from its key and value
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the mode used to track the cached keys
+     */
+    public TrackingMode getTrackingMode() {
+        return trackingMode;
+    }
+
+    /**
+     * Returns the key prefixes tracked in broadcast mode,
+     * empty to track every key
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int maxEntries = 10_000;
+        private long maxBytes = 64L * 1024 * 1024;
+        private TrackingMode trackingMode = TrackingMode.DEFAULT;
+        private List<String> prefixes = Collections.emptyList();
+
+        private Builder() {
+        }
+
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("Max entries must be positive");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("Max bytes must be positive");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Builder trackingMode(TrackingMode trackingMode) {
+            this.trackingMode = trackingMode;
+            return this;
+        }
+
+        /**
+         * Sets the key prefixes tracked in broadcast mode
+         */
+        public Builder prefixes(String... prefixes) {
+            this.prefixes = Arrays.asList(prefixes);
+            return this;
+        }
+
+        public NearCacheConfig build() {
+            if (trackingMode == null) {
+                throw new IllegalArgumentException("Tracking mode must not be null");
+            }
+            if (!prefixes.isEmpty() && trackingMode != TrackingMode.BROADCAST) {
+                throw new IllegalArgumentException("Prefixes are only supported in broadcast mode");
+            }
+            return new NearCacheConfig(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+package team.unnamed.redis.cache;
+
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link RedisClient} that serves GET commands from a {@link NearCache},
+ * misses are read using the delegate client, whose connections must
+ * have tracking enabled, see {@link NearCache#enableTracking}.
+ *
+ * <p>Keys modified using this client are invalidated locally
+ * once the command completes, so its own writes are visible
+ * immediately, modifications from other clients (or pipelines)
+ * are visible once the server invalidation is received</p>
+ *
+ * <p>Only {@link RedisClient#get(String)}, {@link RedisClient#get(byte[])}
+ * and {@link RedisClient#mget} are cached, visitor and stream reads
+ * always reach the server, and so do binary keys that aren't valid
+ * UTF-8</p>
+ */
+public class NearCachingRedisClient implements RedisClient {
+
+    private final RedisClient delegate;
+    private final NearCache cache;
+
+    public NearCachingRedisClient(RedisClient delegate, NearCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public NearCache getNearCache() {
+        return cache;
+    }
+
+    @Override
+    public String get(String key) {
+        if (!cache.isCacheable(key)) {
+            return delegate.get(key);
+        }
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached == NearCache.NIL ? null : (String) cached;
+        }
+        Object token = cache.beginLoad(key);
+        String value = delegate.get(key);
+        if (token != null) {
+            cache.completeLoad(key, token, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String get(byte[] key) {
+        String decoded = Strings.decode(key);
+        if (!Arrays.equals(key, Strings.encode(decoded))) {
+            // not valid UTF-8, the decoded string is another key
+            return delegate.get(key);
+        }
+        return get(decoded);
+    }
+
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        delegate.get(key, visitor);
+    }
+
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        return delegate.getStream(key);
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        try {
+            return delegate.set(key, value);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public String set(String key, String value) {
+        try {
+            return delegate.set(key, value);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        try {
+            return delegate.set(key, value, length);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        try {
+            return delegate.set(key, value);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        try {
+            return delegate.set(key, file, position, length);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        try {
+            return delegate.incr(key);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        try {
+            return delegate.incrBy(key, increment);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        try {
+            return delegate.decrBy(key, decrement);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        try {
+            return delegate.incrByFloat(key, increment);
+        } finally {
+            cache.invalidate(Strings.decode(key));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Cached keys are served from the near cache, only
+     * the misses are sent to the server</p>
+     */
+    @Override
+    public List<String> mget(List<String> keys) {
+        String[] values = new String[keys.size()];
+        // input position, key and load token of every miss
+        int[] misses = new int[values.length];
+        List<String> missingKeys = new ArrayList<>();
+        Object[] tokens = new Object[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            String key = keys.get(i);
+            if (cache.isCacheable(key)) {
+                Object cached = cache.getIfPresent(key);
+                if (cached != null) {
+                    values[i] = cached == NearCache.NIL ? null : (String) cached;
+                    continue;
+                }
+                tokens[missingKeys.size()] = cache.beginLoad(key);
+            }
+            misses[missingKeys.size()] = i;
+            missingKeys.add(key);
+        }
+
+        if (!missingKeys.isEmpty()) {
+            List<String> loaded = delegate.mget(missingKeys);
+            for (int i = 0; i < loaded.size(); i++) {
+                String key = missingKeys.get(i);
+                String value = loaded.get(i);
+                values[misses[i]] = value;
+                if (tokens[i] != null) {
+                    cache.completeLoad(key, tokens[i], value);
+                }
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        try {
+            return delegate.mset(entries);
+        } finally {
+            for (String key : entries.keySet()) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        try {
+            return delegate.unlink(keys);
+        } finally {
+            for (String key : keys) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public Pipeline pipelined() {
+        return delegate.pipelined();
+    }
+
+    @Override
+    public void subscribe(RedisSubscriber subscriber, String... channels) {
+        delegate.subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        return delegate.subscribe(subscriber, config, channels);
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        delegate.subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        return delegate.subscribe(subscriber, config, channels);
+    }
+
+    @Override
+    public void close() {
+        try {
+            cache.close();
+        } finally {
+            delegate.close();
+        }
+    }
+
+}
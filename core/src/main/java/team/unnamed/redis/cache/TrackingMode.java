@@ -0,0 +1,25 @@
+package team.unnamed.redis.cache;
+
+/**
+ * Determines how the server tracks the keys cached by
+ * a {@link NearCache}, see CLIENT TRACKING
+ */
+public enum TrackingMode {
+
+    /**
+     * The server remembers the keys read by every connection and
+     * only sends invalidations for them, it uses server memory
+     * but no invalidation is wasted
+     */
+    DEFAULT,
+
+    /**
+     * The server sends invalidations for every modified key that
+     * matches the configured prefixes (or for every key, if there
+     * are none), it doesn't use server memory but invalidations
+     * are sent for keys that are not cached. Only keys matching
+     * the prefixes are cached
+     */
+    BROADCAST
+
+}
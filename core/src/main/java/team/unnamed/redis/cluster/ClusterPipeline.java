@@ -0,0 +1,217 @@
+package team.unnamed.redis.cluster;
+
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisRedirectException;
+import team.unnamed.redis.RedisReplyException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisSocketPool;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Pipeline} for a {@link RedisClusterClient}, commands are
+ * kept until it's synced and then grouped by the master serving
+ * the slot of their key. The commands of every node are written
+ * to a connection of its pool and flushed, for all the nodes,
+ * before reading any reply. Redirected commands are sent again,
+ * one by one, following the redirections
+ */
+final class ClusterPipeline implements Pipeline {
+
+    private final RedisClusterClient client;
+    private final List<Command> commands = new ArrayList<>();
+
+    ClusterPipeline(RedisClusterClient client) {
+        this.client = client;
+    }
+
+    private CompletableFuture<String> queue(byte[] command, byte[] key, byte[]... args) {
+        Command queued = new Command(command, key, args);
+        commands.add(queued);
+        return queued.future;
+    }
+
+    @Override
+    public CompletableFuture<String> set(byte[] key, byte[] value) {
+        return queue(RedisCommands.SET, key, key, value);
+    }
+
+    @Override
+    public CompletableFuture<String> set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    @Override
+    public CompletableFuture<String> get(byte[] key) {
+        return queue(RedisCommands.GET, key, key);
+    }
+
+    @Override
+    public CompletableFuture<String> get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public int size() {
+        return commands.size();
+    }
+
+    @Override
+    public List<Object> sync() {
+        if (commands.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Object[] replies = new Object[commands.size()];
+        Map<InetSocketAddress, Node> nodes = new LinkedHashMap<>();
+        List<Integer> redirected = new ArrayList<>();
+        RuntimeException failure = null;
+
+        for (int i = 0; i < replies.length; i++) {
+            InetSocketAddress master;
+            try {
+                master = client.getMasterOrFail(ClusterSlots.getSlot(commands.get(i).key));
+            } catch (RuntimeException e) {
+                // unassigned slot, the other commands are still sent
+                replies[i] = commands.get(i).fail(e);
+                continue;
+            }
+            nodes.computeIfAbsent(master, Node::new).indexes.add(i);
+        }
+
+        try {
+            // write to every node before reading any reply
+            for (Node node : nodes.values()) {
+                try {
+                    node.pool = client.getPool(node.address);
+                    node.socket = node.pool.borrow();
+                    for (int index : node.indexes) {
+                        commands.get(index).write(node.socket);
+                    }
+                    node.socket.flush();
+                } catch (RuntimeException e) {
+                    node.failure = e;
+                }
+            }
+
+            for (Node node : nodes.values()) {
+                for (int index : node.indexes) {
+                    Command command = commands.get(index);
+                    if (node.failure != null) {
+                        replies[index] = command.fail(node.failure);
+                        continue;
+                    }
+                    try {
+                        replies[index] = command.complete(node.socket.readReply());
+                    } catch (RedisRedirectException e) {
+                        redirected.add(index);
+                    } catch (RedisReplyException e) {
+                        // error reply, the next replies are still read
+                        replies[index] = command.fail(e);
+                    } catch (RuntimeException e) {
+                        // the following replies of this node fail too
+                        node.failure = e;
+                        command.fail(e);
+                    }
+                }
+                if (node.failure != null && failure == null) {
+                    failure = node.failure;
+                }
+            }
+        } finally {
+            for (Node node : nodes.values()) {
+                if (node.socket == null) {
+                    continue;
+                }
+                if (node.failure == null) {
+                    node.pool.release(node.socket);
+                } else {
+                    node.pool.invalidate(node.socket);
+                }
+            }
+        }
+
+        for (int index : redirected) {
+            Command command = commands.get(index);
+            try {
+                replies[index] = client.execute(command.key, socket -> {
+                    command.write(socket);
+                    socket.flush();
+                    return command.complete(socket.readReply());
+                });
+            } catch (RedisReplyException e) {
+                replies[index] = command.fail(e);
+            } catch (RuntimeException e) {
+                command.fail(e);
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        commands.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+        return Arrays.asList(replies);
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    private static final class Command {
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final byte[] command;
+        private final byte[] key;
+        private final byte[][] args;
+
+        private Command(byte[] command, byte[] key, byte[][] args) {
+            this.command = command;
+            this.key = key;
+            this.args = args;
+        }
+
+        private void write(RedisSocket socket) {
+            socket.writeCommand(command, args);
+        }
+
+        private String complete(Object reply) {
+            String value = Strings.decode((byte[]) reply);
+            future.complete(value);
+            return value;
+        }
+
+        private RuntimeException fail(RuntimeException exception) {
+            future.completeExceptionally(exception);
+            return exception;
+        }
+
+    }
+
+    private static final class Node {
+
+        private final InetSocketAddress address;
+        private final List<Integer> indexes = new ArrayList<>();
+        private RedisSocketPool pool;
+        private RedisSocket socket;
+        private RuntimeException failure;
+
+        private Node(InetSocketAddress address) {
+            this.address = address;
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package team.unnamed.redis.cluster;
+
+import team.unnamed.redis.io.Strings;
+
+/**
+ * Utility class to compute the hash slot of keys, a key
+ * belongs to slot {@code CRC16(key) mod 16384}.
+ *
+ * <p>If the key contains a hash tag, a non-empty substring
+ * between the first '{' and the next '}', only the tag is
+ * hashed, so keys with the same tag belong to the same slot,
+ * i.e. {@code {user:1}.name} and {@code {user:1}.age}</p>
+ */
+public final class ClusterSlots {
+
+    public static final int SLOT_COUNT = 16384;
+
+    // CRC16-CCITT (XMODEM), polynomial 0x1021
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private ClusterSlots() {
+    }
+
+    public static int getSlot(String key) {
+        return getSlot(Strings.encode(key));
+    }
+
+    public static int getSlot(byte[] key) {
+        int start = 0;
+        int end = key.length;
+
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == '{') {
+                for (int j = i + 1; j < key.length; j++) {
+                    if (key[j] == '}') {
+                        // empty tags are ignored, the whole key is hashed
+                        if (j > i + 1) {
+                            start = i + 1;
+                            end = j;
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+
+        return crc16(key, start, end) & (SLOT_COUNT - 1);
+    }
+
+    static int crc16(byte[] bytes, int start, int end) {
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ bytes[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+}
@@ -0,0 +1,156 @@
+package team.unnamed.redis.cluster;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.io.Strings;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the slot to master node table of a
+ * cluster, it's replaced (never modified) when the topology
+ * changes, so routing never waits for a refresh
+ */
+final class ClusterTopology {
+
+    private final InetSocketAddress[] masters;
+    private final Set<InetSocketAddress> nodes;
+
+    private ClusterTopology(InetSocketAddress[] masters) {
+        this.masters = masters;
+        Set<InetSocketAddress> nodes = new LinkedHashSet<>();
+        for (InetSocketAddress master : masters) {
+            if (master != null) {
+                nodes.add(master);
+            }
+        }
+        this.nodes = Collections.unmodifiableSet(nodes);
+    }
+
+    /**
+     * Returns the master serving the given {@code slot}, null
+     * if it's not assigned
+     */
+    InetSocketAddress getMaster(int slot) {
+        return masters[slot];
+    }
+
+    /**
+     * Returns the masters serving at least one slot
+     */
+    Set<InetSocketAddress> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns a copy of this topology where the given {@code slot}
+     * is served by the given {@code master}, i.e. after a MOVED
+     * redirection
+     */
+    ClusterTopology withMaster(int slot, InetSocketAddress master) {
+        if (master.equals(masters[slot])) {
+            return this;
+        }
+        InetSocketAddress[] copy = masters.clone();
+        copy[slot] = master;
+        return new ClusterTopology(copy);
+    }
+
+    /**
+     * Creates the topology from a CLUSTER SLOTS reply, every entry
+     * contains a slot range followed by its master and replicas
+     * @param defaultHost The host of the queried node, used for
+     *                    nodes with an unknown endpoint
+     */
+    static ClusterTopology fromSlots(Object[] reply, String defaultHost) {
+        InetSocketAddress[] masters = new InetSocketAddress[ClusterSlots.SLOT_COUNT];
+        for (Object element : reply) {
+            Object[] range = (Object[]) element;
+            Object[] master = (Object[]) range[2];
+            InetSocketAddress address = address(
+                    Strings.decode((byte[]) master[0]),
+                    ((Long) master[1]).intValue(),
+                    defaultHost
+            );
+            fill(masters, (Long) range[0], (Long) range[1], address);
+        }
+        return new ClusterTopology(masters);
+    }
+
+    /**
+     * Creates the topology from a CLUSTER SHARDS reply (Redis 7+),
+     * every shard contains its slot ranges and its nodes
+     * @param defaultHost The host of the queried node, used for
+     *                    nodes with an unknown endpoint
+     */
+    static ClusterTopology fromShards(Object[] reply, String defaultHost) {
+        InetSocketAddress[] masters = new InetSocketAddress[ClusterSlots.SLOT_COUNT];
+        for (Object element : reply) {
+            Map<String, Object> shard = toMap(element);
+            Object[] slots = (Object[]) shard.get("slots");
+            InetSocketAddress address = null;
+
+            for (Object node : (Object[]) shard.get("nodes")) {
+                Map<String, Object> properties = toMap(node);
+                if (!"master".equals(string(properties.get("role")))) {
+                    continue;
+                }
+                String host = string(properties.get("endpoint"));
+                if (host == null || host.equals("?")) {
+                    host = string(properties.get("ip"));
+                }
+                address = address(host, ((Long) properties.get("port")).intValue(), defaultHost);
+                if ("online".equals(string(properties.get("health")))) {
+                    break;
+                }
+            }
+
+            if (address == null || slots == null) {
+                continue;
+            }
+            for (int i = 0; i + 1 < slots.length; i += 2) {
+                fill(masters, (Long) slots[i], (Long) slots[i + 1], address);
+            }
+        }
+        return new ClusterTopology(masters);
+    }
+
+    private static void fill(InetSocketAddress[] masters, long start, long end, InetSocketAddress address) {
+        if (start < 0 || end >= ClusterSlots.SLOT_COUNT || start > end) {
+            throw new RedisException("Invalid slot range: " + start + "-" + end);
+        }
+        for (int slot = (int) start; slot <= end; slot++) {
+            masters[slot] = address;
+        }
+    }
+
+    private static InetSocketAddress address(String host, int port, String defaultHost) {
+        return new InetSocketAddress(host == null || host.isEmpty() ? defaultHost : host, port);
+    }
+
+    private static String string(Object value) {
+        return value instanceof byte[] ? Strings.decode((byte[]) value) : null;
+    }
+
+    /**
+     * Converts the given RESP3 map or RESP2 flat key-value
+     * array to a map with string keys
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(Object value) {
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        Object[] array = (Object[]) value;
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < array.length; i += 2) {
+            map.put(Strings.decode((byte[]) array[i]), array[i + 1]);
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,589 @@
+package team.unnamed.redis.cluster;
+
+import team.unnamed.redis.KeyBatch;
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.PooledRedisClient;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisRedirectException;
+import team.unnamed.redis.RedisReplyException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Doubles;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.pool.RedisSocketPool;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe {@link RedisClient} for Redis Cluster, every command
+ * is sent to the master serving the hash slot of its key (see
+ * {@link ClusterSlots}) using a pool of connections per node.
+ *
+ * <p>The slot table is fetched using CLUSTER SHARDS (or CLUSTER SLOTS
+ * for servers older than Redis 7) and kept as an immutable snapshot.
+ * MOVED redirections update the moved slot and schedule a refresh in
+ * a background thread, commands are never blocked by it. ASK
+ * redirections are followed once, preceded by ASKING, without
+ * updating the table</p>
+ *
+ * <p>Multi-key commands (i.e. MGET) are split by hash slot, and the
+ * chunks of every node are sent together, to all the nodes, before
+ * reading any reply. Pipelines are grouped by node the same way
+ * (see {@link ClusterPipeline}), subscriptions use any of the
+ * masters</p>
+ */
+public class RedisClusterClient implements RedisClient {
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private final List<InetSocketAddress> seeds;
+    private final RedisPoolConfig config;
+    private final Map<InetSocketAddress, RedisSocketPool> pools = new ConcurrentHashMap<>();
+    private final AtomicReference<ClusterTopology> topology = new AtomicReference<>();
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final ExecutorService refresher;
+    // servers older than Redis 7 don't support CLUSTER SHARDS
+    private volatile boolean shardsUnsupported;
+    private volatile boolean closed;
+
+    private RedisClusterClient(Collection<InetSocketAddress> seeds, RedisPoolConfig config) {
+        if (seeds.isEmpty()) {
+            throw new IllegalArgumentException("At least one seed node is required");
+        }
+        this.seeds = new ArrayList<>(seeds);
+        this.config = config;
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-cluster-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a new client for the cluster containing the given
+     * {@code seeds} nodes, the topology is fetched from the first
+     * reachable seed, other nodes are discovered from it
+     * @throws RedisException If the topology can't be fetched
+     */
+    public static RedisClusterClient create(Collection<InetSocketAddress> seeds, RedisPoolConfig config) {
+        RedisClusterClient client = new RedisClusterClient(seeds, config);
+        try {
+            client.refreshTopology();
+        } catch (RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    /**
+     * Returns the master currently serving the given {@code slot},
+     * null if it isn't assigned
+     */
+    public InetSocketAddress getMaster(int slot) {
+        return topology.get().getMaster(slot);
+    }
+
+    /**
+     * Returns the masters of the current topology
+     */
+    public Set<InetSocketAddress> getMasters() {
+        return topology.get().getNodes();
+    }
+
+    /**
+     * Fetches the topology from the known nodes (or the seeds, if
+     * none of them answers) and replaces the current one, blocks
+     * until it's done. In-flight commands keep using the topology
+     * they started with. Pools of nodes that are no longer masters
+     * are closed
+     * @throws RedisException If no node answers
+     */
+    public void refreshTopology() {
+        refreshLock.lock();
+        try {
+            Set<InetSocketAddress> candidates = new LinkedHashSet<>();
+            ClusterTopology current = topology.get();
+            if (current != null) {
+                candidates.addAll(current.getNodes());
+            }
+            candidates.addAll(seeds);
+
+            RedisException failure = new RedisException("Couldn't fetch the cluster topology from any node");
+            for (InetSocketAddress address : candidates) {
+                ClusterTopology fetched;
+                try {
+                    fetched = fetchTopology(address);
+                } catch (IOException | RuntimeException e) {
+                    failure.addSuppressed(e);
+                    continue;
+                }
+                topology.set(fetched);
+                closeRemovedPools(fetched);
+                return;
+            }
+            throw failure;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules a topology refresh in the background, does
+     * nothing if one is already scheduled
+     */
+    private void scheduleRefresh() {
+        if (closed || !refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            refreshScheduled.set(false);
+            try {
+                refreshTopology();
+            } catch (RedisException ignored) {
+                // next redirection will try again
+            }
+        });
+    }
+
+    private ClusterTopology fetchTopology(InetSocketAddress address) throws IOException {
+        try (RedisSocket socket = new RedisSocket(address)) {
+            if (!shardsUnsupported) {
+                socket.writeCommand(RedisCommands.CLUSTER, Strings.encode("SHARDS"));
+                socket.flush();
+                try {
+                    return ClusterTopology.fromShards((Object[]) socket.readReply(), address.getHostString());
+                } catch (RedisReplyException e) {
+                    // unknown subcommand
+                    shardsUnsupported = true;
+                }
+            }
+            socket.writeCommand(RedisCommands.CLUSTER, Strings.encode("SLOTS"));
+            socket.flush();
+            return ClusterTopology.fromSlots((Object[]) socket.readReply(), address.getHostString());
+        }
+    }
+
+    private void closeRemovedPools(ClusterTopology current) {
+        Iterator<Map.Entry<InetSocketAddress, RedisSocketPool>> iterator = pools.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<InetSocketAddress, RedisSocketPool> entry = iterator.next();
+            if (!current.getNodes().contains(entry.getKey())) {
+                iterator.remove();
+                // borrowed connections are closed when released
+                entry.getValue().close();
+            }
+        }
+    }
+
+    RedisSocketPool getPool(InetSocketAddress address) {
+        RedisSocketPool pool = pools.get(address);
+        if (pool == null) {
+            if (closed) {
+                throw new RedisException("Client is closed");
+            }
+            // connecting is slow, don't do it inside computeIfAbsent
+            RedisSocketPool created = new RedisSocketPool(address, config);
+            pool = pools.putIfAbsent(address, created);
+            if (pool == null) {
+                pool = created;
+            } else {
+                created.close();
+            }
+        }
+        return pool;
+    }
+
+    InetSocketAddress getMasterOrFail(int slot) {
+        InetSocketAddress master = topology.get().getMaster(slot);
+        if (master == null) {
+            scheduleRefresh();
+            throw new RedisException("Slot " + slot + " is not served by any node");
+        }
+        return master;
+    }
+
+    /**
+     * Handles the given redirection, returns the address
+     * where the command must be sent again
+     */
+    private InetSocketAddress redirect(int slot, InetSocketAddress current, RedisRedirectException redirect, int redirects) {
+        if (redirects >= MAX_REDIRECTS) {
+            throw new RedisException("Too many redirections for slot " + slot, redirect);
+        }
+        String host = redirect.getHost().isEmpty() ? current.getHostString() : redirect.getHost();
+        InetSocketAddress target = new InetSocketAddress(host, redirect.getPort());
+        if (!redirect.isAsk()) {
+            // fix this slot now, the others are fixed by the refresh
+            topology.updateAndGet(topology -> topology.withMaster(slot, target));
+            scheduleRefresh();
+        }
+        return target;
+    }
+
+    private static void asking(RedisSocket socket) {
+        socket.writeCommand(RedisCommands.ASKING);
+        socket.flush();
+        socket.readReply();
+    }
+
+    <T> T execute(byte[] key, Function<RedisSocket, T> action) {
+        int slot = ClusterSlots.getSlot(key);
+        InetSocketAddress address = getMasterOrFail(slot);
+        boolean asking = false;
+
+        for (int redirects = 0; ; redirects++) {
+            RedisSocketPool pool = getPool(address);
+            RedisSocket socket = pool.borrow();
+            T result;
+            try {
+                if (asking) {
+                    asking(socket);
+                }
+                result = action.apply(socket);
+            } catch (RedisRedirectException e) {
+                pool.release(socket);
+                address = redirect(slot, address, e, redirects);
+                asking = e.isAsk();
+                continue;
+            } catch (RuntimeException e) {
+                handleFailure(pool, socket, e);
+                throw e;
+            }
+            pool.release(socket);
+            return result;
+        }
+    }
+
+    /**
+     * Same as {@link RedisClusterClient#execute} but for actions
+     * returning a primitive long, so the result is never boxed
+     */
+    private long executeLong(byte[] key, ToLongFunction<RedisSocket> action) {
+        int slot = ClusterSlots.getSlot(key);
+        InetSocketAddress address = getMasterOrFail(slot);
+        boolean asking = false;
+
+        for (int redirects = 0; ; redirects++) {
+            RedisSocketPool pool = getPool(address);
+            RedisSocket socket = pool.borrow();
+            long result;
+            try {
+                if (asking) {
+                    asking(socket);
+                }
+                result = action.applyAsLong(socket);
+            } catch (RedisRedirectException e) {
+                pool.release(socket);
+                address = redirect(slot, address, e, redirects);
+                asking = e.isAsk();
+                continue;
+            } catch (RuntimeException e) {
+                handleFailure(pool, socket, e);
+                throw e;
+            }
+            pool.release(socket);
+            return result;
+        }
+    }
+
+    private static void handleFailure(RedisSocketPool pool, RedisSocket socket, RuntimeException exception) {
+        if (!(exception instanceof RedisReplyException)) {
+            pool.invalidate(socket);
+        } else {
+            // error reply, the connection is still usable
+            pool.release(socket);
+        }
+    }
+
+    /**
+     * Returns a client for any of the masters, used for
+     * commands without keys
+     */
+    private RedisClient anyNode() {
+        Iterator<InetSocketAddress> nodes = topology.get().getNodes().iterator();
+        if (!nodes.hasNext()) {
+            throw new RedisException("No master is known");
+        }
+        return new PooledRedisClient(getPool(nodes.next()));
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        return execute(key, socket -> {
+            socket.writeCommand(RedisCommands.SET, key, value);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The value can't be sent again, so redirections
+     * are thrown instead of followed</p>
+     */
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        return execute(key, socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value, length);
+            socket.flush();
+            Object reply;
+            try {
+                reply = socket.readReply();
+            } catch (RedisRedirectException e) {
+                // not a redirection for execute, the stream was consumed
+                throw new RedisReplyException(e.getMessage(), e);
+            }
+            return Strings.decode((byte[]) reply);
+        });
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        return execute(key, socket -> {
+            // the value is sent again when redirected, so it's
+            // only consumed once the command succeeds
+            ByteBuffer data = value.duplicate();
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, data);
+            socket.flush();
+            String reply = Strings.decode((byte[]) socket.readReply());
+            value.position(data.position());
+            return reply;
+        });
+    }
+
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        return execute(key, socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, file, position, length);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String get(byte[] key) {
+        return execute(key, socket -> {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            return Strings.decode((byte[]) socket.readReply());
+        });
+    }
+
+    @Override
+    public String get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        execute(key, socket -> {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            socket.readReply(visitor);
+            return null;
+        });
+    }
+
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        int slot = ClusterSlots.getSlot(key);
+        InetSocketAddress address = getMasterOrFail(slot);
+        boolean asking = false;
+
+        for (int redirects = 0; ; redirects++) {
+            RedisSocketPool pool = getPool(address);
+            RedisSocket socket = pool.borrow();
+            try {
+                if (asking) {
+                    asking(socket);
+                }
+                socket.writeCommand(RedisCommands.GET, key);
+                socket.flush();
+                // the connection is held by the stream until it's closed
+                return socket.readBulkStringStream(() -> pool.release(socket));
+            } catch (RedisRedirectException e) {
+                pool.release(socket);
+                address = redirect(slot, address, e, redirects);
+                asking = e.isAsk();
+            } catch (RuntimeException e) {
+                handleFailure(pool, socket, e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        return executeLong(key, socket -> {
+            socket.writeCommand(RedisCommands.INCR, key);
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        return executeLong(key, socket -> {
+            socket.writeCommand(RedisCommands.INCRBY, key, Integers.toByteArray(increment));
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        return executeLong(key, socket -> {
+            socket.writeCommand(RedisCommands.DECRBY, key, Integers.toByteArray(decrement));
+            socket.flush();
+            return socket.readLongReply();
+        });
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        return execute(key, socket -> {
+            socket.writeCommand(RedisCommands.INCRBYFLOAT, key, Doubles.toByteArray(increment));
+            socket.flush();
+            return socket.readDoubleReply();
+        });
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        KeyBatch batch = KeyBatch.mget(keys);
+        execute(batch);
+        return batch.getValues();
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        execute(KeyBatch.mset(entries));
+        return "OK";
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        KeyBatch batch = KeyBatch.unlink(keys);
+        execute(batch);
+        return batch.getCount();
+    }
+
+    /**
+     * Executes the given {@code batch}, split by hash slot so every
+     * chunk is served by a single node, redirected chunks are sent
+     * again, one by one, following the redirections
+     */
+    private void execute(KeyBatch batch) {
+        int[] slots = new int[batch.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = ClusterSlots.getSlot(batch.getKey(i));
+        }
+        batch.split(config.getBatchSize(), slots);
+
+        SortedMap<Integer, RedisException> errors = batch.execute(
+                chunk -> getPool(getMasterOrFail(slots[batch.getFirstIndex(chunk)])),
+                config.getBatchParallelism()
+        );
+        for (Map.Entry<Integer, RedisException> error : errors.entrySet()) {
+            if (!(error.getValue() instanceof RedisRedirectException)) {
+                throw error.getValue();
+            }
+            int chunk = error.getKey();
+            execute(batch.getKey(batch.getFirstIndex(chunk)), socket -> {
+                batch.execute(socket, chunk);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Commands are kept until the pipeline is synced, then
+     * the commands of every node are sent using one of its
+     * connections, so no connection is held meanwhile</p>
+     */
+    @Override
+    public Pipeline pipelined() {
+        return new ClusterPipeline(this);
+    }
+
+    @Override
+    public void subscribe(RedisSubscriber subscriber, String... channels) {
+        // messages are propagated to every node
+        anyNode().subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        return anyNode().subscribe(subscriber, config, channels);
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        anyNode().subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        return anyNode().subscribe(subscriber, config, channels);
+    }
+
+    /**
+     * Closes the connection pools of all the nodes
+     */
+    @Override
+    public void close() {
+        closed = true;
+        refresher.shutdownNow();
+        for (RedisSocketPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+}
@@ -0,0 +1,31 @@
+package team.unnamed.redis.codec;
+
+import java.util.Arrays;
+
+/**
+ * {@link TypeCodec} for raw byte arrays
+ */
+final class ByteArrayCodec implements TypeCodec<byte[]> {
+
+    static final ByteArrayCodec INSTANCE = new ByteArrayCodec();
+
+    private ByteArrayCodec() {
+    }
+
+    @Override
+    public int getEncodedLength(byte[] value) {
+        return value.length;
+    }
+
+    @Override
+    public void encode(byte[] value, byte[] buffer, int offset) {
+        System.arraycopy(value, 0, buffer, offset, value.length);
+    }
+
+    @Override
+    public byte[] decode(byte[] buffer, int offset, int length) {
+        // the slice is only valid during the call
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+}
@@ -0,0 +1,49 @@
+package team.unnamed.redis.codec;
+
+import team.unnamed.redis.io.Integers;
+
+/**
+ * {@link TypeCodec} for longs, encoded as decimal strings
+ */
+final class LongCodec implements TypeCodec<Long> {
+
+    static final LongCodec INSTANCE = new LongCodec();
+
+    private LongCodec() {
+    }
+
+    @Override
+    public int getEncodedLength(Long value) {
+        long v = value;
+        if (v == Long.MIN_VALUE) {
+            // can't be negated
+            return 20;
+        }
+        return v < 0 ? Integers.getStringSize(-v) + 1 : Integers.getStringSize(v);
+    }
+
+    @Override
+    public void encode(Long value, byte[] buffer, int offset) {
+        long v = value;
+        if (v == Long.MIN_VALUE) {
+            byte[] chars = Integers.toByteArray(v);
+            System.arraycopy(chars, 0, buffer, offset, chars.length);
+            return;
+        }
+        if (v < 0) {
+            buffer[offset++] = '-';
+            v = -v;
+        }
+        Integers.getChars(v, buffer, offset, Integers.getStringSize(v));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws NumberFormatException If the data isn't a decimal long
+     */
+    @Override
+    public Long decode(byte[] buffer, int offset, int length) {
+        return Integers.parseLong(buffer, offset, length);
+    }
+
+}
@@ -0,0 +1,48 @@
+package team.unnamed.redis.codec;
+
+/**
+ * The key and value {@link TypeCodec}s of a
+ * {@link team.unnamed.redis.TypedRedisClient}
+ */
+public interface RedisCodec<K, V> {
+
+    TypeCodec<K> getKeyCodec();
+
+    TypeCodec<V> getValueCodec();
+
+    /**
+     * Creates a codec using the given {@code keyCodec}
+     * and {@code valueCodec}
+     */
+    static <K, V> RedisCodec<K, V> of(TypeCodec<K> keyCodec, TypeCodec<V> valueCodec) {
+        if (keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("Codecs must not be null");
+        }
+        return new RedisCodec<K, V>() {
+            @Override
+            public TypeCodec<K> getKeyCodec() {
+                return keyCodec;
+            }
+
+            @Override
+            public TypeCodec<V> getValueCodec() {
+                return valueCodec;
+            }
+        };
+    }
+
+    /**
+     * Returns the codec for UTF-8 string keys and values
+     */
+    static RedisCodec<String, String> string() {
+        return of(TypeCodec.string(), TypeCodec.string());
+    }
+
+    /**
+     * Returns the codec for raw byte array keys and values
+     */
+    static RedisCodec<byte[], byte[]> bytes() {
+        return of(TypeCodec.bytes(), TypeCodec.bytes());
+    }
+
+}
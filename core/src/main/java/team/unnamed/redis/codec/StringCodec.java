@@ -0,0 +1,75 @@
+package team.unnamed.redis.codec;
+
+import team.unnamed.redis.Resp;
+
+/**
+ * {@link TypeCodec} for UTF-8 strings, they're encoded char per
+ * char into the buffer, unpaired surrogates are encoded as '?',
+ * like {@link String#getBytes}
+ */
+final class StringCodec implements TypeCodec<String> {
+
+    static final StringCodec INSTANCE = new StringCodec();
+
+    private StringCodec() {
+    }
+
+    @Override
+    public int getEncodedLength(String value) {
+        int length = value.length();
+        int encodedLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                encodedLength++;
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // 4 bytes for the pair
+                encodedLength += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                encodedLength += 2;
+            }
+        }
+        return encodedLength;
+    }
+
+    @Override
+    public void encode(String value, byte[] buffer, int offset) {
+        int length = value.length();
+        int pos = offset;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    @Override
+    public String decode(byte[] buffer, int offset, int length) {
+        return new String(buffer, offset, length, Resp.CHARSET);
+    }
+
+}
@@ -0,0 +1,66 @@
+package team.unnamed.redis.codec;
+
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespOutputStream;
+
+/**
+ * Converts values of type {@code T} to the data of bulk strings
+ * and back, without intermediate byte arrays: the encoded length
+ * is computed first, so values are encoded straight into the
+ * connection buffer, and they're decoded from slices of it.
+ *
+ * <p>Implementations must be stateless (or thread-safe), since a
+ * codec is shared by all the connections of a client. Values that
+ * can't be decoded should be reported using unchecked exceptions
+ * other than {@link team.unnamed.redis.RedisException}, so the
+ * connection is discarded</p>
+ *
+ * @see RespOutputStream#writeBulkString(TypeCodec, Object)
+ * @see RespInputStream#readBulkString(TypeCodec)
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * Returns the count of bytes written by {@link TypeCodec#encode}
+     * for the given {@code value}
+     */
+    int getEncodedLength(T value);
+
+    /**
+     * Writes the given {@code value} into the given {@code buffer},
+     * starting at {@code offset}, exactly {@link TypeCodec#getEncodedLength}
+     * bytes must be written
+     */
+    void encode(T value, byte[] buffer, int offset);
+
+    /**
+     * Reads a value from the {@code length} bytes of the given
+     * {@code buffer} starting at {@code offset}, the buffer is
+     * only valid during the call and must not be modified
+     */
+    T decode(byte[] buffer, int offset, int length);
+
+    /**
+     * Returns the codec for UTF-8 strings
+     */
+    static TypeCodec<String> string() {
+        return StringCodec.INSTANCE;
+    }
+
+    /**
+     * Returns the codec for longs, encoded as decimal strings,
+     * like the ones used by INCR
+     */
+    static TypeCodec<Long> int64() {
+        return LongCodec.INSTANCE;
+    }
+
+    /**
+     * Returns the codec for raw byte arrays, decoded
+     * values are copies of the buffer slices
+     */
+    static TypeCodec<byte[]> bytes() {
+        return ByteArrayCodec.INSTANCE;
+    }
+
+}
@@ -0,0 +1,142 @@
+package team.unnamed.redis.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe pool of heap buffers shared by many connections, so
+ * only the active ones hold buffers. Buffers are grouped in size
+ * classes (powers of two), a buffer is borrowed using
+ * {@link BufferArena#acquire} and given back using
+ * {@link BufferArena#release}, no locks are used.
+ *
+ * <p>The total length of the kept (idle) buffers is bounded, buffers
+ * released while the arena is full are left to the garbage collector</p>
+ */
+public final class BufferArena {
+
+    /**
+     * The default max count of bytes kept by an arena
+     */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 16L << 20;
+
+    // lengths are powers of two, up to 2^30
+    private static final int SIZE_CLASS_COUNT = 31;
+
+    private static final BufferArena SHARED = new BufferArena(DEFAULT_MAX_RETAINED_BYTES);
+
+    private final long maxRetainedBytes;
+    private final Queue<byte[]>[] sizeClasses;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+
+    /**
+     * Creates an arena keeping at most {@code maxRetainedBytes}
+     * bytes of idle buffers
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferArena(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("Max retained bytes must not be negative");
+        }
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.sizeClasses = new Queue[SIZE_CLASS_COUNT];
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Returns the arena shared by all the connections
+     * that don't specify another one
+     */
+    public static BufferArena shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the length of the buffers acquired for the given
+     * {@code minLength}, the next power of two
+     */
+    public static int sizeClassLength(int minLength) {
+        if (minLength < 1 || minLength > 1 << (SIZE_CLASS_COUNT - 1)) {
+            throw new IllegalArgumentException("Invalid buffer length: " + minLength);
+        }
+        return 1 << sizeClassOf(minLength);
+    }
+
+    private static int sizeClassOf(int minLength) {
+        return 32 - Integer.numberOfLeadingZeros(minLength - 1);
+    }
+
+    /**
+     * Borrows a buffer with a length of at least {@code minLength},
+     * see {@link BufferArena#sizeClassLength}, its contents are
+     * undefined
+     */
+    public byte[] acquire(int minLength) {
+        int length = sizeClassLength(minLength);
+        byte[] buffer = sizeClasses[sizeClassOf(length)].poll();
+        if (buffer == null) {
+            allocations.increment();
+            return new byte[length];
+        }
+        retainedBytes.addAndGet(-length);
+        reuses.increment();
+        return buffer;
+    }
+
+    /**
+     * Gives back the given {@code buffer}, it must not be used
+     * after calling this method. Buffers that weren't acquired
+     * from an arena (their length isn't a power of two) are ignored
+     */
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (length == 0 || Integer.bitCount(length) != 1) {
+            return;
+        }
+        if (retainedBytes.addAndGet(length) > maxRetainedBytes) {
+            // full, the buffer is left to the garbage collector
+            retainedBytes.addAndGet(-length);
+            return;
+        }
+        sizeClasses[sizeClassOf(length)].offer(buffer);
+    }
+
+    /**
+     * Returns the total length of the idle buffers kept
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Returns the count of buffers allocated because
+     * there wasn't an idle one of the same size
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * Returns the count of buffers reused
+     */
+    public long getReuseCount() {
+        return reuses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferArena[retained=" + getRetainedBytes() + "/" + maxRetainedBytes
+                + ", allocations=" + getAllocationCount() + ", reuses=" + getReuseCount() + "]";
+    }
+
+}
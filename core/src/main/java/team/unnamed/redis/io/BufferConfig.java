@@ -0,0 +1,122 @@
+package team.unnamed.redis.io;
+
+/**
+ * Immutable buffer sizing of the {@link RespInputStream} and
+ * {@link RespOutputStream} of a connection, use
+ * {@link BufferConfig#builder()} to create it.
+ *
+ * <p>Buffers are borrowed from the {@link BufferArena} when the
+ * connection is used and given back when it's idle (i.e. returned
+ * to its pool). A buffer starts with the initial size, it's doubled
+ * (up to the max size) when the connection writes or reads more
+ * than its size at once, and halved back towards the initial size
+ * when the connection is idle and it didn't need to grow since it
+ * was idle the previous time</p>
+ */
+public class BufferConfig {
+
+    private static final BufferConfig DEFAULT = builder().build();
+
+    private final int initialSize;
+    private final int maxSize;
+    private final BufferArena arena;
+
+    private BufferConfig(Builder builder) {
+        this.initialSize = builder.initialSize;
+        this.maxSize = builder.maxSize;
+        this.arena = builder.arena;
+    }
+
+    /**
+     * Returns the default configuration, 8 KiB buffers that can
+     * grow up to 64 KiB, borrowed from the shared arena
+     */
+    public static BufferConfig defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the initial size (in bytes) of the buffers, rounded
+     * up to a power of two if they're borrowed from an arena
+     */
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * Returns the max size (in bytes) that the buffers can grow to
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the arena the buffers are borrowed from, or
+     * null if they're allocated and left to the garbage
+     * collector when the connection is idle
+     */
+    public BufferArena getArena() {
+        return arena;
+    }
+
+    byte[] allocate(int length) {
+        return arena == null ? new byte[length] : arena.acquire(length);
+    }
+
+    void free(byte[] buffer) {
+        if (arena != null) {
+            arena.release(buffer);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int initialSize = 8192;
+        private int maxSize = 64 * 1024;
+        private BufferArena arena = BufferArena.shared();
+
+        private Builder() {
+        }
+
+        public Builder initialSize(int initialSize) {
+            if (initialSize < 64) {
+                throw new IllegalArgumentException("Initial size must be at least 64 bytes");
+            }
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        public Builder maxSize(int maxSize) {
+            if (maxSize < 64 || maxSize > 1 << 30) {
+                throw new IllegalArgumentException("Max size must be between 64 bytes and 1 GiB");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets the arena the buffers are borrowed from, or null
+         * to allocate them (not recommended for pooled clients,
+         * since buffers are allocated every time a connection
+         * is borrowed after being idle)
+         */
+        public Builder arena(BufferArena arena) {
+            this.arena = arena;
+            return this;
+        }
+
+        public BufferConfig build() {
+            if (initialSize > maxSize) {
+                throw new IllegalArgumentException("Initial size (" + initialSize
+                        + ") is greater than max size (" + maxSize + ")");
+            }
+            return new BufferConfig(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package team.unnamed.redis.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Bounded {@link InputStream} (and {@link ReadableByteChannel})
+ * for the data of a bulk string, read straight from a
+ * {@link RespInputStream} buffer, so the value is never fully
+ * loaded in memory.
+ *
+ * <p>The connection can't be used until this stream is closed,
+ * closing it discards the unread data</p>
+ *
+ * @see RespInputStream#readBulkStringStream(Runnable)
+ */
+public class BulkStringInputStream extends InputStream implements ReadableByteChannel {
+
+    private final RespInputStream input;
+    private final int length;
+    private final Runnable closeAction;
+
+    private int remaining;
+    private boolean closed;
+
+    BulkStringInputStream(RespInputStream input, int length, Runnable closeAction) {
+        this.input = input;
+        this.length = length;
+        this.remaining = length;
+        this.closeAction = closeAction;
+    }
+
+    /**
+     * Returns the total length of the bulk string data
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the count of bytes that weren't read yet
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (remaining == 0) {
+            return -1;
+        }
+        remaining--;
+        return input.readByte() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+        ensureOpen();
+        if (remaining == 0) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int read = input.read(bytes, offset, Math.min(len, remaining));
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        ensureOpen();
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = input.read(destination, remaining);
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        long skipped = input.skip(Math.min(n, remaining));
+        remaining -= (int) skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return Math.min(remaining, input.buffered());
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Discards the unread data and the bulk string termination,
+     * so the connection can be used again
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            while (remaining > 0) {
+                remaining -= (int) input.skip(remaining);
+            }
+            // skip CRLF
+            input.readByte();
+            input.readByte();
+        } finally {
+            if (closeAction != null) {
+                closeAction.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package team.unnamed.redis.io;
+
+import team.unnamed.redis.Resp;
+
+import java.util.Locale;
+
+/**
+ * Utility class for working with doubles
+ * <b>internal use only!</b>
+ */
+public final class Doubles {
+
+    // exact powers of ten for doubles, see parseDouble
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+            1e20, 1e21, 1e22
+    };
+
+    // max mantissa that can be exactly represented by a double
+    private static final long MAX_EXACT_MANTISSA = (1L << 53) - 1;
+
+    private Doubles() {
+    }
+
+    /**
+     * Parses the decimal double between the given indexes of the
+     * given {@code data}, i.e. "10.5", "-3e-2", "inf" or "nan".
+     *
+     * <p>The common case (up to 15 significant digits and a small
+     * exponent) is parsed without allocating anything and with
+     * exact rounding, the rest falls back to {@link Double#parseDouble}</p>
+     *
+     * @throws NumberFormatException If the data isn't a valid double
+     */
+    public static double parseDouble(byte[] data, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+        if (pos == end) {
+            throw new NumberFormatException("Empty number");
+        }
+
+        boolean negative = false;
+        if (data[pos] == '-' || data[pos] == '+') {
+            negative = data[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean dot = false;
+        boolean any = false;
+
+        for (; pos < end; pos++) {
+            byte b = data[pos];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (mantissa == 0 && b == '0') {
+                    // leading zeros are not significant
+                    if (dot) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (++digits > 15) {
+                    return fallback(data, offset, length);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (dot) {
+                    exponent--;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if ((b == 'e' || b == 'E') && any) {
+                return parseExponent(data, offset, length, pos + 1, end, negative, mantissa, exponent);
+            } else {
+                return fallback(data, offset, length);
+            }
+        }
+
+        if (!any) {
+            return fallback(data, offset, length);
+        }
+        return compute(data, offset, length, negative, mantissa, exponent);
+    }
+
+    private static double parseExponent(
+            byte[] data, int offset, int length,
+            int pos, int end,
+            boolean negative, long mantissa, int exponent
+    ) {
+        if (pos == end) {
+            return fallback(data, offset, length);
+        }
+        boolean negativeExponent = false;
+        if (data[pos] == '-' || data[pos] == '+') {
+            negativeExponent = data[pos] == '-';
+            if (++pos == end) {
+                return fallback(data, offset, length);
+            }
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            int digit = data[pos] - '0';
+            if (digit < 0 || digit > 9 || value > 1000) {
+                return fallback(data, offset, length);
+            }
+            value = value * 10 + digit;
+        }
+        return compute(data, offset, length, negative, mantissa,
+                exponent + (negativeExponent ? -value : value));
+    }
+
+    private static double compute(
+            byte[] data, int offset, int length,
+            boolean negative, long mantissa, int exponent
+    ) {
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA
+                && exponent >= -22 && exponent <= 22) {
+            // both the mantissa and the power of ten are exact, so
+            // a single multiplication or division rounds correctly
+            value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            return fallback(data, offset, length);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double fallback(byte[] data, int offset, int length) {
+        String string = new String(data, offset, length, Resp.CHARSET);
+        switch (string.toLowerCase(Locale.ROOT)) {
+            case "inf":
+            case "+inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "nan":
+                return Double.NaN;
+            default:
+                return Double.parseDouble(string);
+        }
+    }
+
+    /**
+     * Returns the decimal representation of the given
+     * {@code value}, integral values are written without
+     * a fraction, i.e. 10 instead of 10.0
+     */
+    public static byte[] toByteArray(double value) {
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            return Integers.toByteArray((long) value);
+        }
+        if (Double.isInfinite(value)) {
+            return Strings.encode(value > 0 ? "inf" : "-inf");
+        }
+        return Strings.encode(Double.toString(value));
+    }
+
+}
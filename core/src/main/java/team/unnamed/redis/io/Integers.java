@@ -1,5 +1,7 @@
 package team.unnamed.redis.io;
 
+import java.nio.ByteBuffer;
+
 /**
  * Utility class for working with integers
  * <b>internal use only!</b>
@@ -49,6 +51,12 @@ public final class Integers {
 
     private static final int TWO_BYTES_BITS = 1 << 16;
 
+    // the only long that can't be negated
+    private static final byte[] LONG_MIN_VALUE_CHARS = {
+            '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6',
+            '8', '5', '4', '7', '7', '5', '8', '0', '8'
+    };
+
     private Integers() {
     }
 
@@ -104,4 +112,165 @@ public final class Integers {
         } while ((value = q) != 0);
     }
 
+    /**
+     * Computes the characters for the given {@code value} and
+     * writes them into the given {@code buffer} starting at the
+     * absolute index {@code off}, it doesn't modify the buffer
+     * position. Works for both heap and direct buffers.
+     *
+     * <b>Note that the given {@code value} must not be negative</b>
+     *
+     * @see Integers#getChars(int, byte[], int, int)
+     */
+    public static void getChars(int value, ByteBuffer buffer, int off, int size) {
+        int pos = off + size;
+
+        int q;
+        int r;
+        while (value >= TWO_BYTES_BITS) {
+            q = value / 100;
+            r = value - ((q << 6) + (q << 5) + (q << 2));
+            value = q;
+            buffer.put(--pos, DIGITS_ONES[r]);
+            buffer.put(--pos, DIGITS_TENS[r]);
+        }
+
+        do {
+            q = (value * 52429) >>> 19;
+            r = value - ((q << 3) + (q << 1));
+            buffer.put(--pos, DIGITS[r]);
+        } while ((value = q) != 0);
+    }
+
+    /**
+     * Computes the length for the string representation for
+     * the given long {@code value} (decimal), note that the
+     * given {@code value} <b>must not be negative</b>
+     * @see Integers#getStringSize(int)
+     */
+    public static int getStringSize(long value) {
+        // taken from Long#stringSize(long)
+        long p = 10;
+        for (int size = 1; size < 19; size++) {
+            if (value < p) {
+                return size;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    /**
+     * Computes the characters for the given long {@code value}
+     * and writes them into the given {@code buffer}, same as
+     * {@link Integers#getChars(int, byte[], int, int)}, the
+     * {@code size} must be given by {@link Integers#getStringSize(long)}
+     *
+     * <b>Note that the given {@code value} must not be negative</b>
+     */
+    public static void getChars(long value, byte[] buffer, int off, int size) {
+        // (code taken from Long#getChars)
+        int pos = off + size;
+
+        // get two digits per iteration until it fits in an int
+        long q;
+        int r;
+        while (value > Integer.MAX_VALUE) {
+            q = value / 100;
+            r = (int) (value - ((q << 6) + (q << 5) + (q << 2)));
+            value = q;
+            buffer[--pos] = DIGITS_ONES[r];
+            buffer[--pos] = DIGITS_TENS[r];
+        }
+
+        getChars((int) value, buffer, off, pos - off);
+    }
+
+    /**
+     * Computes the characters for the given long {@code value}
+     * and writes them into the given {@code buffer} starting at
+     * the absolute index {@code off}, it doesn't modify the buffer
+     * position.
+     *
+     * <b>Note that the given {@code value} must not be negative</b>
+     *
+     * @see Integers#getChars(long, byte[], int, int)
+     */
+    public static void getChars(long value, ByteBuffer buffer, int off, int size) {
+        int pos = off + size;
+
+        long q;
+        int r;
+        while (value > Integer.MAX_VALUE) {
+            q = value / 100;
+            r = (int) (value - ((q << 6) + (q << 5) + (q << 2)));
+            value = q;
+            buffer.put(--pos, DIGITS_ONES[r]);
+            buffer.put(--pos, DIGITS_TENS[r]);
+        }
+
+        getChars((int) value, buffer, off, pos - off);
+    }
+
+    /**
+     * Returns the decimal representation of the given
+     * {@code value}, negative values are supported
+     */
+    public static byte[] toByteArray(long value) {
+        if (value == Long.MIN_VALUE) {
+            return LONG_MIN_VALUE_CHARS.clone();
+        }
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        int size = getStringSize(value);
+        int off = negative ? 1 : 0;
+        byte[] chars = new byte[off + size];
+        if (negative) {
+            chars[0] = '-';
+        }
+        getChars(value, chars, off, size);
+        return chars;
+    }
+
+    /**
+     * Parses the decimal long between the given indexes of the
+     * given {@code data}, without allocating anything
+     * @throws NumberFormatException If the data isn't a valid
+     * long or it overflows
+     */
+    public static long parseLong(byte[] data, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty number");
+        }
+        int pos = offset;
+        int end = offset + length;
+        boolean negative = data[pos] == '-';
+        if (negative && ++pos == end) {
+            throw new NumberFormatException("Sign without digits");
+        }
+
+        // accumulated negatively, like Long#parseLong, so
+        // Long.MIN_VALUE can be parsed too
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = data[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Unexpected char in number: " + ((char) data[pos]));
+            }
+            if (value < multiplyMin) {
+                throw new NumberFormatException("Number overflows a long");
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw new NumberFormatException("Number overflows a long");
+            }
+            value -= digit;
+        }
+        return negative ? value : -value;
+    }
+
 }
@@ -0,0 +1,131 @@
+package team.unnamed.redis.io;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.Resp;
+
+/**
+ * Push-style handler for RESP replies, the reply parts
+ * are passed to it as they're read, without allocating
+ * intermediate objects: integers are passed as primitives
+ * and strings as slices of the connection buffer.
+ *
+ * <p>Given byte arrays are only valid during the call,
+ * they're (usually) the connection buffer, so they must
+ * be copied if they're used after the method returns and
+ * must never be modified</p>
+ *
+ * <p>Arrays are notified using {@link ReplyVisitor#onArrayStart},
+ * followed by the notification of every element</p>
+ *
+ * <p>RESP3 types are passed to their own methods, that fall back
+ * to their RESP2 equivalent by default (i.e. maps are notified as
+ * flat arrays and booleans as integers), so visitors written for
+ * RESP2 keep working. Attributes are skipped by the stream</p>
+ *
+ * @see RespInputStream#readNext(ReplyVisitor)
+ */
+public interface ReplyVisitor {
+
+    /**
+     * Called when a simple string is read, i.e. +OK\r\n
+     */
+    default void onSimpleString(byte[] buffer, int offset, int length) {
+    }
+
+    /**
+     * Called when an error is read, i.e. -ERR message\r\n,
+     * it throws a {@link RedisException} by default
+     */
+    default void onError(byte[] buffer, int offset, int length) {
+        throw RedisException.fromReply(new String(buffer, offset, length, Resp.CHARSET));
+    }
+
+    /**
+     * Called when an integer is read, i.e. :1000\r\n
+     */
+    default void onInteger(long value) {
+    }
+
+    /**
+     * Called when a bulk string is read, i.e. $5\r\nhello\r\n
+     */
+    default void onBulkString(byte[] buffer, int offset, int length) {
+    }
+
+    /**
+     * Called when a null bulk string, a null array or a
+     * RESP3 null is read, i.e. $-1\r\n, *-1\r\n or _\r\n
+     */
+    default void onNil() {
+    }
+
+    /**
+     * Called when an array is read, i.e. *2\r\n, its
+     * {@code length} elements are notified after this
+     */
+    default void onArrayStart(int length) {
+    }
+
+    /**
+     * Called when a RESP3 map is read, i.e. %2\r\n, its
+     * {@code size} key-value pairs are notified after this,
+     * it's notified as an array of {@code size * 2} elements
+     * by default
+     */
+    default void onMapStart(int size) {
+        onArrayStart(size * 2);
+    }
+
+    /**
+     * Called when a RESP3 set is read, i.e. ~3\r\n, it's
+     * notified as an array by default
+     */
+    default void onSetStart(int length) {
+        onArrayStart(length);
+    }
+
+    /**
+     * Called when a RESP3 out-of-band push frame is read, i.e.
+     * &gt;3\r\n, it's notified as an array by default, so pub/sub
+     * frames are read the same way in RESP2 and RESP3
+     */
+    default void onPushStart(int length) {
+        onArrayStart(length);
+    }
+
+    /**
+     * Called when a RESP3 double is read, i.e. ,1.5\r\n, it's
+     * notified as a bulk string by default
+     */
+    default void onDouble(double value) {
+        byte[] data = Doubles.toByteArray(value);
+        onBulkString(data, 0, data.length);
+    }
+
+    /**
+     * Called when a RESP3 boolean is read, i.e. #t\r\n, it's
+     * notified as an integer (1 or 0) by default
+     */
+    default void onBoolean(boolean value) {
+        onInteger(value ? 1 : 0);
+    }
+
+    /**
+     * Called when a RESP3 big number is read, i.e. (1234\r\n,
+     * with its decimal digits, it's notified as a bulk string
+     * by default
+     */
+    default void onBigNumber(byte[] buffer, int offset, int length) {
+        onBulkString(buffer, offset, length);
+    }
+
+    /**
+     * Called when a RESP3 verbatim string is read, i.e.
+     * =8\r\ntxt:text\r\n, with its content after the format
+     * prefix, it's notified as a bulk string by default
+     */
+    default void onVerbatimString(byte[] buffer, int offset, int length) {
+        onBulkString(buffer, offset, length);
+    }
+
+}
@@ -0,0 +1,177 @@
+package team.unnamed.redis.io;
+
+import team.unnamed.redis.Resp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for encoding data following the Redis
+ * Serialization Protocol directly into (heap or direct)
+ * {@link ByteBuffer}s, so encoded data can be written to
+ * a channel without copying it through intermediate arrays.
+ *
+ * <p>Methods write at the buffer position and advance it,
+ * they don't check the available space, callers must use
+ * the {@code get*Length} methods to check it before, or a
+ * {@link java.nio.BufferOverflowException} will be thrown</p>
+ *
+ * @author yusshu (Andre Roldan)
+ */
+public final class RespEncoder {
+
+    private RespEncoder() {
+    }
+
+    /**
+     * Computes the encoded length of a bulk string with the
+     * given data {@code length}, i.e. $[length]\r\n[data]\r\n
+     */
+    public static int getBulkStringLength(int length) {
+        return 1 + Integers.getStringSize(length) + 2 + length + 2;
+    }
+
+    /**
+     * Computes the encoded length for the given {@code command}
+     * and {@code args}, as written by {@link RespEncoder#writeCommand}
+     */
+    public static int getCommandLength(byte[] command, byte[]... args) {
+        int length = 1 + Integers.getStringSize(args.length + 1) + 2 + command.length;
+        for (byte[] arg : args) {
+            length += getBulkStringLength(arg.length);
+        }
+        return length;
+    }
+
+    private static void writeIntAsString(ByteBuffer buffer, int value) {
+        int size = Integers.getStringSize(value);
+        int position = buffer.position();
+        if (buffer.hasArray()) {
+            Integers.getChars(value, buffer.array(), buffer.arrayOffset() + position, size);
+        } else {
+            Integers.getChars(value, buffer, position, size);
+        }
+        buffer.position(position + size);
+    }
+
+    private static void writeLongAsString(ByteBuffer buffer, long value) {
+        int size = Integers.getStringSize(value);
+        int position = buffer.position();
+        if (buffer.hasArray()) {
+            Integers.getChars(value, buffer.array(), buffer.arrayOffset() + position, size);
+        } else {
+            Integers.getChars(value, buffer, position, size);
+        }
+        buffer.position(position + size);
+    }
+
+    public static void writeTermination(ByteBuffer buffer) {
+        buffer.put(Resp.CARRIAGE_RETURN);
+        buffer.put(Resp.LINE_FEED);
+    }
+
+    /**
+     * Writes the given integer {@code value} following the
+     * RESP specification, i.e. :10000\r\n
+     * @see RespOutputStream#writeInt
+     */
+    public static void writeInt(ByteBuffer buffer, int value) {
+        writeLong(buffer, value);
+    }
+
+    /**
+     * Writes the given 64-bit integer {@code value} following
+     * the RESP specification, i.e. :10000000000\r\n
+     * @see RespOutputStream#writeLong
+     */
+    public static void writeLong(ByteBuffer buffer, long value) {
+        buffer.put(Resp.INTEGER_BYTE);
+        if (value == Long.MIN_VALUE) {
+            buffer.put(Integers.toByteArray(value));
+        } else {
+            if (value < 0) {
+                buffer.put(Resp.SCRIPT_BYTE);
+                value = -value;
+            }
+            writeLongAsString(buffer, value);
+        }
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the given simple string {@code value}, it must not
+     * contain CR or LF, i.e. +OK\r\n
+     * @see RespOutputStream#writeSimpleString
+     */
+    public static void writeSimpleString(ByteBuffer buffer, byte[] value) {
+        buffer.put(Resp.SIMPLE_STRING_BYTE);
+        buffer.put(value);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the header of an array with the given {@code length},
+     * i.e. *3\r\n, the elements must be written after it
+     */
+    public static void writeArrayHeader(ByteBuffer buffer, int length) {
+        buffer.put(Resp.ARRAY_BYTE);
+        writeIntAsString(buffer, length);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the header of a bulk string with the given {@code length},
+     * i.e. $11\r\n, the data and a CRLF must be written after it
+     */
+    public static void writeBulkStringHeader(ByteBuffer buffer, int length) {
+        buffer.put(Resp.BULK_STRING_BYTE);
+        writeIntAsString(buffer, length);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the given {@code value} as a bulk string,
+     * i.e. $11\r\nHello World\r\n
+     * @see RespOutputStream#writeBulkString
+     */
+    public static void writeBulkString(ByteBuffer buffer, byte[] value) {
+        writeBulkStringHeader(buffer, value.length);
+        buffer.put(value);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the remaining bytes of the given {@code value} as
+     * a bulk string, the {@code value} position is moved to its
+     * limit
+     */
+    public static void writeBulkString(ByteBuffer buffer, ByteBuffer value) {
+        writeBulkStringHeader(buffer, value.remaining());
+        buffer.put(value);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes a null bulk string, i.e. $-1\r\n
+     */
+    public static void writeNullBulkString(ByteBuffer buffer) {
+        buffer.put(Resp.BULK_STRING_BYTE);
+        buffer.put(Resp.SCRIPT_BYTE);
+        buffer.put(Resp.ASCII_ONE_BYTE);
+        writeTermination(buffer);
+    }
+
+    /**
+     * Writes the given {@code command} and {@code args} as an
+     * array of bulk strings, {@code command} must be already
+     * encoded as a bulk string (see {@link team.unnamed.redis.RedisCommands})
+     * @see RespOutputStream#writeCommand
+     */
+    public static void writeCommand(ByteBuffer buffer, byte[] command, byte[]... args) {
+        writeArrayHeader(buffer, args.length + 1);
+        buffer.put(command);
+        for (byte[] arg : args) {
+            writeBulkString(buffer, arg);
+        }
+    }
+
+}
@@ -1,58 +1,383 @@
 package team.unnamed.redis.io;
 
 import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisReplyException;
 import team.unnamed.redis.Resp;
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.jfr.SocketReadEvent;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Abstraction giving access to methods for
  * reading data following the Redis Serialization
- * Protocol
+ * Protocol, it's an adapter of {@link RespParser}
+ * for {@link InputStream}s
  * @author yusshu (Andre Roldan)
  */
 public class RespInputStream extends FilterInputStream {
 
-    private final byte[] buffer;
+    // scratch arrays bigger than this are not kept
+    private static final int MAX_RETAINED_SCRATCH_LENGTH = 1 << 20;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // reads a reply ignoring its content, even nested errors
+    private static final ReplyVisitor SKIP = new ReplyVisitor() {
+        @Override
+        public void onError(byte[] buffer, int offset, int length) {
+        }
+    };
+
+    private byte[] buffer;
+    // view of the buffer, for RespParser
+    private ByteBuffer view;
+    private final RespParser parser = new RespParser();
     private int cursor;
     private int limit;
 
+    // reused for lines and bulk strings that don't
+    // fit in the buffer, see readNext(ReplyVisitor)
+    private byte[] scratch = new byte[64];
+    // the array containing the last bulk string data,
+    // the buffer or a scratch array, see readBulkData
+    private byte[] data;
+
+    // receives the RESP3 push frames, may be null
+    private Consumer<Object[]> pushHandler;
+
+    // receives the count of bytes of every read, may be null
+    private IntConsumer readListener;
+    // total count of bytes read from the underlying stream
+    private long totalRead;
+
+    // null if the buffer has a fixed size
+    private final BufferConfig bufferConfig;
+    private final int maxBufferSize;
+    // length of the next buffer, or of the current one
+    private int targetSize;
+    // whether the buffer grew since it was released
+    private boolean grown;
+
+    /**
+     * Creates an input stream with a fixed-size buffer
+     */
     public RespInputStream(InputStream in, int bufferLength) {
         super(in);
         this.buffer = new byte[bufferLength];
+        this.view = ByteBuffer.wrap(buffer);
+        this.bufferConfig = null;
+        this.maxBufferSize = bufferLength;
+        this.targetSize = bufferLength;
+    }
+
+    /**
+     * Creates an input stream with an adaptive buffer, borrowed
+     * on the first read, see {@link RespInputStream#releaseBuffer}
+     */
+    public RespInputStream(InputStream in, BufferConfig bufferConfig) {
+        super(in);
+        this.buffer = EMPTY;
+        this.view = ByteBuffer.wrap(buffer);
+        this.bufferConfig = bufferConfig;
+        this.maxBufferSize = bufferConfig.getMaxSize();
+        this.targetSize = bufferConfig.getInitialSize();
+    }
+
+    /**
+     * Reads from the underlying stream, the time blocked
+     * is recorded by a {@link SocketReadEvent}
+     * @throws EOFException If the stream ended
+     */
+    private int readFromStream(byte[] bytes, int offset, int length) throws IOException {
+        SocketReadEvent event = new SocketReadEvent();
+        event.begin();
+        int read = in.read(bytes, offset, length);
+        if (read == -1) {
+            throw new EOFException();
+        }
+        if (event.shouldCommit()) {
+            event.bytesRead = read;
+            event.commit();
+        }
+        totalRead += read;
+        if (readListener != null) {
+            readListener.accept(read);
+        }
+        return read;
     }
 
     private void fill() throws IOException {
         if (cursor >= limit) {
-            limit = in.read(buffer);
+            // the buffer is consumed, so it's
+            // empty if the read fails
             cursor = 0;
-            if (limit == -1) {
-                throw new EOFException();
+            limit = 0;
+            if (buffer.length < targetSize) {
+                // released or grown
+                resize(targetSize);
+            }
+            limit = readFromStream(buffer, 0, buffer.length);
+            if (limit == buffer.length && targetSize < maxBufferSize) {
+                // more data is probably waiting, so the
+                // next refill reads more at once
+                targetSize = Math.min(buffer.length << 1, maxBufferSize);
+                grown = true;
             }
         }
     }
 
+    /**
+     * Replaces the buffer by one of (at least) the given
+     * {@code length}, moving the buffered bytes to its start
+     */
+    private void resize(int length) {
+        byte[] resized = bufferConfig.allocate(length);
+        int available = limit - cursor;
+        System.arraycopy(buffer, cursor, resized, 0, available);
+        bufferConfig.free(buffer);
+        buffer = resized;
+        view = ByteBuffer.wrap(resized);
+        cursor = 0;
+        limit = available;
+    }
+
+    /**
+     * Gives back the buffer to the arena, if nothing is buffered,
+     * should be called when the connection becomes idle. Another
+     * buffer is borrowed by the next read, smaller if this one
+     * didn't need to grow since the previous release
+     * @return True if the buffer was released
+     */
+    public boolean releaseBuffer() {
+        if (bufferConfig == null || buffer.length == 0 || cursor < limit) {
+            return false;
+        }
+        if (!grown) {
+            targetSize = Math.max(targetSize >> 1, bufferConfig.getInitialSize());
+        }
+        grown = false;
+        bufferConfig.free(buffer);
+        buffer = EMPTY;
+        view = ByteBuffer.wrap(buffer);
+        cursor = 0;
+        limit = 0;
+        return true;
+    }
+
+    /**
+     * Returns the length of the buffer, zero if it's released
+     */
+    public int getBufferLength() {
+        return buffer.length;
+    }
+
+    /**
+     * Ensures that at least {@code length} bytes are buffered
+     * after the cursor, moving the buffered bytes to the start
+     * of the buffer if needed. The given {@code length} must not
+     * be greater than the buffer length
+     */
+    private void require(int length) throws IOException {
+        int available = limit - cursor;
+        if (available >= length) {
+            return;
+        }
+        if (cursor > 0) {
+            System.arraycopy(buffer, cursor, buffer, 0, available);
+            cursor = 0;
+            limit = available;
+        }
+        while (limit < length) {
+            limit += readFromStream(buffer, limit, buffer.length - limit);
+        }
+    }
+
+    private byte[] scratch(int length) {
+        if (length > scratch.length) {
+            byte[] array = new byte[Math.max(length, scratch.length << 1)];
+            if (length <= MAX_RETAINED_SCRATCH_LENGTH) {
+                scratch = array;
+            }
+            return array;
+        }
+        return scratch;
+    }
+
     public byte readByte() throws IOException {
         fill();
         return buffer[cursor++];
     }
 
+    /**
+     * Sets the handler for RESP3 out-of-band push frames. When
+     * set, push frames are passed to it (from the reading thread)
+     * as soon as they're read and never returned as replies, so
+     * they can be interleaved with command replies. When not set,
+     * they're returned as arrays, like RESP2 pub/sub frames
+     */
+    public void setPushHandler(Consumer<Object[]> pushHandler) {
+        this.pushHandler = pushHandler;
+    }
+
+    /**
+     * Returns the count of bytes consumed from this stream, i.e.
+     * the difference between two positions is the size of the
+     * replies read between them
+     */
+    public long getPosition() {
+        return totalRead - (limit - cursor);
+    }
+
+    /**
+     * Sets the listener called with the count of bytes read by
+     * every read from the underlying stream (i.e. every buffer
+     * refill), or null to remove it
+     */
+    public void setReadListener(IntConsumer readListener) {
+        this.readListener = readListener;
+    }
+
+    /**
+     * Reads the type byte of the next reply, skipping attributes
+     * and handling push frames, if there is a push handler
+     */
+    private byte readReplyByte() throws IOException {
+        while (true) {
+            byte code = readByte();
+            if (code == Resp.ATTRIBUTE_BYTE) {
+                // attributes are key-value pairs describing the reply
+                int pairs = readLength(Resp.MAP_BYTE);
+                for (long i = 0; i < pairs * 2L; i++) {
+                    readNext();
+                }
+            } else if (code == Resp.PUSH_BYTE && pushHandler != null) {
+                int length = readLength(Resp.PUSH_BYTE);
+                Object[] frame = new Object[Math.max(length, 0)];
+                for (int i = 0; i < frame.length; i++) {
+                    frame[i] = readNext();
+                }
+                pushHandler.accept(frame);
+            } else {
+                return code;
+            }
+        }
+    }
+
+    private RedisException readError(byte code) throws IOException {
+        byte[] message = code == Resp.BLOB_ERROR_BYTE ? readBulkString() : readSimpleString();
+        return RedisException.fromReply(Strings.decode(message));
+    }
+
+    /**
+     * Reads the next complete reply, refilling the buffer as
+     * many times as needed, a reply can be bigger than the
+     * buffer and split at any point
+     * @throws RedisException If an error reply is read
+     * @throws IOException If read fails
+     */
     public Object readNext() throws IOException {
-        byte code = readByte();
+        Object value;
+        while (true) {
+            do {
+                fill();
+                view.limit(limit).position(cursor);
+                try {
+                    value = parser.parse(view);
+                } catch (RedisException e) {
+                    // protocol error, discard the partial reply
+                    parser.reset();
+                    throw e;
+                } finally {
+                    cursor = view.position();
+                }
+            } while (value == RespParser.NEED_MORE);
+
+            if (pushHandler == null || !parser.wasPush()) {
+                break;
+            }
+            pushHandler.accept((Object[]) value);
+        }
+
+        if (value instanceof RedisException) {
+            throw (RedisException) value;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next complete reply and pushes it to the given
+     * {@code visitor}, without allocating intermediate objects.
+     * Strings are passed as slices of the internal buffer (or a
+     * reused scratch array), so they're only valid during the
+     * visitor call. The visitor must not read from this stream.
+     *
+     * <p>If the visitor throws a {@link RedisReplyException} for
+     * an element (i.e. the default {@link ReplyVisitor#onError}),
+     * the rest of the aggregate is read before rethrowing it</p>
+     * @throws IOException If read fails
+     */
+    public void readNext(ReplyVisitor visitor) throws IOException {
+        byte code = readReplyByte();
         switch (code) {
             case Resp.SIMPLE_STRING_BYTE:
-                return readSimpleString();
+            case Resp.ERROR_BYTE:
+            case Resp.NULL_BYTE:
+            case Resp.DOUBLE_BYTE:
+            case Resp.BOOLEAN_BYTE:
+            case Resp.BIG_NUMBER_BYTE:
+                readLine(visitor, code);
+                break;
+            case Resp.INTEGER_BYTE:
+                visitor.onInteger(readLong());
+                break;
             case Resp.BULK_STRING_BYTE:
-                return readBulkString();
+            case Resp.BLOB_ERROR_BYTE:
+            case Resp.VERBATIM_STRING_BYTE:
+                readBulkString(visitor, code);
+                break;
             case Resp.ARRAY_BYTE:
-                return readArray();
-            case Resp.INTEGER_BYTE:
-                return readInt();
-            case Resp.ERROR_BYTE:
-                throw new RedisException(Strings.decode(readSimpleString()));
+            case Resp.SET_BYTE:
+            case Resp.PUSH_BYTE:
+            case Resp.MAP_BYTE: {
+                int length = readLength(code);
+                if (length < 0) {
+                    visitor.onNil();
+                    break;
+                }
+                long elements = length;
+                if (code == Resp.ARRAY_BYTE) {
+                    visitor.onArrayStart(length);
+                } else if (code == Resp.SET_BYTE) {
+                    visitor.onSetStart(length);
+                } else if (code == Resp.PUSH_BYTE) {
+                    visitor.onPushStart(length);
+                } else {
+                    visitor.onMapStart(length);
+                    elements *= 2;
+                }
+                for (long i = 0; i < elements; i++) {
+                    try {
+                        readNext(visitor);
+                    } catch (RedisReplyException e) {
+                        // an error element, the rest of the aggregate is
+                        // skipped so the stream is left after this reply
+                        for (i++; i < elements; i++) {
+                            readNext(SKIP);
+                        }
+                        throw e;
+                    }
+                }
+                break;
+            }
             default: {
                 throw new RedisException("Unknown response byte: "
                         + ((char) code));
@@ -60,6 +385,350 @@ public class RespInputStream extends FilterInputStream {
         }
     }
 
+    private void readLine(ReplyVisitor visitor, byte code) throws IOException {
+        fill();
+
+        byte[] data = buffer;
+        int offset = cursor;
+        int length = -1;
+
+        // fast path, the whole line is buffered
+        for (int pos = cursor; pos < limit - 1; pos++) {
+            if (buffer[pos] == Resp.CARRIAGE_RETURN
+                    && buffer[pos + 1] == Resp.LINE_FEED) {
+                length = pos - cursor;
+                cursor = pos + 2;
+                break;
+            }
+        }
+
+        if (length == -1) {
+            // the line continues after the buffer limit
+            data = scratch(64);
+            offset = 0;
+            length = 0;
+            while (true) {
+                byte b = readByte();
+                if (b == Resp.CARRIAGE_RETURN) {
+                    if (readByte() != Resp.LINE_FEED) {
+                        throw new RedisException("Unexpected char");
+                    }
+                    break;
+                }
+                if (length == data.length) {
+                    byte[] grown = scratch(length + 1);
+                    System.arraycopy(data, 0, grown, 0, length);
+                    data = grown;
+                }
+                data[length++] = b;
+            }
+        }
+
+        switch (code) {
+            case Resp.ERROR_BYTE:
+                visitor.onError(data, offset, length);
+                break;
+            case Resp.NULL_BYTE:
+                if (length != 0) {
+                    throw new RedisException("Unexpected data in null");
+                }
+                visitor.onNil();
+                break;
+            case Resp.BOOLEAN_BYTE:
+                if (length != 1 || (data[offset] != 't' && data[offset] != 'f')) {
+                    throw new RedisException("Unexpected boolean: "
+                            + new String(data, offset, length, Resp.CHARSET));
+                }
+                visitor.onBoolean(data[offset] == 't');
+                break;
+            case Resp.DOUBLE_BYTE:
+                visitor.onDouble(parseDouble(data, offset, length));
+                break;
+            case Resp.BIG_NUMBER_BYTE:
+                visitor.onBigNumber(data, offset, length);
+                break;
+            default:
+                visitor.onSimpleString(data, offset, length);
+                break;
+        }
+    }
+
+    private static double parseDouble(byte[] data, int offset, int length) {
+        try {
+            return Doubles.parseDouble(data, offset, length);
+        } catch (NumberFormatException e) {
+            throw new RedisException("Reply is not a number", e);
+        }
+    }
+
+    private static void visitBulkString(ReplyVisitor visitor, byte code, byte[] data, int offset, int length) {
+        switch (code) {
+            case Resp.BLOB_ERROR_BYTE:
+                visitor.onError(data, offset, length);
+                break;
+            case Resp.VERBATIM_STRING_BYTE:
+                if (length < Resp.VERBATIM_FORMAT_LENGTH) {
+                    throw new RedisException("Verbatim string without format");
+                }
+                visitor.onVerbatimString(data, offset + Resp.VERBATIM_FORMAT_LENGTH,
+                        length - Resp.VERBATIM_FORMAT_LENGTH);
+                break;
+            default:
+                visitor.onBulkString(data, offset, length);
+                break;
+        }
+    }
+
+    private void readBulkString(ReplyVisitor visitor, byte code) throws IOException {
+        int length = readLength(code);
+
+        // null bulk string
+        if (length < 0) {
+            visitor.onNil();
+            return;
+        }
+
+        int offset = readBulkData(length);
+        byte[] data = this.data;
+        this.data = null;
+        visitBulkString(visitor, code, data, offset, length);
+    }
+
+    /**
+     * Reads the {@code length} bytes of data of a bulk string and
+     * its termination, the data is left in the buffer (or a scratch
+     * array, if it doesn't fit) that is set to the data field
+     * @return The offset of the data in the data field
+     */
+    private int readBulkData(int length) throws IOException {
+        if (length + 2 > buffer.length && length + 2 <= maxBufferSize) {
+            // grow instead of copying it through the scratch array
+            resize(length + 2);
+            targetSize = buffer.length;
+            grown = true;
+        }
+        if (length + 2 <= buffer.length) {
+            // fits in the buffer, use a slice of it
+            require(length + 2);
+            int offset = cursor;
+            cursor += length + 2;
+            data = buffer;
+            return offset;
+        } else {
+            byte[] array = scratch(length);
+            int offset = 0;
+            while (offset < length) {
+                offset += read(array, offset, length - offset);
+            }
+            readByte();
+            readByte();
+            data = array;
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be a bulk string (or a
+     * simple string), and decodes it using the given {@code codec}
+     * straight from the buffer, without copying it to an array
+     * @return The decoded value, or null for nil replies
+     * @throws RedisException If an error reply is read or the
+     * reply isn't a string
+     * @throws IOException If read fails
+     */
+    public <T> T readBulkString(TypeCodec<T> codec) throws IOException {
+        byte code = readReplyByte();
+        switch (code) {
+            case Resp.BULK_STRING_BYTE: {
+                int length = readLength(code);
+                if (length < 0) {
+                    return null;
+                }
+                int offset = readBulkData(length);
+                byte[] data = this.data;
+                this.data = null;
+                return codec.decode(data, offset, length);
+            }
+            case Resp.SIMPLE_STRING_BYTE: {
+                byte[] line = readSimpleString();
+                return codec.decode(line, 0, line.length);
+            }
+            case Resp.NULL_BYTE:
+                readNullTermination();
+                return null;
+            case Resp.ERROR_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+                throw readError(code);
+            default:
+                throw new RedisException("Unexpected response byte: "
+                        + ((char) code) + ", expected a bulk string");
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be an array (or a RESP3 set)
+     * of bulk strings, decoding its elements using the given
+     * {@code codec}, see {@link RespInputStream#readBulkString(TypeCodec)}
+     * @param values The collection the elements are added to, nil
+     *               elements are added as null
+     * @return The array length, or -1 for nil arrays
+     * @throws RedisReplyException If an error reply (or error
+     * element) is read, after the whole reply was read
+     * @throws RedisException If the reply isn't an array
+     * @throws IOException If read fails
+     */
+    public <T> int readArrayReply(TypeCodec<T> codec, Collection<? super T> values) throws IOException {
+        byte code = readReplyByte();
+        switch (code) {
+            case Resp.ARRAY_BYTE:
+            case Resp.SET_BYTE: {
+                int length = readLength(code);
+                for (int i = 0; i < length; i++) {
+                    try {
+                        values.add(readBulkString(codec));
+                    } catch (RedisReplyException e) {
+                        // an error element, the rest of the array is
+                        // skipped so the stream is left after this reply
+                        for (i++; i < length; i++) {
+                            readNext(SKIP);
+                        }
+                        throw e;
+                    }
+                }
+                return length;
+            }
+            case Resp.NULL_BYTE:
+                readNullTermination();
+                return -1;
+            case Resp.ERROR_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+                throw readError(code);
+            default:
+                throw new RedisException("Unexpected response byte: "
+                        + ((char) code) + ", expected an array");
+        }
+    }
+
+    private void readNullTermination() throws IOException {
+        if (readByte() != Resp.CARRIAGE_RETURN || readByte() != Resp.LINE_FEED) {
+            throw new RedisException("Unexpected data in null");
+        }
+    }
+
+    /**
+     * Reads a CRLF-terminated 64-bit decimal integer without
+     * boxing it, i.e. the data of an integer reply or a length
+     * prefix, after its type byte
+     * @throws RedisException If the number is malformed or
+     * it overflows a long
+     * @throws IOException If read fails
+     */
+    public long readLong() throws IOException {
+        fill();
+
+        boolean negative = buffer[cursor] == '-';
+        if (negative) {
+            ++cursor;
+        }
+
+        // accumulated negatively, like Long#parseLong, so
+        // Long.MIN_VALUE can be read too
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long value = 0;
+        while (true) {
+            fill();
+            int b = buffer[cursor++];
+            if (b == Resp.CARRIAGE_RETURN) {
+                fill();
+                if (buffer[cursor++] != Resp.LINE_FEED) {
+                    throw new RedisException("Unexpected char");
+                }
+                break;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                throw new RedisException("Unexpected char in number: " + ((char) b));
+            }
+            if (value < multiplyMin) {
+                throw new RedisException("Number overflows a 64-bit integer");
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw new RedisException("Number overflows a 64-bit integer");
+            }
+            value -= digit;
+        }
+
+        return (negative ? value : -value);
+    }
+
+    /**
+     * Reads the next reply, that must be an integer reply, and
+     * returns it without boxing it
+     * @throws RedisException If an error reply is read or the
+     * reply isn't an integer
+     * @throws IOException If read fails
+     */
+    public long readLongReply() throws IOException {
+        byte code = readReplyByte();
+        switch (code) {
+            case Resp.INTEGER_BYTE:
+                return readLong();
+            case Resp.ERROR_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+                throw readError(code);
+            default:
+                throw new RedisException("Unexpected response byte: "
+                        + ((char) code) + ", expected an integer");
+        }
+    }
+
+    /**
+     * Reads the next reply, that must be a bulk string containing
+     * a decimal number (like INCRBYFLOAT replies) or a RESP3 double,
+     * and parses it straight from the buffer, without decoding it
+     * to a string
+     * @throws RedisException If an error reply is read or the
+     * reply isn't a number
+     * @throws IOException If read fails
+     */
+    public double readDoubleReply() throws IOException {
+        byte code = readReplyByte();
+        switch (code) {
+            case Resp.DOUBLE_BYTE: {
+                fill();
+                // fast path, the whole line is buffered
+                for (int pos = cursor; pos < limit - 1; pos++) {
+                    if (buffer[pos] == Resp.CARRIAGE_RETURN
+                            && buffer[pos + 1] == Resp.LINE_FEED) {
+                        int offset = cursor;
+                        cursor = pos + 2;
+                        return parseDouble(buffer, offset, pos - offset);
+                    }
+                }
+                byte[] line = readSimpleString();
+                return parseDouble(line, 0, line.length);
+            }
+            case Resp.BULK_STRING_BYTE: {
+                int len = readLength(code);
+                if (len < 0 || len + 2 > buffer.length) {
+                    throw new RedisException("Unexpected bulk string length for a number: " + len);
+                }
+                require(len + 2);
+                int offset = cursor;
+                cursor += len + 2;
+                return parseDouble(buffer, offset, len);
+            }
+            case Resp.ERROR_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+                throw readError(code);
+            default:
+                throw new RedisException("Unexpected response byte: "
+                        + ((char) code) + ", expected a bulk string");
+        }
+    }
+
     @Override
     public int read() throws IOException {
         return readByte();
@@ -67,6 +736,12 @@ public class RespInputStream extends FilterInputStream {
 
     @Override
     public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (cursor >= limit && length >= Math.max(buffer.length, targetSize)) {
+            // nothing buffered and a big read, read directly into
+            // the given array, so the data isn't copied twice
+            return readFromStream(bytes, offset, length);
+        }
+
         fill(); // fill buffer
 
         // how many bytes will be read
@@ -82,8 +757,78 @@ public class RespInputStream extends FilterInputStream {
         return len;
     }
 
+    /**
+     * Reads at most {@code max} bytes into the given {@code destination}
+     * buffer, blocking until at least one byte is available
+     * @return The count of read bytes
+     */
+    public int read(ByteBuffer destination, int max) throws IOException {
+        fill();
+        int len = Math.min(Math.min(limit - cursor, max), destination.remaining());
+        destination.put(buffer, cursor, len);
+        cursor += len;
+        return len;
+    }
+
+    /**
+     * Skips at most {@code n} bytes, blocking until at least
+     * one byte is available
+     * @return The count of skipped bytes
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        fill();
+        int len = (int) Math.min(limit - cursor, n);
+        cursor += len;
+        return len;
+    }
+
+    /**
+     * Returns the count of buffered bytes that can be
+     * read without blocking
+     */
+    public int buffered() {
+        return Math.max(limit - cursor, 0);
+    }
+
+    /**
+     * Reads the header of a bulk string and returns a stream
+     * for its data, read straight from this stream buffer, the
+     * data is never fully loaded in memory. This stream must not
+     * be used until the returned stream is closed
+     * @param closeAction Action executed after the returned
+     *                    stream is closed, may be null
+     * @return The bulk string stream, or null for nil bulk strings
+     * @throws RedisException If an error reply is read
+     * @throws IOException If read fails
+     */
+    public BulkStringInputStream readBulkStringStream(Runnable closeAction) throws IOException {
+        byte code = readReplyByte();
+        switch (code) {
+            case Resp.BULK_STRING_BYTE: {
+                int length = readLength(code);
+                if (length < 0) {
+                    if (closeAction != null) {
+                        closeAction.run();
+                    }
+                    return null;
+                }
+                return new BulkStringInputStream(this, length, closeAction);
+            }
+            case Resp.ERROR_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+                throw readError(code);
+            default:
+                throw new RedisException("Unexpected response byte: "
+                        + ((char) code) + ", expected a bulk string");
+        }
+    }
+
     public Object[] readArray() throws IOException {
-        int length = readInt();
+        int length = readLength(Resp.ARRAY_BYTE);
 
         // null array
         if (length == -1) {
@@ -97,53 +842,72 @@ public class RespInputStream extends FilterInputStream {
         return value;
     }
 
+    /**
+     * Reads a CRLF-terminated decimal integer that must fit in
+     * an int, i.e. a length prefix
+     * @throws RedisException If the number doesn't fit in an int
+     * @see RespInputStream#readLong()
+     */
     public int readInt() throws IOException {
-        fill();
-
-        boolean negative = buffer[cursor] == '-';
-        if (negative) {
-            ++cursor;
+        long value = readLong();
+        if ((int) value != value) {
+            throw new RedisException("Number overflows a 32-bit integer: " + value);
         }
+        return (int) value;
+    }
 
-        int value = 0;
-        while (true) {
-            fill();
-            int b = buffer[cursor++];
-            if (b == Resp.CARRIAGE_RETURN) {
-                fill();
-                if (buffer[cursor++] != Resp.LINE_FEED) {
-                    throw new RedisException("Unexpected char");
-                }
-                break;
-            } else {
-                value = value * 10 + b - '0';
-            }
+    /**
+     * Reads the length prefix of a reply of the given type {@code code},
+     * bounded like {@link RespParser} does: bulk strings up to 512 MB
+     * and aggregates up to what fits in an int
+     * @return The length, or -1 for nil replies
+     * @throws RedisException If the length is too big
+     */
+    private int readLength(byte code) throws IOException {
+        long length = readLong();
+        switch (code) {
+            case Resp.BULK_STRING_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+            case Resp.VERBATIM_STRING_BYTE:
+                return RespParser.checkBulkLength(length);
+            default:
+                return RespParser.checkAggregateLength(length,
+                        code == Resp.MAP_BYTE || code == Resp.ATTRIBUTE_BYTE);
         }
-
-        return (negative ? -value : value);
     }
 
     public byte[] readSimpleString() throws IOException {
         fill();
 
-        int pos = cursor;
+        // fast path, the whole line is buffered
+        for (int pos = cursor; pos < limit - 1; pos++) {
+            if (buffer[pos] == Resp.CARRIAGE_RETURN
+                    && buffer[pos + 1] == Resp.LINE_FEED) {
+                int len = pos - cursor;
+                byte[] data = new byte[len];
+                System.arraycopy(buffer, cursor, data, 0, len);
+                cursor = pos + 2;
+                return data;
+            }
+        }
 
+        // the line continues after the buffer limit, read it
+        // byte per byte, refilling the buffer when needed
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
         while (true) {
-            if (buffer[pos++] == Resp.CARRIAGE_RETURN
-                    && buffer[pos++] == Resp.LINE_FEED) {
-                break;
+            byte b = readByte();
+            if (b == Resp.CARRIAGE_RETURN) {
+                if (readByte() != Resp.LINE_FEED) {
+                    throw new RedisException("Unexpected char");
+                }
+                return line.toByteArray();
             }
+            line.write(b);
         }
-
-        int len = pos - cursor - 2;
-        byte[] data = new byte[len];
-        System.arraycopy(buffer, cursor, data, 0, len);
-        cursor = pos;
-        return data;
     }
 
     public byte[] readBulkString() throws IOException {
-        int length = readInt();
+        int length = readLength(Resp.BULK_STRING_BYTE);
 
         // null bulk string
         if (length == -1) {
@@ -1,30 +1,320 @@
 package team.unnamed.redis.io;
 
 import team.unnamed.redis.Resp;
+import team.unnamed.redis.codec.TypeCodec;
 
+import java.io.EOFException;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.function.IntConsumer;
 
 /**
  * Abstraction giving access to methods for
  * writing data following the Redis Serialization
- * Protocol
+ * Protocol, it's an adapter of {@link RespEncoder}
+ * for {@link OutputStream}s
+ *
+ * <p>When created for a {@link GatheringByteChannel}, data that
+ * isn't smaller than the gather threshold (i.e. large values) is
+ * never copied into the buffer, it's referenced and written along
+ * with the buffered data (headers, CRLFs and small arguments) in a
+ * single vectored write when flushed, so the given arrays and
+ * buffers must not be modified until then</p>
+ *
+ * <p>Note that socket channels copy heap buffers (the stream buffer
+ * and referenced arrays) into a temporary direct buffer for every
+ * write, which the JDK may cache per thread, so only direct buffers
+ * are written without any copy. Referencing large arrays still saves
+ * the copy into the stream buffer and the extra writes it needs</p>
  * @author yusshu (Andre Roldan)
  */
 public class RespOutputStream extends FilterOutputStream {
 
-    private final byte[] buffer;
+    /**
+     * The default gather threshold, copying smaller data
+     * is cheaper than writing it in its own segment
+     */
+    public static final int DEFAULT_GATHER_THRESHOLD = 1024;
+
+    // max count of referenced segments, the buffer is flushed
+    // once reached, so they're written in a single call
+    private static final int MAX_REFERENCED_SEGMENTS = 64;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buffer;
+    // view of the buffer, for RespEncoder
+    private ByteBuffer view;
     private int cursor;
 
-    public RespOutputStream(OutputStream out, int bufferLength) {
+    // null if the buffer has a fixed size
+    private final BufferConfig bufferConfig;
+    private final int maxBufferSize;
+    // length of the current buffer, or of the next
+    // one if it's released
+    private int targetSize;
+    // whether the buffer grew since it was released
+    private boolean grown;
+
+    // null if data is written to the stream
+    private final GatheringByteChannel channel;
+    private final int gatherThreshold;
+    // buffered and referenced segments, in write order
+    private final ByteBuffer[] segments;
+    // reusable views of the buffer, one per buffered segment
+    private final ByteBuffer[] bufferSegments;
+    private int segmentCount;
+    private int referencedCount;
+    // start of the buffered data that isn't in a segment yet
+    private int segmentStart;
+
+    // receives the count of bytes of every write, may be null
+    private IntConsumer writeListener;
+
+    private RespOutputStream(
+            OutputStream out,
+            GatheringByteChannel channel,
+            BufferConfig bufferConfig,
+            int bufferLength,
+            int gatherThreshold
+    ) {
         super(out);
-        this.buffer = new byte[bufferLength];
+        if (gatherThreshold < 1) {
+            throw new IllegalArgumentException("Gather threshold must be positive");
+        }
+        // adaptive buffers are borrowed on the first write
+        this.buffer = bufferConfig == null ? new byte[bufferLength] : EMPTY;
+        this.view = ByteBuffer.wrap(buffer);
+        this.bufferConfig = bufferConfig;
+        this.maxBufferSize = bufferConfig == null ? bufferLength : bufferConfig.getMaxSize();
+        this.targetSize = bufferLength;
+        this.channel = channel;
+        if (channel == null) {
+            this.gatherThreshold = Integer.MAX_VALUE;
+            this.segments = null;
+            this.bufferSegments = null;
+        } else {
+            this.gatherThreshold = Math.min(gatherThreshold, bufferLength);
+            // a buffered segment before every referenced one, and the tail
+            this.segments = new ByteBuffer[MAX_REFERENCED_SEGMENTS * 2 + 1];
+            this.bufferSegments = new ByteBuffer[MAX_REFERENCED_SEGMENTS + 1];
+            wrapBufferSegments();
+        }
+    }
+
+    /**
+     * Creates an output stream with a fixed-size buffer
+     */
+    public RespOutputStream(OutputStream out, int bufferLength) {
+        this(out, null, null, bufferLength, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates an output stream with an adaptive buffer, borrowed
+     * on the first write, see {@link RespOutputStream#releaseBuffer}
+     */
+    public RespOutputStream(OutputStream out, BufferConfig bufferConfig) {
+        this(out, null, bufferConfig, bufferConfig.getInitialSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates an output stream writing to the given (blocking)
+     * {@code channel} using gathering writes, data with a length
+     * of at least {@code gatherThreshold} is never copied into
+     * the buffer
+     */
+    public RespOutputStream(GatheringByteChannel channel, int bufferLength, int gatherThreshold) {
+        this(Channels.newOutputStream(channel), channel, null, bufferLength, gatherThreshold);
+    }
+
+    public RespOutputStream(GatheringByteChannel channel, int bufferLength) {
+        this(channel, bufferLength, DEFAULT_GATHER_THRESHOLD);
+    }
+
+    /**
+     * Creates an output stream with an adaptive buffer writing
+     * to the given (blocking) {@code channel} using gathering
+     * writes, see {@link RespOutputStream#releaseBuffer}
+     */
+    public RespOutputStream(GatheringByteChannel channel, BufferConfig bufferConfig, int gatherThreshold) {
+        this(Channels.newOutputStream(channel), channel, bufferConfig,
+                bufferConfig.getInitialSize(), gatherThreshold);
+    }
+
+    public RespOutputStream(GatheringByteChannel channel, BufferConfig bufferConfig) {
+        this(channel, bufferConfig, DEFAULT_GATHER_THRESHOLD);
+    }
+
+    private void wrapBufferSegments() {
+        for (int i = 0; i < bufferSegments.length; i++) {
+            bufferSegments[i] = ByteBuffer.wrap(buffer);
+        }
+    }
+
+    /**
+     * Replaces the (empty) buffer by one of, at least,
+     * the given {@code length}
+     */
+    private void resize(int length) {
+        byte[] resized = bufferConfig.allocate(length);
+        if (buffer.length != 0) {
+            bufferConfig.free(buffer);
+        }
+        buffer = resized;
+        view = ByteBuffer.wrap(resized);
+        targetSize = resized.length;
+        if (channel != null) {
+            wrapBufferSegments();
+        }
+    }
+
+    /**
+     * Gives back the buffer to the arena, if nothing is buffered,
+     * should be called when the connection becomes idle. Another
+     * buffer is borrowed by the next write, smaller if this one
+     * didn't need to grow since the previous release
+     * @return True if the buffer was released
+     */
+    public boolean releaseBuffer() {
+        if (bufferConfig == null || buffer.length == 0 || cursor != 0 || segmentCount != 0) {
+            return false;
+        }
+        if (!grown) {
+            targetSize = Math.max(targetSize >> 1, bufferConfig.getInitialSize());
+        }
+        grown = false;
+        bufferConfig.free(buffer);
+        buffer = EMPTY;
+        view = ByteBuffer.wrap(buffer);
+        if (channel != null) {
+            wrapBufferSegments();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the buffer, zero if it's released
+     */
+    public int getBufferLength() {
+        return buffer.length;
+    }
+
+    /**
+     * Sets the listener called with the count of bytes written
+     * by every write to the underlying stream or channel, or
+     * null to remove it
+     */
+    public void setWriteListener(IntConsumer writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * Returns the count of bytes written to this stream
+     * and not flushed yet, including referenced data
+     */
+    public long buffered() {
+        long length = cursor - segmentStart;
+        for (int i = 0; i < segmentCount; i++) {
+            length += segments[i].remaining();
+        }
+        return length;
     }
 
+    /**
+     * Writes the buffered data because the buffer is full, or
+     * released. Adaptive buffers are grown, since batches bigger
+     * than the buffer are being written
+     */
     protected void flushBuffer() throws IOException {
+        writeBuffer();
+        if (buffer.length == 0) {
+            resize(targetSize);
+        } else if (buffer.length < maxBufferSize) {
+            resize(Math.min(buffer.length << 1, maxBufferSize));
+            grown = true;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (channel != null) {
+            writeSegments();
+            return;
+        }
         if (cursor > 0) {
             out.write(buffer, 0, cursor);
+            if (writeListener != null) {
+                writeListener.accept(cursor);
+            }
+            cursor = 0;
+        }
+    }
+
+    /**
+     * Adds the buffered data after the last segment as a segment,
+     * it's never written to the buffer again until flushed
+     */
+    private void addBufferSegment() {
+        if (cursor > segmentStart) {
+            ByteBuffer segment = bufferSegments[segmentCount - referencedCount];
+            segment.limit(cursor);
+            segment.position(segmentStart);
+            segments[segmentCount++] = segment;
+            segmentStart = cursor;
+        }
+    }
+
+    /**
+     * References the remaining bytes of the given {@code data}, so
+     * they're written after the currently buffered data, without
+     * copying them into the buffer
+     */
+    private void addReferencedSegment(ByteBuffer data) throws IOException {
+        addBufferSegment();
+        segments[segmentCount++] = data;
+        if (++referencedCount == MAX_REFERENCED_SEGMENTS) {
+            writeSegments();
+        }
+    }
+
+    /**
+     * Writes all the segments and buffered data in a single
+     * vectored write (more if the channel writes partially)
+     */
+    private void writeSegments() throws IOException {
+        addBufferSegment();
+        if (segmentCount == 0) {
+            return;
+        }
+
+        long remaining = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            remaining += segments[i].remaining();
+        }
+        int offset = 0;
+        try {
+            while (remaining > 0) {
+                long written = channel.write(segments, offset, segmentCount - offset);
+                if (writeListener != null) {
+                    writeListener.accept((int) written);
+                }
+                remaining -= written;
+                while (offset < segmentCount && !segments[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } finally {
+            // the caller's data is never retained
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = null;
+            }
+            segmentCount = 0;
+            referencedCount = 0;
+            segmentStart = 0;
             cursor = 0;
         }
     }
@@ -39,9 +329,14 @@ public class RespOutputStream extends FilterOutputStream {
 
     @Override
     public void write(byte[] bytes, int offset, int len) throws IOException {
-        if (len >= buffer.length) {
-            flushBuffer();
+        if (len >= gatherThreshold) {
+            addReferencedSegment(ByteBuffer.wrap(bytes, offset, len));
+        } else if (len >= targetSize) {
+            writeBuffer();
             out.write(bytes, offset, len);
+            if (writeListener != null) {
+                writeListener.accept(len);
+            }
         } else {
             if (len > buffer.length - cursor) {
                 flushBuffer();
@@ -59,12 +354,17 @@ public class RespOutputStream extends FilterOutputStream {
 
     @Override
     public void flush() throws IOException {
-        flushBuffer();
+        writeBuffer();
         out.flush();
     }
 
-    private void writeTermination() throws IOException {
-        if (2 >= buffer.length) {
+    /**
+     * Writes a CRLF, used to terminate the data of bulk
+     * strings written using {@link RespOutputStream#writeBulkStringHeader}
+     * @throws IOException If write fails
+     */
+    public void writeTermination() throws IOException {
+        if (2 > buffer.length - cursor) {
             flushBuffer();
         }
         buffer[cursor++] = Resp.CARRIAGE_RETURN;
@@ -72,13 +372,13 @@ public class RespOutputStream extends FilterOutputStream {
     }
 
     private void writeNegativeOneAndTermination() throws IOException {
-        if (4 >= buffer.length) {
+        if (4 > buffer.length - cursor) {
             flushBuffer();
         }
-        buffer[cursor++] = Resp.CARRIAGE_RETURN;
-        buffer[cursor++] = Resp.LINE_FEED;
         buffer[cursor++] = Resp.SCRIPT_BYTE;
         buffer[cursor++] = Resp.ASCII_ONE_BYTE;
+        buffer[cursor++] = Resp.CARRIAGE_RETURN;
+        buffer[cursor++] = Resp.LINE_FEED;
     }
 
     /**
@@ -88,12 +388,25 @@ public class RespOutputStream extends FilterOutputStream {
      * @throws IOException If write fails
      */
     private void writeIntAsString(int value) throws IOException {
-        int off = cursor;
         int size = Integers.getStringSize(value);
-        if (size >= buffer.length - off) {
+        if (size > buffer.length - cursor) {
+            flushBuffer();
+        }
+        Integers.getChars(value, buffer, cursor, size);
+        cursor += size;
+    }
+
+    /**
+     * Writes the given long {@code value} into this output
+     * stream as a string, same as {@link RespOutputStream#writeIntAsString}
+     * @throws IOException If write fails
+     */
+    private void writeLongAsString(long value) throws IOException {
+        int size = Integers.getStringSize(value);
+        if (size > buffer.length - cursor) {
             flushBuffer();
         }
-        Integers.getChars(value, buffer, off, size);
+        Integers.getChars(value, buffer, cursor, size);
         cursor += size;
     }
 
@@ -106,18 +419,37 @@ public class RespOutputStream extends FilterOutputStream {
      *   :-500\r\n
      *
      * @throws IOException If write fails
+     * @see RespOutputStream#writeLong
      */
     public void writeInt(int value) throws IOException {
-        // TODO: Specification says '64 bit' integer but we're using a 32 bit integer hmm
+        writeLong(value);
+    }
+
+    /**
+     * Writes the given 64-bit integer {@code value} into
+     * this output stream following the RESP specification
+     *
+     * i.e.
+     *   :10000000000\r\n
+     *   :-500\r\n
+     *
+     * @throws IOException If write fails
+     */
+    public void writeLong(long value) throws IOException {
         // integer start
         write(Resp.INTEGER_BYTE);
 
         // integer write
-        if (value < 0) {
-            write(Resp.SCRIPT_BYTE);
-            value = -value;
+        if (value == Long.MIN_VALUE) {
+            // can't be negated
+            write(Integers.toByteArray(value));
+        } else {
+            if (value < 0) {
+                write(Resp.SCRIPT_BYTE);
+                value = -value;
+            }
+            writeLongAsString(value);
         }
-        writeIntAsString(value);
         writeTermination();
     }
 
@@ -142,6 +474,20 @@ public class RespOutputStream extends FilterOutputStream {
         writeTermination();
     }
 
+    /**
+     * Writes the given error {@code message} into this output
+     * stream following the RESP specification, the message
+     * must not contain CR or LF
+     * i.e.
+     *   -ERR unknown command\r\n
+     * @throws IOException If write fails
+     */
+    public void writeError(String message) throws IOException {
+        write(Resp.ERROR_BYTE);
+        write(message.getBytes(Resp.CHARSET));
+        writeTermination();
+    }
+
     /**
      * Writes the given string {@code value} into this output
      * stream following the RESP specification
@@ -164,6 +510,133 @@ public class RespOutputStream extends FilterOutputStream {
         writeTermination();
     }
 
+    /**
+     * Writes the header of a bulk string with the given {@code length},
+     * the data and a termination must be written after it
+     * i.e.
+     *   $11\r\n
+     * @throws IOException If write fails
+     */
+    public void writeBulkStringHeader(int length) throws IOException {
+        write(Resp.BULK_STRING_BYTE);
+        writeIntAsString(length);
+        writeTermination();
+    }
+
+    /**
+     * Writes {@code length} bytes read from the given {@code value}
+     * stream as a bulk string, the data is copied in chunks through
+     * the buffer, so it's never fully loaded in memory
+     * @throws java.io.EOFException If the given stream ends before
+     * {@code length} bytes are read
+     * @throws IOException If read or write fails
+     */
+    public void writeBulkString(InputStream value, int length) throws IOException {
+        writeBulkStringHeader(length);
+
+        int remaining = length;
+        while (remaining > 0) {
+            if (cursor == buffer.length) {
+                flushBuffer();
+            }
+            int read = value.read(buffer, cursor, Math.min(remaining, buffer.length - cursor));
+            if (read == -1) {
+                throw new EOFException("Stream ended " + remaining
+                        + " bytes before the declared length (" + length + ")");
+            }
+            cursor += read;
+            remaining -= read;
+        }
+
+        writeTermination();
+    }
+
+    /**
+     * Writes the given {@code value} as a bulk string using the
+     * given {@code codec}, values that fit in the buffer are encoded
+     * straight into it, bigger values are encoded into a new array
+     * @throws IOException If write fails
+     */
+    public <T> void writeBulkString(TypeCodec<T> codec, T value) throws IOException {
+        int length = codec.getEncodedLength(value);
+        writeBulkStringHeader(length);
+
+        // the target size is the buffer length, or the
+        // length of the next buffer if it's released
+        if (length + 2 <= targetSize) {
+            if (length + 2 > buffer.length - cursor) {
+                flushBuffer();
+            }
+            codec.encode(value, buffer, cursor);
+            cursor += length;
+            buffer[cursor++] = Resp.CARRIAGE_RETURN;
+            buffer[cursor++] = Resp.LINE_FEED;
+        } else {
+            byte[] data = new byte[length];
+            codec.encode(value, data, 0);
+            write(data);
+            writeTermination();
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the given {@code value} as a
+     * bulk string, the {@code value} position is moved to its limit
+     * @throws IOException If write fails
+     */
+    public void writeBulkString(ByteBuffer value) throws IOException {
+        writeBulkStringHeader(value.remaining());
+
+        if (value.remaining() >= gatherThreshold) {
+            // referenced, direct buffers are written without any
+            // copy, the channel copies heap ones to a direct buffer
+            addReferencedSegment(value.duplicate());
+            value.position(value.limit());
+        } else if (value.hasArray()) {
+            write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+            value.position(value.limit());
+        } else {
+            // direct buffer, copy it in chunks
+            while (value.hasRemaining()) {
+                if (cursor == buffer.length) {
+                    flushBuffer();
+                }
+                int len = Math.min(value.remaining(), buffer.length - cursor);
+                value.get(buffer, cursor, len);
+                cursor += len;
+            }
+        }
+
+        writeTermination();
+    }
+
+    /**
+     * Writes the header of an array with the given {@code length},
+     * its elements must be written after it
+     * i.e.
+     *   *3\r\n
+     * @throws IOException If write fails
+     */
+    public void writeArrayHeader(int length) throws IOException {
+        writeAggregateHeader(Resp.ARRAY_BYTE, length);
+    }
+
+    /**
+     * Writes the header of an aggregate of the given {@code type},
+     * i.e. an array, or a RESP3 map, set or push frame, its
+     * elements (or key-value pairs for maps) must be written next
+     *
+     * i.e.
+     *   %2\r\n
+     *   &gt;3\r\n
+     * @throws IOException If write fails
+     */
+    public void writeAggregateHeader(byte type, int length) throws IOException {
+        write(type);
+        writeIntAsString(length);
+        writeTermination();
+    }
+
     /**
      * Variation of {@link RespOutputStream#writeBulkString}, it just
      * doesn't write the string data termination and the length is '-1',
@@ -223,6 +696,20 @@ public class RespOutputStream extends FilterOutputStream {
      * @throws IOException If write fails
      */
     public void writeCommand(byte[] command, byte[]... args) throws IOException {
+        int length = RespEncoder.getCommandLength(command, args);
+        // the target size is the buffer length, or the
+        // length of the next buffer if it's released
+        if (length <= targetSize && (length < gatherThreshold || !hasGatheredArg(args))) {
+            if (length > buffer.length - cursor) {
+                flushBuffer();
+            }
+            // fast path, the whole command fits in the buffer
+            view.position(cursor);
+            RespEncoder.writeCommand(view, command, args);
+            cursor = view.position();
+            return;
+        }
+
         // array start
         write(Resp.ARRAY_BYTE);
 
@@ -238,4 +725,13 @@ public class RespOutputStream extends FilterOutputStream {
         }
     }
 
+    private boolean hasGatheredArg(byte[][] args) {
+        for (byte[] arg : args) {
+            if (arg.length >= gatherThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
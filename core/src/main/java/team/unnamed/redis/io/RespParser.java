@@ -0,0 +1,491 @@
+package team.unnamed.redis.io;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.Resp;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Incremental RESP parser, it accepts replies split in
+ * arbitrary chunks and resumes exactly where it stopped
+ * when more bytes arrive. An incomplete frame is never
+ * re-scanned: every byte is read once and bulk string data
+ * is copied directly into its final array as it arrives.
+ *
+ * <p>Simple and bulk strings are produced as byte arrays,
+ * integers as {@link Long}s, arrays as {@code Object[]} and
+ * nil replies as null. Error replies are returned as
+ * {@link RedisException} instances instead of being thrown</p>
+ *
+ * <p>RESP3 types are supported too: maps are produced as
+ * {@link LinkedHashMap}s (with string keys for string keys),
+ * sets and push frames as arrays, doubles as {@link Double}s,
+ * big numbers as {@link BigInteger}s, booleans as {@link Boolean}s,
+ * verbatim strings as byte arrays without their format prefix and
+ * blob errors like errors. Attributes are skipped</p>
+ *
+ * <p>This class is stateful and not thread-safe, a parser
+ * instance must be used for a single connection</p>
+ *
+ * @author yusshu (Andre Roldan)
+ */
+public class RespParser {
+
+    /**
+     * Returned when all the given bytes were consumed but
+     * the current reply is still incomplete
+     */
+    public static final Object NEED_MORE = new Object();
+
+    // marker for array elements, the array is still incomplete
+    private static final Object CONTINUE = new Object();
+
+    // the biggest bulk string redis accepts (proto-max-bulk-len),
+    // checked before allocating the array for its data
+    private static final long MAX_BULK_LENGTH = 512L * 1024 * 1024;
+    // aggregates of pairs are read as twice their length
+    private static final long MAX_AGGREGATE_LENGTH = Integer.MAX_VALUE;
+    private static final long MAX_PAIRS_LENGTH = Integer.MAX_VALUE / 2;
+
+    private static final int STATE_TYPE = 0;
+    private static final int STATE_LINE = 1;
+    private static final int STATE_NUMBER = 2;
+    private static final int STATE_BULK_DATA = 3;
+    private static final int STATE_BULK_END = 4;
+
+    private int state = STATE_TYPE;
+    private byte type;
+    // true if a CR was read and a LF is expected
+    private boolean carriageReturn;
+
+    // number state, accumulated negatively (like Long#parseLong)
+    // so Long.MIN_VALUE can be parsed too
+    private long number;
+    private boolean negative;
+    private boolean digits;
+
+    // line state (simple strings and errors)
+    private byte[] line = new byte[64];
+    private int lineLength;
+
+    // bulk string state
+    private byte[] bulk;
+    private int bulkOffset;
+    private int bulkEndRemaining;
+
+    // stack of incomplete arrays (or any other aggregate type)
+    private Object[][] arrays = new Object[4][];
+    private int[] arrayIndexes = new int[4];
+    private byte[] arrayTypes = new byte[4];
+    private int depth;
+
+    // true if the last reply was an out-of-band push frame
+    private boolean pushReply;
+
+    /**
+     * Parses the bytes from the given {@code buffer} position,
+     * until a reply is complete or the buffer is exhausted.
+     * Consumed bytes are never read again, so the caller can
+     * discard them
+     * @return The complete reply or {@link RespParser#NEED_MORE}
+     * if every byte was consumed and the reply is incomplete
+     * @throws RedisException If the data doesn't follow the
+     * protocol, the parser must be reset after it
+     */
+    public Object parse(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            Object value;
+            switch (state) {
+                case STATE_TYPE:
+                    readType(buffer.get());
+                    continue;
+                case STATE_LINE:
+                    value = readLine(buffer);
+                    break;
+                case STATE_NUMBER:
+                    value = readNumber(buffer);
+                    break;
+                case STATE_BULK_DATA:
+                    value = readBulkData(buffer);
+                    break;
+                case STATE_BULK_END:
+                    value = readBulkEnd(buffer);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state: " + state);
+            }
+
+            if (value == NEED_MORE || value == CONTINUE) {
+                continue;
+            }
+
+            value = complete(value);
+            if (value != CONTINUE) {
+                return value;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * Discards any partially parsed reply
+     */
+    public void reset() {
+        state = STATE_TYPE;
+        carriageReturn = false;
+        lineLength = 0;
+        bulk = null;
+        Arrays.fill(arrays, 0, depth, null);
+        depth = 0;
+    }
+
+    /**
+     * Determines if the last returned reply was a RESP3
+     * out-of-band push frame (i.e. a pub/sub message or an
+     * invalidation), not the reply of a command
+     */
+    public boolean wasPush() {
+        return pushReply;
+    }
+
+    /**
+     * Determines if this parser is in the middle of a reply
+     */
+    public boolean isParsing() {
+        return state != STATE_TYPE || depth > 0;
+    }
+
+    private void readType(byte code) {
+        type = code;
+        carriageReturn = false;
+        if (depth == 0) {
+            pushReply = false;
+        }
+        switch (code) {
+            case Resp.SIMPLE_STRING_BYTE:
+            case Resp.ERROR_BYTE:
+            case Resp.NULL_BYTE:
+            case Resp.DOUBLE_BYTE:
+            case Resp.BOOLEAN_BYTE:
+            case Resp.BIG_NUMBER_BYTE:
+                lineLength = 0;
+                state = STATE_LINE;
+                break;
+            case Resp.INTEGER_BYTE:
+            case Resp.BULK_STRING_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+            case Resp.VERBATIM_STRING_BYTE:
+            case Resp.ARRAY_BYTE:
+            case Resp.MAP_BYTE:
+            case Resp.SET_BYTE:
+            case Resp.ATTRIBUTE_BYTE:
+            case Resp.PUSH_BYTE:
+                number = 0;
+                negative = false;
+                digits = false;
+                state = STATE_NUMBER;
+                break;
+            default:
+                throw new RedisException("Unknown response byte: "
+                        + ((char) code));
+        }
+    }
+
+    /**
+     * Consumes the LF after a CR, returns false if there
+     * are no more bytes
+     */
+    private boolean readLineFeed(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        if (buffer.get() != Resp.LINE_FEED) {
+            throw new RedisException("Unexpected char, expected LF");
+        }
+        carriageReturn = false;
+        return true;
+    }
+
+    private Object readLine(ByteBuffer buffer) {
+        if (!carriageReturn) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            int end = start;
+            while (end < limit && buffer.get(end) != Resp.CARRIAGE_RETURN) {
+                end++;
+            }
+
+            // copy the bytes before the CR (or the end of the buffer)
+            int count = end - start;
+            if (lineLength + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length << 1, lineLength + count));
+            }
+            buffer.get(line, lineLength, count);
+            lineLength += count;
+
+            if (end == limit) {
+                return NEED_MORE;
+            }
+            // skip CR
+            buffer.get();
+            carriageReturn = true;
+        }
+
+        if (!readLineFeed(buffer)) {
+            return NEED_MORE;
+        }
+
+        state = STATE_TYPE;
+        switch (type) {
+            case Resp.ERROR_BYTE:
+                return RedisException.fromReply(new String(line, 0, lineLength, Resp.CHARSET));
+            case Resp.NULL_BYTE:
+                if (lineLength != 0) {
+                    throw new RedisException("Unexpected data in null");
+                }
+                return null;
+            case Resp.BOOLEAN_BYTE:
+                if (lineLength == 1 && (line[0] == 't' || line[0] == 'f')) {
+                    return line[0] == 't';
+                }
+                throw new RedisException("Unexpected boolean: "
+                        + new String(line, 0, lineLength, Resp.CHARSET));
+            case Resp.DOUBLE_BYTE:
+                try {
+                    return Doubles.parseDouble(line, 0, lineLength);
+                } catch (NumberFormatException e) {
+                    throw new RedisException("Unexpected double", e);
+                }
+            case Resp.BIG_NUMBER_BYTE:
+                try {
+                    return new BigInteger(new String(line, 0, lineLength, Resp.CHARSET));
+                } catch (NumberFormatException e) {
+                    throw new RedisException("Unexpected big number", e);
+                }
+            default:
+                return Arrays.copyOf(line, lineLength);
+        }
+    }
+
+    private Object readNumber(ByteBuffer buffer) {
+        if (!carriageReturn) {
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    return NEED_MORE;
+                }
+                byte b = buffer.get();
+                if (b == Resp.CARRIAGE_RETURN) {
+                    carriageReturn = true;
+                    break;
+                } else if (b == '-' && !digits && !negative) {
+                    negative = true;
+                } else if (b >= '0' && b <= '9') {
+                    int digit = b - '0';
+                    if (number < Long.MIN_VALUE / 10) {
+                        throw new RedisException("Number overflows a 64-bit integer");
+                    }
+                    number *= 10;
+                    if (number < Long.MIN_VALUE + digit) {
+                        throw new RedisException("Number overflows a 64-bit integer");
+                    }
+                    number -= digit;
+                    digits = true;
+                } else {
+                    throw new RedisException("Unexpected char in number: " + ((char) b));
+                }
+            }
+        }
+
+        if (!readLineFeed(buffer)) {
+            return NEED_MORE;
+        }
+
+        if (!negative && number == Long.MIN_VALUE) {
+            throw new RedisException("Number overflows a 64-bit integer");
+        }
+        long value = negative ? number : -number;
+        state = STATE_TYPE;
+
+        switch (type) {
+            case Resp.INTEGER_BYTE:
+                return value;
+            case Resp.BULK_STRING_BYTE:
+            case Resp.BLOB_ERROR_BYTE:
+            case Resp.VERBATIM_STRING_BYTE: {
+                int length = checkBulkLength(value);
+                if (length < 0) {
+                    return null;
+                }
+                bulk = new byte[length];
+                bulkOffset = 0;
+                bulkEndRemaining = 2;
+                state = STATE_BULK_DATA;
+                return CONTINUE;
+            }
+            case Resp.ARRAY_BYTE:
+            case Resp.SET_BYTE:
+            case Resp.PUSH_BYTE:
+            case Resp.MAP_BYTE:
+            case Resp.ATTRIBUTE_BYTE: {
+                boolean pairs = type == Resp.MAP_BYTE || type == Resp.ATTRIBUTE_BYTE;
+                int length = checkAggregateLength(value, pairs);
+                if (length < 0) {
+                    return null;
+                }
+                if (pairs) {
+                    // key-value pairs
+                    length *= 2;
+                }
+                if (length == 0) {
+                    return finish(new Object[0], type);
+                }
+                push(new Object[length], type);
+                return CONTINUE;
+            }
+            default:
+                throw new IllegalStateException("Unexpected type: " + ((char) type));
+        }
+    }
+
+    private Object readBulkData(ByteBuffer buffer) {
+        int count = Math.min(buffer.remaining(), bulk.length - bulkOffset);
+        buffer.get(bulk, bulkOffset, count);
+        bulkOffset += count;
+
+        if (bulkOffset < bulk.length) {
+            return NEED_MORE;
+        }
+        state = STATE_BULK_END;
+        return CONTINUE;
+    }
+
+    private Object readBulkEnd(ByteBuffer buffer) {
+        while (bulkEndRemaining > 0) {
+            if (!buffer.hasRemaining()) {
+                return NEED_MORE;
+            }
+            buffer.get();
+            bulkEndRemaining--;
+        }
+        state = STATE_TYPE;
+        byte[] data = bulk;
+        bulk = null;
+        switch (type) {
+            case Resp.BLOB_ERROR_BYTE:
+                return RedisException.fromReply(Strings.decode(data));
+            case Resp.VERBATIM_STRING_BYTE:
+                if (data.length < Resp.VERBATIM_FORMAT_LENGTH) {
+                    throw new RedisException("Verbatim string without format");
+                }
+                return Arrays.copyOfRange(data, Resp.VERBATIM_FORMAT_LENGTH, data.length);
+            default:
+                return data;
+        }
+    }
+
+    private void push(Object[] array, byte arrayType) {
+        if (depth == arrays.length) {
+            arrays = Arrays.copyOf(arrays, depth << 1);
+            arrayIndexes = Arrays.copyOf(arrayIndexes, depth << 1);
+            arrayTypes = Arrays.copyOf(arrayTypes, depth << 1);
+        }
+        arrays[depth] = array;
+        arrayIndexes[depth] = 0;
+        arrayTypes[depth] = arrayType;
+        depth++;
+    }
+
+    /**
+     * Checks the given bulk string length prefix, lengths over
+     * 512 MB (the redis proto-max-bulk-len) are rejected before
+     * anything is allocated for them
+     * @return The length, or -1 for nil bulk strings
+     * @throws RedisException If the length is too big
+     */
+    static int checkBulkLength(long length) {
+        if (length < 0) {
+            return -1;
+        }
+        if (length > MAX_BULK_LENGTH) {
+            throw new RedisException("Bulk string length exceeds 512 MB: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Checks the given aggregate length prefix, it must fit in an
+     * int, even after being doubled if it's a count of {@code pairs}
+     * @return The length, or -1 for nil aggregates
+     * @throws RedisException If the length is too big
+     */
+    static int checkAggregateLength(long length, boolean pairs) {
+        if (length < 0) {
+            return -1;
+        }
+        if (length > (pairs ? MAX_PAIRS_LENGTH : MAX_AGGREGATE_LENGTH)) {
+            throw new RedisException("Aggregate length overflows a 32-bit integer: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Converts the given complete aggregate to its final value,
+     * returns {@link RespParser#CONTINUE} for attributes, they
+     * are discarded
+     */
+    private Object finish(Object[] array, byte arrayType) {
+        switch (arrayType) {
+            case Resp.MAP_BYTE: {
+                Map<Object, Object> map = new LinkedHashMap<>(array.length);
+                for (int i = 0; i < array.length; i += 2) {
+                    Object key = array[i];
+                    if (key instanceof byte[]) {
+                        // byte arrays are compared by identity
+                        key = Strings.decode((byte[]) key);
+                    }
+                    map.put(key, array[i + 1]);
+                }
+                return map;
+            }
+            case Resp.ATTRIBUTE_BYTE:
+                return CONTINUE;
+            case Resp.PUSH_BYTE:
+                pushReply = depth == 0;
+                return array;
+            default:
+                return array;
+        }
+    }
+
+    /**
+     * Adds the given complete {@code value} to the current array,
+     * returns the value itself if it's a top-level reply, the outer
+     * completed array or {@link RespParser#CONTINUE} if the current
+     * array is still incomplete
+     */
+    private Object complete(Object value) {
+        while (depth > 0) {
+            Object[] array = arrays[depth - 1];
+            int index = arrayIndexes[depth - 1]++;
+            array[index] = value;
+
+            if (index + 1 < array.length) {
+                return CONTINUE;
+            }
+
+            // array is complete, add it to its parent
+            arrays[--depth] = null;
+            value = finish(array, arrayTypes[depth]);
+            if (value == CONTINUE) {
+                // attributes aren't elements of their parent
+                return CONTINUE;
+            }
+        }
+        return value;
+    }
+
+}
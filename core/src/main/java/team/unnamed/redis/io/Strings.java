@@ -37,10 +37,12 @@ public final class Strings {
     /**
      * Converts the given {@code bytes} to an
      * actual {@link String} using the charset
-     * specified at {@link Resp#CHARSET}
+     * specified at {@link Resp#CHARSET}, returns
+     * null if the given {@code bytes} are null (nil
+     * bulk strings)
      */
     public static String decode(byte[] bytes) {
-        return new String(bytes, Resp.CHARSET);
+        return bytes == null ? null : new String(bytes, Resp.CHARSET);
     }
 
 }
@@ -0,0 +1,20 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Close of a socket, including the flush of
+ * its remaining output
+ */
+@Name("team.unnamed.redis.Close")
+@Label("Redis Close")
+@Category("Redis")
+public final class CloseEvent extends Event {
+
+    @Label("Address")
+    public String address;
+
+}
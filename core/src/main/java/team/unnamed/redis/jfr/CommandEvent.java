@@ -0,0 +1,38 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Execution of a command, from the time it's written until
+ * its reply is read, so it includes the network round trip
+ * and the reply parsing
+ */
+@Name("team.unnamed.redis.Command")
+@Label("Redis Command")
+@Category("Redis")
+@Description("Execution of a command, from the write until its reply is read")
+@Threshold("1 ms")
+public final class CommandEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Address")
+    public String address;
+
+    @Label("Key Size")
+    @DataAmount
+    public int keySize;
+
+    @Label("Reply Size")
+    @Description("Size of the reply in the wire, -1 if the command failed")
+    @DataAmount
+    public long replySize;
+
+}
@@ -0,0 +1,19 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Connection of a socket to a redis server
+ */
+@Name("team.unnamed.redis.Connect")
+@Label("Redis Connect")
+@Category("Redis")
+public final class ConnectEvent extends Event {
+
+    @Label("Address")
+    public String address;
+
+}
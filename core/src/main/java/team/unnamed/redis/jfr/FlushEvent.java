@@ -0,0 +1,29 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flush of the output buffer of a socket, its duration
+ * is the time blocked writing to the network
+ */
+@Name("team.unnamed.redis.Flush")
+@Label("Redis Flush")
+@Category("Redis")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class FlushEvent extends Event {
+
+    @Label("Address")
+    public String address;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+}
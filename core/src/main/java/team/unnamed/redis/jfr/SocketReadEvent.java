@@ -0,0 +1,26 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Read from the network to refill an input buffer, its
+ * duration is the time blocked waiting for the data
+ */
+@Name("team.unnamed.redis.SocketRead")
+@Label("Redis Socket Read")
+@Category("Redis")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class SocketReadEvent extends Event {
+
+    @Label("Bytes Read")
+    @DataAmount
+    public int bytesRead;
+
+}
@@ -0,0 +1,32 @@
+package team.unnamed.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Dispatch of a pub/sub message to a subscriber,
+ * its duration is the time taken by the subscriber
+ */
+@Name("team.unnamed.redis.SubscriptionDispatch")
+@Label("Redis Subscription Dispatch")
+@Category("Redis")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class SubscriptionDispatchEvent extends Event {
+
+    @Label("Channel")
+    public String channel;
+
+    @Label("Pattern")
+    public String pattern;
+
+    @Label("Message Size")
+    @DataAmount
+    public int messageSize;
+
+}
@@ -0,0 +1,64 @@
+package team.unnamed.redis.metrics;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+
+/**
+ * Listener for the activity of {@link RedisSocket}s, set using
+ * {@link RedisSocket#setCommandListener}, or for all the connections
+ * of a client using its configuration. Sockets without a listener
+ * don't measure anything.
+ *
+ * <p>Methods are called by the threads using the socket (the
+ * writing and reading threads may be different, i.e. with
+ * auto-pipelining), so implementations must be thread-safe
+ * and must not block</p>
+ *
+ * @see CommandMetrics
+ */
+public interface CommandListener {
+
+    /**
+     * Called once the reply of a {@code command} is read
+     * @param socket The socket the command was sent to
+     * @param command The command name, encoded as a bulk string,
+     *                see {@link team.unnamed.redis.RedisCommands#getName}
+     * @param latencyNanos The time since the command was written
+     *                     to the output buffer until its reply was
+     *                     read, in nanoseconds
+     * @param failure The error reply, or the connection failure,
+     *                null if the command succeeded
+     */
+    default void onCommand(RedisSocket socket, byte[] command, long latencyNanos, RedisException failure) {
+    }
+
+    /**
+     * Called when the output buffer of the given {@code socket} is
+     * flushed after writing commands, with the count of {@code commands}
+     * written since the previous flush, i.e. the batch size
+     */
+    default void onFlush(RedisSocket socket, int commands) {
+    }
+
+    /**
+     * Called with the count of {@code bytes} written by every
+     * write of the given {@code socket} to the network
+     */
+    default void onBytesWritten(RedisSocket socket, int bytes) {
+    }
+
+    /**
+     * Called with the count of {@code bytes} read by every read
+     * (i.e. every input buffer refill) of the given {@code socket}
+     * from the network
+     */
+    default void onBytesRead(RedisSocket socket, int bytes) {
+    }
+
+    /**
+     * Called when the given {@code socket} is closed
+     */
+    default void onClose(RedisSocket socket) {
+    }
+
+}
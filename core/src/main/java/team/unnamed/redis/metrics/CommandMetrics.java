@@ -0,0 +1,312 @@
+package team.unnamed.redis.metrics;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Built-in {@link CommandListener} recording, without locks in
+ * the hot path, a latency histogram and error count per command
+ * name, and the bytes written and read, reads (input buffer
+ * refills), flushes and commands per flush per connection.
+ *
+ * <p>A single instance can be shared by many clients, values
+ * are read while they're recorded, so they're not an atomic
+ * snapshot</p>
+ */
+public class CommandMetrics implements CommandListener {
+
+    // copy-on-write, commands are found by identity first,
+    // since command names are usually constants
+    private volatile CommandStats[] commands = new CommandStats[0];
+    private final ReentrantLock commandsLock = new ReentrantLock();
+
+    private final Map<RedisSocket, ConnectionStats> connections = new ConcurrentHashMap<>();
+    private final ConnectionStats totals = new ConnectionStats(null);
+
+    private CommandStats getStats(byte[] command) {
+        CommandStats[] commands = this.commands;
+        for (CommandStats stats : commands) {
+            if (stats.reference == command) {
+                return stats;
+            }
+        }
+        for (CommandStats stats : commands) {
+            if (Arrays.equals(stats.command, command)) {
+                return stats;
+            }
+        }
+
+        commandsLock.lock();
+        try {
+            for (CommandStats stats : this.commands) {
+                if (Arrays.equals(stats.command, command)) {
+                    return stats;
+                }
+            }
+            CommandStats stats = new CommandStats(command, command.clone());
+            CommandStats[] grown = Arrays.copyOf(this.commands, this.commands.length + 1);
+            grown[grown.length - 1] = stats;
+            this.commands = grown;
+            return stats;
+        } finally {
+            commandsLock.unlock();
+        }
+    }
+
+    private ConnectionStats getStats(RedisSocket socket) {
+        ConnectionStats stats = connections.get(socket);
+        if (stats == null) {
+            stats = connections.computeIfAbsent(socket, key -> new ConnectionStats(key.getAddress()));
+        }
+        return stats;
+    }
+
+    @Override
+    public void onCommand(RedisSocket socket, byte[] command, long latencyNanos, RedisException failure) {
+        CommandStats stats = getStats(command);
+        stats.latency.record(latencyNanos);
+        ConnectionStats connection = getStats(socket);
+        connection.commands.increment();
+        totals.commands.increment();
+        if (failure != null) {
+            stats.errors.increment();
+            connection.errors.increment();
+            totals.errors.increment();
+        }
+    }
+
+    @Override
+    public void onFlush(RedisSocket socket, int commands) {
+        ConnectionStats connection = getStats(socket);
+        connection.flushes.increment();
+        connection.flushedCommands.add(commands);
+        totals.flushes.increment();
+        totals.flushedCommands.add(commands);
+    }
+
+    @Override
+    public void onBytesWritten(RedisSocket socket, int bytes) {
+        getStats(socket).bytesWritten.add(bytes);
+        totals.bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void onBytesRead(RedisSocket socket, int bytes) {
+        ConnectionStats connection = getStats(socket);
+        connection.bytesRead.add(bytes);
+        connection.reads.increment();
+        totals.bytesRead.add(bytes);
+        totals.reads.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Its values are kept in the totals</p>
+     */
+    @Override
+    public void onClose(RedisSocket socket) {
+        connections.remove(socket);
+    }
+
+    /**
+     * Returns the statistics of every command name seen
+     */
+    public List<CommandStats> getCommands() {
+        return Collections.unmodifiableList(Arrays.asList(commands));
+    }
+
+    /**
+     * Returns the statistics of the command with the given
+     * {@code name} (case-sensitive), or null if it wasn't seen
+     */
+    public CommandStats getCommand(String name) {
+        for (CommandStats stats : commands) {
+            if (stats.name.equals(name)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the statistics of the open connections,
+     * the ones of closed connections are only kept
+     * in the {@link CommandMetrics#getTotals totals}
+     */
+    public Collection<ConnectionStats> getConnections() {
+        return Collections.unmodifiableCollection(connections.values());
+    }
+
+    /**
+     * Returns the statistics of all the connections, including
+     * the closed ones, its address is null
+     */
+    public ConnectionStats getTotals() {
+        return totals;
+    }
+
+    /**
+     * Latency and error statistics of a command name
+     */
+    public static final class CommandStats {
+
+        // the array seen first, for identity checks
+        private final byte[] reference;
+        private final byte[] command;
+        private final String name;
+        private final AtomicHistogram latency = new AtomicHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private CommandStats(byte[] reference, byte[] command) {
+            this.reference = reference;
+            this.command = command;
+            this.name = RedisCommands.getName(command);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the count of replies read, including errors
+         */
+        public long getCount() {
+            return latency.getTotalCount();
+        }
+
+        /**
+         * Returns the count of error replies and
+         * connection failures
+         */
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /**
+         * Returns the ratio (between 0 and 1) of failed commands
+         */
+        public double getErrorRate() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getErrorCount() / count;
+        }
+
+        public double getMeanLatencyNanos() {
+            return latency.getMean();
+        }
+
+        public long getMaxLatencyNanos() {
+            return latency.getMax();
+        }
+
+        /**
+         * Returns the latency (in nanoseconds) at the given
+         * {@code percentile} (between 0 and 100), i.e. 99.9 for
+         * p99.9, with a relative error below 3.2%
+         */
+        public long getLatencyNanosAtPercentile(double percentile) {
+            return latency.getValueAtPercentile(percentile);
+        }
+
+        @Override
+        public String toString() {
+            return "CommandStats[" + name + ", count=" + getCount() + ", errors=" + getErrorCount()
+                    + ", p50=" + getLatencyNanosAtPercentile(50) + "ns, p99="
+                    + getLatencyNanosAtPercentile(99) + "ns]";
+        }
+
+    }
+
+    /**
+     * I/O statistics of a connection, or of all of them
+     */
+    public static final class ConnectionStats {
+
+        private final SocketAddress address;
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder flushes = new LongAdder();
+        private final LongAdder flushedCommands = new LongAdder();
+        private final LongAdder commands = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private ConnectionStats(SocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Returns the address of the connection, null
+         * if these are the totals
+         */
+        public SocketAddress getAddress() {
+            return address;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        /**
+         * Returns the count of reads from the network,
+         * i.e. input buffer refills
+         */
+        public long getReadCount() {
+            return reads.sum();
+        }
+
+        public long getFlushCount() {
+            return flushes.sum();
+        }
+
+        /**
+         * Returns the average count of commands written per flush
+         */
+        public double getCommandsPerFlush() {
+            long flushes = getFlushCount();
+            return flushes == 0 ? 0 : (double) flushedCommands.sum() / flushes;
+        }
+
+        /**
+         * Returns the count of replies read, including errors
+         */
+        public long getCommandCount() {
+            return commands.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /**
+         * Returns the ratio (between 0 and 1) of failed commands
+         */
+        public double getErrorRate() {
+            long count = getCommandCount();
+            return count == 0 ? 0 : (double) getErrorCount() / count;
+        }
+
+        @Override
+        public String toString() {
+            return "ConnectionStats[" + address + ", written=" + getBytesWritten() + ", read=" + getBytesRead()
+                    + ", reads=" + getReadCount() + ", flushes=" + getFlushCount()
+                    + ", commands=" + getCommandCount() + ", errors=" + getErrorCount() + "]";
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package team.unnamed.redis.pipelining;
+
+import team.unnamed.redis.KeyBatch;
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.io.BufferConfig;
+import team.unnamed.redis.metrics.CommandListener;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable configuration for an {@link AutoPipeliningRedisClient},
+ * use {@link AutoPipeliningConfig#builder()} to create it
+ */
+public class AutoPipeliningConfig {
+
+    private final int connections;
+    private final int maxBatchSize;
+    private final long maxFlushDelayNanos;
+    private final int batchSize;
+    private final int protocolVersion;
+    private final ThreadFactory readerThreadFactory;
+    private final CommandListener commandListener;
+    private final BufferConfig bufferConfig;
+
+    private AutoPipeliningConfig(Builder builder) {
+        this.connections = builder.connections;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxFlushDelayNanos = builder.maxFlushDelayNanos;
+        this.batchSize = builder.batchSize;
+        this.protocolVersion = builder.protocolVersion;
+        this.readerThreadFactory = builder.readerThreadFactory;
+        this.commandListener = builder.commandListener;
+        this.bufferConfig = builder.bufferConfig;
+    }
+
+    /**
+     * Returns the count of connections shared by the callers, every
+     * thread uses the same connection, so the callers are spread
+     * across them while commands are still coalesced per connection.
+     * A few connections are enough for thousands of (virtual) threads
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns the max count of commands written before a flush,
+     * bigger batches are flushed in parts, so the server starts
+     * processing them earlier
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the max time (in nanoseconds) that a batch waits for
+     * more commands once the queue is empty, zero to flush as soon
+     * as the queue is empty. The wait only happens while previous
+     * batches are in flight, so a single caller is never delayed
+     */
+    public long getMaxFlushDelayNanos() {
+        return maxFlushDelayNanos;
+    }
+
+    /**
+     * Returns the max count of keys sent in a single command
+     * by the multi-key operations (i.e. MGET)
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the protocol version negotiated (using HELLO)
+     * by the connection, 2 (the default) or 3
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Returns the factory for the thread that reads the
+     * replies, or null to use a daemon thread
+     */
+    public ThreadFactory getReaderThreadFactory() {
+        return readerThreadFactory;
+    }
+
+    /**
+     * Returns the listener set to every connection, or
+     * null (the default) to not measure anything
+     */
+    public CommandListener getCommandListener() {
+        return commandListener;
+    }
+
+    /**
+     * Returns the buffer sizing of the connections, by default
+     * their buffers are borrowed from the shared arena
+     */
+    public BufferConfig getBufferConfig() {
+        return bufferConfig;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int connections = 1;
+        private int maxBatchSize = 256;
+        private long maxFlushDelayNanos = 0;
+        private int batchSize = KeyBatch.DEFAULT_CHUNK_SIZE;
+        private int protocolVersion = Resp.RESP2;
+        private ThreadFactory readerThreadFactory;
+        private CommandListener commandListener;
+        private BufferConfig bufferConfig = BufferConfig.defaults();
+
+        private Builder() {
+        }
+
+        public Builder connections(int connections) {
+            if (connections < 1) {
+                throw new IllegalArgumentException("Connection count must be positive");
+            }
+            this.connections = connections;
+            return this;
+        }
+
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Max batch size must be positive");
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder maxFlushDelay(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Max flush delay must not be negative");
+            }
+            this.maxFlushDelayNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder protocolVersion(int protocolVersion) {
+            if (protocolVersion != Resp.RESP2 && protocolVersion != Resp.RESP3) {
+                throw new IllegalArgumentException("Unsupported protocol version: " + protocolVersion);
+            }
+            this.protocolVersion = protocolVersion;
+            return this;
+        }
+
+        public Builder readerThreadFactory(ThreadFactory readerThreadFactory) {
+            this.readerThreadFactory = readerThreadFactory;
+            return this;
+        }
+
+        public Builder commandListener(CommandListener commandListener) {
+            this.commandListener = commandListener;
+            return this;
+        }
+
+        public Builder bufferConfig(BufferConfig bufferConfig) {
+            if (bufferConfig == null) {
+                throw new IllegalArgumentException("Buffer config must not be null");
+            }
+            this.bufferConfig = bufferConfig;
+            return this;
+        }
+
+        public AutoPipeliningConfig build() {
+            return new AutoPipeliningConfig(this);
+        }
+
+    }
+
+}
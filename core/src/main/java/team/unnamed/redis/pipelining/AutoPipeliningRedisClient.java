@@ -0,0 +1,410 @@
+package team.unnamed.redis.pipelining;
+
+import team.unnamed.redis.KeyBatch;
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Doubles;
+import team.unnamed.redis.io.Integers;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.BlockingRedisSubscription;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe {@link RedisClient} whose commands, issued by any
+ * count of threads, are automatically pipelined in a small set of
+ * shared connections: commands issued concurrently are written
+ * together and sent in a single flush, while every caller blocks
+ * until its own reply is read, so the API (and the code using it)
+ * doesn't change.
+ *
+ * <p>The fewer round trips and syscalls, the higher the throughput
+ * under concurrency, a single caller gets the same latency as with
+ * {@link RedisClient#create(SocketAddress)}. Flushing and the count
+ * of connections are configured by {@link AutoPipeliningConfig}</p>
+ *
+ * <p>It's suitable for virtual threads: callers never hold a monitor,
+ * they take the write lock without blocking (the thread holding it
+ * writes the commands of the others) and wait for their reply using
+ * {@link java.util.concurrent.locks.LockSupport#park}, so a waiting
+ * virtual thread unmounts instead of pinning its carrier</p>
+ *
+ * <p>Subscriptions take a dedicated connection, closed once all
+ * the channels are unsubscribed. So do streamed reads and writes,
+ * whose connection is closed along with the stream (or once the
+ * command completes), a failed stream never breaks the shared
+ * connections</p>
+ */
+public class AutoPipeliningRedisClient implements RedisClient {
+
+    private static final Function<RedisSocket, String> STRING_REPLY
+            = socket -> Strings.decode((byte[]) socket.readReply());
+
+    private final SocketAddress address;
+    private final AutoPipeliningConfig config;
+    private final CoalescingConnection[] connections;
+
+    private AutoPipeliningRedisClient(SocketAddress address, AutoPipeliningConfig config, RedisSocket[] sockets) {
+        this.address = address;
+        this.config = config;
+        this.connections = new CoalescingConnection[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            connections[i] = new CoalescingConnection(sockets[i], config);
+        }
+    }
+
+    /**
+     * Creates a new client for the given {@code address},
+     * its connections are established in the calling thread
+     * @throws RedisException If a connection fails
+     */
+    public static AutoPipeliningRedisClient create(SocketAddress address, AutoPipeliningConfig config) {
+        RedisSocket[] sockets = new RedisSocket[config.getConnections()];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = connect(address, config);
+            }
+        } catch (RedisException e) {
+            for (RedisSocket socket : sockets) {
+                if (socket != null) {
+                    closeQuietly(socket);
+                }
+            }
+            throw e;
+        }
+        return new AutoPipeliningRedisClient(address, config, sockets);
+    }
+
+    private static RedisSocket connect(SocketAddress address, AutoPipeliningConfig config) {
+        try {
+            RedisSocket socket = new RedisSocket(address, config.getProtocolVersion(), config.getBufferConfig());
+            socket.setCommandListener(config.getCommandListener());
+            return socket;
+        } catch (IOException e) {
+            throw new RedisException("Error while connecting to redis server", e);
+        }
+    }
+
+    public AutoPipeliningConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the count of commands written by this client
+     */
+    public long getCommandCount() {
+        long count = 0;
+        for (CoalescingConnection connection : connections) {
+            count += connection.getCommandCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the count of flushes done by this client, the
+     * average count of commands per flush is the count of
+     * commands divided by this
+     */
+    public long getFlushCount() {
+        long count = 0;
+        for (CoalescingConnection connection : connections) {
+            count += connection.getFlushCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the connection used by the calling thread, threads
+     * are striped by their id, so the choice is stable and doesn't
+     * need any shared state
+     */
+    private CoalescingConnection connection() {
+        if (connections.length == 1) {
+            return connections[0];
+        }
+        return connections[(int) (Thread.currentThread().getId() % connections.length)];
+    }
+
+    private <T> T execute(Consumer<RedisSocket> writer, Function<RedisSocket, T> reader) {
+        QueuedCommand<T> command = QueuedCommand.of(writer, reader);
+        connection().submit(command);
+        command.await();
+        return command.getResult();
+    }
+
+    /**
+     * Same as {@link AutoPipeliningRedisClient#execute} but for
+     * commands returning a primitive long, so it's never boxed
+     */
+    private long executeLong(Consumer<RedisSocket> writer, ToLongFunction<RedisSocket> reader) {
+        QueuedCommand<Void> command = QueuedCommand.ofLong(writer, reader);
+        connection().submit(command);
+        command.await();
+        return command.getLongResult();
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        return execute(socket -> socket.writeCommand(RedisCommands.SET, key, value), STRING_REPLY);
+    }
+
+    @Override
+    public String set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    /**
+     * Executes the given {@code action} using a dedicated connection,
+     * closed once it's done, for commands that can fail halfway
+     * through a write
+     */
+    private <T> T executeDedicated(Function<RedisSocket, T> action) {
+        try (RedisSocket socket = connect(address, config)) {
+            return action.apply(socket);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The value is sent using a dedicated connection, so
+     * a short stream can't break the shared connections</p>
+     */
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        return executeDedicated(socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value, length);
+            socket.flush();
+            return STRING_REPLY.apply(socket);
+        });
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        return execute(socket -> socket.writeCommand(RedisCommands.SET, new byte[][] { key }, value),
+                STRING_REPLY);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The file is sent using a dedicated connection, so
+     * a short file can't break the shared connections</p>
+     */
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        return executeDedicated(socket -> {
+            socket.writeCommand(RedisCommands.SET, new byte[][] { key }, file, position, length);
+            socket.flush();
+            return STRING_REPLY.apply(socket);
+        });
+    }
+
+    @Override
+    public String get(byte[] key) {
+        return execute(socket -> socket.writeCommand(RedisCommands.GET, key), STRING_REPLY);
+    }
+
+    @Override
+    public String get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The visitor is called by the reader thread</p>
+     */
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        execute(socket -> socket.writeCommand(RedisCommands.GET, key), socket -> {
+            socket.readReply(visitor);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The value is read using a dedicated connection,
+     * closed along with the returned stream</p>
+     */
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        RedisSocket socket = connect(address, config);
+        BulkStringInputStream stream;
+        try {
+            socket.writeCommand(RedisCommands.GET, key);
+            socket.flush();
+            stream = socket.readBulkStringStream(() -> closeQuietly(socket));
+        } catch (RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+        if (stream == null) {
+            // nil reply, there's no stream to close it
+            closeQuietly(socket);
+        }
+        return stream;
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        return executeLong(socket -> socket.writeCommand(RedisCommands.INCR, key), RedisSocket::readLongReply);
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        return executeLong(socket -> socket.writeCommand(RedisCommands.INCRBY, key, Integers.toByteArray(increment)),
+                RedisSocket::readLongReply);
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        return executeLong(socket -> socket.writeCommand(RedisCommands.DECRBY, key, Integers.toByteArray(decrement)),
+                RedisSocket::readLongReply);
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        return execute(socket -> socket.writeCommand(RedisCommands.INCRBYFLOAT, key, Doubles.toByteArray(increment)),
+                RedisSocket::readDoubleReply);
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        KeyBatch batch = KeyBatch.mget(keys);
+        execute(batch);
+        return batch.getValues();
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        execute(KeyBatch.mset(entries));
+        return "OK";
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        KeyBatch batch = KeyBatch.unlink(keys);
+        execute(batch);
+        return batch.getCount();
+    }
+
+    /**
+     * Executes all the chunks of the given {@code batch} as a
+     * single queued command, so they're written together
+     */
+    private void execute(KeyBatch batch) {
+        batch.split(config.getBatchSize(), null);
+        execute(batch::writeAll, socket -> {
+            batch.readAll(socket);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The pipeline doesn't take the connection, its commands
+     * are queued together when it's synced</p>
+     */
+    @Override
+    public Pipeline pipelined() {
+        return new CoalescingPipeline(connection());
+    }
+
+    @Override
+    public void subscribe(RedisSubscriber subscriber, String... channels) {
+        subscribe(Strings.encodeArray(channels), socket -> new BlockingRedisSubscription(socket, subscriber));
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        return subscribe(Strings.encodeArray(channels), (socket, finishAction) ->
+                new DispatchingRedisSubscription(socket, subscriber, config, finishAction));
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        subscribe(channels, socket -> new BlockingRedisSubscription(socket, subscriber));
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        return subscribe(channels, (socket, finishAction) ->
+                new DispatchingRedisSubscription(socket, subscriber, config, finishAction));
+    }
+
+    private void subscribe(byte[][] channels, Function<RedisSocket, BlockingRedisSubscription> factory) {
+        try (RedisSocket socket = connect(address, config)) {
+            socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
+            socket.flush();
+
+            // blocking operation! the connection is closed once
+            // all the channels are unsubscribed
+            factory.apply(socket).run();
+        }
+    }
+
+    private DispatchingRedisSubscription subscribe(
+            byte[][] channels,
+            BiFunction<RedisSocket, Consumer<RuntimeException>, DispatchingRedisSubscription> factory
+    ) {
+        RedisSocket socket = connect(address, config);
+        try {
+            socket.writeCommand(RedisCommands.SUBSCRIBE, channels);
+            socket.flush();
+        } catch (RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+
+        // the connection is closed once all the
+        // channels are unsubscribed
+        return factory.apply(socket, failure -> closeQuietly(socket));
+    }
+
+    private static void closeQuietly(RedisSocket socket) {
+        try {
+            socket.close();
+        } catch (RedisException ignored) {
+            // connection is probably already broken
+        }
+    }
+
+    /**
+     * Closes the shared connections, commands waiting
+     * for their reply fail
+     */
+    @Override
+    public void close() {
+        for (CoalescingConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+}
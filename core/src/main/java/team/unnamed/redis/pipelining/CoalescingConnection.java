@@ -0,0 +1,295 @@
+package team.unnamed.redis.pipelining;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisReplyException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.metrics.CommandListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link RedisSocket} shared by many threads, whose commands are
+ * coalesced: every caller queues its command and tries to take the
+ * write lock, the thread that takes it writes every queued command
+ * (its own and the ones queued by other callers meanwhile) and
+ * flushes them together, the others just wait for their reply.
+ *
+ * <p>A batch is flushed when the queue is empty (or, while previous
+ * batches are in flight, once no command arrives for the configured
+ * max flush delay) or when it reaches the max batch size</p>
+ *
+ * <p>Replies are read by a dedicated reader thread, in the same order
+ * the commands were written, since redis replies in order</p>
+ *
+ * <p>No caller ever blocks on a lock or monitor: the write lock is
+ * only tried, and waiting for a reply parks, so virtual threads
+ * never pin their carrier</p>
+ */
+final class CoalescingConnection implements Closeable {
+
+    private static final QueuedCommand<?> CLOSE = QueuedCommand.of(socket -> {}, socket -> null);
+
+    // times the queue is polled before parking while waiting
+    // for more commands, a caller is usually just behind
+    private static final int AWAIT_SPINS = 64;
+
+    private final RedisSocket socket;
+    private final int maxBatchSize;
+    private final long maxFlushDelayNanos;
+
+    private final ConcurrentLinkedQueue<QueuedCommand<?>> queue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // written commands, waiting for their reply
+    private final BlockingQueue<QueuedCommand<?>> inFlight = new LinkedBlockingQueue<>();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final Thread reader;
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private final AtomicReference<RedisException> closeCause = new AtomicReference<>();
+
+    CoalescingConnection(RedisSocket socket, AutoPipeliningConfig config) {
+        this.socket = socket;
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.maxFlushDelayNanos = config.getMaxFlushDelayNanos();
+
+        ThreadFactory readerFactory = config.getReaderThreadFactory();
+        if (readerFactory == null) {
+            readerFactory = task -> {
+                Thread thread = new Thread(task, "redis-auto-pipelining-reader");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        this.reader = readerFactory.newThread(this::read);
+        this.reader.start();
+    }
+
+    RedisSocket getSocket() {
+        return socket;
+    }
+
+    boolean isOpen() {
+        return closeCause.get() == null;
+    }
+
+    /**
+     * Returns the count of commands written by this connection
+     */
+    long getCommandCount() {
+        return commands.sum();
+    }
+
+    /**
+     * Returns the count of flushes, so the average batch
+     * size is the count of commands divided by this
+     */
+    long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * Queues the given {@code command} and writes the queue if no
+     * other thread is doing it, the command is completed by the
+     * reader thread, the caller must wait for it
+     */
+    void submit(QueuedCommand<?> command) {
+        enqueue(command);
+        drain();
+    }
+
+    /**
+     * Same as {@link CoalescingConnection#submit} but for many
+     * commands, that are written in the same batch
+     */
+    void submitAll(Iterable<? extends QueuedCommand<?>> commands) {
+        for (QueuedCommand<?> command : commands) {
+            enqueue(command);
+        }
+        drain();
+    }
+
+    private void enqueue(QueuedCommand<?> command) {
+        command.setWaiter(Thread.currentThread());
+        RedisException cause = closeCause.get();
+        if (cause != null) {
+            command.fail(cause);
+            return;
+        }
+        queue.add(command);
+        cause = closeCause.get();
+        if (cause != null) {
+            // closed while we were adding it, it may never be written
+            failQueued(cause);
+        }
+    }
+
+    /**
+     * Writes the queued commands while they keep arriving and no other
+     * thread is writing them. A command queued while another thread
+     * holds the lock is written by it, since it checks the queue again
+     * after releasing the lock
+     */
+    private void drain() {
+        while (!queue.isEmpty() && writeLock.tryLock()) {
+            try {
+                writeQueued();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void writeQueued() {
+        int batch = 0;
+        while (true) {
+            QueuedCommand<?> command = queue.poll();
+            if (command == null && batch > 0 && maxFlushDelayNanos > 0 && inFlightCount.get() > batch) {
+                // other batches are in flight, so more callers are
+                // likely coming, wait for them before flushing
+                command = awaitQueued();
+            }
+            if (command == null) {
+                break;
+            }
+
+            // added before it's written, so replies are read in order
+            inFlightCount.incrementAndGet();
+            inFlight.add(command);
+            if (closeCause.get() != null) {
+                failInFlight(closeCause.get());
+                return;
+            }
+            try {
+                command.write(socket);
+            } catch (RuntimeException e) {
+                // the output may contain a partial command
+                close(e instanceof RedisException ? (RedisException) e : new RedisException(e));
+                return;
+            }
+            commands.increment();
+
+            if (++batch >= maxBatchSize) {
+                flush();
+                batch = 0;
+            }
+        }
+        if (batch > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Waits up to the max flush delay for a command to be queued,
+     * it spins briefly and then parks, so the write lock holder
+     * doesn't burn a CPU for the whole delay
+     */
+    private QueuedCommand<?> awaitQueued() {
+        long deadline = System.nanoTime() + maxFlushDelayNanos;
+        QueuedCommand<?> command;
+        for (int i = 0; i < AWAIT_SPINS; i++) {
+            if ((command = queue.poll()) != null) {
+                return command;
+            }
+            Thread.yield();
+        }
+        long remaining;
+        while ((command = queue.poll()) == null && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        return command;
+    }
+
+    private void flush() {
+        try {
+            socket.flush();
+            flushes.increment();
+        } catch (RuntimeException e) {
+            close(e instanceof RedisException ? (RedisException) e : new RedisException(e));
+        }
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                QueuedCommand<?> command = inFlight.take();
+                if (command == CLOSE) {
+                    return;
+                }
+                inFlightCount.decrementAndGet();
+                command.read(socket);
+            }
+        } catch (InterruptedException e) {
+            close(new RedisException("Reader thread interrupted", e));
+        } catch (RedisException e) {
+            close(e);
+        } catch (RuntimeException e) {
+            close(new RedisException(e));
+        }
+    }
+
+    private void failQueued(RedisException cause) {
+        QueuedCommand<?> command;
+        while ((command = queue.poll()) != null) {
+            command.fail(cause);
+        }
+    }
+
+    private void failInFlight(RedisException cause) {
+        for (QueuedCommand<?> command : inFlight) {
+            command.fail(cause);
+        }
+    }
+
+    /**
+     * Closes the connection, queued and in-flight
+     * commands fail with the given {@code cause}
+     */
+    private void close(RedisException cause) {
+        if (!closeCause.compareAndSet(null, cause)) {
+            return;
+        }
+        try {
+            // unblocks the reader thread
+            socket.getSocket().close();
+        } catch (IOException ignored) {
+        }
+        CommandListener listener = socket.getCommandListener();
+        if (listener != null) {
+            listener.onClose(socket);
+        }
+        failQueued(cause);
+        failInFlight(cause);
+        inFlight.add(CLOSE);
+    }
+
+    /**
+     * Closes the connection, commands waiting for
+     * their reply fail
+     */
+    @Override
+    public void close() {
+        close(new RedisException("Connection closed"));
+    }
+
+    /**
+     * Determines if the given {@code exception} means that the
+     * connection is in an unknown state and must not be reused
+     */
+    static boolean isBroken(RuntimeException exception) {
+        // only error replies are thrown after the whole reply is read
+        return !(exception instanceof RedisReplyException);
+    }
+
+}
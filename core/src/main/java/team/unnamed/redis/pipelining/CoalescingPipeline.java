@@ -0,0 +1,108 @@
+package team.unnamed.redis.pipelining;
+
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link Pipeline} for a {@link CoalescingConnection}, commands are
+ * kept until it's synced and then queued together, so they're
+ * written in the same batch, maybe along with commands of other
+ * threads. The connection is never taken by the pipeline
+ */
+final class CoalescingPipeline implements Pipeline {
+
+    private static final Function<RedisSocket, String> STRING_REPLY
+            = socket -> Strings.decode((byte[]) socket.readReply());
+
+    private final CoalescingConnection connection;
+    private final List<QueuedCommand<String>> commands = new ArrayList<>();
+    private final List<CompletableFuture<String>> futures = new ArrayList<>();
+
+    CoalescingPipeline(CoalescingConnection connection) {
+        this.connection = connection;
+    }
+
+    private CompletableFuture<String> queue(byte[] command, byte[]... args) {
+        commands.add(QueuedCommand.of(socket -> socket.writeCommand(command, args), STRING_REPLY));
+        CompletableFuture<String> future = new CompletableFuture<>();
+        futures.add(future);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<String> set(byte[] key, byte[] value) {
+        return queue(RedisCommands.SET, key, value);
+    }
+
+    @Override
+    public CompletableFuture<String> set(String key, String value) {
+        return set(Strings.encode(key), Strings.encode(value));
+    }
+
+    @Override
+    public CompletableFuture<String> get(byte[] key) {
+        return queue(RedisCommands.GET, key);
+    }
+
+    @Override
+    public CompletableFuture<String> get(String key) {
+        return get(Strings.encode(key));
+    }
+
+    @Override
+    public int size() {
+        return commands.size();
+    }
+
+    @Override
+    public List<Object> sync() {
+        if (commands.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        connection.submitAll(commands);
+
+        List<Object> replies = new ArrayList<>(commands.size());
+        RuntimeException failure = null;
+        for (int i = 0; i < commands.size(); i++) {
+            QueuedCommand<String> command = commands.get(i);
+            CompletableFuture<String> future = futures.get(i);
+            command.await();
+            try {
+                String reply = command.getResult();
+                future.complete(reply);
+                replies.add(reply);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                if (CoalescingConnection.isBroken(e)) {
+                    // the following commands fail too
+                    failure = e;
+                } else {
+                    // error reply, the following replies are still read
+                    replies.add(e);
+                }
+            }
+        }
+        commands.clear();
+        futures.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+        return replies;
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+}
@@ -0,0 +1,154 @@
+package team.unnamed.redis.pipelining;
+
+import team.unnamed.redis.RedisSocket;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A command queued in a {@link CoalescingConnection}, it's written
+ * by whichever thread is writing the batch, its reply is read by
+ * the reader thread and the caller is unparked once it's done
+ */
+final class QueuedCommand<T> {
+
+    private static final int PENDING = 0;
+    // claimed by the thread completing it, its result isn't set yet
+    private static final int COMPLETING = 1;
+    private static final int DONE = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<QueuedCommand> STATE
+            = AtomicIntegerFieldUpdater.newUpdater(QueuedCommand.class, "state");
+
+    private final Consumer<RedisSocket> writer;
+    // exactly one of them is set, so primitive replies are never boxed
+    private final Function<RedisSocket, T> reader;
+    private final ToLongFunction<RedisSocket> longReader;
+
+    private volatile Thread waiter;
+    private volatile int state = PENDING;
+    private T result;
+    private long longResult;
+    private RuntimeException failure;
+
+    private QueuedCommand(
+            Consumer<RedisSocket> writer,
+            Function<RedisSocket, T> reader,
+            ToLongFunction<RedisSocket> longReader
+    ) {
+        this.writer = writer;
+        this.reader = reader;
+        this.longReader = longReader;
+    }
+
+    static <T> QueuedCommand<T> of(Consumer<RedisSocket> writer, Function<RedisSocket, T> reader) {
+        return new QueuedCommand<>(writer, reader, null);
+    }
+
+    static QueuedCommand<Void> ofLong(Consumer<RedisSocket> writer, ToLongFunction<RedisSocket> reader) {
+        return new QueuedCommand<>(writer, null, reader);
+    }
+
+    /**
+     * Sets the thread unparked once this command is done,
+     * called before the command is queued
+     */
+    void setWaiter(Thread waiter) {
+        this.waiter = waiter;
+    }
+
+    void write(RedisSocket socket) {
+        writer.accept(socket);
+    }
+
+    /**
+     * Reads the reply of this command and completes it, error
+     * replies complete it exceptionally
+     * @throws RuntimeException If the reply may not have been
+     * read completely (i.e. a conversion error or a broken
+     * connection), the command is failed before
+     */
+    void read(RedisSocket socket) {
+        T value = null;
+        long longValue = 0;
+        try {
+            if (reader != null) {
+                value = reader.apply(socket);
+            } else {
+                longValue = longReader.applyAsLong(socket);
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            if (CoalescingConnection.isBroken(e)) {
+                throw e;
+            }
+            return;
+        }
+        if (STATE.compareAndSet(this, PENDING, COMPLETING)) {
+            result = value;
+            longResult = longValue;
+            publish();
+        }
+    }
+
+    void fail(RuntimeException failure) {
+        if (STATE.compareAndSet(this, PENDING, COMPLETING)) {
+            this.failure = failure;
+            publish();
+        }
+    }
+
+    private void publish() {
+        // the result is published by the volatile write
+        state = DONE;
+        Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    boolean isDone() {
+        return state == DONE;
+    }
+
+    /**
+     * Parks the calling thread until this command is done,
+     * interrupts don't abandon it, since its reply would be
+     * read anyway, the interrupt status is restored
+     */
+    void await() {
+        boolean interrupted = false;
+        while (state != DONE) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the result of this command, it must be done
+     * @throws RuntimeException If the command failed
+     */
+    T getResult() {
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    long getLongResult() {
+        if (failure != null) {
+            throw failure;
+        }
+        return longResult;
+    }
+
+}
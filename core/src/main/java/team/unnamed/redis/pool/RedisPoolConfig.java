@@ -0,0 +1,258 @@
+package team.unnamed.redis.pool;
+
+import team.unnamed.redis.KeyBatch;
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.io.BufferConfig;
+import team.unnamed.redis.metrics.CommandListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable configuration for a {@link RedisSocketPool},
+ * use {@link RedisPoolConfig#builder()} to create it
+ */
+public class RedisPoolConfig {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long evictionIntervalMillis;
+    private final long validationIntervalMillis;
+    private final long validationTimeoutMillis;
+    private final int protocolVersion;
+    private final int batchSize;
+    private final int batchParallelism;
+    private final CommandListener commandListener;
+    private final BufferConfig bufferConfig;
+
+    private RedisPoolConfig(Builder builder) {
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.maxWaitMillis = builder.maxWaitMillis;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.evictionIntervalMillis = builder.evictionIntervalMillis;
+        this.validationIntervalMillis = builder.validationIntervalMillis;
+        this.validationTimeoutMillis = builder.validationTimeoutMillis;
+        this.protocolVersion = builder.protocolVersion;
+        this.batchSize = builder.batchSize;
+        this.batchParallelism = builder.batchParallelism;
+        this.commandListener = builder.commandListener;
+        this.bufferConfig = builder.bufferConfig;
+    }
+
+    /**
+     * Returns the count of connections that the pool keeps
+     * open, even if they are idle
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns the max count of connections that can be
+     * open at the same time
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the max time (in milliseconds) that a caller
+     * waits for a connection when the pool is exhausted
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the time (in milliseconds) that a connection
+     * can be idle before being evicted
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Returns the interval (in milliseconds) between idle
+     * eviction runs
+     */
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    /**
+     * Returns the time (in milliseconds) that a connection
+     * can be idle before being validated (using PING) when
+     * it's checked out, zero to validate every time
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    /**
+     * Returns the max time (in milliseconds) that the validation
+     * waits for the PING reply, the connection is discarded if
+     * it doesn't answer in time
+     */
+    public long getValidationTimeoutMillis() {
+        return validationTimeoutMillis;
+    }
+
+    /**
+     * Returns the protocol version negotiated (using HELLO)
+     * by the connections, 2 (the default) or 3
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Returns the max count of keys sent in a single command by
+     * the multi-key operations (i.e. MGET), bigger batches are
+     * split in chunks, so the server isn't blocked for too long
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the max count of connections used by a single
+     * multi-key operation, its chunks are written to all of them
+     * before reading the replies. Only idle connections are
+     * used, besides the first one
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * Returns the listener set to every connection, or
+     * null (the default) to not measure anything
+     */
+    public CommandListener getCommandListener() {
+        return commandListener;
+    }
+
+    /**
+     * Returns the buffer sizing of the connections, by default
+     * their buffers are borrowed from the shared arena
+     */
+    public BufferConfig getBufferConfig() {
+        return bufferConfig;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int minSize = 0;
+        private int maxSize = 8;
+        private long maxWaitMillis = TimeUnit.SECONDS.toMillis(5);
+        private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(1);
+        private long evictionIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+        private long validationIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+        private long validationTimeoutMillis = TimeUnit.SECONDS.toMillis(1);
+        private int protocolVersion = Resp.RESP2;
+        private int batchSize = KeyBatch.DEFAULT_CHUNK_SIZE;
+        private int batchParallelism = 4;
+        private CommandListener commandListener;
+        private BufferConfig bufferConfig = BufferConfig.defaults();
+
+        private Builder() {
+        }
+
+        public Builder minSize(int minSize) {
+            if (minSize < 0) {
+                throw new IllegalArgumentException("Min size must not be negative");
+            }
+            this.minSize = minSize;
+            return this;
+        }
+
+        public Builder maxSize(int maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("Max size must be positive");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder maxWait(long duration, TimeUnit unit) {
+            this.maxWaitMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder idleTimeout(long duration, TimeUnit unit) {
+            this.idleTimeoutMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder evictionInterval(long duration, TimeUnit unit) {
+            this.evictionIntervalMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder validationInterval(long duration, TimeUnit unit) {
+            this.validationIntervalMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder validationTimeout(long duration, TimeUnit unit) {
+            if (duration < 1) {
+                throw new IllegalArgumentException("Validation timeout must be positive");
+            }
+            this.validationTimeoutMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder protocolVersion(int protocolVersion) {
+            if (protocolVersion != Resp.RESP2 && protocolVersion != Resp.RESP3) {
+                throw new IllegalArgumentException("Unsupported protocol version: " + protocolVersion);
+            }
+            this.protocolVersion = protocolVersion;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder batchParallelism(int batchParallelism) {
+            if (batchParallelism < 1) {
+                throw new IllegalArgumentException("Batch parallelism must be positive");
+            }
+            this.batchParallelism = batchParallelism;
+            return this;
+        }
+
+        public Builder commandListener(CommandListener commandListener) {
+            this.commandListener = commandListener;
+            return this;
+        }
+
+        public Builder bufferConfig(BufferConfig bufferConfig) {
+            if (bufferConfig == null) {
+                throw new IllegalArgumentException("Buffer config must not be null");
+            }
+            this.bufferConfig = bufferConfig;
+            return this;
+        }
+
+        public RedisPoolConfig build() {
+            if (minSize > maxSize) {
+                throw new IllegalArgumentException("Min size (" + minSize
+                        + ") is greater than max size (" + maxSize + ")");
+            }
+            return new RedisPoolConfig(this);
+        }
+
+    }
+
+}
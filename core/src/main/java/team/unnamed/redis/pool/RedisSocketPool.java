@@ -0,0 +1,418 @@
+package team.unnamed.redis.pool;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe pool of {@link RedisSocket} connections to
+ * a single address.
+ *
+ * <p>The hot path is lock-free: idle connections are kept
+ * in a LIFO {@link ConcurrentLinkedDeque} (so recently used,
+ * warm connections are reused first) and the max size is
+ * enforced by a non-fair {@link Semaphore}, which only blocks
+ * when the pool is exhausted</p>
+ */
+public class RedisSocketPool implements Closeable {
+
+    private static final byte[] PONG = { 'P', 'O', 'N', 'G' };
+
+    private final SocketAddress address;
+    private final RedisPoolConfig config;
+    // executed for every new connection, may be null
+    private final Consumer<RedisSocket> initializer;
+
+    private final ConcurrentLinkedDeque<IdleSocket> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // borrowers waiting for a place taken by the evictor
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public RedisSocketPool(SocketAddress address, RedisPoolConfig config) {
+        this(address, config, null);
+    }
+
+    /**
+     * Creates a pool whose new connections are passed to the
+     * given {@code initializer} before being used, i.e. to
+     * enable client tracking, a connection is discarded if
+     * its initialization fails
+     */
+    public RedisSocketPool(SocketAddress address, RedisPoolConfig config, Consumer<RedisSocket> initializer) {
+        this.address = address;
+        this.config = config;
+        this.initializer = initializer;
+        this.permits = new Semaphore(config.getMaxSize());
+
+        fillMinSize();
+
+        if (config.getEvictionIntervalMillis() > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redis-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getEvictionIntervalMillis();
+            evictor.scheduleWithFixedDelay(this::evict, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    public RedisPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the count of open connections, including
+     * borrowed and idle connections
+     */
+    public int getOpenCount() {
+        return size.get();
+    }
+
+    /**
+     * Returns the count of connections that are currently
+     * checked out
+     */
+    public int getActiveCount() {
+        return config.getMaxSize() - permits.availablePermits();
+    }
+
+    /**
+     * Returns the count of idle connections
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Checks out a connection from this pool, waiting at most
+     * {@link RedisPoolConfig#getMaxWaitMillis()} if the pool is
+     * exhausted. The connection must be returned using
+     * {@link RedisSocketPool#release} or {@link RedisSocketPool#invalidate}
+     * @throws RedisException If the pool is closed, the wait
+     * times out or a new connection can't be established
+     */
+    public RedisSocket borrow() {
+        ensureOpen();
+
+        try {
+            if (!permits.tryAcquire(config.getMaxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RedisException("Timed out waiting for a connection after "
+                        + config.getMaxWaitMillis() + "ms (max size: " + config.getMaxSize() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            return take();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks out an idle connection from this pool (or opens a new
+     * one if the pool isn't full) without waiting, returns null if
+     * the pool is exhausted
+     * @throws RedisException If the pool is closed or a new
+     * connection can't be established
+     */
+    public RedisSocket tryBorrow() {
+        ensureOpen();
+
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+
+        try {
+            return take();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private RedisSocket take() {
+        long deadline = 0;
+        while (true) {
+            ensureOpen();
+            IdleSocket entry = idle.pollFirst();
+
+            if (entry != null) {
+                if (validate(entry)) {
+                    return entry.socket;
+                } else {
+                    destroy(entry.socket);
+                    continue;
+                }
+            }
+
+            if (reserve()) {
+                try {
+                    return connect();
+                } catch (IOException | RedisException e) {
+                    size.decrementAndGet();
+                    throw new RedisException("Error while connecting to redis server", e);
+                }
+            }
+
+            // the pool is full but the evictor is opening (or
+            // closing) a connection right now, wait for it
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+            }
+            awaitAvailable(deadline);
+        }
+    }
+
+    /**
+     * Waits until an idle connection is added or a new one can be
+     * opened, connections being opened by the evictor (or closed)
+     * take a place in the pool without holding a permit
+     */
+    private void awaitAvailable(long deadline) {
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            long remaining = deadline - System.nanoTime();
+            while (!closed && idle.isEmpty() && size.get() >= config.getMaxSize()) {
+                if (remaining <= 0) {
+                    throw new RedisException("Timed out waiting for a connection after "
+                            + config.getMaxWaitMillis() + "ms (max size: " + config.getMaxSize() + ")");
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisException("Interrupted while waiting for a connection", e);
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    private void signalAvailable() {
+        // the lock is only taken if someone is waiting
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the given borrowed {@code socket} to this pool, so
+     * it can be reused
+     */
+    public void release(RedisSocket socket) {
+        try {
+            if (closed || !socket.isOpen()) {
+                destroy(socket);
+            } else {
+                // idle connections don't hold buffers
+                socket.releaseBuffers();
+                idle.offerFirst(new IdleSocket(socket, System.currentTimeMillis()));
+                signalAvailable();
+
+                // pool may have been closed while we were adding it
+                if (closed) {
+                    closeIdle();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the given borrowed {@code socket} to this pool but
+     * closes it instead of reusing it, should be used when the
+     * connection state is unknown (I/O error, unread replies...)
+     */
+    public void invalidate(RedisSocket socket) {
+        try {
+            destroy(socket);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reserve() {
+        int max = config.getMaxSize();
+        while (true) {
+            int current = size.get();
+            if (current >= max) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean validate(IdleSocket entry) {
+        RedisSocket socket = entry.socket;
+        if (!socket.isOpen()) {
+            return false;
+        }
+        long idleTime = System.currentTimeMillis() - entry.idleSince;
+        if (idleTime < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            // a server that stopped answering must not block the borrower
+            int timeout = socket.getSocket().getSoTimeout();
+            socket.getSocket().setSoTimeout((int) Math.min(config.getValidationTimeoutMillis(), Integer.MAX_VALUE));
+            socket.writeCommand(RedisCommands.PING);
+            socket.flush();
+            Object reply = socket.readReply();
+            socket.getSocket().setSoTimeout(timeout);
+            return reply instanceof byte[] && Arrays.equals(PONG, (byte[]) reply);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void destroy(RedisSocket socket) {
+        size.decrementAndGet();
+        signalAvailable();
+        try {
+            socket.close();
+        } catch (RedisException ignored) {
+            // connection is probably already broken
+        }
+    }
+
+    private RedisSocket connect() throws IOException {
+        RedisSocket socket = new RedisSocket(address, config.getProtocolVersion(), config.getBufferConfig());
+        if (initializer != null) {
+            try {
+                initializer.accept(socket);
+            } catch (RuntimeException e) {
+                // the caller releases the reserved size
+                try {
+                    socket.close();
+                } catch (RedisException ignored) {
+                }
+                throw e;
+            }
+        }
+        // set after the initializer, so only the
+        // commands of the client are measured
+        socket.setCommandListener(config.getCommandListener());
+        return socket;
+    }
+
+    private void fillMinSize() {
+        while (!closed && size.get() < config.getMinSize()) {
+            int current = size.get();
+            if (!size.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            try {
+                idle.offerLast(new IdleSocket(connect(), System.currentTimeMillis()));
+            } catch (IOException | RedisException e) {
+                size.decrementAndGet();
+                // don't fail, borrowers will retry and
+                // report the error
+                return;
+            } finally {
+                signalAvailable();
+            }
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        long timeout = config.getIdleTimeoutMillis();
+
+        // oldest idle connections are at the tail
+        Iterator<IdleSocket> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && size.get() > config.getMinSize()) {
+            IdleSocket entry = iterator.next();
+            if (now - entry.idleSince < timeout) {
+                break;
+            }
+            // removal fails if a borrower took it concurrently
+            if (idle.removeFirstOccurrence(entry)) {
+                destroy(entry.socket);
+            }
+        }
+
+        fillMinSize();
+    }
+
+    private void closeIdle() {
+        IdleSocket entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry.socket);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new RedisException("Pool is closed");
+        }
+    }
+
+    /**
+     * Closes this pool and all its idle connections, borrowed
+     * connections are closed when they're released
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        closeIdle();
+        signalAvailable();
+    }
+
+    private static class IdleSocket {
+
+        private final RedisSocket socket;
+        private final long idleSince;
+
+        private IdleSocket(RedisSocket socket, long idleSince) {
+            this.socket = socket;
+            this.idleSince = idleSince;
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package team.unnamed.redis.pubsub;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a subscriber for a set of redis channels that
+ * receives the raw message payloads, without decoding them
+ * to {@link String}s. Channel and pattern names are resolved
+ * through a cache, so repeated names are the same object and
+ * they're not decoded for every message.
+ *
+ * <p>Payloads are slices of a buffer that is reused, they're
+ * only valid during the call, so they must be copied if they're
+ * used after the method returns and must never be modified</p>
+ *
+ * @see RedisSubscriber
+ */
+public interface BinaryRedisSubscriber {
+
+    /**
+     * Called when 'MESSAGE' is received, the payload is the
+     * {@code length} bytes of {@code buffer} starting at
+     * {@code offset}. It calls {@link BinaryRedisSubscriber#onMessage(String, ByteBuffer)}
+     * by default
+     * @param channel The message channel
+     */
+    default void onMessage(String channel, byte[] buffer, int offset, int length) {
+        onMessage(channel, ByteBuffer.wrap(buffer, offset, length).asReadOnlyBuffer());
+    }
+
+    /**
+     * Called when 'MESSAGE' is received, if the byte array
+     * variant is not overridden. The payload is the remaining
+     * bytes of the given read-only {@code message}
+     * @param channel The message channel
+     */
+    default void onMessage(String channel, ByteBuffer message) {
+    }
+
+    /**
+     * Called when 'PMESSAGE' is received, the payload is the
+     * {@code length} bytes of {@code buffer} starting at
+     * {@code offset}. It calls {@link BinaryRedisSubscriber#onPMessage(String, String, ByteBuffer)}
+     * by default
+     * @param pattern The channel pattern
+     * @param channel The actual channel name
+     */
+    default void onPMessage(String pattern, String channel, byte[] buffer, int offset, int length) {
+        onPMessage(pattern, channel, ByteBuffer.wrap(buffer, offset, length).asReadOnlyBuffer());
+    }
+
+    /**
+     * Called when 'PMESSAGE' is received, if the byte array
+     * variant is not overridden. The payload is the remaining
+     * bytes of the given read-only {@code message}
+     * @param pattern The channel pattern
+     * @param channel The actual channel name
+     */
+    default void onPMessage(String pattern, String channel, ByteBuffer message) {
+    }
+
+    /**
+     * @see RedisSubscriber#onSubscribe
+     */
+    default void onSubscribe(String channel, int subscriptions) {
+    }
+
+    /**
+     * @see RedisSubscriber#onPSubscribe
+     */
+    default void onPSubscribe(String pattern, int subscriptions) {
+    }
+
+    /**
+     * @see RedisSubscriber#onUnsubscribe
+     */
+    default void onUnsubscribe(String channel, int subscriptions) {
+    }
+
+    /**
+     * @see RedisSubscriber#onPUnsubscribe
+     */
+    default void onPUnsubscribe(String pattern, int subscriptions) {
+    }
+
+    default void onPong(String pattern) {
+    }
+
+}
@@ -0,0 +1,82 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.Resp;
+
+/**
+ * Cache of channel (and pattern) names, resolves the bytes
+ * of a name to a shared {@link String} instance without
+ * decoding them or allocating anything, names are only
+ * decoded the first time they're seen.
+ *
+ * <p>It's a small open-addressing table, when the probed
+ * slots are taken, the oldest one is replaced, so it's
+ * bounded no matter how many names are seen</p>
+ *
+ * <p>Not thread-safe, it's used by a single reader thread</p>
+ */
+final class ChannelNameCache {
+
+    private static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_PROBES = 4;
+
+    private final byte[][] keys = new byte[CAPACITY][];
+    private final String[] names = new String[CAPACITY];
+    private final int[] hashes = new int[CAPACITY];
+
+    // round-robin replacement when all probed slots are taken
+    private int victim;
+
+    /**
+     * Returns the name for the {@code length} bytes of
+     * {@code buffer} starting at {@code offset}
+     */
+    String get(byte[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int index = hash & MASK;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (index + probe) & MASK;
+            byte[] key = keys[slot];
+            if (key == null) {
+                return insert(slot, hash, buffer, offset, length);
+            }
+            if (hashes[slot] == hash && equals(key, buffer, offset, length)) {
+                return names[slot];
+            }
+        }
+        int slot = (index + (victim++ % MAX_PROBES)) & MASK;
+        return insert(slot, hash, buffer, offset, length);
+    }
+
+    private String insert(int slot, int hash, byte[] buffer, int offset, int length) {
+        byte[] key = new byte[length];
+        System.arraycopy(buffer, offset, key, 0, length);
+        String name = new String(key, Resp.CHARSET);
+        keys[slot] = key;
+        names[slot] = name;
+        hashes[slot] = hash;
+        return name;
+    }
+
+    private static int hash(byte[] buffer, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        // spread the high bits, the table is small
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] buffer, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,52 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.Resp;
+
+/**
+ * Adapts a {@link RedisSubscriber} to a {@link BinaryRedisSubscriber},
+ * decoding the payloads to {@link String}s
+ */
+final class DecodingSubscriber implements BinaryRedisSubscriber {
+
+    private final RedisSubscriber delegate;
+
+    DecodingSubscriber(RedisSubscriber delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] buffer, int offset, int length) {
+        delegate.onMessage(channel, new String(buffer, offset, length, Resp.CHARSET));
+    }
+
+    @Override
+    public void onPMessage(String pattern, String channel, byte[] buffer, int offset, int length) {
+        delegate.onPMessage(pattern, channel, new String(buffer, offset, length, Resp.CHARSET));
+    }
+
+    @Override
+    public void onSubscribe(String channel, int subscriptions) {
+        delegate.onSubscribe(channel, subscriptions);
+    }
+
+    @Override
+    public void onPSubscribe(String pattern, int subscriptions) {
+        delegate.onPSubscribe(pattern, subscriptions);
+    }
+
+    @Override
+    public void onUnsubscribe(String channel, int subscriptions) {
+        delegate.onUnsubscribe(channel, subscriptions);
+    }
+
+    @Override
+    public void onPUnsubscribe(String pattern, int subscriptions) {
+        delegate.onPUnsubscribe(pattern, subscriptions);
+    }
+
+    @Override
+    public void onPong(String pattern) {
+        delegate.onPong(pattern);
+    }
+
+}
@@ -0,0 +1,449 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Subscription whose replies are read by a dedicated reader
+ * thread, that only decodes the frames and queues them, while
+ * the subscriber is called from a configurable {@link Executor},
+ * so a slow subscriber never stalls the socket reads.
+ *
+ * <p>Every channel has its own bounded queue: messages of a
+ * channel are dispatched in order, one at a time, while different
+ * channels are dispatched in parallel. When a queue is full, the
+ * configured {@link OverflowPolicy} is applied</p>
+ *
+ * <p>The subscription takes the connection until all the channels
+ * are unsubscribed, i.e. after {@link DispatchingRedisSubscription#close()}</p>
+ */
+public class DispatchingRedisSubscription implements Closeable {
+
+    // max count of messages dispatched by a single executor
+    // task, so channels share the executor threads fairly
+    private static final int MAX_DISPATCH_BATCH = 64;
+
+    // max time that close() waits for the unsubscribe replies
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final RedisSocket socket;
+    private final BinaryRedisSubscriber subscriber;
+    private final Executor executor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<RuntimeException> finishAction;
+    private final Thread reader;
+
+    // keys are the cached channel names, compared by identity first
+    private final Map<String, ChannelQueue> queues = new ConcurrentHashMap<>();
+
+    // metrics
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the subscription and starts its reader thread,
+     * the SUBSCRIBE command must be already sent
+     * @param finishAction Action executed by the reader thread
+     *                     once it stops reading, it receives the
+     *                     exception that stopped it, or null if
+     *                     all the channels were unsubscribed
+     */
+    public DispatchingRedisSubscription(
+            RedisSocket socket,
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            Consumer<RuntimeException> finishAction
+    ) {
+        // payloads are decoded by the executor, not the reader thread
+        this(socket, new DecodingSubscriber(subscriber), config, finishAction);
+    }
+
+    /**
+     * Creates the subscription and starts its reader thread, the
+     * payloads are passed to the given {@code subscriber} without
+     * decoding them, the SUBSCRIBE command must be already sent
+     * @see DispatchingRedisSubscription#DispatchingRedisSubscription(RedisSocket, RedisSubscriber, SubscriptionConfig, Consumer)
+     */
+    public DispatchingRedisSubscription(
+            RedisSocket socket,
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            Consumer<RuntimeException> finishAction
+    ) {
+        this.socket = socket;
+        this.subscriber = subscriber;
+        this.queueCapacity = config.getQueueCapacity();
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.finishAction = finishAction;
+
+        if (config.getExecutor() == null) {
+            // idle threads are terminated after a minute, so
+            // the pool doesn't need to be shut down
+            this.executor = Executors.newCachedThreadPool(daemonThreadFactory("redis-subscription-dispatcher"));
+        } else {
+            this.executor = config.getExecutor();
+        }
+
+        ThreadFactory readerFactory = config.getReaderThreadFactory();
+        if (readerFactory == null) {
+            readerFactory = daemonThreadFactory("redis-subscription-reader");
+        }
+        this.reader = readerFactory.newThread(this::read);
+        this.reader.start();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void read() {
+        RuntimeException failure = null;
+        try {
+            PubSubFrameReader frames = new PubSubFrameReader(new QueueingSubscriber());
+            int subscriptions;
+            do {
+                subscriptions = frames.read(socket);
+            } while (subscriptions != 0);
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            closed = true;
+            if (finishAction != null) {
+                finishAction.accept(failure);
+            }
+        }
+    }
+
+    private void enqueue(String channel, Frame frame) {
+        ChannelQueue queue = queues.get(channel);
+        if (queue == null) {
+            queue = queues.computeIfAbsent(channel, k -> new ChannelQueue());
+        }
+        received.increment();
+        queue.offer(frame);
+    }
+
+    /**
+     * Returns the count of frames read by the reader thread
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * Returns the count of frames passed to the subscriber
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Returns the count of frames dropped because their
+     * channel queue was full (or the executor rejected them)
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the count of frames waiting to be dispatched
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (ChannelQueue queue : queues.values()) {
+            pending += queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Returns the current lag, i.e. the time that the oldest
+     * pending frame has been waiting, zero if none is pending
+     */
+    public long getLag(TimeUnit unit) {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (ChannelQueue queue : queues.values()) {
+            lag = Math.max(lag, queue.getLag(now));
+        }
+        return unit.convert(lag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the max time that a frame waited between being
+     * read and being passed to the subscriber
+     */
+    public long getMaxLag(TimeUnit unit) {
+        return unit.convert(maxLagNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Determines if the reader thread is still reading
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Unsubscribes from all the channels and waits for the
+     * reader thread to stop, frames already queued are still
+     * dispatched. If the server doesn't confirm in time, the
+     * connection is closed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            socket.writeCommand(RedisCommands.UNSUBSCRIBE);
+            socket.flush();
+            reader.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (RedisException ignored) {
+            // the reader thread will fail too
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reader.isAlive()) {
+            socket.close();
+        }
+    }
+
+    private void deliver(Frame frame) {
+        long lag = System.nanoTime() - frame.receivedAt;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        try {
+            frame.dispatch(subscriber);
+        } catch (RuntimeException e) {
+            // a failing subscriber must not stop the channel dispatch
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+        delivered.increment();
+    }
+
+    /**
+     * Subscriber used by the reader thread, it copies the
+     * payloads and queues the frames
+     */
+    private final class QueueingSubscriber implements BinaryRedisSubscriber {
+
+        @Override
+        public void onMessage(String channel, byte[] buffer, int offset, int length) {
+            byte[] payload = Arrays.copyOfRange(buffer, offset, offset + length);
+            enqueue(channel, new Frame(PubSubFrameReader.MESSAGE, null, channel, payload, -1));
+        }
+
+        @Override
+        public void onPMessage(String pattern, String channel, byte[] buffer, int offset, int length) {
+            byte[] payload = Arrays.copyOfRange(buffer, offset, offset + length);
+            enqueue(channel, new Frame(PubSubFrameReader.PMESSAGE, pattern, channel, payload, -1));
+        }
+
+        @Override
+        public void onSubscribe(String channel, int subscriptions) {
+            enqueue(channel, new Frame(PubSubFrameReader.SUBSCRIBE, null, channel, null, subscriptions));
+        }
+
+        @Override
+        public void onPSubscribe(String pattern, int subscriptions) {
+            enqueue(pattern, new Frame(PubSubFrameReader.PSUBSCRIBE, pattern, null, null, subscriptions));
+        }
+
+        @Override
+        public void onUnsubscribe(String channel, int subscriptions) {
+            enqueue(channel == null ? "" : channel,
+                    new Frame(PubSubFrameReader.UNSUBSCRIBE, null, channel, null, subscriptions));
+        }
+
+        @Override
+        public void onPUnsubscribe(String pattern, int subscriptions) {
+            enqueue(pattern == null ? "" : pattern,
+                    new Frame(PubSubFrameReader.PUNSUBSCRIBE, pattern, null, null, subscriptions));
+        }
+
+        @Override
+        public void onPong(String pattern) {
+            enqueue("", new Frame(PubSubFrameReader.PONG, pattern, null, null, -1));
+        }
+
+    }
+
+    private static final class Frame {
+
+        private final int kind;
+        private final String pattern;
+        private final String channel;
+        private final byte[] payload;
+        private final int subscriptions;
+        private final long receivedAt = System.nanoTime();
+
+        private Frame(int kind, String pattern, String channel, byte[] payload, int subscriptions) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.channel = channel;
+            this.payload = payload;
+            this.subscriptions = subscriptions;
+        }
+
+        private void dispatch(BinaryRedisSubscriber subscriber) {
+            switch (kind) {
+                case PubSubFrameReader.MESSAGE:
+                    subscriber.onMessage(channel, payload, 0, payload.length);
+                    break;
+                case PubSubFrameReader.PMESSAGE:
+                    subscriber.onPMessage(pattern, channel, payload, 0, payload.length);
+                    break;
+                case PubSubFrameReader.SUBSCRIBE:
+                    subscriber.onSubscribe(channel, subscriptions);
+                    break;
+                case PubSubFrameReader.UNSUBSCRIBE:
+                    subscriber.onUnsubscribe(channel, subscriptions);
+                    break;
+                case PubSubFrameReader.PSUBSCRIBE:
+                    subscriber.onPSubscribe(pattern, subscriptions);
+                    break;
+                case PubSubFrameReader.PUNSUBSCRIBE:
+                    subscriber.onPUnsubscribe(pattern, subscriptions);
+                    break;
+                case PubSubFrameReader.PONG:
+                    subscriber.onPong(pattern);
+                    break;
+            }
+        }
+
+    }
+
+    /**
+     * Bounded queue of the frames of a single channel, it's
+     * drained by at most one executor task at a time, so
+     * frames are dispatched in order
+     */
+    private final class ChannelQueue implements Runnable {
+
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+
+        // whether a task is scheduled to drain this queue
+        private boolean scheduled;
+
+        /**
+         * Queues the given {@code frame}, called by the reader thread
+         */
+        private void offer(Frame frame) {
+            boolean schedule;
+            lock.lock();
+            try {
+                while (frames.size() >= queueCapacity) {
+                    switch (overflowPolicy) {
+                        case BLOCK:
+                            notFull.awaitUninterruptibly();
+                            continue;
+                        case DROP_OLDEST:
+                            frames.poll();
+                            dropped.increment();
+                            continue;
+                        case DROP_NEWEST:
+                            dropped.increment();
+                            return;
+                    }
+                }
+                frames.add(frame);
+                schedule = !scheduled;
+                scheduled = true;
+            } finally {
+                lock.unlock();
+            }
+
+            if (schedule) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                lock.lock();
+                try {
+                    dropped.add(frames.size());
+                    frames.clear();
+                    scheduled = false;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return frames.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long getLag(long now) {
+            lock.lock();
+            try {
+                Frame oldest = frames.peek();
+                return oldest == null ? 0 : now - oldest.receivedAt;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < MAX_DISPATCH_BATCH; i++) {
+                Frame frame;
+                lock.lock();
+                try {
+                    frame = frames.poll();
+                    if (frame == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+                deliver(frame);
+            }
+            // more frames may be pending, yield the executor
+            // thread to other channels
+            schedule();
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package team.unnamed.redis.pubsub;
+
+/**
+ * Determines what a {@link DispatchingRedisSubscription}
+ * does when a message is received and the queue of its
+ * channel is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The reader thread waits until the queue has space,
+     * no message is lost but, if the subscriber is too slow,
+     * the server may drop the connection because of its
+     * output buffer limits
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued message of the channel is dropped
+     * to make space for the received message
+     */
+    DROP_OLDEST,
+
+    /**
+     * The received message is dropped
+     */
+    DROP_NEWEST
+
+}
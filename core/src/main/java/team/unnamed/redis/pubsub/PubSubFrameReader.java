@@ -0,0 +1,167 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.io.ReplyVisitor;
+
+/**
+ * Reads the frames (arrays) that redis pushes to subscribed
+ * connections and passes them to a {@link BinaryRedisSubscriber},
+ * shared by the different subscription implementations.
+ *
+ * <p>Frames are read using a {@link ReplyVisitor}, so payloads
+ * are passed as slices of the connection buffer and channel
+ * names are resolved by a {@link ChannelNameCache}: reading a
+ * message doesn't allocate anything</p>
+ *
+ * <p>Not thread-safe, it's used by a single reader thread</p>
+ */
+final class PubSubFrameReader implements ReplyVisitor {
+
+    static final int MESSAGE = 0;
+    static final int PMESSAGE = 1;
+    static final int SUBSCRIBE = 2;
+    static final int UNSUBSCRIBE = 3;
+    static final int PSUBSCRIBE = 4;
+    static final int PUNSUBSCRIBE = 5;
+    static final int PONG = 6;
+
+    // frame types, indexed by kind
+    private static final byte[][] TYPES = {
+            bytes("message"),
+            bytes("pmessage"),
+            bytes("subscribe"),
+            bytes("unsubscribe"),
+            bytes("psubscribe"),
+            bytes("punsubscribe"),
+            bytes("pong")
+    };
+
+    private final ChannelNameCache names = new ChannelNameCache();
+    private final BinaryRedisSubscriber subscriber;
+
+    // current frame state
+    private int index;
+    private int kind;
+    private String pattern;
+    private String channel;
+    private int subscriptions;
+
+    PubSubFrameReader(BinaryRedisSubscriber subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    private static byte[] bytes(String type) {
+        return type.getBytes(Resp.CHARSET);
+    }
+
+    /**
+     * Reads the next frame from the given {@code socket} and passes
+     * it to the subscriber, it's a blocking operation
+     * @return The count of active subscriptions after the frame, or
+     * -1 if the frame isn't a (un)subscribe confirmation
+     */
+    int read(RedisSocket socket) {
+        index = -1;
+        kind = -1;
+        pattern = null;
+        channel = null;
+        subscriptions = -1;
+        socket.readReply(this);
+        if (kind == -1) {
+            throw new RedisException("Unexpected reply, expected a subscription frame");
+        }
+        return subscriptions;
+    }
+
+    private static int kindOf(byte[] buffer, int offset, int length) {
+        for (int kind = 0; kind < TYPES.length; kind++) {
+            byte[] type = TYPES[kind];
+            if (type.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && type[i] == buffer[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return kind;
+            }
+        }
+        throw new RedisException("Unknown message type: "
+                + new String(buffer, offset, length, Resp.CHARSET));
+    }
+
+    @Override
+    public void onArrayStart(int length) {
+        if (index != -1) {
+            throw new RedisException("Unexpected nested array in subscription frame");
+        }
+        index = 0;
+    }
+
+    @Override
+    public void onBulkString(byte[] buffer, int offset, int length) {
+        switch (index++) {
+            case 0:
+                kind = kindOf(buffer, offset, length);
+                break;
+            case 1:
+                if (kind == PONG) {
+                    subscriber.onPong(new String(buffer, offset, length, Resp.CHARSET));
+                } else if (kind == PMESSAGE) {
+                    pattern = names.get(buffer, offset, length);
+                } else {
+                    // channel or pattern for confirmations
+                    channel = names.get(buffer, offset, length);
+                }
+                break;
+            case 2:
+                if (kind == MESSAGE) {
+                    subscriber.onMessage(channel, buffer, offset, length);
+                } else if (kind == PMESSAGE) {
+                    channel = names.get(buffer, offset, length);
+                }
+                break;
+            case 3:
+                if (kind == PMESSAGE) {
+                    subscriber.onPMessage(pattern, channel, buffer, offset, length);
+                }
+                break;
+            default:
+                throw new RedisException("Unexpected element in subscription frame");
+        }
+    }
+
+    @Override
+    public void onNil() {
+        // i.e. unsubscribing when there are no subscriptions
+        index++;
+    }
+
+    @Override
+    public void onInteger(long value) {
+        if (index++ != 2) {
+            throw new RedisException("Unexpected integer in subscription frame");
+        }
+        subscriptions = (int) value;
+        switch (kind) {
+            case SUBSCRIBE:
+                subscriber.onSubscribe(channel, subscriptions);
+                break;
+            case UNSUBSCRIBE:
+                subscriber.onUnsubscribe(channel, subscriptions);
+                break;
+            case PSUBSCRIBE:
+                subscriber.onPSubscribe(channel, subscriptions);
+                break;
+            case PUNSUBSCRIBE:
+                subscriber.onPUnsubscribe(channel, subscriptions);
+                break;
+            default:
+                throw new RedisException("Unexpected integer in subscription frame");
+        }
+    }
+
+}
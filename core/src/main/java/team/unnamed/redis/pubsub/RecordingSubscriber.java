@@ -0,0 +1,86 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.jfr.SubscriptionDispatchEvent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link BinaryRedisSubscriber} that records the dispatch of every
+ * message to the given subscriber as a {@link SubscriptionDispatchEvent},
+ * so slow callbacks can be told apart from network stalls
+ */
+final class RecordingSubscriber implements BinaryRedisSubscriber {
+
+    private final BinaryRedisSubscriber subscriber;
+
+    RecordingSubscriber(BinaryRedisSubscriber subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] buffer, int offset, int length) {
+        SubscriptionDispatchEvent event = new SubscriptionDispatchEvent();
+        event.begin();
+        try {
+            subscriber.onMessage(channel, buffer, offset, length);
+        } finally {
+            if (event.shouldCommit()) {
+                event.channel = channel;
+                event.messageSize = length;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, ByteBuffer message) {
+        subscriber.onMessage(channel, message);
+    }
+
+    @Override
+    public void onPMessage(String pattern, String channel, byte[] buffer, int offset, int length) {
+        SubscriptionDispatchEvent event = new SubscriptionDispatchEvent();
+        event.begin();
+        try {
+            subscriber.onPMessage(pattern, channel, buffer, offset, length);
+        } finally {
+            if (event.shouldCommit()) {
+                event.channel = channel;
+                event.pattern = pattern;
+                event.messageSize = length;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void onPMessage(String pattern, String channel, ByteBuffer message) {
+        subscriber.onPMessage(pattern, channel, message);
+    }
+
+    @Override
+    public void onSubscribe(String channel, int subscriptions) {
+        subscriber.onSubscribe(channel, subscriptions);
+    }
+
+    @Override
+    public void onPSubscribe(String pattern, int subscriptions) {
+        subscriber.onPSubscribe(pattern, subscriptions);
+    }
+
+    @Override
+    public void onUnsubscribe(String channel, int subscriptions) {
+        subscriber.onUnsubscribe(channel, subscriptions);
+    }
+
+    @Override
+    public void onPUnsubscribe(String pattern, int subscriptions) {
+        subscriber.onPUnsubscribe(pattern, subscriptions);
+    }
+
+    @Override
+    public void onPong(String pattern) {
+        subscriber.onPong(pattern);
+    }
+
+}
@@ -0,0 +1,366 @@
+package team.unnamed.redis.pubsub;
+
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.Strings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares a single subscribed connection between many subscribers,
+ * that can register and leave at any time.
+ *
+ * <p>Channels and patterns are reference counted: SUBSCRIBE (or
+ * PSUBSCRIBE) is only sent for the first subscriber of a channel
+ * and UNSUBSCRIBE (or PUNSUBSCRIBE) once its last subscriber leaves,
+ * so the server only keeps a subscription per channel, no matter
+ * how many local subscribers there are</p>
+ *
+ * <p>Frames are read by a dedicated reader thread and routed
+ * locally: message frames are routed by channel and pmessage
+ * frames by the pattern that matched them, both are lookups by the
+ * cached names, so routing doesn't allocate nor match patterns.
+ * Subscribers are called from the reader thread, so they must not
+ * block, subscribe confirmations are not passed to them</p>
+ *
+ * <p>Routes are copied on write: subscribing is relatively
+ * expensive while reading them is lock-free</p>
+ */
+public class RedisSubscriptionMultiplexer implements Closeable {
+
+    private static final BinaryRedisSubscriber[] NO_SUBSCRIBERS = new BinaryRedisSubscriber[0];
+
+    // max time that close() waits for the reader thread
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final RedisSocket socket;
+    private final Thread reader;
+
+    // guards the reference counts, the route updates and the writes
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Routes channels = new Routes(RedisCommands.SUBSCRIBE, RedisCommands.UNSUBSCRIBE);
+    private final Routes patterns = new Routes(RedisCommands.PSUBSCRIBE, RedisCommands.PUNSUBSCRIBE);
+
+    private volatile boolean closed;
+    private boolean shutdown;
+
+    /**
+     * Creates the multiplexer using the given {@code socket}, that
+     * is taken until the multiplexer is closed, and starts its
+     * reader thread using the given {@code readerThreadFactory}
+     */
+    public RedisSubscriptionMultiplexer(RedisSocket socket, ThreadFactory readerThreadFactory) {
+        this.socket = socket;
+        this.reader = readerThreadFactory.newThread(this::read);
+        this.reader.start();
+    }
+
+    public RedisSubscriptionMultiplexer(RedisSocket socket) {
+        this(socket, task -> {
+            Thread thread = new Thread(task, "redis-multiplexer-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a dedicated connection to the given {@code address}
+     * and creates a multiplexer using it
+     */
+    public static RedisSubscriptionMultiplexer create(SocketAddress address) {
+        try {
+            return new RedisSubscriptionMultiplexer(new RedisSocket(address));
+        } catch (IOException e) {
+            throw new RedisException(e);
+        }
+    }
+
+    /**
+     * Registers the given {@code subscriber} to the given
+     * {@code channels}, it only receives their messages
+     * @return The registration, close it to unsubscribe
+     */
+    public Registration subscribe(BinaryRedisSubscriber subscriber, String... channels) {
+        return register(this.channels, subscriber, channels);
+    }
+
+    public Registration subscribe(RedisSubscriber subscriber, String... channels) {
+        return subscribe(new DecodingSubscriber(subscriber), channels);
+    }
+
+    /**
+     * Registers the given {@code subscriber} to the given glob-style
+     * {@code patterns}, it only receives their pmessages
+     * @return The registration, close it to unsubscribe
+     */
+    public Registration psubscribe(BinaryRedisSubscriber subscriber, String... patterns) {
+        return register(this.patterns, subscriber, patterns);
+    }
+
+    public Registration psubscribe(RedisSubscriber subscriber, String... patterns) {
+        return psubscribe(new DecodingSubscriber(subscriber), patterns);
+    }
+
+    /**
+     * Returns the count of channels subscribed in the server
+     */
+    public int getChannelCount() {
+        return channels.routes.size();
+    }
+
+    /**
+     * Returns the count of patterns subscribed in the server
+     */
+    public int getPatternCount() {
+        return patterns.routes.size();
+    }
+
+    /**
+     * Determines if the reader thread is still reading
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    private Registration register(Routes routes, BinaryRedisSubscriber subscriber, String[] names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("No channels or patterns given");
+        }
+        // duplicated names would be counted twice
+        String[] distinct = Arrays.stream(names).distinct().toArray(String[]::new);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RedisException("Multiplexer is closed");
+            }
+            routes.add(subscriber, distinct);
+        } finally {
+            lock.unlock();
+        }
+        return new Registration(routes, subscriber, distinct);
+    }
+
+    private void read() {
+        PubSubFrameReader frames = new PubSubFrameReader(new RoutingSubscriber());
+        try {
+            while (!closed) {
+                frames.read(socket);
+            }
+        } catch (RuntimeException e) {
+            if (!closed) {
+                // the connection failed, registrations won't receive anything else
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        } finally {
+            closed = true;
+        }
+    }
+
+    private static void handleFailure(RuntimeException e) {
+        // a failing subscriber must not stop the others
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     * Closes the connection and waits for the reader thread to
+     * stop, the registrations stop receiving messages
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        // there is no need to unsubscribe, the connection is dropped
+        try {
+            socket.close();
+        } catch (RedisException ignored) {
+            // the connection already failed
+        }
+        try {
+            reader.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Subscriber registration, closing it unregisters the subscriber
+     * and unsubscribes the channels (or patterns) that are left
+     * without subscribers
+     */
+    public final class Registration implements Closeable {
+
+        private final Routes routes;
+        private final BinaryRedisSubscriber subscriber;
+        private final String[] names;
+        private boolean closed;
+
+        private Registration(Routes routes, BinaryRedisSubscriber subscriber, String[] names) {
+            this.routes = routes;
+            this.subscriber = subscriber;
+            this.names = names;
+        }
+
+        /**
+         * Returns the channels (or patterns) of this registration
+         */
+        public List<String> getNames() {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (!RedisSubscriptionMultiplexer.this.closed) {
+                    routes.remove(subscriber, names);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * Reference counted routes of channels or patterns, they
+     * are only modified while holding the lock
+     */
+    private final class Routes {
+
+        private final byte[] subscribeCommand;
+        private final byte[] unsubscribeCommand;
+
+        // copied on write, the count of subscribers of a name
+        // is its reference count
+        private volatile Map<String, BinaryRedisSubscriber[]> routes = Collections.emptyMap();
+
+        Routes(byte[] subscribeCommand, byte[] unsubscribeCommand) {
+            this.subscribeCommand = subscribeCommand;
+            this.unsubscribeCommand = unsubscribeCommand;
+        }
+
+        BinaryRedisSubscriber[] get(String name) {
+            BinaryRedisSubscriber[] subscribers = routes.get(name);
+            return subscribers == null ? NO_SUBSCRIBERS : subscribers;
+        }
+
+        void add(BinaryRedisSubscriber subscriber, String[] names) {
+            Map<String, BinaryRedisSubscriber[]> copy = new HashMap<>(routes);
+            List<byte[]> added = new ArrayList<>();
+            for (String name : names) {
+                BinaryRedisSubscriber[] subscribers = copy.get(name);
+                if (subscribers == null) {
+                    added.add(Strings.encode(name));
+                    copy.put(name, new BinaryRedisSubscriber[] { subscriber });
+                } else {
+                    BinaryRedisSubscriber[] extended = Arrays.copyOf(subscribers, subscribers.length + 1);
+                    extended[subscribers.length] = subscriber;
+                    copy.put(name, extended);
+                }
+            }
+            // routes are published before subscribing,
+            // so the first messages are never missed
+            routes = copy;
+            send(subscribeCommand, added);
+        }
+
+        void remove(BinaryRedisSubscriber subscriber, String[] names) {
+            Map<String, BinaryRedisSubscriber[]> copy = new HashMap<>(routes);
+            List<byte[]> removed = new ArrayList<>();
+            for (String name : names) {
+                BinaryRedisSubscriber[] subscribers = copy.get(name);
+                if (subscribers == null) {
+                    continue;
+                }
+                int index = -1;
+                for (int i = 0; i < subscribers.length; i++) {
+                    if (subscribers[i] == subscriber) {
+                        index = i;
+                        break;
+                    }
+                }
+                if (index == -1) {
+                    continue;
+                }
+                if (subscribers.length == 1) {
+                    removed.add(Strings.encode(name));
+                    copy.remove(name);
+                } else {
+                    BinaryRedisSubscriber[] reduced = new BinaryRedisSubscriber[subscribers.length - 1];
+                    System.arraycopy(subscribers, 0, reduced, 0, index);
+                    System.arraycopy(subscribers, index + 1, reduced, index, reduced.length - index);
+                    copy.put(name, reduced);
+                }
+            }
+            routes = copy;
+            send(unsubscribeCommand, removed);
+        }
+
+        private void send(byte[] command, List<byte[]> names) {
+            if (names.isEmpty()) {
+                return;
+            }
+            // confirmations are read by the reader thread
+            socket.writeCommand(command, names.toArray(new byte[0][]));
+            socket.flush();
+        }
+
+    }
+
+    /**
+     * Subscriber used by the reader thread, it routes the
+     * frames to the registered subscribers
+     */
+    private final class RoutingSubscriber implements BinaryRedisSubscriber {
+
+        @Override
+        public void onMessage(String channel, byte[] buffer, int offset, int length) {
+            for (BinaryRedisSubscriber subscriber : channels.get(channel)) {
+                try {
+                    subscriber.onMessage(channel, buffer, offset, length);
+                } catch (RuntimeException e) {
+                    handleFailure(e);
+                }
+            }
+        }
+
+        @Override
+        public void onPMessage(String pattern, String channel, byte[] buffer, int offset, int length) {
+            for (BinaryRedisSubscriber subscriber : patterns.get(pattern)) {
+                try {
+                    subscriber.onPMessage(pattern, channel, buffer, offset, length);
+                } catch (RuntimeException e) {
+                    handleFailure(e);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package team.unnamed.redis.pubsub;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Immutable configuration for a {@link DispatchingRedisSubscription},
+ * use {@link SubscriptionConfig#builder()} to create it
+ */
+public class SubscriptionConfig {
+
+    private final Executor executor;
+    private final ThreadFactory readerThreadFactory;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private SubscriptionConfig(Builder builder) {
+        this.executor = builder.executor;
+        this.readerThreadFactory = builder.readerThreadFactory;
+        this.queueCapacity = builder.queueCapacity;
+        this.overflowPolicy = builder.overflowPolicy;
+    }
+
+    /**
+     * Returns the executor used to call the subscriber, or null
+     * if every subscription creates its own cached thread pool
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the factory for the thread that reads the
+     * subscription replies, or null to use a daemon thread
+     */
+    public ThreadFactory getReaderThreadFactory() {
+        return readerThreadFactory;
+    }
+
+    /**
+     * Returns the max count of messages that can be queued
+     * for a single channel, waiting to be dispatched
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the policy applied when a channel queue is full
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Executor executor;
+        private ThreadFactory readerThreadFactory;
+        private int queueCapacity = 1024;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the executor used to call the subscriber, messages
+         * of a channel are dispatched in order, one at a time,
+         * while different channels are dispatched in parallel.
+         * Any executor works, i.e. a virtual thread per task
+         * executor (Java 21+)
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder readerThreadFactory(ThreadFactory readerThreadFactory) {
+            this.readerThreadFactory = readerThreadFactory;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Queue capacity must be positive");
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == null) {
+                throw new IllegalArgumentException("Overflow policy must not be null");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public SubscriptionConfig build() {
+            return new SubscriptionConfig(this);
+        }
+
+    }
+
+}
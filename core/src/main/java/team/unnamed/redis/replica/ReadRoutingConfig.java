@@ -0,0 +1,147 @@
+package team.unnamed.redis.replica;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable configuration for the read routing of a
+ * {@link ReplicatedRedisClient}, use {@link ReadRoutingConfig#builder()}
+ * to create it
+ */
+public class ReadRoutingConfig {
+
+    private final double latencySmoothing;
+    private final long maxStalenessMillis;
+    private final double slowEjectionFactor;
+    private final int maxFailures;
+    private final long healthCheckIntervalMillis;
+    private final boolean primaryReads;
+
+    private ReadRoutingConfig(Builder builder) {
+        this.latencySmoothing = builder.latencySmoothing;
+        this.maxStalenessMillis = builder.maxStalenessMillis;
+        this.slowEjectionFactor = builder.slowEjectionFactor;
+        this.maxFailures = builder.maxFailures;
+        this.healthCheckIntervalMillis = builder.healthCheckIntervalMillis;
+        this.primaryReads = builder.primaryReads;
+    }
+
+    /**
+     * Returns the weight (between 0 and 1) of a new round-trip time
+     * sample in the moving average of a node latency, higher values
+     * react faster to latency changes
+     */
+    public double getLatencySmoothing() {
+        return latencySmoothing;
+    }
+
+    /**
+     * Returns the max replication lag (in milliseconds, as reported
+     * by the primary) of a replica serving reads, replicas lagging
+     * further behind are ejected until they catch up
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /**
+     * Returns how many times slower than the fastest node a node
+     * can be before it's ejected, nodes with a latency under a
+     * millisecond are never ejected for being slow
+     */
+    public double getSlowEjectionFactor() {
+        return slowEjectionFactor;
+    }
+
+    /**
+     * Returns the count of consecutive failures (broken connections
+     * or failed health checks) that eject a node, it's readmitted
+     * once a health check succeeds
+     */
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Returns the interval (in milliseconds) between health checks,
+     * which discover the replicas, measure their lag and latency
+     */
+    public long getHealthCheckIntervalMillis() {
+        return healthCheckIntervalMillis;
+    }
+
+    /**
+     * Determines if the primary serves reads too, otherwise it
+     * only serves them when every replica is ejected
+     */
+    public boolean isPrimaryReads() {
+        return primaryReads;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private double latencySmoothing = 0.2;
+        private long maxStalenessMillis = TimeUnit.SECONDS.toMillis(10);
+        private double slowEjectionFactor = 5;
+        private int maxFailures = 3;
+        private long healthCheckIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+        private boolean primaryReads = false;
+
+        private Builder() {
+        }
+
+        public Builder latencySmoothing(double latencySmoothing) {
+            if (!(latencySmoothing > 0 && latencySmoothing <= 1)) {
+                throw new IllegalArgumentException("Latency smoothing must be in (0, 1]");
+            }
+            this.latencySmoothing = latencySmoothing;
+            return this;
+        }
+
+        public Builder maxStaleness(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Max staleness must not be negative");
+            }
+            this.maxStalenessMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder slowEjectionFactor(double slowEjectionFactor) {
+            if (!(slowEjectionFactor > 1)) {
+                throw new IllegalArgumentException("Slow ejection factor must be greater than 1");
+            }
+            this.slowEjectionFactor = slowEjectionFactor;
+            return this;
+        }
+
+        public Builder maxFailures(int maxFailures) {
+            if (maxFailures < 1) {
+                throw new IllegalArgumentException("Max failures must be positive");
+            }
+            this.maxFailures = maxFailures;
+            return this;
+        }
+
+        public Builder healthCheckInterval(long duration, TimeUnit unit) {
+            if (duration < 1) {
+                throw new IllegalArgumentException("Health check interval must be positive");
+            }
+            this.healthCheckIntervalMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder primaryReads(boolean primaryReads) {
+            this.primaryReads = primaryReads;
+            return this;
+        }
+
+        public ReadRoutingConfig build() {
+            return new ReadRoutingConfig(this);
+        }
+
+    }
+
+}
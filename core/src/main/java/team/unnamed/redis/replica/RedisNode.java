@@ -0,0 +1,136 @@
+package team.unnamed.redis.replica;
+
+import team.unnamed.redis.PooledRedisClient;
+import team.unnamed.redis.pool.RedisSocketPool;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A node (the primary or one of its replicas) known by a
+ * {@link ReplicatedRedisClient}, with the statistics used
+ * to route reads to it
+ */
+public final class RedisNode {
+
+    private final InetSocketAddress address;
+    private final boolean primary;
+    private final RedisSocketPool pool;
+    private final PooledRedisClient client;
+
+    // moving average of the round-trip time, double bits, NaN until measured
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicInteger failures = new AtomicInteger();
+
+    // replication state, as reported by the primary
+    private volatile boolean linked;
+    private volatile long lagMillis;
+
+    private volatile boolean ejected = true;
+
+    RedisNode(InetSocketAddress address, boolean primary, RedisSocketPool pool) {
+        this.address = address;
+        this.primary = primary;
+        this.pool = pool;
+        this.client = new PooledRedisClient(pool);
+        // the primary is always linked to itself
+        this.linked = primary;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * Returns the moving average of the round-trip time (in
+     * nanoseconds) of this node, NaN if it wasn't measured yet
+     */
+    public double getLatencyNanos() {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    /**
+     * Returns the count of consecutive failures of this node
+     */
+    public int getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the replication lag (in milliseconds) of this
+     * node, as reported by the primary, zero for the primary
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Determines if the primary reports this node as an
+     * online replica, always true for the primary
+     */
+    public boolean isLinked() {
+        return linked;
+    }
+
+    /**
+     * Determines if this node doesn't serve reads, because it's
+     * unhealthy, stale or slow (or it's the primary and it only
+     * serves reads when every replica is ejected)
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    RedisSocketPool getPool() {
+        return pool;
+    }
+
+    PooledRedisClient getClient() {
+        return client;
+    }
+
+    void setReplicationState(boolean linked, long lagMillis) {
+        this.linked = linked;
+        this.lagMillis = lagMillis;
+    }
+
+    void setEjected(boolean ejected) {
+        this.ejected = ejected;
+    }
+
+    /**
+     * Adds the given round-trip time sample to the moving
+     * average and resets the failure count
+     */
+    void recordLatency(long nanos, double smoothing) {
+        while (true) {
+            long bits = latencyBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated = Double.isNaN(current) ? nanos : current + smoothing * (nanos - current);
+            if (latencyBits.compareAndSet(bits, Double.doubleToRawLongBits(updated))) {
+                break;
+            }
+        }
+        if (failures.get() != 0) {
+            failures.set(0);
+        }
+    }
+
+    /**
+     * Records a failure, returns the count of consecutive failures
+     */
+    int recordFailure() {
+        return failures.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "RedisNode[" + address + (primary ? ", primary" : "") + "]";
+    }
+
+}
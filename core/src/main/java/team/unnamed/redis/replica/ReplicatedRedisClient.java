@@ -0,0 +1,515 @@
+package team.unnamed.redis.replica;
+
+import team.unnamed.redis.Pipeline;
+import team.unnamed.redis.RedisClient;
+import team.unnamed.redis.RedisCommands;
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.RedisReplyException;
+import team.unnamed.redis.RedisSocket;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.pool.RedisSocketPool;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe {@link RedisClient} for a primary with replicas, writes
+ * (and every command that isn't a read) are sent to the primary while
+ * reads are spread across the replicas, using a pool of connections
+ * per node.
+ *
+ * <p>Replicas are discovered from the primary (INFO replication) by a
+ * background health check, which also measures their replication lag
+ * and their round-trip time using PING. Reads are routed randomly,
+ * weighted by the inverse of the moving average of the round-trip
+ * time of every node (reads update it too), so faster nodes get more
+ * reads</p>
+ *
+ * <p>A replica is ejected, it doesn't serve reads, while it's not an
+ * online replica, its lag exceeds the configured staleness tolerance,
+ * it failed too many consecutive times or it's much slower than the
+ * fastest node. Reads failing with a broken connection are retried
+ * once on the primary, which serves every read if all the replicas
+ * are ejected. Visitor and stream reads aren't retried, since part
+ * of the reply may have been already delivered</p>
+ */
+public class ReplicatedRedisClient implements RedisClient {
+
+    private static final byte[] REPLICATION = Strings.encode("replication");
+    private static final RedisNode[] NO_NODES = new RedisNode[0];
+    // nodes faster than this are never ejected for being slow
+    private static final double MIN_SLOW_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RedisPoolConfig poolConfig;
+    private final ReadRoutingConfig config;
+    private final RedisNode primary;
+    private final Map<InetSocketAddress, RedisNode> replicas = new ConcurrentHashMap<>();
+
+    // nodes serving reads, replaced after every health check
+    private volatile RedisNode[] readable = NO_NODES;
+
+    private final ReentrantLock healthLock = new ReentrantLock();
+    private final ScheduledExecutorService healthChecker;
+    private volatile boolean closed;
+
+    private ReplicatedRedisClient(InetSocketAddress primary, RedisPoolConfig poolConfig, ReadRoutingConfig config) {
+        this.poolConfig = poolConfig;
+        this.config = config;
+        this.primary = new RedisNode(primary, true, new RedisSocketPool(primary, poolConfig));
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a new client for the given {@code primary} and its
+     * replicas, the first health check runs before returning, so
+     * the replicas serve reads immediately
+     */
+    public static ReplicatedRedisClient create(
+            InetSocketAddress primary,
+            RedisPoolConfig poolConfig,
+            ReadRoutingConfig config
+    ) {
+        ReplicatedRedisClient client = new ReplicatedRedisClient(primary, poolConfig, config);
+        client.checkHealth();
+        long interval = config.getHealthCheckIntervalMillis();
+        client.healthChecker.scheduleWithFixedDelay(client::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    public ReadRoutingConfig getConfig() {
+        return config;
+    }
+
+    public RedisNode getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Returns the replicas discovered by the last health check
+     */
+    public Collection<RedisNode> getReplicas() {
+        return Collections.unmodifiableCollection(replicas.values());
+    }
+
+    /**
+     * Returns the nodes currently serving reads, empty if only
+     * the primary serves them because every replica is ejected
+     */
+    public List<RedisNode> getReadableNodes() {
+        List<RedisNode> nodes = new ArrayList<>();
+        Collections.addAll(nodes, readable);
+        return nodes;
+    }
+
+    /**
+     * Discovers the replicas, measures their lag and latency and
+     * decides which nodes serve reads, it's executed periodically
+     * by a background thread
+     */
+    public void checkHealth() {
+        healthLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                updateReplicas(fetchReplication());
+            } catch (RuntimeException e) {
+                // the primary is unreachable (its probe records the
+                // failure), keep the known replicas
+            }
+            probe(primary);
+            for (RedisNode replica : replicas.values()) {
+                probe(replica);
+            }
+            updateReadable();
+        } finally {
+            healthLock.unlock();
+        }
+    }
+
+    /**
+     * Fetches the replicas of the primary and their state,
+     * parsed from its INFO replication section, i.e.
+     * {@code slave0:ip=10.0.0.2,port=6379,state=online,offset=42,lag=0}
+     */
+    private Map<InetSocketAddress, Map<String, String>> fetchReplication() {
+        RedisSocketPool pool = primary.getPool();
+        RedisSocket socket = pool.borrow();
+        String info;
+        try {
+            socket.writeCommand(RedisCommands.INFO, REPLICATION);
+            socket.flush();
+            info = Strings.decode((byte[]) socket.readReply());
+        } catch (RuntimeException e) {
+            pool.invalidate(socket);
+            throw e;
+        }
+        pool.release(socket);
+
+        Map<InetSocketAddress, Map<String, String>> replication = new HashMap<>();
+        for (String line : info.split("\r\n")) {
+            if (!line.startsWith("slave") || line.indexOf(':') == -1 || line.indexOf('=') == -1) {
+                // other fields, i.e. "slave_read_repl_offset"
+                continue;
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (String field : line.substring(line.indexOf(':') + 1).split(",")) {
+                int separator = field.indexOf('=');
+                if (separator != -1) {
+                    fields.put(field.substring(0, separator), field.substring(separator + 1));
+                }
+            }
+            String ip = fields.get("ip");
+            String port = fields.get("port");
+            if (ip != null && port != null) {
+                replication.put(new InetSocketAddress(ip, Integer.parseInt(port)), fields);
+            }
+        }
+        return replication;
+    }
+
+    private void updateReplicas(Map<InetSocketAddress, Map<String, String>> replication) {
+        for (Map.Entry<InetSocketAddress, Map<String, String>> entry : replication.entrySet()) {
+            Map<String, String> fields = entry.getValue();
+            RedisNode replica = replicas.computeIfAbsent(entry.getKey(), address ->
+                    new RedisNode(address, false, new RedisSocketPool(address, poolConfig)));
+            long lagSeconds;
+            try {
+                lagSeconds = Long.parseLong(fields.getOrDefault("lag", "0"));
+            } catch (NumberFormatException e) {
+                lagSeconds = Long.MAX_VALUE / 1000;
+            }
+            replica.setReplicationState("online".equals(fields.get("state")), lagSeconds * 1000);
+        }
+
+        // replicas that are gone
+        Iterator<RedisNode> iterator = replicas.values().iterator();
+        while (iterator.hasNext()) {
+            RedisNode replica = iterator.next();
+            if (!replication.containsKey(replica.getAddress())) {
+                iterator.remove();
+                replica.setEjected(true);
+                // borrowed connections are closed when released
+                replica.getPool().close();
+            }
+        }
+    }
+
+    private void probe(RedisNode node) {
+        RedisSocketPool pool = node.getPool();
+        long start = System.nanoTime();
+        RedisSocket socket;
+        try {
+            socket = pool.borrow();
+        } catch (RedisException e) {
+            node.recordFailure();
+            return;
+        }
+        try {
+            socket.writeCommand(RedisCommands.PING);
+            socket.flush();
+            socket.readReply();
+        } catch (RuntimeException e) {
+            pool.invalidate(socket);
+            node.recordFailure();
+            return;
+        }
+        pool.release(socket);
+        node.recordLatency(System.nanoTime() - start, config.getLatencySmoothing());
+    }
+
+    private boolean isHealthy(RedisNode node) {
+        return node.isLinked()
+                && node.getLagMillis() <= config.getMaxStalenessMillis()
+                && node.getFailureCount() < config.getMaxFailures()
+                && !Double.isNaN(node.getLatencyNanos());
+    }
+
+    /**
+     * Decides which nodes serve reads: the healthy replicas (and
+     * the primary, if configured) that are not much slower than
+     * the fastest of them. It's also called by readers, without
+     * locking, a lost update is fixed by the next health check
+     */
+    private void updateReadable() {
+        List<RedisNode> candidates = new ArrayList<>();
+        for (RedisNode replica : replicas.values()) {
+            if (isHealthy(replica)) {
+                candidates.add(replica);
+            }
+        }
+        if (config.isPrimaryReads() && isHealthy(primary)) {
+            candidates.add(primary);
+        }
+
+        double fastest = Double.MAX_VALUE;
+        for (RedisNode node : candidates) {
+            fastest = Math.min(fastest, node.getLatencyNanos());
+        }
+        // jitter of sub-millisecond latencies doesn't eject nodes
+        double threshold = Math.max(fastest * config.getSlowEjectionFactor(), MIN_SLOW_LATENCY_NANOS);
+        List<RedisNode> selected = new ArrayList<>();
+        for (RedisNode node : candidates) {
+            if (node.getLatencyNanos() <= threshold) {
+                selected.add(node);
+            }
+        }
+
+        for (RedisNode replica : replicas.values()) {
+            replica.setEjected(!selected.contains(replica));
+        }
+        // the primary always serves reads when nothing else does
+        primary.setEjected(!selected.isEmpty() && !selected.contains(primary));
+        readable = selected.toArray(NO_NODES);
+    }
+
+    /**
+     * Selects a node for a read, randomly, weighted by the
+     * inverse of the node latency
+     */
+    private RedisNode selectReadNode() {
+        RedisNode[] nodes = readable;
+        if (nodes.length == 0) {
+            return primary;
+        } else if (nodes.length == 1) {
+            return nodes[0];
+        }
+
+        double[] weights = new double[nodes.length];
+        double total = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            // floor of a microsecond, so a tiny sample doesn't take every read
+            weights[i] = 1D / Math.max(nodes[i].getLatencyNanos(), 1000D);
+            total += weights[i];
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < nodes.length; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return nodes[i];
+            }
+        }
+        return nodes[nodes.length - 1];
+    }
+
+    private <T> T read(Function<RedisClient, T> action) {
+        return read(action, true, true);
+    }
+
+    /**
+     * Executes the given read {@code action} in a node selected by
+     * {@link ReplicatedRedisClient#selectReadNode}, it's retried in
+     * the primary if the connection breaks
+     * @param measured Whether the round-trip time is added to the
+     *                 node latency, batches shouldn't be measured
+     * @param retryable Whether the action can be executed again,
+     *                  reads delivering the reply as it's read can't
+     */
+    private <T> T read(Function<RedisClient, T> action, boolean measured, boolean retryable) {
+        RedisNode node = selectReadNode();
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.apply(node.getClient());
+        } catch (RuntimeException e) {
+            if (node == primary || !isBroken(e)) {
+                throw e;
+            }
+            if (node.recordFailure() >= config.getMaxFailures()) {
+                // eject it now, don't wait for the next health check
+                updateReadable();
+            }
+            if (!retryable) {
+                throw e;
+            }
+            return action.apply(primary.getClient());
+        }
+        if (measured) {
+            node.recordLatency(System.nanoTime() - start, config.getLatencySmoothing());
+        }
+        return result;
+    }
+
+    private static boolean isBroken(RuntimeException exception) {
+        return !(exception instanceof RedisReplyException);
+    }
+
+    private RedisClient writer() {
+        return primary.getClient();
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        return writer().set(key, value);
+    }
+
+    @Override
+    public String set(String key, String value) {
+        return writer().set(key, value);
+    }
+
+    @Override
+    public String set(byte[] key, InputStream value, int length) {
+        return writer().set(key, value, length);
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        return writer().set(key, value);
+    }
+
+    @Override
+    public String set(byte[] key, FileChannel file, long position, int length) {
+        return writer().set(key, file, position, length);
+    }
+
+    @Override
+    public String get(byte[] key) {
+        return read(client -> client.get(key));
+    }
+
+    @Override
+    public String get(String key) {
+        return read(client -> client.get(key));
+    }
+
+    @Override
+    public void get(byte[] key, ReplyVisitor visitor) {
+        // the visitor may have been called before the failure
+        read(client -> {
+            client.get(key, visitor);
+            return null;
+        }, true, false);
+    }
+
+    @Override
+    public BulkStringInputStream getStream(byte[] key) {
+        // only the time until the stream is returned is measured
+        return read(client -> client.getStream(key), true, false);
+    }
+
+    @Override
+    public long incr(byte[] key) {
+        return writer().incr(key);
+    }
+
+    @Override
+    public long incrBy(byte[] key, long increment) {
+        return writer().incrBy(key, increment);
+    }
+
+    @Override
+    public long decrBy(byte[] key, long decrement) {
+        return writer().decrBy(key, decrement);
+    }
+
+    @Override
+    public double incrByFloat(byte[] key, double increment) {
+        return writer().incrByFloat(key, increment);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The whole batch is read from a single node</p>
+     */
+    @Override
+    public List<String> mget(List<String> keys) {
+        return read(client -> client.mget(keys), false, true);
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        return writer().mset(entries);
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        return writer().unlink(keys);
+    }
+
+    /**
+     * Creates a pipeline for the primary, pipelined
+     * reads are not routed to the replicas
+     */
+    @Override
+    public Pipeline pipelined() {
+        return writer().pipelined();
+    }
+
+    @Override
+    public void subscribe(RedisSubscriber subscriber, String... channels) {
+        writer().subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            RedisSubscriber subscriber,
+            SubscriptionConfig config,
+            String... channels
+    ) {
+        return writer().subscribe(subscriber, config, channels);
+    }
+
+    @Override
+    public void subscribe(BinaryRedisSubscriber subscriber, byte[]... channels) {
+        writer().subscribe(subscriber, channels);
+    }
+
+    @Override
+    public DispatchingRedisSubscription subscribe(
+            BinaryRedisSubscriber subscriber,
+            SubscriptionConfig config,
+            byte[]... channels
+    ) {
+        return writer().subscribe(subscriber, config, channels);
+    }
+
+    /**
+     * Stops the health checks and closes the connection
+     * pools of all the nodes
+     */
+    @Override
+    public void close() {
+        healthLock.lock();
+        try {
+            closed = true;
+        } finally {
+            healthLock.unlock();
+        }
+        healthChecker.shutdownNow();
+        primary.getPool().close();
+        for (RedisNode replica : replicas.values()) {
+            replica.getPool().close();
+        }
+        replicas.clear();
+    }
+
+}
@@ -0,0 +1,40 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.async.AsyncRedisClient;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncClientTest {
+
+    @Test
+    public void test() {
+        try (AsyncRedisClient client = AsyncRedisClient.create(new InetSocketAddress("127.0.0.1", 6379))) {
+            List<CompletableFuture<String>> gets = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                client.set("async:" + i, "value " + i);
+                gets.add(client.get("async:" + i));
+            }
+
+            for (int i = 0; i < gets.size(); i++) {
+                Assertions.assertEquals("value " + i, gets.get(i).join());
+            }
+
+            // bigger than the write buffer, written together with
+            // the commands queued after it
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 20000; i++) {
+                large.append("large ");
+            }
+            client.set("async:large", large.toString());
+            CompletableFuture<String> after = client.get("async:0");
+            Assertions.assertEquals(large.toString(), client.get("async:large").join());
+            Assertions.assertEquals("value 0", after.join());
+        }
+    }
+
+}
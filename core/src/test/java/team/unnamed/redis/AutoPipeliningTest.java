@@ -0,0 +1,203 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pipelining.AutoPipeliningConfig;
+import team.unnamed.redis.pipelining.AutoPipeliningRedisClient;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AutoPipeliningTest {
+
+    private static void runConcurrently(int threads, int iterations, AutoPipeliningRedisClient client) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String key = "key:" + i;
+                byte[] counter = Strings.encode("counter:" + i);
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        // every caller gets its own reply
+                        String value = key + " value " + j;
+                        Assertions.assertEquals("OK", client.set(key, value));
+                        Assertions.assertEquals(value, client.get(key));
+                        Assertions.assertEquals(j + 1, client.incr(counter));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(
+                     server.getAddress(), AutoPipeliningConfig.builder().build())) {
+
+            runConcurrently(16, 300, client);
+
+            Assertions.assertEquals(16 * 300 * 3, client.getCommandCount());
+            // concurrent commands were flushed together
+            Assertions.assertTrue(client.getFlushCount() < client.getCommandCount(),
+                    client.getFlushCount() + " flushes for " + client.getCommandCount() + " commands");
+        }
+    }
+
+    @Test
+    public void testFlushDelayAndBatchSize() throws Exception {
+        AutoPipeliningConfig config = AutoPipeliningConfig.builder()
+                .maxBatchSize(8)
+                .maxFlushDelay(50, TimeUnit.MICROSECONDS)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(server.getAddress(), config)) {
+
+            // a single caller is never delayed
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                client.set("key", "value");
+            }
+            Assertions.assertEquals(100, client.getFlushCount());
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+            runConcurrently(8, 200, client);
+            // batches never exceed the max size
+            Assertions.assertTrue(client.getFlushCount() * 8 >= client.getCommandCount());
+        }
+    }
+
+    @Test
+    public void testConnections() throws Exception {
+        AutoPipeliningConfig config = AutoPipeliningConfig.builder()
+                .connections(4)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(server.getAddress(), config)) {
+
+            runConcurrently(32, 100, client);
+
+            // every connection has its own reply output
+            Set<Object> outputs = ConcurrentHashMap.newKeySet();
+            server.register("GET", (args, output) -> {
+                outputs.add(output);
+                output.writeBulkString(args[0]);
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(32);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    futures.add(executor.submit(() -> {
+                        try (Pipeline pipeline = client.pipelined()) {
+                            for (int j = 0; j < 10; j++) {
+                                pipeline.get("key");
+                            }
+                            Assertions.assertEquals(Collections.nCopies(10, "key"), pipeline.sync());
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // the threads were spread across all the connections
+            Assertions.assertEquals(4, outputs.size());
+            Assertions.assertEquals(32 * 100 * 3 + 32 * 10, client.getCommandCount());
+        }
+    }
+
+    @Test
+    public void testErrorReplies() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(
+                     server.getAddress(), AutoPipeliningConfig.builder().build())) {
+
+            client.set("text", "not a number");
+            RedisException error = Assertions.assertThrows(RedisException.class,
+                    () -> client.incr(Strings.encode("text")));
+            Assertions.assertTrue(error.getMessage().contains("not an integer"), error.getMessage());
+
+            // the connection is still usable
+            Assertions.assertEquals("not a number", client.get("text"));
+
+            try (Pipeline pipeline = client.pipelined()) {
+                CompletableFuture<String> set = pipeline.set("a", "1");
+                CompletableFuture<String> get = pipeline.get("a");
+                Assertions.assertEquals(Arrays.asList("OK", "1"), pipeline.sync());
+                Assertions.assertEquals("OK", set.join());
+                Assertions.assertEquals("1", get.join());
+            }
+
+            Assertions.assertEquals("OK", client.mset(Collections.singletonMap("b", "2")));
+            Assertions.assertEquals(Arrays.asList("1", "2", null), client.mget(Arrays.asList("a", "b", "c")));
+            Assertions.assertEquals(2, client.unlink(Arrays.asList("a", "b", "c")));
+        }
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(
+                     server.getAddress(), AutoPipeliningConfig.builder().build())) {
+
+            byte[] key = Strings.encode("stream");
+            byte[] value = new byte[10_000];
+            Arrays.fill(value, (byte) 'x');
+            Assertions.assertEquals("OK", client.set(key, new ByteArrayInputStream(value), value.length));
+            try (BulkStringInputStream stream = client.getStream(key)) {
+                Assertions.assertEquals(value.length, stream.getLength());
+                byte[] read = new byte[value.length];
+                int offset = 0;
+                while (offset < read.length) {
+                    offset += stream.read(read, offset, read.length - offset);
+                }
+                Assertions.assertArrayEquals(value, read);
+            }
+            Assertions.assertNull(client.getStream(Strings.encode("missing")));
+
+            // a short stream only fails its own command
+            Assertions.assertThrows(RedisException.class,
+                    () -> client.set(key, new ByteArrayInputStream(value), value.length + 1));
+            Assertions.assertEquals("OK", client.set("key", "value"));
+            Assertions.assertEquals("value", client.get("key"));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer()) {
+            AutoPipeliningRedisClient client = RedisClient.create(
+                    server.getAddress(), AutoPipeliningConfig.builder().build());
+            Assertions.assertEquals("OK", client.set("key", "value"));
+            client.close();
+            Assertions.assertThrows(RedisException.class, () -> client.get("key"));
+        }
+    }
+
+}
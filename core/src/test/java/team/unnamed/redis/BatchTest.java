@@ -0,0 +1,148 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.cluster.ClusterSlots;
+import team.unnamed.redis.cluster.RedisClusterClient;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisCluster;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class BatchTest {
+
+    private static final RedisPoolConfig CONFIG = RedisPoolConfig.builder()
+            .batchSize(100)
+            .batchParallelism(4)
+            .build();
+
+    private static Map<String, String> entries(int count) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            entries.put("key:" + i, "value " + i);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the keys of the given {@code entries} shuffled
+     * and mixed with keys that don't exist
+     */
+    private static List<String> shuffledKeys(Map<String, String> entries) {
+        List<String> keys = new ArrayList<>(entries.keySet());
+        for (int i = 0; i < entries.size() / 10; i++) {
+            keys.add("missing:" + i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        return keys;
+    }
+
+    private static void assertValues(Map<String, String> entries, List<String> keys, List<String> values) {
+        Assertions.assertEquals(keys.size(), values.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Assertions.assertEquals(entries.get(keys.get(i)), values.get(i), keys.get(i));
+        }
+    }
+
+    @Test
+    public void testPooled() throws IOException {
+        Map<String, String> entries = entries(2000);
+        List<String> keys = shuffledKeys(entries);
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             PooledRedisClient client = (PooledRedisClient) RedisClient.create(server.getAddress(), CONFIG)) {
+
+            Assertions.assertEquals("OK", client.mset(entries));
+            Assertions.assertArrayEquals(Strings.encode("value 1234"), server.getValue(Strings.encode("key:1234")));
+
+            assertValues(entries, keys, client.mget(keys));
+            Assertions.assertTrue(client.mget(Collections.emptyList()).isEmpty());
+
+            // chunks were spread across the pool
+            Assertions.assertEquals(4, client.getPool().getOpenCount());
+            Assertions.assertEquals(0, client.getPool().getActiveCount());
+
+            Assertions.assertEquals(2000, client.unlink(keys));
+            Assertions.assertNull(server.getValue(Strings.encode("key:1234")));
+            Assertions.assertEquals(0, client.unlink(keys));
+        }
+    }
+
+    @Test
+    public void testErrorReplies() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             PooledRedisClient client = (PooledRedisClient) RedisClient.create(server.getAddress(), CONFIG)) {
+
+            client.mset(entries(1000));
+            server.register("MGET", (args, out) -> out.writeError("ERR failed"));
+            RedisException error = Assertions.assertThrows(RedisException.class,
+                    () -> client.mget(new ArrayList<>(entries(1000).keySet())));
+            Assertions.assertEquals("ERR failed", error.getMessage());
+
+            // every reply was read, so the connections are reused
+            Assertions.assertEquals(4, client.getPool().getIdleCount());
+            Assertions.assertEquals("value 1", client.get("key:1"));
+        }
+    }
+
+    @Test
+    public void testSingleConnection() throws IOException {
+        // bigger than a single chunk
+        Map<String, String> entries = entries(1200);
+        List<String> keys = shuffledKeys(entries);
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress())) {
+            Assertions.assertEquals("OK", client.mset(entries));
+            assertValues(entries, keys, client.mget(keys));
+            Assertions.assertEquals(1200, client.unlink(keys));
+        }
+    }
+
+    @Test
+    public void testCluster() throws IOException {
+        Map<String, String> entries = entries(2000);
+        List<String> keys = shuffledKeys(entries);
+
+        try (StandInRedisCluster cluster = new StandInRedisCluster(3);
+             RedisClusterClient client = RedisClient.createCluster(cluster.getAddresses(), CONFIG)) {
+
+            // chunks never mix slots, the nodes would reply CROSSSLOT
+            Assertions.assertEquals("OK", client.mset(entries));
+            for (int i = 0; i < 2000; i += 97) {
+                String key = "key:" + i;
+                StandInRedisServer owner = cluster.getOwner(ClusterSlots.getSlot(key));
+                Assertions.assertArrayEquals(Strings.encode(entries.get(key)), owner.getValue(Strings.encode(key)));
+            }
+            assertValues(entries, keys, client.mget(keys));
+
+            // redirected chunks are sent again
+            int slot = ClusterSlots.getSlot("key:1");
+            StandInRedisServer source = cluster.getOwner(slot);
+            StandInRedisServer target = cluster.getNodes().get(cluster.getNodes().indexOf(source) == 0 ? 1 : 0);
+            cluster.moveSlot(slot, target);
+            try (RedisSocket socket = new RedisSocket(target.getAddress())) {
+                // the slot data is migrated too
+                for (String key : entries.keySet()) {
+                    if (ClusterSlots.getSlot(key) == slot) {
+                        socket.writeCommand(RedisCommands.SET, Strings.encode(key), Strings.encode(entries.get(key)));
+                        socket.flush();
+                        socket.readReply();
+                    }
+                }
+            }
+            assertValues(entries, keys, client.mget(keys));
+
+            Assertions.assertEquals(2000, client.unlink(new ArrayList<>(entries.keySet())));
+        }
+    }
+
+}
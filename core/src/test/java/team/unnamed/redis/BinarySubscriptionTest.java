@@ -0,0 +1,115 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.BlockingRedisSubscription;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BinarySubscriptionTest {
+
+    // not valid UTF-8
+    private static final byte[] PAYLOAD = { (byte) 0xFF, 0, (byte) 0xC3, 0x28, 42 };
+
+    private static void publish(RedisSocket socket, String channel, byte[] message) {
+        socket.writeCommand(RedisCommands.PUBLISH, Strings.encode(channel), message);
+        socket.flush();
+        socket.readReply();
+    }
+
+    @Test
+    public void testBlocking() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSocket socket = new RedisSocket(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            CountDownLatch subscribed = new CountDownLatch(1);
+            List<String> channels = new CopyOnWriteArrayList<>();
+            List<byte[]> payloads = new CopyOnWriteArrayList<>();
+
+            socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encode("binary"));
+            socket.flush();
+            Thread reader = new Thread(new BlockingRedisSubscription(socket, new BinaryRedisSubscriber() {
+                @Override
+                public void onSubscribe(String channel, int subscriptions) {
+                    subscribed.countDown();
+                }
+
+                @Override
+                public void onMessage(String channel, byte[] buffer, int offset, int length) {
+                    channels.add(channel);
+                    payloads.add(Arrays.copyOfRange(buffer, offset, offset + length));
+                }
+            }));
+            reader.start();
+
+            Assertions.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 10; i++) {
+                publish(publisher, "binary", PAYLOAD);
+            }
+
+            // the subscription ends once every channel is unsubscribed
+            socket.writeCommand(RedisCommands.UNSUBSCRIBE);
+            socket.flush();
+            reader.join(5000);
+            Assertions.assertFalse(reader.isAlive());
+
+            Assertions.assertEquals(10, payloads.size());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertArrayEquals(PAYLOAD, payloads.get(i));
+                // channel names are resolved to the same instance
+                Assertions.assertSame(channels.get(0), channels.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDispatching() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            CountDownLatch subscribed = new CountDownLatch(1);
+            CountDownLatch received = new CountDownLatch(10);
+            List<ByteBuffer> payloads = new CopyOnWriteArrayList<>();
+
+            DispatchingRedisSubscription subscription = client.subscribe(new BinaryRedisSubscriber() {
+                @Override
+                public void onSubscribe(String channel, int subscriptions) {
+                    subscribed.countDown();
+                }
+
+                @Override
+                public void onMessage(String channel, ByteBuffer message) {
+                    ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+                    copy.put(message).flip();
+                    payloads.add(copy);
+                    received.countDown();
+                }
+            }, SubscriptionConfig.builder().build(), Strings.encode("binary"));
+
+            Assertions.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 10; i++) {
+                publish(publisher, "binary", PAYLOAD);
+            }
+            Assertions.assertTrue(received.await(5, TimeUnit.SECONDS));
+            subscription.close();
+
+            for (ByteBuffer payload : payloads) {
+                Assertions.assertEquals(ByteBuffer.wrap(PAYLOAD), payload);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.BufferArena;
+import team.unnamed.redis.io.BufferConfig;
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class BufferArenaTest {
+
+    @Test
+    public void testArena() {
+        BufferArena arena = new BufferArena(1024);
+        Assertions.assertEquals(128, BufferArena.sizeClassLength(100));
+        Assertions.assertEquals(128, BufferArena.sizeClassLength(128));
+
+        byte[] buffer = arena.acquire(100);
+        Assertions.assertEquals(128, buffer.length);
+        arena.release(buffer);
+        Assertions.assertEquals(128, arena.getRetainedBytes());
+        Assertions.assertSame(buffer, arena.acquire(65));
+        Assertions.assertEquals(0, arena.getRetainedBytes());
+        Assertions.assertEquals(1, arena.getAllocationCount());
+        Assertions.assertEquals(1, arena.getReuseCount());
+
+        // bigger than the max retained bytes
+        arena.release(new byte[2048]);
+        // not from an arena
+        arena.release(new byte[100]);
+        Assertions.assertEquals(0, arena.getRetainedBytes());
+    }
+
+    @Test
+    public void testAdaptiveOutput() throws IOException {
+        BufferArena arena = new BufferArena(1 << 20);
+        BufferConfig config = BufferConfig.builder()
+                .initialSize(128)
+                .maxSize(1024)
+                .arena(arena)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, config);
+        RespOutputStream fixed = new RespOutputStream(expected, 8192);
+
+        // borrowed on the first write
+        Assertions.assertEquals(0, output.getBufferLength());
+        for (int i = 0; i < 100; i++) {
+            byte[] key = Strings.encode("key:" + i);
+            output.writeCommand(RedisCommands.GET, key);
+            fixed.writeCommand(RedisCommands.GET, key);
+        }
+        Assertions.assertEquals(1024, output.getBufferLength());
+        output.flush();
+        fixed.flush();
+        Assertions.assertArrayEquals(expected.toByteArray(), bytes.toByteArray());
+
+        Assertions.assertTrue(output.releaseBuffer());
+        Assertions.assertEquals(0, output.getBufferLength());
+        // and the ones replaced while growing
+        Assertions.assertEquals(128 + 256 + 512 + 1024, arena.getRetainedBytes());
+
+        // grown since the previous release, so it's kept
+        output.writeCommand(RedisCommands.PING);
+        Assertions.assertEquals(1024, output.getBufferLength());
+        Assertions.assertFalse(output.releaseBuffer());
+        output.flush();
+        Assertions.assertTrue(output.releaseBuffer());
+
+        // idle connections shrink back
+        output.writeCommand(RedisCommands.PING);
+        Assertions.assertEquals(512, output.getBufferLength());
+        output.flush();
+        output.releaseBuffer();
+        output.writeCommand(RedisCommands.PING);
+        Assertions.assertEquals(256, output.getBufferLength());
+    }
+
+    @Test
+    public void testAdaptiveInput() throws IOException {
+        BufferArena arena = new BufferArena(1 << 20);
+        BufferConfig config = BufferConfig.builder()
+                .initialSize(64)
+                .maxSize(4096)
+                .arena(arena)
+                .build();
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(frames, 8192);
+        byte[] value = new byte[1000];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        output.writeBulkString(value);
+        output.writeBulkString(Strings.encode("small"));
+        output.flush();
+
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frames.toByteArray()), config);
+        Assertions.assertEquals(0, input.getBufferLength());
+        Assertions.assertArrayEquals(value, (byte[]) input.readNext());
+        // refills filled the buffer, so it grew
+        Assertions.assertTrue(input.getBufferLength() > 64);
+        Assertions.assertArrayEquals(Strings.encode("small"), (byte[]) input.readNext());
+        Assertions.assertTrue(input.releaseBuffer());
+        Assertions.assertEquals(0, input.getBufferLength());
+        Assertions.assertEquals(frames.size(), input.getPosition());
+    }
+
+    @Test
+    public void testPoolReleasesBuffers() throws IOException {
+        BufferArena arena = new BufferArena(1 << 20);
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .maxSize(2)
+                .bufferConfig(BufferConfig.builder().arena(arena).build())
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress(), config)) {
+            client.set("key", "value");
+            // both buffers of the idle connection
+            Assertions.assertEquals(2 * 8192, arena.getRetainedBytes());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals("value", client.get("key"));
+            }
+            Assertions.assertEquals(2, arena.getAllocationCount());
+            Assertions.assertEquals(20, arena.getReuseCount());
+        }
+    }
+
+}
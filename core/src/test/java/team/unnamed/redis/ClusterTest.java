@@ -0,0 +1,171 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.cluster.ClusterSlots;
+import team.unnamed.redis.cluster.RedisClusterClient;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisCluster;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ClusterTest {
+
+    private static void awaitMaster(RedisClusterClient client, int slot, StandInRedisServer node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!node.getAddress().equals(client.getMaster(slot)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(node.getAddress(), client.getMaster(slot));
+    }
+
+    @Test
+    public void testSlots() {
+        // values from CLUSTER KEYSLOT
+        Assertions.assertEquals(12182, ClusterSlots.getSlot("foo"));
+        Assertions.assertEquals(5061, ClusterSlots.getSlot("bar"));
+        Assertions.assertEquals(866, ClusterSlots.getSlot("hello"));
+        Assertions.assertEquals(12739, ClusterSlots.getSlot("123456789"));
+
+        // only the hash tag is hashed
+        Assertions.assertEquals(ClusterSlots.getSlot("user:1"), ClusterSlots.getSlot("{user:1}.name"));
+        Assertions.assertEquals(ClusterSlots.getSlot("{user:1}.name"), ClusterSlots.getSlot("{user:1}.age"));
+        Assertions.assertEquals(ClusterSlots.getSlot("bar"), ClusterSlots.getSlot("foo{bar}{zap}"));
+        Assertions.assertEquals(ClusterSlots.getSlot("{bar"), ClusterSlots.getSlot("foo{{bar}}zap"));
+
+        // empty or unclosed tags are ignored
+        Assertions.assertEquals(8363, ClusterSlots.getSlot("foo{}{bar}"));
+        Assertions.assertEquals(15278, ClusterSlots.getSlot("foo{bar"));
+    }
+
+    @Test
+    public void testRouting() throws IOException {
+        try (StandInRedisCluster cluster = new StandInRedisCluster(3);
+             RedisClusterClient client = RedisClient.createCluster(
+                     Collections.singletonList(cluster.getAddresses().get(0)),
+                     RedisPoolConfig.builder().build())) {
+
+            // other nodes are discovered from the seed
+            Assertions.assertEquals(3, client.getMasters().size());
+
+            for (int i = 0; i < 100; i++) {
+                String key = "key:" + i;
+                Assertions.assertEquals("OK", client.set(key, "value " + i));
+                Assertions.assertEquals(1, client.incr(Strings.encode("counter:" + i)));
+            }
+            for (int i = 0; i < 100; i++) {
+                String key = "key:" + i;
+                Assertions.assertEquals("value " + i, client.get(key));
+
+                // stored by the node serving its slot
+                StandInRedisServer owner = cluster.getOwner(ClusterSlots.getSlot(key));
+                Assertions.assertArrayEquals(Strings.encode("value " + i), owner.getValue(Strings.encode(key)));
+            }
+        }
+    }
+
+    @Test
+    public void testRedirects() throws IOException, InterruptedException {
+        try (StandInRedisCluster cluster = new StandInRedisCluster(2);
+             RedisClusterClient client = RedisClient.createCluster(
+                     cluster.getAddresses(), RedisPoolConfig.builder().build())) {
+
+            String key = "{user:1}.name";
+            int slot = ClusterSlots.getSlot(key);
+            StandInRedisServer source = cluster.getOwner(slot);
+            StandInRedisServer target = cluster.getNodes().get(cluster.getNodes().indexOf(source) == 0 ? 1 : 0);
+            client.set(key, "Andre");
+
+            // ASK, keys missing in the source are served by the target
+            cluster.migrateSlot(slot, target);
+            Assertions.assertEquals("Andre", client.get(key));
+            Assertions.assertEquals("OK", client.set("{user:1}.age", "20"));
+            Assertions.assertNotNull(target.getValue(Strings.encode("{user:1}.age")));
+            Assertions.assertNull(source.getValue(Strings.encode("{user:1}.age")));
+            Assertions.assertEquals("20", client.get("{user:1}.age"));
+            // the slot is still served by the source
+            Assertions.assertEquals(source.getAddress(), client.getMaster(slot));
+
+            // MOVED, the slot is updated
+            cluster.moveSlot(slot, target);
+            Assertions.assertEquals("Andre", client.get(key));
+            awaitMaster(client, slot, target);
+            Assertions.assertEquals("OK", client.set(key, "Yusshu"));
+            Assertions.assertArrayEquals(Strings.encode("Yusshu"), target.getValue(Strings.encode(key)));
+        }
+    }
+
+    @Test
+    public void testPipeline() throws IOException {
+        try (StandInRedisCluster cluster = new StandInRedisCluster(3);
+             RedisClusterClient client = RedisClient.createCluster(
+                     cluster.getAddresses(), RedisPoolConfig.builder().build())) {
+
+            // keys of every node, replies keep the queue order
+            Pipeline pipeline = client.pipelined();
+            List<CompletableFuture<String>> gets = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                pipeline.set("key:" + i, "value " + i);
+                gets.add(pipeline.get("key:" + i));
+            }
+            List<Object> replies = pipeline.sync();
+            Assertions.assertEquals(100, replies.size());
+            for (int i = 0; i < 50; i++) {
+                Assertions.assertEquals("OK", replies.get(i * 2));
+                Assertions.assertEquals("value " + i, replies.get(i * 2 + 1));
+                Assertions.assertEquals("value " + i, gets.get(i).join());
+
+                String key = "key:" + i;
+                StandInRedisServer owner = cluster.getOwner(ClusterSlots.getSlot(key));
+                Assertions.assertArrayEquals(Strings.encode("value " + i), owner.getValue(Strings.encode(key)));
+            }
+
+            // MOVED, the redirected command is sent again
+            int slot = ClusterSlots.getSlot("key:0");
+            StandInRedisServer source = cluster.getOwner(slot);
+            StandInRedisServer target = cluster.getNodes().get(cluster.getNodes().indexOf(source) == 0 ? 1 : 0);
+            cluster.moveSlot(slot, target);
+            pipeline.get("key:1");
+            CompletableFuture<String> moved = pipeline.set("key:0", "moved");
+            Assertions.assertEquals(Arrays.asList("value 1", "OK"), pipeline.sync());
+            Assertions.assertEquals("OK", moved.join());
+            Assertions.assertArrayEquals(Strings.encode("moved"), target.getValue(Strings.encode("key:0")));
+            Assertions.assertEquals(0, pipeline.size());
+        }
+    }
+
+    @Test
+    public void testSlotsFallback() throws IOException, InterruptedException {
+        try (StandInRedisCluster cluster = new StandInRedisCluster(3)) {
+            // servers older than Redis 7 don't support CLUSTER SHARDS
+            cluster.setShardsSupported(false);
+
+            try (RedisClusterClient client = RedisClient.createCluster(
+                    cluster.getAddresses(), RedisPoolConfig.builder().build())) {
+                Assertions.assertEquals(3, client.getMasters().size());
+                Assertions.assertEquals("OK", client.set("foo", "bar"));
+                Assertions.assertEquals("bar", client.get("foo"));
+
+                // the topology refresh uses CLUSTER SLOTS too
+                int slot = ClusterSlots.getSlot("foo");
+                StandInRedisServer target = cluster.getNodes().get(0);
+                if (cluster.getOwner(slot) == target) {
+                    target = cluster.getNodes().get(1);
+                }
+                cluster.moveSlot(slot, target);
+                Assertions.assertEquals("bar", client.get("foo"));
+                awaitMaster(client, slot, target);
+                client.refreshTopology();
+                Assertions.assertEquals(target.getAddress(), client.getMaster(slot));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.codec.RedisCodec;
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CodecTest {
+
+    private static <T> void assertEncoding(TypeCodec<T> codec, T value, byte[] expected) throws IOException {
+        Assertions.assertEquals(expected.length, codec.getEncodedLength(value));
+        byte[] buffer = new byte[expected.length + 2];
+        codec.encode(value, buffer, 1);
+        Assertions.assertArrayEquals(expected, Arrays.copyOfRange(buffer, 1, expected.length + 1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 64);
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        RespOutputStream expectedOutput = new RespOutputStream(expectedBytes, 64);
+        output.writeBulkString(codec, value);
+        output.flush();
+        expectedOutput.writeBulkString(expected);
+        expectedOutput.flush();
+        Assertions.assertArrayEquals(expectedBytes.toByteArray(), bytes.toByteArray());
+
+        // decoded from the buffer, or from a scratch array if it doesn't fit
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(bytes.toByteArray()), 64);
+        T decoded = input.readBulkString(codec);
+        if (value instanceof byte[]) {
+            Assertions.assertArrayEquals((byte[]) value, (byte[]) decoded);
+        } else {
+            Assertions.assertEquals(value, decoded);
+        }
+    }
+
+    @Test
+    public void testCodecs() throws IOException {
+        String[] strings = { "", "hello", "\u00f1and\u00fa", "\u20ac \ud83d\ude00" };
+        for (String string : strings) {
+            assertEncoding(TypeCodec.string(), string, Strings.encode(string));
+        }
+        // unpaired surrogates are encoded as '?', like String#getBytes
+        for (String string : new String[] { "lone \ud83d", "\ude00 \ud83d" }) {
+            byte[] buffer = new byte[TypeCodec.string().getEncodedLength(string)];
+            TypeCodec.string().encode(string, buffer, 0);
+            Assertions.assertArrayEquals(Strings.encode(string), buffer);
+        }
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            large.append("\u00e1bc");
+        }
+        assertEncoding(TypeCodec.string(), large.toString(), Strings.encode(large.toString()));
+
+        for (long value : new long[] { 0, 7, -7, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEncoding(TypeCodec.int64(), value, Strings.encode(Long.toString(value)));
+        }
+
+        byte[] bytes = { 0, 1, 2, '\r', '\n', -1 };
+        assertEncoding(TypeCodec.bytes(), bytes, bytes);
+    }
+
+    @Test
+    public void testArrayErrorElement() throws IOException {
+        byte[] frames = Strings.encode("*3\r\n$1\r\na\r\n-ERR nested\r\n$1\r\nc\r\n+OK\r\n");
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frames), 64);
+        List<String> values = new ArrayList<>();
+        Assertions.assertThrows(RedisReplyException.class, () -> input.readArrayReply(TypeCodec.string(), values));
+        Assertions.assertEquals(Arrays.asList("a"), values);
+        // the rest of the array was read, the stream is still usable
+        Assertions.assertEquals("OK", input.readBulkString(TypeCodec.string()));
+    }
+
+    @Test
+    public void testTypedClient() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             TypedRedisClient<String, Long> client = RedisClient.create(server.getAddress(),
+                     RedisCodec.of(TypeCodec.string(), TypeCodec.int64()))) {
+            Assertions.assertEquals("OK", client.set("a", 10L));
+            Assertions.assertEquals(Long.valueOf(10), client.get("a"));
+            Assertions.assertNull(client.get("b"));
+            Assertions.assertEquals(11, client.incr("a"));
+            Assertions.assertEquals(Long.valueOf(11), client.get("a"));
+        }
+    }
+
+    @Test
+    public void testPooledBatches() throws IOException {
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .batchSize(3)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             TypedRedisClient<String, String> client = RedisClient.create(server.getAddress(), config,
+                     RedisCodec.string())) {
+            Map<String, String> entries = new LinkedHashMap<>();
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                entries.put("key:" + i, "value \u00e9 " + i);
+                keys.add("key:" + i);
+            }
+            keys.add("missing");
+            Assertions.assertEquals("OK", client.mset(entries));
+
+            List<String> values = client.mget(keys);
+            Assertions.assertEquals(11, values.size());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals("value \u00e9 " + i, values.get(i));
+            }
+            Assertions.assertNull(values.get(10));
+
+            Assertions.assertEquals(10, client.unlink(keys));
+            Assertions.assertNull(client.get("key:0"));
+
+            // the connection is still usable after an error reply
+            client.set("text", "not a number");
+            Assertions.assertThrows(RedisException.class, () -> client.incr("text"));
+            Assertions.assertEquals("not a number", client.get("text"));
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.metrics.CommandMetrics;
+import team.unnamed.redis.pipelining.AutoPipeliningConfig;
+import team.unnamed.redis.pipelining.AutoPipeliningRedisClient;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class CommandMetricsTest {
+
+    @Test
+    public void testPooled() throws IOException {
+        CommandMetrics metrics = new CommandMetrics();
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .maxSize(1)
+                .commandListener(metrics)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress(), config)) {
+
+            client.set("text", "not a number");
+            Assertions.assertThrows(RedisException.class, () -> client.incr(Strings.encode("text")));
+            try (Pipeline pipeline = client.pipelined()) {
+                for (int i = 0; i < 10; i++) {
+                    pipeline.get("text");
+                }
+            }
+            client.mget(Arrays.asList("a", "b"));
+
+            Assertions.assertEquals(1, metrics.getCommand("SET").getCount());
+            Assertions.assertEquals(10, metrics.getCommand("GET").getCount());
+            Assertions.assertEquals(1, metrics.getCommand("MGET").getCount());
+            Assertions.assertNull(metrics.getCommand("DEL"));
+
+            CommandMetrics.CommandStats incr = metrics.getCommand("INCR");
+            Assertions.assertEquals(1, incr.getErrorCount());
+            Assertions.assertEquals(1.0, incr.getErrorRate());
+            Assertions.assertEquals(0, metrics.getCommand("GET").getErrorCount());
+            Assertions.assertTrue(metrics.getCommand("GET").getLatencyNanosAtPercentile(50) > 0);
+
+            CommandMetrics.ConnectionStats totals = metrics.getTotals();
+            Assertions.assertEquals(13, totals.getCommandCount());
+            Assertions.assertEquals(1, totals.getErrorCount());
+            // the pipeline was written in a single flush
+            Assertions.assertEquals(4, totals.getFlushCount());
+            Assertions.assertEquals(13 / 4.0, totals.getCommandsPerFlush());
+            Assertions.assertTrue(totals.getBytesWritten() > 0);
+            Assertions.assertTrue(totals.getBytesRead() > 0);
+            Assertions.assertTrue(totals.getReadCount() > 0);
+
+            Assertions.assertEquals(1, metrics.getConnections().size());
+            Assertions.assertEquals(totals.getBytesRead(), metrics.getConnections().iterator().next().getBytesRead());
+        }
+
+        // closed connections are only kept in the totals
+        Assertions.assertTrue(metrics.getConnections().isEmpty());
+        Assertions.assertEquals(13, metrics.getTotals().getCommandCount());
+    }
+
+    @Test
+    public void testAutoPipelining() throws IOException {
+        CommandMetrics metrics = new CommandMetrics();
+        AutoPipeliningConfig config = AutoPipeliningConfig.builder()
+                .connections(2)
+                .commandListener(metrics)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             AutoPipeliningRedisClient client = RedisClient.create(server.getAddress(), config)) {
+            for (int i = 0; i < 100; i++) {
+                client.set("key", "value");
+                client.incr(Strings.encode("counter"));
+            }
+            Assertions.assertEquals(100, metrics.getCommand("SET").getCount());
+            Assertions.assertEquals(100, metrics.getCommand("INCR").getCount());
+            Assertions.assertEquals(client.getCommandCount(), metrics.getTotals().getCommandCount());
+            Assertions.assertEquals(client.getFlushCount(), metrics.getTotals().getFlushCount());
+        }
+        Assertions.assertTrue(metrics.getConnections().isEmpty());
+    }
+
+}
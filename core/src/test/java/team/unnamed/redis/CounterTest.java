@@ -0,0 +1,34 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+
+public class CounterTest extends LocalRedisTest {
+
+    @Test
+    public void test() {
+        byte[] key = Strings.encode("counter");
+        client.set("counter", "0");
+        Assertions.assertEquals(1, client.incr(key));
+        Assertions.assertEquals(5000000001L, client.incrBy(key, 5000000000L));
+        Assertions.assertEquals(1, client.decrBy(key, 5000000000L));
+    }
+
+    @Test
+    public void testFloat() {
+        byte[] key = Strings.encode("float-counter");
+        client.set("float-counter", "10");
+        Assertions.assertEquals(10.5, client.incrByFloat(key, 0.5));
+        Assertions.assertEquals(-4.5, client.incrByFloat(key, -15));
+    }
+
+    @Test
+    public void testError() {
+        client.set("not-a-counter", "hello");
+        Assertions.assertThrows(RedisException.class, () -> client.incr(Strings.encode("not-a-counter")));
+        // the connection is still usable
+        Assertions.assertEquals("hello", client.get("not-a-counter"));
+    }
+
+}
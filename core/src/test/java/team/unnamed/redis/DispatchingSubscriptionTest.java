@@ -0,0 +1,145 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.DispatchingRedisSubscription;
+import team.unnamed.redis.pubsub.OverflowPolicy;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.SubscriptionConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchingSubscriptionTest {
+
+    private static void publish(RedisSocket socket, String channel, String message) {
+        socket.writeCommand(RedisCommands.PUBLISH, Strings.encode(channel), Strings.encode(message));
+        socket.flush();
+        socket.readReply();
+    }
+
+    @Test
+    public void testOrdering() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            int count = 1000;
+            CountDownLatch subscribed = new CountDownLatch(2);
+            CountDownLatch received = new CountDownLatch(2 * count);
+            Map<String, List<String>> messages = new ConcurrentHashMap<>();
+
+            SubscriptionConfig config = SubscriptionConfig.builder()
+                    .executor(executor)
+                    .build();
+            DispatchingRedisSubscription subscription = client.subscribe(new RedisSubscriber() {
+                @Override
+                public void onSubscribe(String channel, int subscriptions) {
+                    subscribed.countDown();
+                }
+
+                @Override
+                public void onMessage(String channel, String message) {
+                    messages.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(message);
+                    received.countDown();
+                }
+            }, config, "first", "second");
+
+            Assertions.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < count; i++) {
+                publish(publisher, "first", Integer.toString(i));
+                publish(publisher, "second", Integer.toString(i));
+            }
+            Assertions.assertTrue(received.await(10, TimeUnit.SECONDS));
+
+            // every channel is dispatched in order
+            for (String channel : new String[] { "first", "second" }) {
+                List<String> channelMessages = messages.get(channel);
+                for (int i = 0; i < count; i++) {
+                    Assertions.assertEquals(Integer.toString(i), channelMessages.get(i));
+                }
+            }
+
+            subscription.close();
+            Assertions.assertFalse(subscription.isOpen());
+            Assertions.assertEquals(0, subscription.getDroppedCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOverflow() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            CountDownLatch subscribed = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> messages = new CopyOnWriteArrayList<>();
+
+            SubscriptionConfig config = SubscriptionConfig.builder()
+                    .queueCapacity(10)
+                    .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                    .build();
+            DispatchingRedisSubscription subscription = client.subscribe(new RedisSubscriber() {
+                @Override
+                public void onSubscribe(String channel, int subscriptions) {
+                    subscribed.countDown();
+                }
+
+                @Override
+                public void onMessage(String channel, String message) {
+                    try {
+                        // slow subscriber
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    messages.add(message);
+                }
+            }, config, "slow");
+
+            Assertions.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100; i++) {
+                publish(publisher, "slow", Integer.toString(i));
+            }
+
+            // the reader is never blocked by the subscriber
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (subscription.getReceivedCount() < 101 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(101, subscription.getReceivedCount());
+            Assertions.assertTrue(subscription.getPendingCount() <= 10);
+            Assertions.assertTrue(subscription.getDroppedCount() > 0);
+            Assertions.assertTrue(subscription.getLag(TimeUnit.NANOSECONDS) > 0);
+
+            release.countDown();
+            subscription.close();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (subscription.getDeliveredCount() + subscription.getDroppedCount() < subscription.getReceivedCount()
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // the newest messages are kept, in order
+            Assertions.assertEquals("99", messages.get(messages.size() - 1));
+            Assertions.assertEquals(
+                    subscription.getReceivedCount(),
+                    subscription.getDeliveredCount() + subscription.getDroppedCount()
+            );
+        }
+    }
+
+}
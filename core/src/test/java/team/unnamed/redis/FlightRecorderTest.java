@@ -0,0 +1,116 @@
+package team.unnamed.redis;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.BinaryRedisSubscriber;
+import team.unnamed.redis.pubsub.BlockingRedisSubscription;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class FlightRecorderTest {
+
+    private static final String[] EVENTS = {
+            "team.unnamed.redis.Command",
+            "team.unnamed.redis.Connect",
+            "team.unnamed.redis.Flush",
+            "team.unnamed.redis.Close",
+            "team.unnamed.redis.SocketRead",
+            "team.unnamed.redis.SubscriptionDispatch"
+    };
+
+    private static List<RecordedEvent> eventsOf(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testEvents() throws IOException, InterruptedException {
+        List<RecordedEvent> events;
+        Path file = Files.createTempFile("redis-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : EVENTS) {
+                recording.enable(event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            try (StandInRedisServer server = new StandInRedisServer()) {
+                try (RedisClient client = RedisClient.create(server.getAddress())) {
+                    client.set("key", "value");
+                    Assertions.assertEquals("value", client.get("key"));
+                    client.set("text", "not a number");
+                    Assertions.assertThrows(RedisException.class, () -> client.incr(Strings.encode("text")));
+                }
+                subscribe(server);
+            }
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        List<RecordedEvent> commands = eventsOf(events, "team.unnamed.redis.Command");
+        Assertions.assertEquals(4, commands.size());
+        RecordedEvent get = commands.get(1);
+        Assertions.assertEquals("GET", get.getString("command"));
+        Assertions.assertEquals(3, get.getInt("keySize"));
+        // $5\r\nvalue\r\n
+        Assertions.assertEquals(11, get.getLong("replySize"));
+        Assertions.assertFalse(get.getDuration().isNegative());
+        RecordedEvent incr = commands.get(3);
+        Assertions.assertEquals("INCR", incr.getString("command"));
+        Assertions.assertEquals(-1, incr.getLong("replySize"));
+
+        Assertions.assertEquals(3, eventsOf(events, "team.unnamed.redis.Connect").size());
+        Assertions.assertEquals(3, eventsOf(events, "team.unnamed.redis.Close").size());
+        Assertions.assertFalse(eventsOf(events, "team.unnamed.redis.Flush").isEmpty());
+        Assertions.assertTrue(eventsOf(events, "team.unnamed.redis.SocketRead").stream()
+                .allMatch(event -> event.getInt("bytesRead") > 0));
+
+        List<RecordedEvent> dispatches = eventsOf(events, "team.unnamed.redis.SubscriptionDispatch");
+        Assertions.assertEquals(1, dispatches.size());
+        Assertions.assertEquals("channel", dispatches.get(0).getString("channel"));
+        Assertions.assertEquals(7, dispatches.get(0).getInt("messageSize"));
+    }
+
+    private static void subscribe(StandInRedisServer server) throws IOException, InterruptedException {
+        try (RedisSocket socket = new RedisSocket(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+            CountDownLatch subscribed = new CountDownLatch(1);
+            socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encode("channel"));
+            socket.flush();
+            Thread reader = new Thread(new BlockingRedisSubscription(socket, new BinaryRedisSubscriber() {
+                @Override
+                public void onSubscribe(String channel, int subscriptions) {
+                    subscribed.countDown();
+                }
+            }));
+            reader.start();
+            Assertions.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+            publisher.writeCommand(RedisCommands.PUBLISH, Strings.encode("channel"), Strings.encode("message"));
+            publisher.flush();
+            publisher.readReply();
+
+            socket.writeCommand(RedisCommands.UNSUBSCRIBE);
+            socket.flush();
+            reader.join(5000);
+            Assertions.assertFalse(reader.isAlive());
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package team.unnamed.redis;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
 
 public class GetAndSetTest extends LocalRedisTest {
 
@@ -11,4 +13,17 @@ public class GetAndSetTest extends LocalRedisTest {
         Assertions.assertEquals("so smart", client.get("yusshu"));
     }
 
+    @Test
+    public void testVisitor() {
+        client.set("yusshu", "so smart");
+        int[] length = { -1 };
+        client.get(Strings.encode("yusshu"), new ReplyVisitor() {
+            @Override
+            public void onBulkString(byte[] buffer, int offset, int len) {
+                length[0] = len;
+            }
+        });
+        Assertions.assertEquals(8, length[0]);
+    }
+
 }
@@ -0,0 +1,207 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.cache.NearCache;
+import team.unnamed.redis.cache.NearCacheConfig;
+import team.unnamed.redis.cache.NearCachingRedisClient;
+import team.unnamed.redis.cache.TrackingMode;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class NearCacheTest {
+
+    private static void set(RedisSocket socket, String key, String value) {
+        socket.writeCommand(RedisCommands.SET, Strings.encode(key), Strings.encode(value));
+        socket.flush();
+        socket.readReply();
+    }
+
+    private static void awaitInvalidations(NearCache cache, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getInvalidationCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(count, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testInvalidation() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             NearCachingRedisClient client = RedisClient.create(
+                     server.getAddress(),
+                     RedisPoolConfig.builder().build(),
+                     NearCacheConfig.builder().build()
+             );
+             RedisSocket other = new RedisSocket(server.getAddress())) {
+
+            NearCache cache = client.getNearCache();
+            Assertions.assertTrue(cache.isTracking());
+
+            client.set("key", "first");
+            Assertions.assertEquals("first", client.get("key"));
+            Assertions.assertEquals("first", client.get("key"));
+            Assertions.assertEquals(1, cache.getMissCount());
+            Assertions.assertEquals(1, cache.getHitCount());
+
+            // modified by another client, the server invalidates it
+            long invalidations = cache.getInvalidationCount();
+            set(other, "key", "second");
+            awaitInvalidations(cache, invalidations + 1);
+            Assertions.assertEquals("second", client.get("key"));
+            Assertions.assertEquals(2, cache.getMissCount());
+
+            // own writes are visible immediately
+            client.set("key", "third");
+            Assertions.assertEquals("third", client.get("key"));
+
+            // non-existent keys are cached too
+            Assertions.assertNull(client.get("missing"));
+            Assertions.assertNull(client.get("missing"));
+            Assertions.assertEquals(2, cache.getHitCount());
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws IOException, InterruptedException {
+        NearCacheConfig config = NearCacheConfig.builder()
+                .trackingMode(TrackingMode.BROADCAST)
+                .prefixes("user:")
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSocket other = new RedisSocket(server.getAddress())) {
+
+            // written before the cache connects, so their
+            // invalidations can't race with the first reads
+            set(other, "user:1", "Andre");
+            set(other, "other", "value");
+
+            NearCachingRedisClient client = RedisClient.create(
+                    server.getAddress(), RedisPoolConfig.builder().build(), config);
+            NearCache cache = client.getNearCache();
+
+            Assertions.assertEquals("Andre", client.get("user:1"));
+            Assertions.assertEquals("Andre", client.get("user:1"));
+            Assertions.assertEquals("value", client.get("other"));
+            Assertions.assertEquals("value", client.get("other"));
+
+            // keys without a tracked prefix are never cached
+            Assertions.assertEquals(1, cache.getHitCount());
+            Assertions.assertEquals(1, cache.size());
+
+            long invalidations = cache.getInvalidationCount();
+            set(other, "user:1", "Yusshu");
+            awaitInvalidations(cache, invalidations + 1);
+            Assertions.assertEquals("Yusshu", client.get("user:1"));
+            client.close();
+        }
+    }
+
+    @Test
+    public void testMget() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             NearCachingRedisClient client = RedisClient.create(
+                     server.getAddress(), RedisPoolConfig.builder().build(), NearCacheConfig.builder().build())) {
+
+            NearCache cache = client.getNearCache();
+            client.mset(Collections.singletonMap("b", "2"));
+            client.set("a", "1");
+            Assertions.assertEquals("1", client.get("a"));
+
+            // only the misses are read from the server
+            Assertions.assertEquals(Arrays.asList("1", "2", null), client.mget(Arrays.asList("a", "b", "c")));
+            Assertions.assertEquals(1, cache.getHitCount());
+            Assertions.assertEquals(3, cache.size());
+            Assertions.assertEquals(Arrays.asList(null, "2", "1"), client.mget(Arrays.asList("c", "b", "a")));
+            Assertions.assertEquals(4, cache.getHitCount());
+
+            // own writes are visible immediately
+            client.mset(Collections.singletonMap("c", "3"));
+            Assertions.assertEquals(1, client.unlink(Collections.singletonList("a")));
+            Assertions.assertEquals(Arrays.asList(null, "2", "3"), client.mget(Arrays.asList("a", "b", "c")));
+        }
+    }
+
+    @Test
+    public void testBinaryKeys() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             NearCachingRedisClient client = RedisClient.create(
+                     server.getAddress(), RedisPoolConfig.builder().build(), NearCacheConfig.builder().build())) {
+
+            NearCache cache = client.getNearCache();
+            // both are decoded to the same string
+            byte[] first = { (byte) 0xFF, 'a' };
+            byte[] second = { (byte) 0xFE, 'a' };
+            Assertions.assertEquals(Strings.decode(first), Strings.decode(second));
+
+            client.set(first, Strings.encode("value"));
+            Assertions.assertEquals("value", client.get(first));
+            Assertions.assertNull(client.get(second));
+            Assertions.assertArrayEquals(Strings.encode("value"), server.getValue(first));
+            Assertions.assertEquals(0, cache.size());
+
+            // valid UTF-8 keys are still cached
+            client.set(Strings.encode("k\u00e9y"), Strings.encode("value"));
+            Assertions.assertEquals("value", client.get(Strings.encode("k\u00e9y")));
+            Assertions.assertEquals("value", client.get("k\u00e9y"));
+            Assertions.assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    public void testBounds() throws IOException {
+        NearCacheConfig config = NearCacheConfig.builder()
+                .maxEntries(100)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             NearCachingRedisClient client = RedisClient.create(
+                     server.getAddress(), RedisPoolConfig.builder().build(), config)) {
+
+            NearCache cache = client.getNearCache();
+
+            // hot keys, read many times
+            for (int round = 0; round < 50; round++) {
+                for (int i = 0; i < 10; i++) {
+                    client.get("hot:" + i);
+                }
+            }
+
+            // a scan of cold keys doesn't flush the hot ones
+            for (int i = 0; i < 1000; i++) {
+                client.get("cold:" + i);
+            }
+            Assertions.assertTrue(cache.size() <= 100);
+            Assertions.assertTrue(cache.getEvictionCount() >= 900);
+
+            long hits = cache.getHitCount();
+            for (int i = 0; i < 10; i++) {
+                client.get("hot:" + i);
+            }
+            Assertions.assertEquals(hits + 10, cache.getHitCount());
+        }
+
+        NearCacheConfig bytesConfig = NearCacheConfig.builder()
+                .maxBytes(2048)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             NearCachingRedisClient client = RedisClient.create(
+                     server.getAddress(), RedisPoolConfig.builder().build(), bytesConfig)) {
+
+            for (int i = 0; i < 100; i++) {
+                client.set("key:" + i, "some value");
+                client.get("key:" + i);
+            }
+            Assertions.assertTrue(client.getNearCache().getWeightedSize() <= 2048);
+            Assertions.assertTrue(client.getNearCache().size() > 0);
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PipelineTest extends LocalRedisTest {
+
+    @Test
+    public void test() {
+        CompletableFuture<String> value;
+        List<Object> replies;
+
+        try (Pipeline pipeline = client.pipelined()) {
+            for (int i = 0; i < 1000; i++) {
+                pipeline.set("pipelined:" + i, "value " + i);
+            }
+            value = pipeline.get("pipelined:500");
+
+            Assertions.assertFalse(value.isDone());
+            Assertions.assertEquals(1001, pipeline.size());
+
+            replies = pipeline.sync();
+        }
+
+        Assertions.assertEquals(1001, replies.size());
+        Assertions.assertEquals("OK", replies.get(0));
+        Assertions.assertEquals("value 500", replies.get(1000));
+        Assertions.assertEquals("value 500", value.join());
+    }
+
+    @Test
+    public void testBrokenReplies() throws IOException {
+        // an unknown reply type
+        assertBrokenGet((args, out) -> out.write(Strings.encode("?bad\r\n")));
+        // an integer reply, the string converter fails
+        assertBrokenGet((args, out) -> out.writeLong(1));
+    }
+
+    private static void assertBrokenGet(StandInRedisServer.CommandHandler handler) throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress())) {
+            server.register("GET", handler);
+
+            Pipeline pipeline = client.pipelined();
+            CompletableFuture<String> first = pipeline.set("a", "b");
+            CompletableFuture<String> broken = pipeline.get("a");
+            CompletableFuture<String> last = pipeline.set("c", "d");
+
+            Assertions.assertThrows(RuntimeException.class, pipeline::sync);
+            Assertions.assertEquals("OK", first.join());
+            // the remaining replies can't be trusted, their futures fail
+            Assertions.assertTrue(broken.isCompletedExceptionally());
+            Assertions.assertTrue(last.isCompletedExceptionally());
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.pool.RedisSocketPool;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PooledClientTest {
+
+    @Test
+    public void test() throws Exception {
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .minSize(1)
+                .maxSize(4)
+                .maxWait(10, TimeUnit.SECONDS)
+                .build();
+
+        try (RedisClient client = RedisClient.create(new InetSocketAddress("127.0.0.1", 6379), config)) {
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 16; i++) {
+                String key = "pooled:" + i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        String value = "value " + j;
+                        Assertions.assertEquals("OK", client.set(key, value));
+                        Assertions.assertEquals(value, client.get(key));
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            PooledRedisClient pooled = (PooledRedisClient) client;
+            Assertions.assertEquals(0, pooled.getPool().getActiveCount());
+            Assertions.assertTrue(pooled.getPool().getOpenCount() <= 4);
+        }
+    }
+
+    @Test
+    public void testValidationTimeout() throws IOException {
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .maxSize(1)
+                .validationInterval(0, TimeUnit.MILLISECONDS)
+                .validationTimeout(100, TimeUnit.MILLISECONDS)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSocketPool pool = new RedisSocketPool(server.getAddress(), config)) {
+            RedisSocket first = pool.borrow();
+            pool.release(first);
+
+            // the server stops answering PING, the connection is replaced
+            server.register("PING", (args, out) -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            long start = System.nanoTime();
+            RedisSocket second = pool.borrow();
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            Assertions.assertNotSame(first, second);
+            Assertions.assertFalse(first.isOpen());
+            Assertions.assertEquals(1, pool.getOpenCount());
+            pool.release(second);
+        }
+    }
+
+    @Test
+    public void testShortStream() throws IOException {
+        byte[] key = Strings.encode("stream");
+        byte[] value = new byte[100_000];
+
+        try (StandInRedisServer server = new StandInRedisServer()) {
+            // the partially sent command is never completed by the next one
+            try (PooledRedisClient client = (PooledRedisClient) RedisClient.create(
+                    server.getAddress(), RedisPoolConfig.builder().maxSize(1).build())) {
+                Assertions.assertThrows(RedisException.class,
+                        () -> client.set(key, new ByteArrayInputStream(value), value.length + 1));
+                Assertions.assertEquals("OK", client.set("key", "value"));
+                Assertions.assertEquals("value", client.get("key"));
+                Assertions.assertNull(server.getValue(key));
+            }
+
+            // a single connection is closed, so it can't be used again
+            try (RedisClient client = RedisClient.create(server.getAddress())) {
+                Assertions.assertThrows(RedisException.class,
+                        () -> client.set(key, new ByteArrayInputStream(value), value.length + 1));
+                Assertions.assertThrows(RedisException.class, () -> client.get("key"));
+                Assertions.assertNull(server.getValue(key));
+            }
+        }
+    }
+
+}
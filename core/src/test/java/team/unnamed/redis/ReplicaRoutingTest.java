@@ -0,0 +1,258 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.replica.ReadRoutingConfig;
+import team.unnamed.redis.replica.RedisNode;
+import team.unnamed.redis.replica.ReplicatedRedisClient;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class ReplicaRoutingTest {
+
+    private static final ReadRoutingConfig CONFIG = ReadRoutingConfig.builder()
+            .healthCheckInterval(20, TimeUnit.MILLISECONDS)
+            .maxStaleness(5, TimeUnit.SECONDS)
+            // latency jitter must not eject nodes, only tested in testSlowEjection
+            .slowEjectionFactor(1_000_000)
+            .build();
+
+    /**
+     * A stand-in primary with two stand-in replicas, the replication
+     * state reported by the primary can be changed by tests
+     */
+    private static class ReplicaSet implements AutoCloseable {
+
+        private final StandInRedisServer primary = new StandInRedisServer();
+        private final StandInRedisServer[] replicas = { new StandInRedisServer(), new StandInRedisServer() };
+        private final Map<StandInRedisServer, String> states = new ConcurrentHashMap<>();
+
+        private ReplicaSet() throws IOException {
+            for (int i = 0; i < replicas.length; i++) {
+                setState(replicas[i], "online", 0);
+                set(replicas[i], "key", "replica-" + i);
+            }
+            set(primary, "key", "primary");
+            primary.register("INFO", (args, out) -> {
+                StringBuilder info = new StringBuilder("# Replication\r\nrole:master\r\n");
+                info.append("connected_slaves:").append(replicas.length).append("\r\n");
+                for (int i = 0; i < replicas.length; i++) {
+                    info.append("slave").append(i).append(":ip=127.0.0.1,port=")
+                            .append(replicas[i].getAddress().getPort())
+                            .append(',').append(states.get(replicas[i])).append("\r\n");
+                }
+                info.append("master_repl_offset:42\r\n");
+                out.writeBulkString(Strings.encode(info.toString()));
+            });
+        }
+
+        private void setState(StandInRedisServer replica, String state, long lagSeconds) {
+            states.put(replica, "state=" + state + ",offset=42,lag=" + lagSeconds);
+        }
+
+        private ReplicatedRedisClient connect(ReadRoutingConfig config) {
+            return RedisClient.createReplicated(primary.getAddress(), RedisPoolConfig.builder().build(), config);
+        }
+
+        @Override
+        public void close() {
+            primary.close();
+            for (StandInRedisServer replica : replicas) {
+                replica.close();
+            }
+        }
+
+    }
+
+    private static void set(StandInRedisServer server, String key, String value) throws IOException {
+        try (RedisSocket socket = new RedisSocket(server.getAddress())) {
+            socket.writeCommand(RedisCommands.SET, Strings.encode(key), Strings.encode(value));
+            socket.flush();
+            socket.readReply();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    private static void slowDown(StandInRedisServer server, long millis) {
+        StandInRedisServer.CommandHandler sleep = (args, out) -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        server.register("PING", (args, out) -> {
+            sleep.handle(args, out);
+            out.writeSimpleString("PONG");
+        });
+        server.register("GET", (args, out) -> {
+            sleep.handle(args, out);
+            byte[] value = server.getValue(args[0]);
+            if (value == null) {
+                out.writeNullBulkString();
+            } else {
+                out.writeBulkString(value);
+            }
+        });
+    }
+
+    private static boolean isOnlyReadable(ReplicatedRedisClient client, StandInRedisServer replica) {
+        List<RedisNode> readable = client.getReadableNodes();
+        return readable.size() == 1 && readable.get(0).getAddress().equals(replica.getAddress());
+    }
+
+    private static Map<String, Integer> countReads(RedisClient client, int reads) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < reads; i++) {
+            counts.merge(client.get("key"), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void testReadWriteSplit() throws IOException {
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(CONFIG)) {
+
+            Assertions.assertEquals(2, client.getReplicas().size());
+            Assertions.assertEquals(2, client.getReadableNodes().size());
+
+            // writes go to the primary
+            Assertions.assertEquals("OK", client.set("written", "value"));
+            Assertions.assertArrayEquals(Strings.encode("value"), set.primary.getValue(Strings.encode("written")));
+            Assertions.assertNull(set.replicas[0].getValue(Strings.encode("written")));
+
+            // reads are spread across the replicas
+            Map<String, Integer> counts = countReads(client, 200);
+            Assertions.assertTrue(counts.containsKey("replica-0"));
+            Assertions.assertTrue(counts.containsKey("replica-1"));
+            Assertions.assertFalse(counts.containsKey("primary"));
+        }
+    }
+
+    @Test
+    public void testLatencyWeighting() throws IOException, InterruptedException {
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(CONFIG)) {
+
+            slowDown(set.replicas[1], 5);
+            RedisNode slow = client.getReplicas().stream()
+                    .filter(node -> node.getAddress().equals(set.replicas[1].getAddress()))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            await(() -> slow.getLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(2));
+
+            Map<String, Integer> counts = countReads(client, 200);
+            int fastReads = counts.getOrDefault("replica-0", 0);
+            int slowReads = counts.getOrDefault("replica-1", 0);
+            Assertions.assertEquals(200, fastReads + slowReads);
+            Assertions.assertTrue(fastReads > slowReads * 3, fastReads + " fast reads, " + slowReads + " slow reads");
+        }
+    }
+
+    @Test
+    public void testStaleness() throws IOException, InterruptedException {
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(CONFIG)) {
+
+            // too stale
+            set.setState(set.replicas[0], "online", 30);
+            await(() -> isOnlyReadable(client, set.replicas[1]));
+            Assertions.assertEquals(200, (int) countReads(client, 200).get("replica-1"));
+
+            // not synchronized, every read goes to the primary
+            set.setState(set.replicas[1], "wait_bgsave", 0);
+            await(() -> client.getReadableNodes().isEmpty());
+            Assertions.assertEquals("primary", client.get("key"));
+
+            // readmitted once they catch up
+            set.setState(set.replicas[0], "online", 0);
+            set.setState(set.replicas[1], "online", 0);
+            await(() -> client.getReadableNodes().size() == 2);
+        }
+    }
+
+    @Test
+    public void testSlowEjection() throws IOException, InterruptedException {
+        ReadRoutingConfig config = ReadRoutingConfig.builder()
+                .healthCheckInterval(20, TimeUnit.MILLISECONDS)
+                .slowEjectionFactor(5)
+                .build();
+
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(config)) {
+
+            slowDown(set.replicas[1], 20);
+            await(() -> isOnlyReadable(client, set.replicas[0]));
+            for (RedisNode replica : client.getReplicas()) {
+                if (replica.getAddress().equals(set.replicas[1].getAddress())) {
+                    Assertions.assertTrue(replica.isEjected());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFailures() throws IOException, InterruptedException {
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(CONFIG)) {
+
+            set.replicas[0].close();
+            set.replicas[1].close();
+
+            // failed reads are retried on the primary
+            for (int i = 0; i < 20; i++) {
+                Assertions.assertEquals("primary", client.get("key"));
+            }
+            await(() -> client.getReadableNodes().isEmpty());
+            for (RedisNode replica : client.getReplicas()) {
+                Assertions.assertTrue(replica.isEjected());
+            }
+            Assertions.assertFalse(client.getPrimary().isEjected());
+        }
+    }
+
+    @Test
+    public void testVisitorFailures() throws IOException {
+        try (ReplicaSet set = new ReplicaSet();
+             ReplicatedRedisClient client = set.connect(CONFIG)) {
+
+            // the first element is delivered, then the reply breaks
+            for (StandInRedisServer replica : set.replicas) {
+                replica.register("GET", (args, out) -> out.write(Strings.encode("*2\r\n$7\r\nreplica\r\n?bad\r\n")));
+            }
+            AtomicInteger elements = new AtomicInteger();
+            ReplyVisitor visitor = new ReplyVisitor() {
+                @Override
+                public void onBulkString(byte[] buffer, int offset, int length) {
+                    elements.incrementAndGet();
+                }
+            };
+
+            // not retried on the primary, the visitor was already called
+            RedisException failure = Assertions.assertThrows(RedisException.class,
+                    () -> client.get(Strings.encode("key"), visitor));
+            Assertions.assertFalse(failure instanceof RedisReplyException);
+            Assertions.assertEquals(1, elements.get());
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pool.RedisPoolConfig;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class Resp3Test {
+
+    @Test
+    public void testHello() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSocket socket = new RedisSocket(server.getAddress(), Resp.RESP3)) {
+            Assertions.assertEquals(Resp.RESP3, socket.getProtocolVersion());
+
+            // the reply is a native map now
+            Map<Object, Object> properties = socket.hello(Resp.RESP3);
+            Assertions.assertEquals(3L, properties.get("proto"));
+            Assertions.assertEquals("stand-in", Strings.decode((byte[]) properties.get("server")));
+
+            Assertions.assertThrows(RedisException.class, () -> socket.hello(4));
+        }
+    }
+
+    @Test
+    public void testPushFrames() throws IOException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSocket socket = new RedisSocket(server.getAddress(), Resp.RESP3);
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            List<String> pushes = new CopyOnWriteArrayList<>();
+            socket.setPushHandler(frame -> pushes.add(Strings.decode((byte[]) frame[0])));
+
+            socket.writeCommand(RedisCommands.SUBSCRIBE, Strings.encode("news"));
+            socket.writeCommand(RedisCommands.PING);
+            socket.flush();
+            Assertions.assertEquals("PONG", Strings.decode((byte[]) socket.readReply()));
+            Assertions.assertEquals("subscribe", pushes.get(0));
+
+            publisher.writeCommand(RedisCommands.PUBLISH, Strings.encode("news"), Strings.encode("hello"));
+            publisher.flush();
+            Assertions.assertEquals(1L, publisher.readReply());
+
+            // the subscribed connection keeps running commands
+            socket.writeCommand(RedisCommands.SET, Strings.encode("key"), Strings.encode("value"));
+            socket.flush();
+            Assertions.assertEquals("OK", Strings.decode((byte[]) socket.readReply()));
+            Assertions.assertEquals(2, pushes.size());
+            Assertions.assertEquals("message", pushes.get(1));
+        }
+    }
+
+    @Test
+    public void testPooled() throws IOException {
+        RedisPoolConfig config = RedisPoolConfig.builder()
+                .minSize(1)
+                .protocolVersion(Resp.RESP3)
+                .build();
+
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisClient client = RedisClient.create(server.getAddress(), config)) {
+            Assertions.assertEquals("OK", client.set("key", "value"));
+            Assertions.assertEquals("value", client.get("key"));
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.RespEncoder;
+import team.unnamed.redis.io.RespOutputStream;
+import team.unnamed.redis.io.Strings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+public class RespCodecTest {
+
+    @Test
+    public void testEncode() throws IOException {
+        byte[] key = Strings.encode("key");
+        byte[] value = new byte[20000];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 8192);
+        output.writeCommand(RedisCommands.SET, key, value);
+        output.flush();
+        byte[] expected = bytes.toByteArray();
+
+        int length = RespEncoder.getCommandLength(RedisCommands.SET, key, value);
+        Assertions.assertEquals(expected.length, length);
+
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(length), ByteBuffer.allocateDirect(length) }) {
+            RespEncoder.writeCommand(buffer, RedisCommands.SET, key, value);
+            Assertions.assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            byte[] actual = new byte[length];
+            buffer.get(actual);
+            Assertions.assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        byte[] key = Strings.encode("key");
+        byte[] small = Strings.encode("small value");
+        byte[] large = new byte[20000];
+        byte[] medium = new byte[2000];
+        ByteBuffer direct = ByteBuffer.allocateDirect(3000);
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 8192);
+        output.writeCommand(RedisCommands.SET, key, small);
+        output.writeCommand(RedisCommands.SET, key, large);
+        output.writeCommand(RedisCommands.SET, key, medium);
+        output.writeCommand(RedisCommands.GET, key);
+        output.writeBulkString(direct.duplicate());
+        output.flush();
+
+        RecordingChannel channel = new RecordingChannel(large, 7000);
+        RespOutputStream gathering = new RespOutputStream(channel, 8192);
+        gathering.writeCommand(RedisCommands.SET, key, small);
+        gathering.writeCommand(RedisCommands.SET, key, large);
+        gathering.writeCommand(RedisCommands.SET, key, medium);
+        gathering.writeCommand(RedisCommands.GET, key);
+        gathering.writeBulkString(direct.duplicate());
+        Assertions.assertEquals(0, channel.writes, "written before flushing");
+        gathering.flush();
+
+        Assertions.assertArrayEquals(bytes.toByteArray(), channel.bytes.toByteArray());
+        // the large value was referenced, not copied
+        Assertions.assertTrue(channel.referenced);
+        // a single write if the channel didn't write partially
+        Assertions.assertEquals((channel.bytes.size() + 6999) / 7000, channel.writes);
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final byte[] expectedReference;
+        private final int maxWrite;
+        private int writes;
+        private boolean referenced;
+
+        RecordingChannel(byte[] expectedReference, int maxWrite) {
+            this.expectedReference = expectedReference;
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            writes++;
+            int written = 0;
+            for (int i = offset; i < offset + length && written < maxWrite; i++) {
+                ByteBuffer src = srcs[i];
+                if (src.hasArray() && src.array() == expectedReference) {
+                    referenced = true;
+                }
+                while (src.hasRemaining() && written < maxWrite) {
+                    bytes.write(src.get());
+                    written++;
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[] { src });
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    @Test
+    public void testEncodeNull() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 8192);
+        output.writeNullBulkString();
+        output.writeNullArray();
+        output.flush();
+        Assertions.assertEquals("$-1\r\n*-1\r\n", Strings.decode(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testEncodeLong() throws IOException {
+        long[] values = { 0, -500, 10000000000L, Long.MAX_VALUE, Long.MIN_VALUE };
+        StringBuilder expected = new StringBuilder();
+        for (long value : values) {
+            expected.append(':').append(value).append("\r\n");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RespOutputStream output = new RespOutputStream(bytes, 8192);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+        for (long value : values) {
+            output.writeLong(value);
+            RespEncoder.writeLong(buffer, value);
+        }
+        output.flush();
+        buffer.flip();
+        byte[] encoded = new byte[buffer.remaining()];
+        buffer.get(encoded);
+
+        Assertions.assertEquals(expected.toString(), Strings.decode(bytes.toByteArray()));
+        Assertions.assertEquals(expected.toString(), Strings.decode(encoded));
+    }
+
+}
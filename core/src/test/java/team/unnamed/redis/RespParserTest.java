@@ -0,0 +1,397 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.codec.TypeCodec;
+import team.unnamed.redis.io.ReplyVisitor;
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespParser;
+import team.unnamed.redis.io.Strings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class RespParserTest {
+
+    private static final byte[] FRAMES = Strings.encode(
+            "+OK\r\n"
+                    + "-ERR something went wrong\r\n"
+                    + ":-1234\r\n"
+                    + "$-1\r\n"
+                    + "$0\r\n\r\n"
+                    + "*2\r\n*2\r\n$5\r\nhello\r\n:1\r\n*0\r\n"
+                    + "$11\r\nhello world\r\n"
+    );
+
+    private static final byte[] RESP3_FRAMES = Strings.encode(
+            "%2\r\n+first\r\n:1\r\n$6\r\nsecond\r\n,1.5\r\n"
+                    + "~2\r\n:1\r\n:2\r\n"
+                    + ",-inf\r\n"
+                    + "(3492890328409238509324850943850943825024385\r\n"
+                    + "#t\r\n"
+                    + "_\r\n"
+                    + "=15\r\ntxt:Some string\r\n"
+                    + "|1\r\n+key-popularity\r\n%1\r\n$1\r\na\r\n,0.19\r\n*1\r\n:7\r\n"
+                    + ">3\r\n$7\r\nmessage\r\n$4\r\nnews\r\n$5\r\nhello\r\n"
+                    + "*2\r\n:1\r\n|1\r\n+ttl\r\n:3600\r\n:2\r\n"
+                    + "!10\r\nSYNTAX bad\r\n"
+    );
+
+    @Test
+    public void testChunks() {
+        Random random = new Random(0);
+        for (int run = 0; run < 100; run++) {
+            RespParser parser = new RespParser();
+            Object[] replies = new Object[7];
+            int count = 0;
+            int offset = 0;
+
+            while (offset < FRAMES.length) {
+                int length = Math.min(FRAMES.length - offset, 1 + random.nextInt(8));
+                ByteBuffer chunk = ByteBuffer.wrap(FRAMES, offset, length);
+                offset += length;
+
+                Object reply;
+                while ((reply = parser.parse(chunk)) != RespParser.NEED_MORE) {
+                    replies[count++] = reply;
+                }
+                Assertions.assertFalse(chunk.hasRemaining());
+            }
+
+            Assertions.assertEquals(7, count);
+            Assertions.assertFalse(parser.isParsing());
+            assertReplies(replies);
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        // tiny buffer, so every reply straddles the buffer boundary
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(FRAMES), 3);
+        Object[] replies = new Object[7];
+        for (int i = 0; i < replies.length; i++) {
+            try {
+                replies[i] = input.readNext();
+            } catch (RedisException e) {
+                replies[i] = e;
+            }
+        }
+        assertReplies(replies);
+    }
+
+    @Test
+    public void testVisitor() throws IOException {
+        for (int bufferLength : new int[] { 3, 8192 }) {
+            RespInputStream input = new RespInputStream(new ByteArrayInputStream(FRAMES), bufferLength);
+            StringBuilder events = new StringBuilder();
+            ReplyVisitor visitor = new ReplyVisitor() {
+                @Override
+                public void onSimpleString(byte[] buffer, int offset, int length) {
+                    events.append("+").append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+                }
+
+                @Override
+                public void onError(byte[] buffer, int offset, int length) {
+                    events.append("-").append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+                }
+
+                @Override
+                public void onInteger(long value) {
+                    events.append(':').append(value).append(' ');
+                }
+
+                @Override
+                public void onBulkString(byte[] buffer, int offset, int length) {
+                    events.append('$').append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+                }
+
+                @Override
+                public void onNil() {
+                    events.append("nil ");
+                }
+
+                @Override
+                public void onArrayStart(int length) {
+                    events.append('*').append(length).append(' ');
+                }
+            };
+
+            for (int i = 0; i < 7; i++) {
+                input.readNext(visitor);
+            }
+
+            Assertions.assertEquals("+OK -ERR something went wrong :-1234 nil $ "
+                    + "*2 *2 $hello :1 *0 $hello world ", events.toString());
+        }
+    }
+
+    @Test
+    public void testVisitorNestedError() throws IOException {
+        byte[] frames = Strings.encode("*3\r\n:1\r\n-ERR nested\r\n*2\r\n$1\r\na\r\n-ERR other\r\n+OK\r\n");
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frames), 8192);
+        RedisReplyException error = Assertions.assertThrows(RedisReplyException.class,
+                () -> input.readNext(new ReplyVisitor() {}));
+        Assertions.assertEquals("ERR nested", error.getMessage());
+        // the rest of the array was read, the stream is still usable
+        Assertions.assertEquals("OK", Strings.decode((byte[]) input.readNext()));
+    }
+
+    @Test
+    public void testLong() throws IOException {
+        byte[] frames = Strings.encode(":9223372036854775807\r\n:-9223372036854775808\r\n");
+
+        RespParser parser = new RespParser();
+        ByteBuffer buffer = ByteBuffer.wrap(frames);
+        Assertions.assertEquals(Long.MAX_VALUE, parser.parse(buffer));
+        Assertions.assertEquals(Long.MIN_VALUE, parser.parse(buffer));
+
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frames), 3);
+        Assertions.assertEquals(Long.MAX_VALUE, input.readLongReply());
+        Assertions.assertEquals(Long.MIN_VALUE, input.readLongReply());
+
+        // overflows are errors, not silently wrong values
+        byte[] overflow = Strings.encode(":9223372036854775808\r\n");
+        Assertions.assertThrows(RedisException.class, () -> new RespParser().parse(ByteBuffer.wrap(overflow)));
+        Assertions.assertThrows(RedisException.class, () ->
+                new RespInputStream(new ByteArrayInputStream(overflow), 8192).readLongReply());
+
+        // rejected before allocating anything
+        Assertions.assertThrows(RedisException.class, () ->
+                new RespParser().parse(ByteBuffer.wrap(Strings.encode("$536870913\r\n"))));
+        Assertions.assertThrows(RedisException.class, () ->
+                new RespParser().parse(ByteBuffer.wrap(Strings.encode("$9223372036854775807\r\n"))));
+        Assertions.assertThrows(RedisException.class, () ->
+                new RespParser().parse(ByteBuffer.wrap(Strings.encode("*4294967296\r\n"))));
+    }
+
+    @Test
+    public void testStreamLengthBounds() {
+        String[] bulks = { "$4294967301\r\nhello\r\n", "$2147483647\r\n", "$536870913\r\n" };
+        String[] aggregates = { "*4294967297\r\n:1\r\n", "*2147483648\r\n", "%1073741824\r\n" };
+        ReplyVisitor visitor = new ReplyVisitor() {};
+        for (String bulk : bulks) {
+            byte[] frame = Strings.encode(bulk);
+            assertRejected(frame, input -> input.readNext(visitor));
+            assertRejected(frame, input -> input.readNext());
+            assertRejected(frame, input -> input.readBulkString(TypeCodec.string()));
+            assertRejected(frame, input -> input.readBulkStringStream(null));
+            assertRejected(frame, input -> input.readDoubleReply());
+        }
+        for (String aggregate : aggregates) {
+            byte[] frame = Strings.encode(aggregate);
+            assertRejected(frame, input -> input.readNext(visitor));
+            assertRejected(frame, input -> input.readNext());
+            if (aggregate.charAt(0) == '*') {
+                assertRejected(frame, input -> input.readArrayReply(TypeCodec.string(), new ArrayList<>()));
+            }
+        }
+        // read after the type byte
+        assertRejected(Strings.encode("4294967301\r\nhello\r\n"), RespInputStream::readBulkString);
+        assertRejected(Strings.encode("4294967297\r\n:1\r\n"), RespInputStream::readArray);
+    }
+
+    private interface StreamRead {
+
+        void read(RespInputStream input) throws IOException;
+
+    }
+
+    private static void assertRejected(byte[] frame, StreamRead read) {
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frame), 8192);
+        RedisException e = Assertions.assertThrows(RedisException.class, () -> read.read(input));
+        Assertions.assertFalse(e instanceof RedisReplyException, e.getMessage());
+    }
+
+    @Test
+    public void testResp3Chunks() {
+        Random random = new Random(0);
+        for (int run = 0; run < 100; run++) {
+            RespParser parser = new RespParser();
+            List<Object> replies = new ArrayList<>();
+            int pushIndex = -1;
+            int offset = 0;
+
+            while (offset < RESP3_FRAMES.length) {
+                int length = Math.min(RESP3_FRAMES.length - offset, 1 + random.nextInt(8));
+                ByteBuffer chunk = ByteBuffer.wrap(RESP3_FRAMES, offset, length);
+                offset += length;
+
+                Object reply;
+                while ((reply = parser.parse(chunk)) != RespParser.NEED_MORE) {
+                    if (parser.wasPush()) {
+                        pushIndex = replies.size();
+                    }
+                    replies.add(reply);
+                }
+            }
+
+            Assertions.assertEquals(11, replies.size());
+            Assertions.assertEquals(8, pushIndex);
+            assertResp3Replies(replies);
+        }
+    }
+
+    @Test
+    public void testResp3Stream() throws IOException {
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(RESP3_FRAMES), 3);
+        List<Object[]> pushes = new ArrayList<>();
+        input.setPushHandler(pushes::add);
+
+        List<Object> replies = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Object reply;
+            try {
+                reply = input.readNext();
+            } catch (RedisException e) {
+                reply = e;
+            }
+            if (i == 8) {
+                // the push frame is passed to the handler, not returned
+                Assertions.assertEquals(1, pushes.size());
+                replies.add(pushes.get(0));
+            }
+            replies.add(reply);
+        }
+        assertResp3Replies(replies);
+    }
+
+    @Test
+    public void testResp3Visitor() throws IOException {
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(RESP3_FRAMES), 8192);
+        StringBuilder events = new StringBuilder();
+        ReplyVisitor visitor = new ReplyVisitor() {
+            @Override
+            public void onSimpleString(byte[] buffer, int offset, int length) {
+                events.append('+').append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+            }
+
+            @Override
+            public void onError(byte[] buffer, int offset, int length) {
+                events.append('-').append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+            }
+
+            @Override
+            public void onInteger(long value) {
+                events.append(':').append(value).append(' ');
+            }
+
+            @Override
+            public void onBulkString(byte[] buffer, int offset, int length) {
+                events.append('$').append(new String(buffer, offset, length, Resp.CHARSET)).append(' ');
+            }
+
+            @Override
+            public void onNil() {
+                events.append("nil ");
+            }
+
+            @Override
+            public void onArrayStart(int length) {
+                events.append('*').append(length).append(' ');
+            }
+
+            @Override
+            public void onMapStart(int size) {
+                events.append('%').append(size).append(' ');
+            }
+
+            @Override
+            public void onPushStart(int length) {
+                events.append('>').append(length).append(' ');
+            }
+
+            @Override
+            public void onDouble(double value) {
+                events.append(',').append(value).append(' ');
+            }
+
+            @Override
+            public void onBoolean(boolean value) {
+                events.append('#').append(value).append(' ');
+            }
+        };
+
+        for (int i = 0; i < 11; i++) {
+            input.readNext(visitor);
+        }
+
+        // sets, big numbers and verbatim strings use the defaults
+        Assertions.assertEquals("%2 +first :1 $second ,1.5 "
+                + "*2 :1 :2 "
+                + ",-Infinity "
+                + "$3492890328409238509324850943850943825024385 "
+                + "#true "
+                + "nil "
+                + "$Some string "
+                + "*1 :7 "
+                + ">3 $message $news $hello "
+                + "*2 :1 :2 "
+                + "-SYNTAX bad ", events.toString());
+    }
+
+    @Test
+    public void testResp3Double() throws IOException {
+        byte[] frames = Strings.encode(",3.25\r\n$4\r\n2.75\r\n,nan\r\n");
+        RespInputStream input = new RespInputStream(new ByteArrayInputStream(frames), 8);
+        Assertions.assertEquals(3.25, input.readDoubleReply());
+        Assertions.assertEquals(2.75, input.readDoubleReply());
+        Assertions.assertTrue(Double.isNaN(input.readDoubleReply()));
+    }
+
+    private static void assertResp3Replies(List<Object> replies) {
+        Map<?, ?> map = (Map<?, ?>) replies.get(0);
+        Assertions.assertEquals(2, map.size());
+        Assertions.assertEquals(1L, map.get("first"));
+        Assertions.assertEquals(1.5, map.get("second"));
+
+        Object[] set = (Object[]) replies.get(1);
+        Assertions.assertEquals(1L, set[0]);
+        Assertions.assertEquals(2L, set[1]);
+
+        Assertions.assertEquals(Double.NEGATIVE_INFINITY, replies.get(2));
+        Assertions.assertEquals(new BigInteger("3492890328409238509324850943850943825024385"), replies.get(3));
+        Assertions.assertEquals(Boolean.TRUE, replies.get(4));
+        Assertions.assertNull(replies.get(5));
+        Assertions.assertEquals("Some string", Strings.decode((byte[]) replies.get(6)));
+
+        // attributes are skipped
+        Object[] attributed = (Object[]) replies.get(7);
+        Assertions.assertEquals(1, attributed.length);
+        Assertions.assertEquals(7L, attributed[0]);
+
+        Object[] push = (Object[]) replies.get(8);
+        Assertions.assertEquals("message", Strings.decode((byte[]) push[0]));
+        Assertions.assertEquals("news", Strings.decode((byte[]) push[1]));
+        Assertions.assertEquals("hello", Strings.decode((byte[]) push[2]));
+
+        Object[] nested = (Object[]) replies.get(9);
+        Assertions.assertEquals(2, nested.length);
+        Assertions.assertEquals(1L, nested[0]);
+        Assertions.assertEquals(2L, nested[1]);
+
+        Assertions.assertEquals("SYNTAX bad", ((RedisException) replies.get(10)).getMessage());
+    }
+
+    private static void assertReplies(Object[] replies) {
+        Assertions.assertEquals("OK", Strings.decode((byte[]) replies[0]));
+        Assertions.assertEquals("ERR something went wrong", ((RedisException) replies[1]).getMessage());
+        Assertions.assertEquals(-1234L, replies[2]);
+        Assertions.assertNull(replies[3]);
+        Assertions.assertEquals("", Strings.decode((byte[]) replies[4]));
+
+        Object[] outer = (Object[]) replies[5];
+        Object[] inner = (Object[]) outer[0];
+        Assertions.assertEquals("hello", Strings.decode((byte[]) inner[0]));
+        Assertions.assertEquals(1L, inner[1]);
+        Assertions.assertEquals(0, ((Object[]) outer[1]).length);
+
+        Assertions.assertEquals("hello world", Strings.decode((byte[]) replies[6]));
+    }
+
+}
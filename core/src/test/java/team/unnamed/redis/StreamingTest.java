@@ -0,0 +1,89 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.BulkStringInputStream;
+import team.unnamed.redis.io.Strings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+public class StreamingTest extends LocalRedisTest {
+
+    private static final byte[] KEY = Strings.encode("streaming");
+
+    private static byte[] value(int length) {
+        byte[] value = new byte[length];
+        new Random(length).nextBytes(value);
+        return value;
+    }
+
+    private static byte[] readAll(BulkStringInputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1000];
+        int read;
+        while ((read = stream.read(chunk)) != -1) {
+            output.write(chunk, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        byte[] value = value(100_000);
+        Assertions.assertEquals("OK", client.set(KEY, new ByteArrayInputStream(value), value.length));
+
+        try (BulkStringInputStream stream = client.getStream(KEY)) {
+            Assertions.assertEquals(value.length, stream.getLength());
+            Assertions.assertArrayEquals(value, readAll(stream));
+        }
+
+        // connection must be usable after the stream is closed
+        Assertions.assertEquals("OK", client.set("streaming:after", "ok"));
+    }
+
+    @Test
+    public void testByteBufferAndChannel() throws IOException {
+        byte[] value = value(50_000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(value.length);
+        direct.put(value).flip();
+        Assertions.assertEquals("OK", client.set(KEY, direct));
+
+        ByteBuffer destination = ByteBuffer.allocate(value.length);
+        try (BulkStringInputStream stream = client.getStream(KEY)) {
+            while (stream.read(destination) != -1) {
+                // keep reading
+            }
+        }
+        Assertions.assertArrayEquals(value, destination.array());
+    }
+
+    @Test
+    public void testFileChannel() throws IOException {
+        byte[] value = value(300_000);
+        Path file = Files.createTempFile("redis4j", ".bin");
+        try {
+            Files.write(file, value);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Assertions.assertEquals("OK", client.set(KEY, channel, 0, value.length));
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        // partially read, the rest is discarded when closed
+        try (BulkStringInputStream stream = client.getStream(KEY)) {
+            Assertions.assertEquals(value[0] & 0xFF, stream.read());
+        }
+        Assertions.assertNull(client.getStream(Strings.encode("streaming:missing")));
+        Assertions.assertEquals("OK", client.set("streaming:after", "ok"));
+    }
+
+}
@@ -0,0 +1,122 @@
+package team.unnamed.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import team.unnamed.redis.io.Strings;
+import team.unnamed.redis.pubsub.RedisSubscriber;
+import team.unnamed.redis.pubsub.RedisSubscriptionMultiplexer;
+import team.unnamed.redis.testing.StandInRedisServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SubscriptionMultiplexerTest {
+
+    // returns the count of subscribed connections that received the message
+    private static long publish(RedisSocket socket, String channel, String message) {
+        socket.writeCommand(RedisCommands.PUBLISH, Strings.encode(channel), Strings.encode(message));
+        socket.flush();
+        return (Long) socket.readReply();
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(size, list.size());
+    }
+
+    private static void awaitPublish(RedisSocket socket, String channel, long receivers) throws InterruptedException {
+        // subscriptions are confirmed asynchronously, so wait for
+        // the server to apply them
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publish(socket, channel, "probe") != receivers && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static RedisSubscriber collector(String name, List<String> messages) {
+        return new RedisSubscriber() {
+            @Override
+            public void onMessage(String channel, String message) {
+                if (!message.equals("probe")) {
+                    messages.add(name + ':' + channel + ':' + message);
+                }
+            }
+
+            @Override
+            public void onPMessage(String pattern, String channel, String message) {
+                if (!message.equals("probe")) {
+                    messages.add(name + ':' + pattern + ':' + channel + ':' + message);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testReferenceCounting() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSubscriptionMultiplexer multiplexer = RedisSubscriptionMultiplexer.create(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            List<String> messages = new CopyOnWriteArrayList<>();
+            RedisSubscriptionMultiplexer.Registration first = multiplexer.subscribe(collector("a", messages), "news");
+            RedisSubscriptionMultiplexer.Registration second = multiplexer.subscribe(collector("b", messages), "news", "news");
+            Assertions.assertEquals(1, multiplexer.getChannelCount());
+
+            // a single connection receives the message
+            awaitPublish(publisher, "news", 1);
+            Assertions.assertEquals(1, publish(publisher, "news", "hello"));
+            awaitSize(messages, 2);
+            Assertions.assertTrue(messages.contains("a:news:hello"));
+            Assertions.assertTrue(messages.contains("b:news:hello"));
+
+            // the channel is kept while it has subscribers
+            first.close();
+            Assertions.assertEquals(1, publish(publisher, "news", "bye"));
+            awaitSize(messages, 3);
+            Assertions.assertEquals("b:news:bye", messages.get(2));
+
+            second.close();
+            Assertions.assertEquals(0, multiplexer.getChannelCount());
+            awaitPublish(publisher, "news", 0);
+            Assertions.assertEquals(0, publish(publisher, "news", "nobody"));
+
+            // subscribers can join again later
+            multiplexer.subscribe(collector("c", messages), "news");
+            awaitPublish(publisher, "news", 1);
+            publish(publisher, "news", "again");
+            awaitSize(messages, 4);
+            Assertions.assertEquals("c:news:again", messages.get(3));
+        }
+    }
+
+    @Test
+    public void testPatterns() throws IOException, InterruptedException {
+        try (StandInRedisServer server = new StandInRedisServer();
+             RedisSubscriptionMultiplexer multiplexer = RedisSubscriptionMultiplexer.create(server.getAddress());
+             RedisSocket publisher = new RedisSocket(server.getAddress())) {
+
+            List<String> messages = new CopyOnWriteArrayList<>();
+            multiplexer.psubscribe(collector("a", messages), "user.*");
+            multiplexer.psubscribe(collector("b", messages), "user.?");
+            multiplexer.subscribe(collector("c", messages), "user.1");
+            Assertions.assertEquals(2, multiplexer.getPatternCount());
+
+            // the channel and both patterns match
+            awaitPublish(publisher, "user.1", 3);
+            publish(publisher, "user.1", "x");
+            publish(publisher, "user.10", "y");
+            awaitSize(messages, 4);
+
+            // every subscriber receives a message once, through its own route
+            Assertions.assertTrue(messages.contains("a:user.*:user.1:x"));
+            Assertions.assertTrue(messages.contains("b:user.?:user.1:x"));
+            Assertions.assertTrue(messages.contains("c:user.1:x"));
+            Assertions.assertTrue(messages.contains("a:user.*:user.10:y"));
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+package team.unnamed.redis.testing;
+
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.cluster.ClusterSlots;
+import team.unnamed.redis.io.RespOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Group of {@link StandInRedisServer} nodes standing in for a
+ * Redis Cluster, slots are split evenly between the nodes.
+ *
+ * <p>Every node answers CLUSTER SLOTS, CLUSTER SHARDS and
+ * CLUSTER KEYSLOT, and redirects commands for keys served by
+ * other nodes with MOVED, or with ASK while their slot is
+ * migrating and the key isn't in the source node. Commands
+ * are routed using their first argument as the key, multi-key
+ * commands are rejected with CROSSSLOT if their keys hash to
+ * different slots</p>
+ */
+public class StandInRedisCluster implements Closeable {
+
+    private static final int NO_NODE = -1;
+
+    // commands whose first argument isn't a key
+    private static final Set<String> KEYLESS_COMMANDS = new HashSet<>(Arrays.asList(
+            "PING", "ECHO", "CLUSTER", "READONLY", "READWRITE"
+    ));
+
+    // commands whose arguments are all keys, MSET keys are every other argument
+    private static final Set<String> MULTI_KEY_COMMANDS = new HashSet<>(Arrays.asList(
+            "MGET", "DEL", "UNLINK", "EXISTS"
+    ));
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final AtomicIntegerArray owners = new AtomicIntegerArray(ClusterSlots.SLOT_COUNT);
+    private final AtomicIntegerArray migrations = new AtomicIntegerArray(ClusterSlots.SLOT_COUNT);
+
+    private volatile boolean shardsSupported = true;
+
+    public StandInRedisCluster(int nodeCount) throws IOException {
+        if (nodeCount < 1) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(new Node(i));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (int slot = 0; slot < ClusterSlots.SLOT_COUNT; slot++) {
+            owners.set(slot, (int) ((long) slot * nodeCount / ClusterSlots.SLOT_COUNT));
+            migrations.set(slot, NO_NODE);
+        }
+    }
+
+    public List<StandInRedisServer> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (Node node : nodes) {
+            addresses.add(node.getAddress());
+        }
+        return addresses;
+    }
+
+    /**
+     * Returns the node serving the given {@code slot}
+     */
+    public StandInRedisServer getOwner(int slot) {
+        return nodes.get(owners.get(slot));
+    }
+
+    /**
+     * Determines if the nodes support CLUSTER SHARDS, servers
+     * older than Redis 7 only support CLUSTER SLOTS
+     */
+    public void setShardsSupported(boolean shardsSupported) {
+        this.shardsSupported = shardsSupported;
+    }
+
+    /**
+     * Starts the migration of the given {@code slot} to the given
+     * {@code target} node, the current owner keeps serving the keys
+     * it has, commands for other keys are redirected with ASK
+     */
+    public void migrateSlot(int slot, StandInRedisServer target) {
+        migrations.set(slot, nodes.indexOf(target));
+    }
+
+    /**
+     * Moves the given {@code slot}, and its keys, to the given
+     * {@code target} node, the previous owner redirects its
+     * commands with MOVED
+     */
+    public void moveSlot(int slot, StandInRedisServer target) {
+        Node source = nodes.get(owners.get(slot));
+        Iterator<Map.Entry<ByteBuffer, byte[]>> iterator = source.data.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ByteBuffer, byte[]> entry = iterator.next();
+            if (ClusterSlots.getSlot(entry.getKey().array()) == slot) {
+                target.data.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        owners.set(slot, nodes.indexOf(target));
+        migrations.set(slot, NO_NODE);
+    }
+
+    private void writeSlots(RespOutputStream output) throws IOException {
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int slot = 1; slot <= ClusterSlots.SLOT_COUNT; slot++) {
+            if (slot == ClusterSlots.SLOT_COUNT || owners.get(slot) != owners.get(start)) {
+                ranges.add(new int[] { start, slot - 1, owners.get(start) });
+                start = slot;
+            }
+        }
+
+        output.writeArrayHeader(ranges.size());
+        for (int[] range : ranges) {
+            Node node = nodes.get(range[2]);
+            output.writeArrayHeader(3);
+            output.writeInt(range[0]);
+            output.writeInt(range[1]);
+            output.writeArrayHeader(3);
+            output.writeBulkString(node.getHost().getBytes(Resp.CHARSET));
+            output.writeInt(node.getAddress().getPort());
+            output.writeBulkString(node.id.getBytes(Resp.CHARSET));
+        }
+    }
+
+    private void writeShards(RespOutputStream output) throws IOException {
+        List<List<Integer>> shardSlots = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            shardSlots.add(new ArrayList<>());
+        }
+        int start = 0;
+        for (int slot = 1; slot <= ClusterSlots.SLOT_COUNT; slot++) {
+            if (slot == ClusterSlots.SLOT_COUNT || owners.get(slot) != owners.get(start)) {
+                List<Integer> slots = shardSlots.get(owners.get(start));
+                slots.add(start);
+                slots.add(slot - 1);
+                start = slot;
+            }
+        }
+
+        output.writeArrayHeader(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            output.writeArrayHeader(4);
+            output.writeBulkString("slots".getBytes(Resp.CHARSET));
+            output.writeArrayHeader(shardSlots.get(i).size());
+            for (int slot : shardSlots.get(i)) {
+                output.writeInt(slot);
+            }
+            output.writeBulkString("nodes".getBytes(Resp.CHARSET));
+            output.writeArrayHeader(1);
+            output.writeArrayHeader(12);
+            writeProperty(output, "id", node.id);
+            writeProperty(output, "endpoint", node.getHost());
+            writeProperty(output, "ip", node.getHost());
+            writeProperty(output, "role", "master");
+            writeProperty(output, "health", "online");
+            output.writeBulkString("port".getBytes(Resp.CHARSET));
+            output.writeInt(node.getAddress().getPort());
+        }
+    }
+
+    private static void writeProperty(RespOutputStream output, String key, String value) throws IOException {
+        output.writeBulkString(key.getBytes(Resp.CHARSET));
+        output.writeBulkString(value.getBytes(Resp.CHARSET));
+    }
+
+    @Override
+    public void close() {
+        for (Node node : nodes) {
+            node.close();
+        }
+    }
+
+    private class Node extends StandInRedisServer {
+
+        private final int index;
+        private final String id;
+
+        private Node(int index) throws IOException {
+            this.index = index;
+            this.id = String.format("%040x", index + 1);
+            register("CLUSTER", this::handleCluster);
+        }
+
+        private String getHost() {
+            return getAddress().getAddress().getHostAddress();
+        }
+
+        private String getEndpoint() {
+            return getHost() + ':' + getAddress().getPort();
+        }
+
+        private void handleCluster(byte[][] args, RespOutputStream output) throws IOException {
+            String subcommand = new String(args[0], Resp.CHARSET).toUpperCase(Locale.ROOT);
+            switch (subcommand) {
+                case "SLOTS":
+                    writeSlots(output);
+                    break;
+                case "SHARDS":
+                    if (shardsSupported) {
+                        writeShards(output);
+                    } else {
+                        output.writeError("ERR unknown subcommand 'SHARDS'");
+                    }
+                    break;
+                case "KEYSLOT":
+                    output.writeInt(ClusterSlots.getSlot(args[1]));
+                    break;
+                default:
+                    output.writeError("ERR unknown subcommand '" + subcommand + "'");
+            }
+        }
+
+        @Override
+        protected String redirect(String command, byte[][] args, boolean asking) {
+            if (args.length == 0 || KEYLESS_COMMANDS.contains(command)) {
+                return null;
+            }
+            int slot = ClusterSlots.getSlot(args[0]);
+            int step = command.equals("MSET") ? 2 : MULTI_KEY_COMMANDS.contains(command) ? 1 : args.length;
+            for (int i = step; i < args.length; i += step) {
+                if (ClusterSlots.getSlot(args[i]) != slot) {
+                    return "CROSSSLOT Keys in request don't hash to the same slot";
+                }
+            }
+            int owner = owners.get(slot);
+            int migration = migrations.get(slot);
+
+            if (owner == index) {
+                if (migration != NO_NODE && getValue(args[0]) == null) {
+                    return "ASK " + slot + ' ' + nodes.get(migration).getEndpoint();
+                }
+                return null;
+            }
+            if (asking && migration == index) {
+                // importing the slot
+                return null;
+            }
+            return "MOVED " + slot + ' ' + nodes.get(owner).getEndpoint();
+        }
+
+    }
+
+}
@@ -0,0 +1,618 @@
+package team.unnamed.redis.testing;
+
+import team.unnamed.redis.RedisException;
+import team.unnamed.redis.Resp;
+import team.unnamed.redis.io.RespInputStream;
+import team.unnamed.redis.io.RespOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-process RESP server standing in for a real redis
+ * server, so tests and benchmarks can run anywhere. It
+ * binds to the loopback address and serves every connection
+ * in its own thread, keeping an in-memory key-value store.
+ *
+ * <p>Only a small set of commands is supported, more can be
+ * added using {@link StandInRedisServer#register}. Publish and
+ * subscribe commands are supported too, as well as HELLO, RESP3
+ * connections receive the pub/sub frames as push frames. Client
+ * tracking (CLIENT TRACKING, in default and broadcast modes) is
+ * supported for keys modified by SET and DEL, invalidations are
+ * only sent to RESP3 connections. Subclasses can redirect commands
+ * to other nodes, see {@link StandInRedisCluster}</p>
+ */
+public class StandInRedisServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Map<String, CommandHandler> handlers = new ConcurrentHashMap<>();
+
+    // connections with active (pattern) subscriptions
+    private final Set<Subscriptions> subscribed = ConcurrentHashMap.newKeySet();
+
+    // client tracking state
+    private final AtomicLong nextClientId = new AtomicLong();
+    private final Map<Long, Subscriptions> clients = new ConcurrentHashMap<>();
+    private final Map<ByteBuffer, Set<Long>> trackedKeys = new ConcurrentHashMap<>();
+
+    protected final Map<ByteBuffer, byte[]> data = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Starts a new server listening in an ephemeral port
+     * of the loopback address
+     */
+    public StandInRedisServer() throws IOException {
+        this(0);
+    }
+
+    public StandInRedisServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        registerDefaults();
+        this.acceptor = new Thread(this::accept, "stand-in-redis-acceptor-" + serverSocket.getLocalPort());
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the value stored for the given {@code key}
+     */
+    public byte[] getValue(byte[] key) {
+        return data.get(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Registers (or replaces) the handler for the command
+     * with the given {@code name} (case-insensitive)
+     */
+    public void register(String name, CommandHandler handler) {
+        handlers.put(name.toUpperCase(Locale.ROOT), handler);
+    }
+
+    private void registerDefaults() {
+        register("PING", (args, out) -> {
+            if (args.length == 0) {
+                out.writeSimpleString("PONG");
+            } else {
+                out.writeBulkString(args[0]);
+            }
+        });
+        register("ECHO", (args, out) -> out.writeBulkString(args[0]));
+        register("GET", (args, out) -> {
+            byte[] value = data.get(ByteBuffer.wrap(args[0]));
+            if (value == null) {
+                out.writeNullBulkString();
+            } else {
+                out.writeBulkString(value);
+            }
+        });
+        register("SET", (args, out) -> {
+            data.put(ByteBuffer.wrap(args[0]), args[1]);
+            invalidate(args[0]);
+            out.writeSimpleString("OK");
+        });
+        register("INCR", (args, out) -> out.writeLong(increment(args[0], 1)));
+        register("INCRBY", (args, out) -> out.writeLong(increment(args[0], parseLong(args[1]))));
+        register("DECRBY", (args, out) -> out.writeLong(increment(args[0], -parseLong(args[1]))));
+        register("MGET", (args, out) -> {
+            out.writeArrayHeader(args.length);
+            for (byte[] key : args) {
+                byte[] value = data.get(ByteBuffer.wrap(key));
+                if (value == null) {
+                    out.writeNullBulkString();
+                } else {
+                    out.writeBulkString(value);
+                }
+            }
+        });
+        register("MSET", (args, out) -> {
+            if (args.length == 0 || args.length % 2 != 0) {
+                throw new RedisException("wrong number of arguments for 'mset' command");
+            }
+            for (int i = 0; i < args.length; i += 2) {
+                data.put(ByteBuffer.wrap(args[i]), args[i + 1]);
+                invalidate(args[i]);
+            }
+            out.writeSimpleString("OK");
+        });
+        register("DEL", (args, out) -> {
+            int removed = 0;
+            for (byte[] key : args) {
+                if (data.remove(ByteBuffer.wrap(key)) != null) {
+                    invalidate(key);
+                    removed++;
+                }
+            }
+            out.writeInt(removed);
+        });
+        // values are freed in the calling thread
+        register("UNLINK", handlers.get("DEL"));
+        register("EXISTS", (args, out) -> {
+            int count = 0;
+            for (byte[] key : args) {
+                if (data.containsKey(ByteBuffer.wrap(key))) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+        });
+    }
+
+    private long increment(byte[] key, long increment) {
+        long[] result = new long[1];
+        data.compute(ByteBuffer.wrap(key), (k, value) -> {
+            try {
+                result[0] = Math.addExact(value == null ? 0 : parseLong(value), increment);
+            } catch (ArithmeticException e) {
+                throw new RedisException("increment or decrement would overflow");
+            }
+            return Long.toString(result[0]).getBytes(Resp.CHARSET);
+        });
+        invalidate(key);
+        return result[0];
+    }
+
+    private static long parseLong(byte[] value) {
+        try {
+            return Long.parseLong(new String(value, Resp.CHARSET));
+        } catch (NumberFormatException e) {
+            throw new RedisException("value is not an integer or out of range");
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                // closed
+                return;
+            }
+            connections.add(socket);
+            Thread thread = new Thread(() -> serve(socket), "stand-in-redis-connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Subscriptions subscriptions = null;
+        try {
+            RespInputStream input = new RespInputStream(socket.getInputStream(), 8192);
+            RespOutputStream output = new RespOutputStream(socket.getOutputStream(), 8192);
+            subscriptions = new Subscriptions(nextClientId.incrementAndGet(), output);
+            clients.put(subscriptions.id, subscriptions);
+
+            while (!closed) {
+                Object[] request = (Object[]) input.readNext();
+                String name = new String((byte[]) request[0], Resp.CHARSET).toUpperCase(Locale.ROOT);
+                byte[][] args = new byte[request.length - 1][];
+                for (int i = 1; i < request.length; i++) {
+                    args[i - 1] = (byte[]) request[i];
+                }
+
+                // publishers write to this output too
+                synchronized (output) {
+                    if (name.equals("QUIT")) {
+                        output.writeSimpleString("OK");
+                        output.flush();
+                        break;
+                    }
+
+                    if (!handlePubSub(name, args, subscriptions)) {
+                        // ASKING only applies to the next command
+                        boolean asking = subscriptions.asking;
+                        subscriptions.asking = false;
+
+                        CommandHandler handler = handlers.get(name);
+                        String redirect = redirect(name, args, asking);
+                        if (redirect != null) {
+                            output.writeError(redirect);
+                        } else if (handler == null) {
+                            output.writeError("ERR unknown command '" + name + "'");
+                        } else {
+                            try {
+                                handler.handle(args, output);
+                                if (name.equals("GET")) {
+                                    track(args[0], subscriptions);
+                                } else if (name.equals("MGET")) {
+                                    for (byte[] key : args) {
+                                        track(key, subscriptions);
+                                    }
+                                }
+                            } catch (RedisException | ArrayIndexOutOfBoundsException e) {
+                                output.writeError("ERR " + e.getMessage());
+                            }
+                        }
+                    }
+
+                    // pipelined commands are replied together
+                    if (input.buffered() == 0) {
+                        output.flush();
+                    }
+                }
+            }
+        } catch (IOException | RedisException ignored) {
+            // connection closed or broken
+        } finally {
+            if (subscriptions != null) {
+                subscribed.remove(subscriptions);
+                clients.remove(subscriptions.id);
+            }
+            connections.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Returns the error message for a command that must be sent
+     * to another node (i.e. a MOVED or ASK redirection), or null
+     * if this server handles it. It never redirects by default
+     * @param asking Whether the command was preceded by ASKING
+     */
+    protected String redirect(String command, byte[][] args, boolean asking) {
+        return null;
+    }
+
+    /**
+     * Handles the publish and subscribe commands, HELLO, CLIENT and
+     * ASKING, which need the connection state, returns false for
+     * other commands
+     */
+    private boolean handlePubSub(String name, byte[][] args, Subscriptions subscriptions) throws IOException {
+        RespOutputStream output = subscriptions.output;
+        switch (name) {
+            case "ASKING": {
+                subscriptions.asking = true;
+                output.writeSimpleString("OK");
+                return true;
+            }
+            case "CLIENT": {
+                String subcommand = new String(args[0], Resp.CHARSET).toUpperCase(Locale.ROOT);
+                if (subcommand.equals("ID")) {
+                    output.writeLong(subscriptions.id);
+                } else if (subcommand.equals("TRACKING")) {
+                    handleTracking(args, subscriptions);
+                } else {
+                    output.writeError("ERR unknown subcommand '" + subcommand + "'");
+                }
+                return true;
+            }
+            case "HELLO": {
+                String requested = args.length == 0 ? null : new String(args[0], Resp.CHARSET);
+                int version = requested == null ? subscriptions.protocolVersion
+                        : requested.equals("3") ? Resp.RESP3
+                        : requested.equals("2") ? Resp.RESP2 : -1;
+                if (version == -1) {
+                    output.writeError("NOPROTO unsupported protocol version");
+                    return true;
+                }
+                subscriptions.protocolVersion = version;
+                output.writeAggregateHeader(version == Resp.RESP3 ? Resp.MAP_BYTE : Resp.ARRAY_BYTE,
+                        version == Resp.RESP3 ? 3 : 6);
+                output.writeBulkString("server".getBytes(Resp.CHARSET));
+                output.writeBulkString("stand-in".getBytes(Resp.CHARSET));
+                output.writeBulkString("version".getBytes(Resp.CHARSET));
+                output.writeBulkString("7.0.0".getBytes(Resp.CHARSET));
+                output.writeBulkString("proto".getBytes(Resp.CHARSET));
+                output.writeInt(version);
+                return true;
+            }
+            case "SUBSCRIBE":
+            case "PSUBSCRIBE": {
+                boolean pattern = name.equals("PSUBSCRIBE");
+                for (byte[] arg : args) {
+                    String channel = new String(arg, Resp.CHARSET);
+                    if (pattern) {
+                        subscriptions.patterns.put(channel, compileGlob(channel));
+                    } else {
+                        subscriptions.channels.add(channel);
+                    }
+                    subscribed.add(subscriptions);
+                    writeFrame(subscriptions, name.toLowerCase(Locale.ROOT), arg);
+                }
+                return true;
+            }
+            case "UNSUBSCRIBE":
+            case "PUNSUBSCRIBE": {
+                boolean pattern = name.equals("PUNSUBSCRIBE");
+                Set<String> names = pattern ? subscriptions.patterns.keySet() : subscriptions.channels;
+                String type = name.toLowerCase(Locale.ROOT);
+                if (args.length == 0) {
+                    // all of them
+                    if (names.isEmpty()) {
+                        writeFrame(subscriptions, type, null);
+                    }
+                    for (String channel : names.toArray(new String[0])) {
+                        names.remove(channel);
+                        writeFrame(subscriptions, type, channel.getBytes(Resp.CHARSET));
+                    }
+                } else {
+                    for (byte[] arg : args) {
+                        names.remove(new String(arg, Resp.CHARSET));
+                        writeFrame(subscriptions, type, arg);
+                    }
+                }
+                if (subscriptions.count() == 0) {
+                    subscribed.remove(subscriptions);
+                }
+                return true;
+            }
+            case "PUBLISH": {
+                String channel = new String(args[0], Resp.CHARSET);
+                int receivers = 0;
+                for (Subscriptions other : subscribed) {
+                    receivers += other.publish(channel, args[0], args[1]);
+                }
+                output.writeInt(receivers);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private void handleTracking(byte[][] args, Subscriptions subscriptions) throws IOException {
+        boolean on = new String(args[1], Resp.CHARSET).equalsIgnoreCase("ON");
+        long redirect = subscriptions.id;
+        boolean broadcast = false;
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            String option = new String(args[i], Resp.CHARSET).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "REDIRECT":
+                    redirect = Long.parseLong(new String(args[++i], Resp.CHARSET));
+                    break;
+                case "BCAST":
+                    broadcast = true;
+                    break;
+                case "PREFIX":
+                    prefixes.add(new String(args[++i], Resp.CHARSET));
+                    break;
+                default:
+                    subscriptions.output.writeError("ERR syntax error");
+                    return;
+            }
+        }
+        if (!clients.containsKey(redirect)) {
+            subscriptions.output.writeError("ERR The client ID you want redirect to does not exist");
+            return;
+        }
+        subscriptions.tracking = on;
+        subscriptions.redirect = redirect;
+        subscriptions.broadcast = broadcast;
+        subscriptions.prefixes = prefixes.toArray(new String[0]);
+        subscriptions.output.writeSimpleString("OK");
+    }
+
+    /**
+     * Remembers that the given key was read by the given
+     * connection, if it has tracking enabled in default mode
+     */
+    private void track(byte[] key, Subscriptions reader) {
+        if (reader.tracking && !reader.broadcast) {
+            trackedKeys.computeIfAbsent(ByteBuffer.wrap(key), k -> ConcurrentHashMap.newKeySet())
+                    .add(reader.redirect);
+        }
+    }
+
+    /**
+     * Sends the invalidation of the given modified key to the
+     * connections that read it and to the broadcast connections
+     * with a matching prefix
+     */
+    protected void invalidate(byte[] key) {
+        Set<Long> targets = trackedKeys.remove(ByteBuffer.wrap(key));
+        Set<Long> notified = new HashSet<>();
+        if (targets != null) {
+            notified.addAll(targets);
+        }
+        String name = new String(key, Resp.CHARSET);
+        for (Subscriptions client : clients.values()) {
+            if (!client.tracking || !client.broadcast) {
+                continue;
+            }
+            boolean matches = client.prefixes.length == 0;
+            for (String prefix : client.prefixes) {
+                matches |= name.startsWith(prefix);
+            }
+            if (matches) {
+                notified.add(client.redirect);
+            }
+        }
+        for (long id : notified) {
+            Subscriptions target = clients.get(id);
+            if (target == null || target.protocolVersion != Resp.RESP3) {
+                continue;
+            }
+            synchronized (target.output) {
+                try {
+                    target.output.writeAggregateHeader(Resp.PUSH_BYTE, 2);
+                    target.output.writeBulkString("invalidate".getBytes(Resp.CHARSET));
+                    target.output.writeArrayHeader(1);
+                    target.output.writeBulkString(key);
+                    target.output.flush();
+                } catch (IOException ignored) {
+                    // the target connection is closed
+                }
+            }
+        }
+    }
+
+    private static void writeFrame(Subscriptions subscriptions, String type, byte[] channel) throws IOException {
+        RespOutputStream output = subscriptions.output;
+        subscriptions.writeFrameHeader(3);
+        output.writeBulkString(type.getBytes(Resp.CHARSET));
+        if (channel == null) {
+            output.writeNullBulkString();
+        } else {
+            output.writeBulkString(channel);
+        }
+        output.writeInt(subscriptions.count());
+    }
+
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '[':
+                case ']':
+                    regex.append(c);
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * The subscriptions (and tracking state) of a single connection
+     */
+    private static class Subscriptions {
+
+        private final long id;
+        private final RespOutputStream output;
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+        private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+        private volatile int protocolVersion = Resp.RESP2;
+
+        private volatile boolean tracking;
+        private volatile boolean broadcast;
+        private volatile long redirect;
+        private volatile String[] prefixes = new String[0];
+
+        // only read by the connection thread
+        private boolean asking;
+
+        private Subscriptions(long id, RespOutputStream output) {
+            this.id = id;
+            this.output = output;
+        }
+
+        private void writeFrameHeader(int length) throws IOException {
+            // RESP3 connections receive pub/sub frames as push frames
+            output.writeAggregateHeader(protocolVersion == Resp.RESP3 ? Resp.PUSH_BYTE : Resp.ARRAY_BYTE, length);
+        }
+
+        private int count() {
+            return channels.size() + patterns.size();
+        }
+
+        /**
+         * Pushes the given message to this connection if it's
+         * subscribed to the channel, returns the count of
+         * pushed frames
+         */
+        private int publish(String channel, byte[] channelBytes, byte[] message) {
+            int pushed = 0;
+            synchronized (output) {
+                try {
+                    if (channels.contains(channel)) {
+                        writeFrameHeader(3);
+                        output.writeBulkString("message".getBytes(Resp.CHARSET));
+                        output.writeBulkString(channelBytes);
+                        output.writeBulkString(message);
+                        pushed++;
+                    }
+                    for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+                        if (entry.getValue().matcher(channel).matches()) {
+                            writeFrameHeader(4);
+                            output.writeBulkString("pmessage".getBytes(Resp.CHARSET));
+                            output.writeBulkString(entry.getKey().getBytes(Resp.CHARSET));
+                            output.writeBulkString(channelBytes);
+                            output.writeBulkString(message);
+                            pushed++;
+                        }
+                    }
+                    output.flush();
+                } catch (IOException ignored) {
+                    // the subscriber connection is closed
+                }
+            }
+            return pushed;
+        }
+
+    }
+
+    /**
+     * Closes the server and all its connections
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Handler for a stand-in command, it must write exactly
+     * one reply to the given output
+     */
+    @FunctionalInterface
+    public interface CommandHandler {
+
+        /**
+         * Handles a command
+         * @param args The command arguments, not including
+         *             the command name
+         * @param output The output stream for the reply, it
+         *               must not be flushed by handlers
+         */
+        void handle(byte[][] args, RespOutputStream output) throws IOException;
+
+    }
+
+    @Override
+    public String toString() {
+        return "StandInRedisServer[" + getAddress() + "]";
+    }
+
+}
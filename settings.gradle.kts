@@ -1,3 +1,4 @@
 rootProject.name = "redis-client"
 
 include("core")
+include("benchmarks")
\ No newline at end of file